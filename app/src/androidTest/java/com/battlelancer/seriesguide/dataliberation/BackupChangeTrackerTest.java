@@ -0,0 +1,156 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.R;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class BackupChangeTrackerTest {
+
+    private Context context;
+    private SupportSQLiteDatabase db;
+    private JsonShowImporter importer;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+        importer = new JsonShowImporter(context, db,
+                context.getResources().getStringArray(R.array.languageCodesShows), null);
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void enable_requiresFullBackupOnce() {
+        assertFalse(BackupChangeTracker.enable(db));
+        assertTrue(BackupChangeTracker.enable(db));
+
+        BackupChangeTracker.disable(db);
+        assertFalse(BackupChangeTracker.enable(db));
+    }
+
+    @Test
+    public void tracksChangedShows() throws IOException {
+        BackupChangeTracker.enable(db);
+        importShows(buildShow(1), buildShow(2));
+
+        BackupChangeTracker.Changes changes = BackupChangeTracker.get(db,
+                JsonExportTask.BACKUP_SHOWS);
+        assertEquals(Arrays.asList("1", "2"), changes.ids);
+        assertEquals(0, BackupChangeTracker.get(db, JsonExportTask.BACKUP_MOVIES).ids.size());
+
+        BackupChangeTracker.remove(db, JsonExportTask.BACKUP_SHOWS, changes.maxChangeId);
+        assertEquals(0, BackupChangeTracker.get(db, JsonExportTask.BACKUP_SHOWS).ids.size());
+
+        // changing an episode changes its show, changing it again keeps one change
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=1"
+                + " WHERE " + Episodes._ID + "=2101");
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=0"
+                + " WHERE " + Episodes._ID + "=2101");
+        assertEquals(Collections.singletonList("2"),
+                BackupChangeTracker.get(db, JsonExportTask.BACKUP_SHOWS).ids);
+    }
+
+    @Test
+    public void replayDeltaLog() throws IOException {
+        importShows(buildShow(1), buildShow(2));
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=1"
+                + " WHERE " + Shows.REF_SHOW_ID + "=1");
+
+        // log the changed show and a removed show
+        File logFile = File.createTempFile("sg-shows-export-delta", ".json");
+        logFile.deleteOnExit();
+        final JsonShowExporter exporter = new JsonShowExporter(db, false, null);
+        BackupDeltaLog.DataWriter dataWriter = new BackupDeltaLog.DataWriter() {
+            @Override
+            public boolean writeData(String id, JsonWriter writer) throws IOException {
+                return exporter.exportShow(Integer.parseInt(id), writer);
+            }
+        };
+        BackupDeltaLog.append(logFile, Collections.singletonList("1"), dataWriter);
+        BackupDeltaLog.append(logFile, Collections.singletonList("3"), dataWriter);
+
+        // restore the full backup, then replay
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=0");
+        importShows(buildShow(3));
+        BackupDeltaLog.replay(logFile, new BackupDeltaLog.DataReader() {
+            @Override
+            public void readData(String id, JsonReader reader) throws IOException {
+                importer.replaceShow(Integer.parseInt(id), reader);
+            }
+        });
+
+        assertEquals(2, count("SELECT * FROM " + Tables.SHOWS));
+        assertEquals(0, count("SELECT * FROM " + Tables.EPISODES
+                + " WHERE " + Shows.REF_SHOW_ID + "=3"));
+        assertEquals(3, count("SELECT * FROM " + Tables.EPISODES
+                + " WHERE " + Shows.REF_SHOW_ID + "=1 AND " + Episodes.WATCHED + "=1"));
+        assertEquals(0, count("SELECT * FROM " + Tables.EPISODES
+                + " WHERE " + Shows.REF_SHOW_ID + "=2 AND " + Episodes.WATCHED + "=1"));
+    }
+
+    private void importShows(Show... shows) throws IOException {
+        importer.importShows(new ByteArrayInputStream(new Gson().toJson(Arrays.asList(shows))
+                .getBytes(Charset.forName("UTF-8"))));
+    }
+
+    private static Show buildShow(int showTvdbId) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.seasons = new ArrayList<>();
+        Season season = new Season();
+        season.tvdbId = showTvdbId * 10 + 1;
+        season.season = 1;
+        season.episodes = new ArrayList<>();
+        for (int number = 1; number <= 3; number++) {
+            Episode episode = new Episode();
+            episode.tvdbId = showTvdbId * 1000 + 100 + number;
+            episode.episode = number;
+            episode.title = "Episode " + number;
+            season.episodes.add(episode);
+        }
+        show.seasons.add(season);
+        return show;
+    }
+
+    private int count(String query) {
+        Cursor cursor = db.query(query);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+}
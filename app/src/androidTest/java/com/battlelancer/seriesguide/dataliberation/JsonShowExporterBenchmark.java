@@ -0,0 +1,172 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowsQuery;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures time and peak heap use of exporting a large library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JsonShowExporterBenchmark {
+
+    private static final int SHOW_COUNT = 1000;
+    private static final int SEASONS_PER_SHOW = 4;
+    private static final int EPISODES_PER_SEASON = 25;
+
+    private SgRoomDatabase db;
+
+    @Before
+    public void createDb() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+                SgRoomDatabase.class)
+                .addCallback(SgRoomDatabase.CALLBACK)
+                .build();
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void exportLargeLibrary() throws IOException {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        insertLibrary(database);
+
+        export(database, false, false);
+        export(database, true, false);
+        export(database, false, true);
+    }
+
+    private void export(SupportSQLiteDatabase database, boolean isFullDump, boolean isCompressed)
+            throws IOException {
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        final long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        final long[] heapPeak = {heapBefore};
+        final int[] showsExported = {0};
+
+        CountingOutputStream counting = new CountingOutputStream();
+        OutputStream out = isCompressed ? new GZIPOutputStream(counting) : counting;
+
+        Cursor shows = database.query("SELECT "
+                + TextUtils.join(",", ShowsQuery.PROJECTION_FULL) + " FROM " + Tables.SHOWS
+                + " ORDER BY " + Shows.SORT_TITLE);
+        long start = SystemClock.elapsedRealtime();
+        try {
+            new JsonShowExporter(database, isFullDump, new JsonShowExporter.Callback() {
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+
+                @Override
+                public void onProgress(int count) {
+                    showsExported[0] = count;
+                    heapPeak[0] = Math.max(heapPeak[0],
+                            runtime.totalMemory() - runtime.freeMemory());
+                }
+            }).exportShows(shows, out);
+        } finally {
+            shows.close();
+        }
+        long exportMs = SystemClock.elapsedRealtime() - start;
+
+        System.out.println(String.format(
+                "%s shows, %s episodes (full dump %s, compressed %s): %s ms, %s KB written,"
+                        + " peak heap +%s KB",
+                SHOW_COUNT, SHOW_COUNT * SEASONS_PER_SHOW * EPISODES_PER_SEASON, isFullDump,
+                isCompressed, exportMs, counting.count / 1024,
+                (heapPeak[0] - heapBefore) / 1024));
+        assertEquals(SHOW_COUNT, showsExported[0]);
+        assertTrue(counting.count > 0);
+    }
+
+    private static void insertLibrary(SupportSQLiteDatabase database) {
+        database.beginTransaction();
+        try {
+            SupportSQLiteStatement insertEpisode = database.compileStatement("INSERT INTO "
+                    + Tables.EPISODES + "("
+                    + Episodes._ID + "," + Episodes.TITLE + "," + Episodes.OVERVIEW + ","
+                    + Episodes.NUMBER + "," + Episodes.SEASON + ","
+                    + Seasons.REF_SEASON_ID + "," + Shows.REF_SHOW_ID + ","
+                    + Episodes.WATCHED + "," + Episodes.FIRSTAIREDMS + ","
+                    + Episodes.COLLECTED + "," + Episodes.LAST_EDITED + ","
+                    + Episodes.LAST_UPDATED
+                    + ") VALUES (?,?,?,?,?,?,?,?,0,0,0,0)");
+            int episodeId = 0;
+            for (int showId = 1; showId <= SHOW_COUNT; showId++) {
+                Show show = new Show();
+                show.tvdb_id = showId;
+                show.title = "Show " + showId;
+                RoomDatabaseTestHelper.insertShow(show, database, SgRoomDatabase.VERSION);
+
+                for (int number = 1; number <= SEASONS_PER_SHOW; number++) {
+                    SgSeason season = new SgSeason();
+                    season.tvdbId = showId * SEASONS_PER_SHOW + number;
+                    season.showTvdbId = String.valueOf(showId);
+                    season.number = number;
+                    RoomDatabaseTestHelper.insertSeason(season, database);
+
+                    for (int episode = 1; episode <= EPISODES_PER_SEASON; episode++) {
+                        episodeId++;
+                        insertEpisode.bindLong(1, episodeId);
+                        insertEpisode.bindString(2, "Episode " + episode);
+                        insertEpisode.bindString(3, "A somewhat longer overview of episode "
+                                + episode + " so a full dump has some more to write.");
+                        insertEpisode.bindLong(4, episode);
+                        insertEpisode.bindLong(5, number);
+                        insertEpisode.bindLong(6, season.tvdbId);
+                        insertEpisode.bindLong(7, showId);
+                        insertEpisode.bindLong(8, episode % 2);
+                        insertEpisode.executeInsert();
+                    }
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.R;
+import com.battlelancer.seriesguide.dataliberation.backup.SgBackup;
+import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowsQuery;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class JsonShowExporterTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Context context;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void exportShows_likeGson() throws IOException {
+        // insert in reverse order, export should be sorted by title
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(2, 1));
+        shows.add(buildShow(1, 2));
+        importShows(new Gson().toJson(shows).getBytes(UTF_8));
+
+        String json = new String(exportShows(false, false), UTF_8);
+
+        Show[] exported = new Gson().fromJson(json, Show[].class);
+        assertEquals(2, exported.length);
+        assertEquals(1, exported[0].tvdb_id);
+        assertEquals(2, exported[0].seasons.size());
+        assertEquals(2, exported[1].tvdb_id);
+        assertEquals(1, exported[1].seasons.size());
+        Season season = exported[0].seasons.get(1);
+        assertEquals(12, season.tvdbId);
+        assertEquals(2, season.season);
+        assertEquals(3, season.episodes.size());
+        Episode episode = season.episodes.get(2);
+        assertEquals(1203, episode.tvdbId);
+        assertEquals(3, episode.episode);
+        assertEquals("Episode 3", episode.title);
+        assertTrue(episode.watched);
+
+        // output must be readable like a backup written by Gson
+        assertEquals(new Gson().toJson(exported), json);
+    }
+
+    @Test
+    public void exportShows_allSeasonsAndEpisodes() throws IOException {
+        // ids sort differently as text than as numbers
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(9, 2));
+        shows.add(buildShow(20, 1));
+        shows.add(buildShow(100, 3));
+        importShows(new Gson().toJson(shows).getBytes(UTF_8));
+
+        String json = new String(exportShows(false, false), UTF_8);
+
+        Show[] exported = new Gson().fromJson(json, Show[].class);
+        assertEquals(3, exported.length);
+        // sorted by title
+        assertEquals(100, exported[0].tvdb_id);
+        assertEquals(20, exported[1].tvdb_id);
+        assertEquals(9, exported[2].tvdb_id);
+        int[] expectedSeasons = {3, 1, 2};
+        for (int i = 0; i < exported.length; i++) {
+            Show show = exported[i];
+            assertEquals(expectedSeasons[i], show.seasons.size());
+            for (Season season : show.seasons) {
+                assertEquals(show.tvdb_id * 10 + season.season, season.tvdbId);
+                assertEquals(3, season.episodes.size());
+                for (Episode episode : season.episodes) {
+                    assertEquals(show.tvdb_id * 1000 + season.season * 100 + episode.episode,
+                            episode.tvdbId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void exportShows_compressed() throws IOException {
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(1, 2));
+        importShows(new Gson().toJson(shows).getBytes(UTF_8));
+
+        byte[] compressed = exportShows(true, true);
+
+        db.delete(Tables.EPISODES, null, null);
+        db.delete(Tables.SEASONS, null, null);
+        db.delete(Tables.SHOWS, null, null);
+        importShows(compressed);
+
+        assertEquals(1, count(Tables.SHOWS));
+        assertEquals(2, count(Tables.SEASONS));
+        assertEquals(6, count(Tables.EPISODES));
+    }
+
+    @Test
+    public void exportShows_binaryLikeJson() throws IOException {
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(9, 2));
+        shows.add(buildShow(20, 1));
+        importShows(new Gson().toJson(shows).getBytes(UTF_8));
+
+        for (boolean isFullDump : new boolean[]{false, true}) {
+            String json = new String(exportShows(isFullDump, false), UTF_8);
+
+            BinaryBackup.Builder builder = new BinaryBackup.Builder(JsonExportTask.BACKUP_SHOWS);
+            Cursor showsCursor = queryShows();
+            try {
+                new BinaryShowExporter(db, isFullDump, null).exportShows(showsCursor, builder);
+            } finally {
+                showsCursor.close();
+            }
+            SgBackup backup = BinaryBackup.wrap(builder.finish());
+            assertNotNull(backup);
+            ByteArrayOutputStream converted = new ByteArrayOutputStream();
+            BinaryBackup.toJson(backup, JsonExportTask.BACKUP_SHOWS, converted);
+
+            assertEquals(json, new String(converted.toByteArray(), UTF_8));
+        }
+    }
+
+    private byte[] exportShows(boolean isFullDump, boolean isCompressed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = isCompressed ? new GZIPOutputStream(bytes) : bytes;
+        Cursor shows = queryShows();
+        try {
+            new JsonShowExporter(db, isFullDump, null).exportShows(shows, out);
+        } finally {
+            shows.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private Cursor queryShows() {
+        Cursor shows = context.getContentResolver().query(Shows.CONTENT_URI,
+                ShowsQuery.PROJECTION_FULL, null, null, Shows.SORT_TITLE);
+        assertNotNull(shows);
+        return shows;
+    }
+
+    private void importShows(byte[] json) throws IOException {
+        String[] languageCodes = context.getResources()
+                .getStringArray(R.array.languageCodesShows);
+        new JsonShowImporter(context, db, languageCodes, null)
+                .importShows(new ByteArrayInputStream(json));
+    }
+
+    private static Show buildShow(int showTvdbId, int seasonCount) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.seasons = new ArrayList<>();
+        for (int seasonNumber = 1; seasonNumber <= seasonCount; seasonNumber++) {
+            Season season = new Season();
+            season.tvdbId = showTvdbId * 10 + seasonNumber;
+            season.season = seasonNumber;
+            season.episodes = new ArrayList<>();
+            for (int number = 1; number <= 3; number++) {
+                Episode episode = new Episode();
+                episode.tvdbId = showTvdbId * 1000 + seasonNumber * 100 + number;
+                episode.episode = number;
+                episode.title = "Episode " + number;
+                episode.watched = number == 3;
+                season.episodes.add(episode);
+            }
+            show.seasons.add(season);
+        }
+        return show;
+    }
+
+    private int count(String table) {
+        Cursor query = db.query("SELECT * FROM " + table);
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+}
@@ -0,0 +1,150 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.R;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class JsonShowImporterTest {
+
+    private Context context;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void importShows() throws IOException {
+        Show show = buildShow(1, 3);
+        Show invalidShow = buildShow(0, 1);
+        Show showWithInvalidSeason = buildShow(2, 2);
+        showWithInvalidSeason.seasons.get(1).tvdbId = 0;
+        showWithInvalidSeason.seasons.get(0).episodes.get(0).tvdbId = -1;
+
+        final long[] lastBytesRead = {0};
+        byte[] json = toJson(show, invalidShow, showWithInvalidSeason);
+        importShows(new ByteArrayInputStream(json), new JsonShowImporter.ProgressListener() {
+            @Override
+            public void onProgress(long bytesRead) {
+                assertTrue(bytesRead >= lastBytesRead[0]);
+                lastBytesRead[0] = bytesRead;
+            }
+        });
+
+        assertTrue(lastBytesRead[0] > 0 && lastBytesRead[0] <= json.length);
+        assertEquals(2, count(Shows.CONTENT_URI));
+        // show 1: 3 seasons with 3 episodes, show 2: 1 season with 2 valid episodes
+        assertEquals(4, count(Seasons.CONTENT_URI));
+        assertEquals(11, count(Episodes.CONTENT_URI));
+        assertEpisode(episodeId(1, 2, 3), "Episode 3", 2, 3);
+    }
+
+    @Test
+    public void importShows_seasonsBeforeIds() throws IOException {
+        // move ids after seasons and episodes
+        String json = "[{\"seasons\":[{\"episodes\":[{\"episode\":1,\"title\":\"Episode 1\","
+                + "\"tvdb_id\":100}],\"season\":1,\"tvdb_id\":10}],"
+                + "\"title\":\"Show\",\"tvdb_id\":1}]";
+        importShows(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))), null);
+
+        assertEquals(1, count(Shows.CONTENT_URI));
+        assertEquals(1, count(Seasons.CONTENT_URI));
+        assertEquals(1, count(Episodes.CONTENT_URI));
+        assertEpisode(100, "Episode 1", 1, 1);
+    }
+
+    private void importShows(InputStream in, JsonShowImporter.ProgressListener listener)
+            throws IOException {
+        String[] languageCodes = context.getResources()
+                .getStringArray(R.array.languageCodesShows);
+        new JsonShowImporter(context, db, languageCodes, listener).importShows(in);
+    }
+
+    private static int episodeId(int showTvdbId, int season, int number) {
+        return showTvdbId * 1000 + season * 100 + number;
+    }
+
+    private static Show buildShow(int showTvdbId, int seasonCount) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.seasons = new ArrayList<>();
+        for (int seasonNumber = 1; seasonNumber <= seasonCount; seasonNumber++) {
+            Season season = new Season();
+            season.tvdbId = showTvdbId * 10 + seasonNumber;
+            season.season = seasonNumber;
+            season.episodes = new ArrayList<>();
+            for (int number = 1; number <= 3; number++) {
+                Episode episode = new Episode();
+                episode.tvdbId = episodeId(showTvdbId, seasonNumber, number);
+                episode.episode = number;
+                episode.title = "Episode " + number;
+                season.episodes.add(episode);
+            }
+            show.seasons.add(season);
+        }
+        return show;
+    }
+
+    private static byte[] toJson(Show... shows) {
+        ArrayList<Show> list = new ArrayList<>();
+        Collections.addAll(list, shows);
+        return new Gson().toJson(list).getBytes(Charset.forName("UTF-8"));
+    }
+
+    private int count(Uri uri) {
+        Cursor query = context.getContentResolver().query(uri, null, null, null, null);
+        assertNotNull(query);
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+
+    private void assertEpisode(int episodeTvdbId, String title, int season, int number) {
+        Cursor query = context.getContentResolver().query(
+                Episodes.buildEpisodeUri(episodeTvdbId),
+                new String[]{Episodes.TITLE, Episodes.SEASON, Episodes.NUMBER}, null, null,
+                null);
+        assertNotNull(query);
+        assertTrue(query.moveToFirst());
+        assertEquals(title, query.getString(0));
+        assertEquals(season, query.getInt(1));
+        assertEquals(number, query.getInt(2));
+        query.close();
+    }
+}
@@ -0,0 +1,125 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper.buildEpisodeValues;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class BulkWriterTest {
+
+    private Context context;
+    private ContentResolver resolver;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        RoomDatabaseTestHelper.switchToInMemoryDb(context);
+        resolver = context.getContentResolver();
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void writeShow() {
+        Show show = new Show();
+        show.tvdb_id = 1;
+        show.title = "Show";
+
+        BulkWriter writer = new BulkWriter(context);
+        writer.beginTransaction();
+        try {
+            writer.insertShow(show.toContentValues(context, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 11, 1, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 12, 2, true));
+            writer.insertEpisode(buildEpisodeValues(1, 101, 11, 1, 1, 0,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 102, 11, 1, 2, 0,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 201, 12, 2, 1, 0,
+                    EpisodeFlags.UNWATCHED));
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertThat(queryEpisodes()).containsExactly("101|0", "102|0", "201|0").inOrder();
+
+        // change show and flags, remove episode and season
+        show.title = "Show changed";
+        ContentValues watched = new ContentValues();
+        watched.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        writer.beginTransaction();
+        try {
+            writer.updateShow(1, show.toContentValues(context, false));
+            writer.updateSeason(11, DBUtils.buildSeasonValues(1, 11, 1, false));
+            writer.updateEpisode(101, watched);
+            writer.updateEpisode(1, 1, 2, watched);
+            writer.deleteEpisodesOfSeason(12);
+            writer.deleteSeason(12);
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertThat(queryEpisodes()).containsExactly("101|1", "102|1").inOrder();
+        assertThat(queryCount(Seasons.CONTENT_URI)).isEqualTo(1);
+
+        Cursor showQuery = resolver.query(Shows.buildShowUri(1), new String[]{Shows.TITLE},
+                null, null, null);
+        assertNotNull(showQuery);
+        assertThat(showQuery.moveToFirst()).isTrue();
+        assertThat(showQuery.getString(0)).isEqualTo("Show changed");
+        showQuery.close();
+
+        // rolled back if not successful
+        writer.beginTransaction();
+        try {
+            writer.deleteEpisode(101);
+        } finally {
+            writer.endTransaction();
+        }
+        assertThat(queryEpisodes()).containsExactly("101|1", "102|1").inOrder();
+    }
+
+    private List<String> queryEpisodes() {
+        Cursor query = resolver.query(Episodes.CONTENT_URI,
+                new String[]{Episodes._ID, Episodes.WATCHED}, null, null, Episodes._ID);
+        assertNotNull(query);
+        List<String> values = new ArrayList<>();
+        while (query.moveToNext()) {
+            values.add(query.getString(0) + "|" + query.getString(1));
+        }
+        query.close();
+        return values;
+    }
+
+    private int queryCount(Uri uri) {
+        Cursor query = resolver.query(uri, new String[]{BaseColumns._ID}, null, null, null);
+        assertNotNull(query);
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class ChangeNotifierTest {
+
+    @Test
+    public void coalesce_dropsDuplicates() {
+        List<Uri> uris = ChangeNotifier.coalesce(Arrays.asList(
+                Episodes.CONTENT_URI_WITHSHOW,
+                ListItems.CONTENT_WITH_DETAILS_URI,
+                Episodes.CONTENT_URI_WITHSHOW));
+        assertThat(uris).containsExactly(
+                Episodes.CONTENT_URI_WITHSHOW,
+                ListItems.CONTENT_WITH_DETAILS_URI).inOrder();
+    }
+
+    @Test
+    public void coalesce_dropsDescendants() {
+        List<Uri> uris = ChangeNotifier.coalesce(Arrays.asList(
+                Episodes.buildEpisodeUri(42),
+                Episodes.CONTENT_URI_WITHSHOW,
+                Shows.buildShowUri(42),
+                Episodes.CONTENT_URI));
+        assertThat(uris).containsExactly(Shows.buildShowUri(42), Episodes.CONTENT_URI).inOrder();
+    }
+
+    @Test
+    public void batch_deliversOnEnd() {
+        ChangeNotifier notifier = ChangeNotifier
+                .getInstance(InstrumentationRegistry.getTargetContext());
+        long delivered = notifier.getDeliveredCount();
+
+        notifier.beginBatch();
+        notifier.notifyChange(Episodes.buildEpisodeUri(42));
+        notifier.beginBatch();
+        notifier.notifyChange(Episodes.CONTENT_URI);
+        notifier.endBatch();
+        assertThat(notifier.getDeliveredCount()).isEqualTo(delivered);
+        notifier.endBatch();
+        assertThat(notifier.getDeliveredCount()).isEqualTo(delivered + 1);
+
+        // outside of a batch delivered right away
+        notifier.notifyChange(Episodes.CONTENT_URI);
+        assertThat(notifier.getDeliveredCount()).isEqualTo(delivered + 2);
+    }
+}
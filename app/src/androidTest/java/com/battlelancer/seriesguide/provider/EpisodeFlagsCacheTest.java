@@ -0,0 +1,117 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper.buildEpisodeValues;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.provider.EpisodeFlagsCache.ShowFlags;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.util.DBUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class EpisodeFlagsCacheTest {
+
+    private Context context;
+    private EpisodeFlagsCache cache;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        RoomDatabaseTestHelper.switchToInMemoryDb(context);
+        // cache outlives the database
+        cache = EpisodeFlagsCache.getInstance(context);
+        cache.invalidateAll();
+    }
+
+    @After
+    public void closeDb() {
+        cache.invalidateAll();
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void countsAndUpdates() {
+        long now = System.currentTimeMillis();
+        long past = now - DateUtils.DAY_IN_MILLIS;
+        long future = now + DateUtils.DAY_IN_MILLIS;
+
+        BulkWriter writer = new BulkWriter(context);
+        writer.beginTransaction();
+        try {
+            writer.insertShow(RoomDatabaseTestHelper.buildShowValues(context, 1, 0));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 10, 0, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 11, 1, true));
+            // special
+            writer.insertEpisode(buildEpisodeValues(1, 1, 10, 0, 1, past, EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 102, 11, 1, 2, past,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 101, 11, 1, 1, past,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 103, 11, 1, 3, past, EpisodeFlags.WATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 104, 11, 1, 4, past, EpisodeFlags.SKIPPED));
+            writer.insertEpisode(buildEpisodeValues(1, 105, 11, 1, 5, future,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 106, 11, 1, 6, -1, EpisodeFlags.UNWATCHED));
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+
+        ShowFlags flags = cache.get(1);
+        assertNotNull(flags);
+        assertThat(flags.size()).isEqualTo(7);
+        // ordered by season and number
+        assertThat(flags.getSeason(0)).isEqualTo(0);
+        assertThat(flags.getEpisodeTvdbId(1)).isEqualTo(101);
+        assertThat(flags.getEpisodeTvdbId(2)).isEqualTo(102);
+        assertThat(flags.countUnwatchedReleased(now)).isEqualTo(2);
+        assertThat(flags.countUncollectedReleased(now)).isEqualTo(4);
+        // cached
+        assertThat(cache.get(1)).isSameAs(flags);
+
+        // flags written by number are applied to the cached show
+        EpisodeFlagsWriter flagsWriter = new EpisodeFlagsWriter(context);
+        flagsWriter.addFlags(1, 1, 1, EpisodeFlags.WATCHED, true);
+        assertThat(flagsWriter.apply()).isEqualTo(1);
+        ShowFlags updated = cache.get(1);
+        assertNotNull(updated);
+        assertThat(updated.getWatched(1)).isEqualTo(EpisodeFlags.WATCHED);
+        assertThat(updated.isCollected(1)).isTrue();
+        assertThat(updated.countUnwatchedReleased(now)).isEqualTo(1);
+        assertThat(updated.countUncollectedReleased(now)).isEqualTo(3);
+
+        // partial flags added for the same episode are merged
+        flagsWriter.addFlags(1, 1, 4, EpisodeFlags.WATCHED, null);
+        flagsWriter.addFlags(1, 1, 4, null, true);
+        assertThat(flagsWriter.apply()).isEqualTo(1);
+        ShowFlags merged = cache.get(1);
+        assertNotNull(merged);
+        assertThat(merged.getWatched(4)).isEqualTo(EpisodeFlags.WATCHED);
+        assertThat(merged.isCollected(4)).isTrue();
+        assertThat(merged.countUncollectedReleased(now)).isEqualTo(2);
+
+        // changes through the provider drop the show
+        ContentValues watched = new ContentValues();
+        watched.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        context.getContentResolver().update(Episodes.buildEpisodeUri(102), watched, null, null);
+        ShowFlags reloaded = cache.get(1);
+        assertNotNull(reloaded);
+        assertThat(reloaded).isNotSameAs(merged);
+        assertThat(reloaded.getWatched(1)).isEqualTo(EpisodeFlags.WATCHED);
+        // merged flags were written
+        assertThat(reloaded.getWatched(4)).isEqualTo(EpisodeFlags.WATCHED);
+        assertThat(reloaded.isCollected(4)).isTrue();
+        assertThat(reloaded.countUnwatchedReleased(now)).isEqualTo(0);
+        assertThat(DBUtils.getUnwatchedEpisodesOfShow(context, "1")).isEqualTo(0);
+    }
+}
@@ -0,0 +1,195 @@
+package com.battlelancer.seriesguide.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares applying flags downloaded from Hexagon staged in a temporary table against updating
+ * one episode at a time, with and without the show, season and number index, like for the first
+ * sync of a large library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeFlagsWriterBenchmark {
+
+    private static final int SHOW_COUNT = 100;
+    private static final int SEASONS_PER_SHOW = 10;
+    private static final int EPISODES_PER_SEASON = 100;
+    private static final int EPISODES_PER_SHOW = SEASONS_PER_SHOW * EPISODES_PER_SEASON;
+    private static final int EPISODE_COUNT = SHOW_COUNT * EPISODES_PER_SHOW;
+    private static final int FLAG_COUNT = 10000;
+    /** Without index each flag scans all episodes, so only apply some. */
+    private static final int FLAG_COUNT_WITHOUT_INDEX = 100;
+    private static final int PAGE_SIZE = 1000;
+
+    private Context context;
+    private SgRoomDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context);
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void stagedFasterThanSingleUpdates() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        insertEpisodes(database);
+
+        long startStaged = SystemClock.elapsedRealtime();
+        EpisodeFlagsWriter flagsWriter = new EpisodeFlagsWriter(context);
+        int changed = 0;
+        for (int i = 0; i < FLAG_COUNT; i++) {
+            int[] episode = flaggedEpisode(i);
+            flagsWriter.addFlags(episode[0], episode[1], episode[2], EpisodeFlags.WATCHED,
+                    i % 2 == 0 ? true : null);
+            if ((i + 1) % PAGE_SIZE == 0) {
+                changed += flagsWriter.apply();
+            }
+        }
+        long stagedMs = SystemClock.elapsedRealtime() - startStaged;
+        assertEquals(FLAG_COUNT, changed);
+        assertEquals(FLAG_COUNT, count(database, Episodes.WATCHED + "=" + EpisodeFlags.WATCHED));
+        assertEquals(FLAG_COUNT / 2, count(database, Episodes.COLLECTED + "=1"));
+
+        // applying the same flags again changes nothing
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            int[] episode = flaggedEpisode(i);
+            flagsWriter.addFlags(episode[0], episode[1], episode[2], EpisodeFlags.WATCHED, null);
+        }
+        assertEquals(0, flagsWriter.apply());
+
+        resetFlags(database);
+        long startSingle = SystemClock.elapsedRealtime();
+        applySingleUpdates(FLAG_COUNT);
+        long singleMs = SystemClock.elapsedRealtime() - startSingle;
+        assertEquals(FLAG_COUNT, count(database, Episodes.WATCHED + "=" + EpisodeFlags.WATCHED));
+
+        resetFlags(database);
+        database.execSQL("DROP INDEX index_episodes_series_id_season_episodenumber");
+        long startWithoutIndex = SystemClock.elapsedRealtime();
+        applySingleUpdates(FLAG_COUNT_WITHOUT_INDEX);
+        long withoutIndexMs = SystemClock.elapsedRealtime() - startWithoutIndex;
+        assertEquals(FLAG_COUNT_WITHOUT_INDEX,
+                count(database, Episodes.WATCHED + "=" + EpisodeFlags.WATCHED));
+
+        System.out.println(String.format(
+                "%s episodes: %s flags staged %s ms, single updates %s ms, "
+                        + "%s flags single updates without index %s ms",
+                EPISODE_COUNT, FLAG_COUNT, stagedMs, singleMs, FLAG_COUNT_WITHOUT_INDEX,
+                withoutIndexMs));
+        assertTrue(stagedMs < withoutIndexMs);
+    }
+
+    /**
+     * Returns show TVDB id, season and episode number of every tenth episode.
+     */
+    private static int[] flaggedEpisode(int index) {
+        int episode = index * (EPISODE_COUNT / FLAG_COUNT);
+        return new int[]{
+                episode / EPISODES_PER_SHOW + 1,
+                episode % EPISODES_PER_SHOW / EPISODES_PER_SEASON + 1,
+                episode % EPISODES_PER_SEASON + 1
+        };
+    }
+
+    /**
+     * Like Hexagon flags were applied before, one transaction per page.
+     */
+    private void applySingleUpdates(int flagCount) {
+        ContentValues values = new ContentValues();
+        values.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        BulkWriter writer = new BulkWriter(context);
+        for (int page = 0; page < flagCount; page += PAGE_SIZE) {
+            writer.beginTransaction();
+            try {
+                for (int i = page; i < Math.min(page + PAGE_SIZE, flagCount); i++) {
+                    int[] episode = flaggedEpisode(i);
+                    writer.updateEpisode(episode[0], episode[1], episode[2], values);
+                }
+                writer.setTransactionSuccessful();
+            } finally {
+                writer.endTransaction();
+            }
+        }
+    }
+
+    private static void insertEpisodes(SupportSQLiteDatabase database) {
+        database.beginTransaction();
+        try {
+            for (int showTvdbId = 1; showTvdbId <= SHOW_COUNT; showTvdbId++) {
+                Show show = new Show();
+                show.tvdb_id = showTvdbId;
+                show.title = "Show " + showTvdbId;
+                RoomDatabaseTestHelper.insertShow(show, database, SgRoomDatabase.VERSION);
+                SgSeason season = new SgSeason();
+                season.tvdbId = showTvdbId;
+                season.showTvdbId = String.valueOf(showTvdbId);
+                season.number = 1;
+                RoomDatabaseTestHelper.insertSeason(season, database);
+            }
+
+            SupportSQLiteStatement insert = database.compileStatement("INSERT INTO "
+                    + Tables.EPISODES + "("
+                    + Episodes._ID + "," + Episodes.TITLE + ","
+                    + Episodes.NUMBER + "," + Episodes.SEASON + ","
+                    + Seasons.REF_SEASON_ID + "," + Shows.REF_SHOW_ID + ","
+                    + Episodes.WATCHED + "," + Episodes.FIRSTAIREDMS + ","
+                    + Episodes.COLLECTED + "," + Episodes.LAST_EDITED + ","
+                    + Episodes.LAST_UPDATED
+                    + ") VALUES (?,?,?,?,?,?,0,0,0,0,0)");
+            for (int i = 0; i < EPISODE_COUNT; i++) {
+                long showTvdbId = i / EPISODES_PER_SHOW + 1;
+                insert.bindLong(1, i + 1);
+                insert.bindString(2, "Episode " + (i + 1));
+                insert.bindLong(3, i % EPISODES_PER_SEASON + 1);
+                insert.bindLong(4, i % EPISODES_PER_SHOW / EPISODES_PER_SEASON + 1);
+                insert.bindLong(5, showTvdbId);
+                insert.bindLong(6, showTvdbId);
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static void resetFlags(SupportSQLiteDatabase database) {
+        database.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=0,"
+                + Episodes.COLLECTED + "=0");
+    }
+
+    private static int count(SupportSQLiteDatabase database, String selection) {
+        Cursor query = database.query("SELECT COUNT(*) FROM " + Tables.EPISODES
+                + " WHERE " + selection);
+        query.moveToFirst();
+        int count = query.getInt(0);
+        query.close();
+        return count;
+    }
+}
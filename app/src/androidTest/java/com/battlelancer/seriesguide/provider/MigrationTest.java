@@ -4,6 +4,12 @@ import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_42_
 import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_43_44;
 import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_44_45;
 import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_45_46;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_46_47;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_47_48;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_48_49;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_49_50;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_50_51;
+import static com.battlelancer.seriesguide.provider.SgRoomDatabase.MIGRATION_51_52;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -11,6 +17,7 @@ import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.testing.MigrationTestHelper;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
@@ -18,8 +25,10 @@ import com.battlelancer.seriesguide.dataliberation.model.Show;
 import com.battlelancer.seriesguide.model.SgEpisode;
 import com.battlelancer.seriesguide.model.SgSeason;
 import com.battlelancer.seriesguide.model.SgShow;
+import com.battlelancer.seriesguide.model.SgShowStats;
 import com.uwetrottmann.thetvdb.entities.Episode;
 import java.io.IOException;
+import java.util.List;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -149,6 +158,119 @@ public class MigrationTest {
         assertNull(dbShow.slug);
     }
 
+    @Test
+    public void migrationFrom46To47_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 46);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 46);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        SgRoomDatabase database = getMigratedRoomDatabase();
+        assertTestData(database);
+
+        // search table was missing, so should have been rebuilt
+        Cursor query = database.query("SELECT docid FROM "
+                + SeriesGuideDatabase.Tables.EPISODES_SEARCH
+                + " WHERE " + SeriesGuideDatabase.Tables.EPISODES_SEARCH + " MATCH 'Title'", null);
+        assertEquals(1, query.getCount());
+        query.moveToFirst();
+        assertEquals(EPISODE.id.intValue(), query.getInt(0));
+        query.close();
+    }
+
+    @Test
+    public void migrationFrom47To48_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 47);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 47);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        // validates the new indexes
+        migrationTestHelper.runMigrationsAndValidate(TEST_DB_NAME, 48, false, MIGRATION_47_48);
+
+        assertTestData(getMigratedRoomDatabase());
+    }
+
+    @Test
+    public void migrationFrom48To49_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 48);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 48);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        // validates the new sync stages table
+        migrationTestHelper.runMigrationsAndValidate(TEST_DB_NAME, 49, false, MIGRATION_48_49);
+
+        SgRoomDatabase database = getMigratedRoomDatabase();
+        assertTestData(database);
+        assertEquals(0, database.syncStageHelper().getStages().size());
+    }
+
+    @Test
+    public void migrationFrom49To50_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 49);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 49);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        // validates the new episode pages table
+        migrationTestHelper.runMigrationsAndValidate(TEST_DB_NAME, 50, false, MIGRATION_49_50);
+
+        SgRoomDatabase database = getMigratedRoomDatabase();
+        assertTestData(database);
+        assertEquals(0, database.episodePageHelper().getPagesOfShow(SHOW.tvdb_id).size());
+    }
+
+    @Test
+    public void migrationFrom50To51_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 50);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 50);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        // validates the new index
+        migrationTestHelper.runMigrationsAndValidate(TEST_DB_NAME, 51, false, MIGRATION_50_51);
+
+        assertTestData(getMigratedRoomDatabase());
+    }
+
+    @Test
+    public void migrationFrom51To52_containsCorrectData() throws IOException {
+        SupportSQLiteDatabase db = migrationTestHelper.createDatabase(TEST_DB_NAME, 51);
+        RoomDatabaseTestHelper.insertShow(SHOW, db, 51);
+        RoomDatabaseTestHelper.insertSeason(SEASON, db);
+        RoomDatabaseTestHelper
+                .insertEpisode(EPISODE, SHOW.tvdb_id, SEASON.tvdbId, SEASON.number, db);
+        db.close();
+
+        // validates the new show stats table
+        migrationTestHelper.runMigrationsAndValidate(TEST_DB_NAME, 52, false, MIGRATION_51_52);
+
+        SgRoomDatabase database = getMigratedRoomDatabase();
+        assertTestData(database);
+
+        // counters of existing episodes are added
+        List<SgShowStats> showStats = database.showStatsHelper().getShowStats();
+        assertEquals(1, showStats.size());
+        assertEquals(SHOW.tvdb_id, showStats.get(0).showTvdbId);
+        assertEquals(1, showStats.get(0).episodes);
+        assertEquals(0, showStats.get(0).episodesWatched);
+
+        // triggers keep counters up to date
+        database.getOpenHelper().getWritableDatabase().execSQL("UPDATE episodes SET watched=1");
+        assertEquals(1, database.showStatsHelper().getShowStats().get(0).episodesWatched);
+    }
+
     private void assertTestData(SgRoomDatabase database) {
         // MigrationTestHelper automatically verifies the schema changes, but not the data validity
         // Validate that the data was migrated properly.
@@ -178,7 +300,13 @@ public class MigrationTest {
                         MIGRATION_42_43,
                         MIGRATION_43_44,
                         MIGRATION_44_45,
-                        MIGRATION_45_46
+                        MIGRATION_45_46,
+                        MIGRATION_46_47,
+                        MIGRATION_47_48,
+                        MIGRATION_48_49,
+                        MIGRATION_49_50,
+                        MIGRATION_50_51,
+                        MIGRATION_51_52
                 )
                 .build();
         // close the database and release any stream resources when the test finishes
@@ -0,0 +1,165 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.Constants;
+import com.battlelancer.seriesguide.jobs.episodes.BaseEpisodesJob;
+import com.battlelancer.seriesguide.jobs.episodes.SeasonCollectedJob;
+import com.battlelancer.seriesguide.jobs.episodes.SeasonWatchedJob;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.service.NotificationService;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.ui.shows.CalendarDataSource;
+import com.battlelancer.seriesguide.ui.shows.CalendarFragment;
+import com.battlelancer.seriesguide.ui.shows.CalendarQuery;
+import com.battlelancer.seriesguide.ui.shows.CalendarType;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on the episode queries the app sends to {@link SeriesGuideProvider} and
+ * fails if one has to scan the whole episodes table. Selections, projections and sort orders are
+ * taken from the noted callers. Queries kept package-private are checked by tests of their
+ * package, like DBUtilsQueryPlanTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private static final String[] PROJECTION_ID = new String[]{Episodes._ID};
+
+    private Context context;
+    private SgRoomDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context);
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void calendar() {
+        for (String type : new String[]{CalendarType.UPCOMING, CalendarType.RECENT}) {
+            for (boolean isOnlyFiltered : new boolean[]{false, true}) {
+                String[][] query = CalendarFragment.buildActivityQuery(context, type,
+                        isOnlyFiltered, isOnlyFiltered, isOnlyFiltered, false);
+                assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW, CalendarQuery.PROJECTION,
+                        query[0][0], query[1], query[2][0]);
+
+                // CalendarDataSource
+                boolean isDescending = CalendarType.RECENT.equals(type);
+                assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW, CalendarQuery.PROJECTION,
+                        CalendarDataSource.buildWindowSelection(query[0][0], isDescending),
+                        appendArgs(query[1], "0", "0"), query[2][0]);
+                assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW,
+                        new String[]{CalendarDataSource.buildNextKeyColumn(isDescending)},
+                        CalendarDataSource.buildNextKeySelection(query[0][0], isDescending),
+                        appendArgs(query[1], "0"), null);
+                assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW,
+                        new String[]{CalendarDataSource.buildNextKeyColumn(!isDescending)},
+                        CalendarDataSource.buildPreviousKeySelection(query[0][0], isDescending),
+                        appendArgs(query[1], "0"), null);
+            }
+        }
+    }
+
+    @Test
+    public void notificationService() {
+        for (boolean isNoSpecials : new boolean[]{false, true}) {
+            String selection = NotificationService.buildSelection(isNoSpecials);
+            // episodes to notify about
+            assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW,
+                    NotificationService.PROJECTION,
+                    selection + NotificationService.SELECTION_RELEASED_UP_TO,
+                    new String[]{"0", "0"}, NotificationService.SORTING);
+            // next release time
+            assertNoEpisodesTableScan(Episodes.CONTENT_URI_WITHSHOW,
+                    NotificationService.PROJECTION_NEXT_RELEASE_TIME, selection,
+                    new String[]{"0"}, null);
+        }
+    }
+
+    @Test
+    public void episodeFlagsOfShow() {
+        // EpisodeFlagsCache, counts unwatched and uncollected episodes of a show
+        assertNoEpisodesTableScan(Episodes.buildEpisodesOfShowUri(42),
+                EpisodeFlagsCache.FlagsQuery.PROJECTION, null, null,
+                EpisodeFlagsCache.FlagsQuery.SORT_ORDER);
+    }
+
+    @Test
+    public void episodesOfSeason() {
+        // EpisodesActivity and EpisodesFragment, with each sort order
+        for (Constants.EpisodeSorting sorting : Constants.EpisodeSorting.values()) {
+            assertNoEpisodesTableScan(Episodes.buildEpisodesOfSeasonWithShowUri("42"),
+                    PROJECTION_ID, null, null, sorting.query());
+        }
+        // BaseEpisodesJob, episodes of season jobs to send to trakt or Cloud
+        SeasonWatchedJob watchedJob = new SeasonWatchedJob(42, 42, 1, EpisodeFlags.WATCHED, 0);
+        assertNoEpisodesTableScan(watchedJob.getDatabaseUri(),
+                BaseEpisodesJob.PROJECTION_SEASON_NUMBER, watchedJob.getDatabaseSelection(), null,
+                BaseEpisodesJob.ORDER_SEASON_ASC_NUMBER_ASC);
+        SeasonWatchedJob unwatchedJob = new SeasonWatchedJob(42, 42, 1, EpisodeFlags.UNWATCHED,
+                0);
+        assertNoEpisodesTableScan(unwatchedJob.getDatabaseUri(),
+                BaseEpisodesJob.PROJECTION_SEASON_NUMBER, unwatchedJob.getDatabaseSelection(),
+                null, BaseEpisodesJob.ORDER_SEASON_ASC_NUMBER_ASC);
+        SeasonCollectedJob collectedJob = new SeasonCollectedJob(42, 42, 1, true);
+        assertNoEpisodesTableScan(collectedJob.getDatabaseUri(),
+                BaseEpisodesJob.PROJECTION_SEASON_NUMBER, collectedJob.getDatabaseSelection(),
+                null, BaseEpisodesJob.ORDER_SEASON_ASC_NUMBER_ASC);
+    }
+
+    @Test
+    public void episodeWithShow() {
+        assertNoEpisodesTableScan(Episodes.buildEpisodeWithShowUri(42), PROJECTION_ID, null, null,
+                null);
+    }
+
+    @Test
+    public void showsWithEpisodes() {
+        assertNoEpisodesTableScan(Shows.CONTENT_URI_WITH_NEXT_EPISODE,
+                new String[]{Shows._ID, Episodes.TITLE}, null, null, null);
+        assertNoEpisodesTableScan(Shows.CONTENT_URI_WITH_LAST_EPISODE,
+                new String[]{Shows._ID, Episodes.TITLE}, null, null, null);
+    }
+
+    @Test
+    public void seasonCounters() {
+        Object[] timeArgs = {0L, 0L};
+        assertNoEpisodesTableScan(SeasonCounters.buildQuery(null), timeArgs);
+        assertNoEpisodesTableScan(SeasonCounters.buildQuery(
+                " WHERE " + SeriesGuideDatabase.Qualified.SEASONS_SHOW_ID + "=?"),
+                new Object[]{0L, 0L, "42"});
+        assertNoEpisodesTableScan(SeasonCounters.buildQuery(
+                " WHERE " + SeriesGuideDatabase.Qualified.SEASONS_ID + "=?"),
+                new Object[]{0L, 0L, 42});
+    }
+
+    private static String[] appendArgs(String[] args, String... moreArgs) {
+        String[] allArgs = Arrays.copyOf(args, args.length + moreArgs.length);
+        System.arraycopy(moreArgs, 0, allArgs, args.length, moreArgs.length);
+        return allArgs;
+    }
+
+    private void assertNoEpisodesTableScan(Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        QueryPlanTestHelper.assertNoEpisodesTableScan(db, uri, projection, selection,
+                selectionArgs, sortOrder);
+    }
+
+    private void assertNoEpisodesTableScan(String query, Object[] args) {
+        QueryPlanTestHelper.assertNoEpisodesTableScan(db, query, args);
+    }
+}
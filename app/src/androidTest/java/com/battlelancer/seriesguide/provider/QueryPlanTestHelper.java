@@ -0,0 +1,55 @@
+package com.battlelancer.seriesguide.provider;
+
+import static org.junit.Assert.fail;
+
+import android.database.Cursor;
+import android.net.Uri;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.util.SelectionBuilder;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on episode queries, so tests of other packages can check the queries
+ * they keep package-private.
+ */
+public class QueryPlanTestHelper {
+
+    /**
+     * Matches a full table scan like "SCAN TABLE episodes" or "SCAN episodes" (newer SQLite), but
+     * not an index scan like "SCAN TABLE episodes USING INDEX ...".
+     */
+    private static final Pattern EPISODES_TABLE_SCAN = Pattern.compile(
+            "^SCAN (TABLE )?" + Tables.EPISODES + "\\b(?!.*USING)");
+
+    /**
+     * Fails if the query {@link SeriesGuideProvider} would run for the given values has to scan
+     * the whole episodes table.
+     */
+    public static void assertNoEpisodesTableScan(SgRoomDatabase db, Uri uri, String[] projection,
+            String selection, String[] selectionArgs, String sortOrder) {
+        SelectionBuilder builder = SeriesGuideProvider
+                .buildQuerySelection(uri, selection, selectionArgs);
+        // builder maps projection columns in place
+        String query = builder.buildQuery(projection.clone(), sortOrder);
+        assertNoEpisodesTableScan(db, query, builder.getSelectionArgs());
+    }
+
+    /**
+     * Fails if the given query has to scan the whole episodes table.
+     */
+    public static void assertNoEpisodesTableScan(SgRoomDatabase db, String query,
+            Object[] args) {
+        Cursor plan = db.query("EXPLAIN QUERY PLAN " + query, args);
+        try {
+            int detailIndex = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailIndex);
+                if (EPISODES_TABLE_SCAN.matcher(detail).find()) {
+                    fail("Query scans episodes table: " + detail + "\n" + query);
+                }
+            }
+        } finally {
+            plan.close();
+        }
+    }
+}
@@ -2,11 +2,13 @@ package com.battlelancer.seriesguide.provider;
 
 import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.support.test.InstrumentationRegistry;
 import com.battlelancer.seriesguide.Constants;
 import com.battlelancer.seriesguide.dataliberation.model.Show;
 import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
@@ -18,6 +20,48 @@ import com.uwetrottmann.thetvdb.entities.Episode;
  */
 public class RoomDatabaseTestHelper {
 
+    /**
+     * Switches the app database to a new in-memory database, close it once done.
+     */
+    public static SgRoomDatabase switchToInMemoryDb(Context context) {
+        SgRoomDatabase.switchToInMemory(context);
+        return SgRoomDatabase.getInstance(context);
+    }
+
+    /**
+     * Builds values of a show to insert with {@link BulkWriter}.
+     */
+    public static ContentValues buildShowValues(Context context, int showTvdbId, int runtime) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.runtime = runtime;
+        return show.toContentValues(context, true);
+    }
+
+    /**
+     * Builds values of an episode to insert with {@link BulkWriter}, the episode is not collected.
+     *
+     * @param releaseTime Release time in ms or -1 if unknown.
+     * @param watched An {@link com.battlelancer.seriesguide.ui.episodes.EpisodeFlags} value.
+     */
+    public static ContentValues buildEpisodeValues(int showTvdbId, int episodeTvdbId,
+            int seasonTvdbId, int season, int number, long releaseTime, int watched) {
+        ContentValues values = new ContentValues();
+        values.put(Episodes._ID, episodeTvdbId);
+        values.put(Episodes.TITLE, "Episode " + episodeTvdbId);
+        values.put(Episodes.SEASON, season);
+        values.put(Episodes.NUMBER, number);
+        values.put(Episodes.FIRSTAIREDMS, releaseTime);
+        values.put(Episodes.WATCHED, watched);
+        values.put(Episodes.COLLECTED, 0);
+        values.put(Episodes.LAST_EDITED, 0);
+        values.put(Episodes.LAST_UPDATED, 0);
+        values.put(Seasons.REF_SEASON_ID, seasonTvdbId);
+        values.put(Shows.REF_SHOW_ID, showTvdbId);
+        return values;
+    }
+
     public static void insertShow(Show show, SupportSQLiteDatabase db, int version) {
         ContentValues values = show.toContentValues(InstrumentationRegistry.getTargetContext(),
                 true);
@@ -0,0 +1,131 @@
+package com.battlelancer.seriesguide.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares keeping the search table up to date with triggers against rebuilding it, like after
+ * updating shows of a large library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchTableBenchmark {
+
+    private static final int EPISODE_COUNT = 50000;
+    private static final int CHANGED_EPISODE_COUNT = 500;
+
+    private SgRoomDatabase db;
+
+    @Before
+    public void createDb() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+                SgRoomDatabase.class)
+                .addCallback(SgRoomDatabase.CALLBACK)
+                .build();
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void incrementalUpdateFasterThanRebuild() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+
+        Show show = new Show();
+        show.tvdb_id = 1;
+        show.title = "Show";
+        RoomDatabaseTestHelper.insertShow(show, database, SgRoomDatabase.VERSION);
+        SgSeason season = new SgSeason();
+        season.tvdbId = 1;
+        season.showTvdbId = "1";
+        season.number = 1;
+        RoomDatabaseTestHelper.insertSeason(season, database);
+
+        long startInsert = SystemClock.elapsedRealtime();
+        database.beginTransaction();
+        try {
+            SupportSQLiteStatement insert = database.compileStatement("INSERT INTO "
+                    + Tables.EPISODES + "("
+                    + Episodes._ID + "," + Episodes.TITLE + "," + Episodes.OVERVIEW + ","
+                    + Episodes.NUMBER + "," + Episodes.SEASON + ","
+                    + Seasons.REF_SEASON_ID + "," + Shows.REF_SHOW_ID + ","
+                    + Episodes.WATCHED + "," + Episodes.FIRSTAIREDMS + ","
+                    + Episodes.COLLECTED + "," + Episodes.LAST_EDITED + ","
+                    + Episodes.LAST_UPDATED
+                    + ") VALUES (?,?,?,?,1,1,1,0,0,0,0,0)");
+            for (int i = 1; i <= EPISODE_COUNT; i++) {
+                insert.bindLong(1, i);
+                insert.bindString(2, "Episode " + i);
+                insert.bindString(3, "A somewhat longer overview of episode number " + i
+                        + " so the index has some work to do.");
+                insert.bindLong(4, i);
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        long insertMs = SystemClock.elapsedRealtime() - startInsert;
+
+        // change some episode titles, search table is updated by triggers
+        long startIncremental = SystemClock.elapsedRealtime();
+        database.beginTransaction();
+        try {
+            SupportSQLiteStatement update = database.compileStatement("UPDATE "
+                    + Tables.EPISODES + " SET " + Episodes.TITLE + "=? WHERE "
+                    + Episodes._ID + "=?");
+            for (int i = 1; i <= CHANGED_EPISODE_COUNT; i++) {
+                update.bindString(1, "Changed " + i);
+                update.bindLong(2, i * (EPISODE_COUNT / CHANGED_EPISODE_COUNT));
+                update.executeUpdateDelete();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        long incrementalMs = SystemClock.elapsedRealtime() - startIncremental;
+        assertEquals(CHANGED_EPISODE_COUNT, countMatches(database, "Changed"));
+
+        long startCheck = SystemClock.elapsedRealtime();
+        SeriesGuideDatabase.checkFtsTable(database);
+        long checkMs = SystemClock.elapsedRealtime() - startCheck;
+
+        long startRebuild = SystemClock.elapsedRealtime();
+        SeriesGuideDatabase.rebuildFtsTable(database);
+        long rebuildMs = SystemClock.elapsedRealtime() - startRebuild;
+        assertEquals(CHANGED_EPISODE_COUNT, countMatches(database, "Changed"));
+
+        System.out.println(String.format(
+                "%s episodes: insert %s ms, update %s episodes %s ms, check %s ms, rebuild %s ms",
+                EPISODE_COUNT, insertMs, CHANGED_EPISODE_COUNT, incrementalMs, checkMs,
+                rebuildMs));
+        assertTrue(incrementalMs < rebuildMs);
+    }
+
+    private static int countMatches(SupportSQLiteDatabase database, String term) {
+        Cursor query = database.query("SELECT docid FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + Tables.EPISODES_SEARCH + " MATCH ?", new Object[]{term});
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+}
@@ -3,11 +3,19 @@ package com.battlelancer.seriesguide.provider;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Room;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.uwetrottmann.thetvdb.entities.Episode;
 import java.io.IOException;
 import org.junit.After;
 import org.junit.Before;
@@ -17,6 +25,9 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public class SearchTableTest {
 
+    private static final int SHOW_TVDB_ID = 21;
+    private static final int SEASON_TVDB_ID = 22;
+
     private SgRoomDatabase db;
 
     @Before
@@ -43,4 +54,94 @@ public class SearchTableTest {
         assertEquals(1, result.getCount());
     }
 
+    @Test
+    public void triggersKeepSearchTableUpToDate() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        insertShowAndSeason(database);
+
+        // insert
+        insertEpisode(database, 1, "Alpha");
+        insertEpisode(database, 2, "Gamma");
+        assertEquals(1, countMatches("Alpha"));
+
+        // insert replacing existing episode
+        insertEpisode(database, 1, "Beta");
+        assertEquals(0, countMatches("Alpha"));
+        assertEquals(1, countMatches("Beta"));
+
+        // update of title
+        ContentValues values = new ContentValues();
+        values.put(Episodes.TITLE, "Delta");
+        database.update(Tables.EPISODES, SQLiteDatabase.CONFLICT_NONE, values,
+                Episodes._ID + "=1", null);
+        assertEquals(0, countMatches("Beta"));
+        assertEquals(1, countMatches("Delta"));
+
+        // update of other column does not change search table
+        values.clear();
+        values.put(Episodes.WATCHED, 1);
+        database.update(Tables.EPISODES, SQLiteDatabase.CONFLICT_NONE, values, null, null);
+        assertEquals(1, countMatches("Delta"));
+        assertEquals(1, countMatches("Gamma"));
+
+        // delete
+        database.delete(Tables.EPISODES, Episodes._ID + "=1", null);
+        assertEquals(0, countMatches("Delta"));
+        assertEquals(1, countMatches("Gamma"));
+
+        // fails if search table does not match episodes table
+        database.execSQL("INSERT INTO " + Tables.EPISODES_SEARCH
+                + "(" + Tables.EPISODES_SEARCH + ") VALUES('integrity-check')");
+    }
+
+    @Test
+    public void checkFtsTable_rebuildsBrokenTable() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        insertShowAndSeason(database);
+        insertEpisode(database, 1, "Alpha");
+
+        // break search table by adding an entry without episode
+        database.execSQL("INSERT INTO " + Tables.EPISODES_SEARCH
+                + "(docid," + Episodes.TITLE + ") VALUES(2,'Ghost')");
+        assertEquals(1, countMatches("Ghost"));
+
+        SeriesGuideDatabase.checkFtsTable(database);
+
+        assertEquals(0, countMatches("Ghost"));
+        assertEquals(1, countMatches("Alpha"));
+        // rebuild also re-creates triggers
+        insertEpisode(database, 3, "Omega");
+        assertEquals(1, countMatches("Omega"));
+    }
+
+    private static void insertShowAndSeason(SupportSQLiteDatabase database) {
+        Show show = new Show();
+        show.tvdb_id = SHOW_TVDB_ID;
+        show.title = "Show";
+        RoomDatabaseTestHelper.insertShow(show, database, SgRoomDatabase.VERSION);
+
+        SgSeason season = new SgSeason();
+        season.tvdbId = SEASON_TVDB_ID;
+        season.showTvdbId = String.valueOf(SHOW_TVDB_ID);
+        season.number = 1;
+        RoomDatabaseTestHelper.insertSeason(season, database);
+    }
+
+    private static void insertEpisode(SupportSQLiteDatabase database, int episodeTvdbId,
+            String title) {
+        Episode episode = new Episode();
+        episode.id = episodeTvdbId;
+        episode.episodeName = title;
+        episode.overview = "Overview";
+        episode.airedEpisodeNumber = episodeTvdbId;
+        RoomDatabaseTestHelper.insertEpisode(episode, SHOW_TVDB_ID, SEASON_TVDB_ID, 1, database);
+    }
+
+    private int countMatches(String term) {
+        Cursor query = db.query("SELECT docid FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + Tables.EPISODES_SEARCH + " MATCH ?", new Object[]{term});
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
 }
@@ -0,0 +1,110 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper.buildEpisodeValues;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class SeasonCountersTest {
+
+    private Context context;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        RoomDatabaseTestHelper.switchToInMemoryDb(context);
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void updateSeasonsOfShow() {
+        long past = System.currentTimeMillis() - DateUtils.DAY_IN_MILLIS;
+        long future = System.currentTimeMillis() + DateUtils.DAY_IN_MILLIS;
+
+        Show show = new Show();
+        show.tvdb_id = 1;
+        show.title = "Show";
+
+        BulkWriter writer = new BulkWriter(context);
+        writer.beginTransaction();
+        try {
+            writer.insertShow(show.toContentValues(context, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 11, 1, true));
+            // season without episodes
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 12, 2, true));
+            writer.insertEpisode(buildEpisodeValues(1, 101, 11, 1, 1, past,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 102, 11, 1, 2, past,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 103, 11, 1, 3, past, EpisodeFlags.WATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 104, 11, 1, 4, past, EpisodeFlags.SKIPPED));
+            writer.insertEpisode(buildEpisodeValues(1, 105, 11, 1, 5, future,
+                    EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 106, 11, 1, 6, -1, EpisodeFlags.UNWATCHED));
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+
+        assertThat(SeasonCounters.updateSeasonsOfShow(context, 1)).isTrue();
+        // total|aired unwatched|unaired|no release date|tags
+        assertThat(queryCounters()).containsExactly("11|6|2|1|1|skipped", "12|0|0|0|0|")
+                .inOrder();
+
+        // single season
+        ContentValues watched = new ContentValues();
+        watched.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        writer.beginTransaction();
+        try {
+            writer.updateEpisode(101, watched);
+            writer.updateEpisode(104, watched);
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertThat(SeasonCounters.updateSeason(context, 11)).isTrue();
+        assertThat(queryCounters()).containsExactly("11|6|1|1|1|", "12|0|0|0|0|").inOrder();
+
+        // all seasons, unchanged
+        assertThat(SeasonCounters.updateAllSeasons(context)).isTrue();
+        assertThat(queryCounters()).containsExactly("11|6|1|1|1|", "12|0|0|0|0|").inOrder();
+    }
+
+    private List<String> queryCounters() {
+        Cursor query = context.getContentResolver().query(Seasons.CONTENT_URI,
+                new String[]{Seasons._ID, Seasons.TOTALCOUNT, Seasons.WATCHCOUNT,
+                        Seasons.UNAIREDCOUNT, Seasons.NOAIRDATECOUNT, Seasons.TAGS},
+                null, null, Seasons._ID);
+        assertNotNull(query);
+        List<String> values = new ArrayList<>();
+        while (query.moveToNext()) {
+            values.add(query.getString(0) + "|" + query.getString(1) + "|"
+                    + query.getString(2) + "|" + query.getString(3) + "|"
+                    + query.getString(4) + "|" + query.getString(5));
+        }
+        query.close();
+        return values;
+    }
+}
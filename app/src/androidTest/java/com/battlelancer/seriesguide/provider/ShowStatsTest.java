@@ -0,0 +1,153 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper.buildEpisodeValues;
+import static com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper.buildShowValues;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.model.SgLibraryStats;
+import com.battlelancer.seriesguide.model.SgShowStats;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowStats;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Changes episodes through all writers and verifies the counters maintained by triggers match
+ * counting all episodes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShowStatsTest {
+
+    private Context context;
+    private SgRoomDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        db = RoomDatabaseTestHelper.switchToInMemoryDb(context);
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void countersMatchEpisodes() {
+        BulkWriter writer = new BulkWriter(context);
+        writer.beginTransaction();
+        try {
+            writer.insertShow(buildShowValues(context, 1, 30));
+            writer.insertShow(buildShowValues(context, 2, 60));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 10, 0, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(1, 11, 1, true));
+            writer.insertSeason(DBUtils.buildSeasonValues(2, 21, 1, true));
+            writer.insertEpisode(buildEpisodeValues(1, 101, 10, 0, 1, 0, EpisodeFlags.WATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 111, 11, 1, 1, 0, EpisodeFlags.WATCHED));
+            writer.insertEpisode(buildEpisodeValues(1, 112, 11, 1, 2, 0, EpisodeFlags.SKIPPED));
+            writer.insertEpisode(buildEpisodeValues(1, 113, 11, 1, 3, 0, EpisodeFlags.UNWATCHED));
+            writer.insertEpisode(buildEpisodeValues(2, 211, 21, 1, 1, 0, EpisodeFlags.WATCHED));
+            writer.insertEpisode(buildEpisodeValues(2, 212, 21, 1, 2, 0, EpisodeFlags.UNWATCHED));
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertThat(describeCounters()).containsExactly("1|3|1|1|1", "2|2|1|0|0").inOrder();
+        assertCountersMatchEpisodes();
+
+        SgLibraryStats libraryStats = db.showStatsHelper().getLibraryStats();
+        assertThat(libraryStats.shows).isEqualTo(2);
+        assertThat(libraryStats.episodes).isEqualTo(5);
+        assertThat(libraryStats.episodesWatched).isEqualTo(2);
+        assertThat(libraryStats.specials).isEqualTo(1);
+        assertThat(libraryStats.specialsWatched).isEqualTo(1);
+        assertThat(libraryStats.episodesWatchedRuntimeMin).isEqualTo(30 + 60);
+        assertThat(libraryStats.specialsWatchedRuntimeMin).isEqualTo(30);
+
+        // replace an episode, moves it to specials
+        writer.beginTransaction();
+        try {
+            writer.insertEpisode(buildEpisodeValues(1, 113, 10, 0, 2, 0, EpisodeFlags.WATCHED));
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertCountersMatchEpisodes();
+
+        // flags by number
+        EpisodeFlagsWriter flagsWriter = new EpisodeFlagsWriter(context);
+        flagsWriter.addFlags(1, 1, 2, EpisodeFlags.WATCHED, null);
+        flagsWriter.addFlags(2, 1, 1, EpisodeFlags.UNWATCHED, true);
+        flagsWriter.apply();
+        assertCountersMatchEpisodes();
+
+        // through the provider
+        ContentResolver resolver = context.getContentResolver();
+        ContentValues watched = new ContentValues();
+        watched.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        resolver.update(Episodes.buildEpisodesOfSeasonUri(21), watched, null, null);
+        assertCountersMatchEpisodes();
+        resolver.delete(Episodes.buildEpisodeUri(111), null, null);
+        assertCountersMatchEpisodes();
+
+        // move an episode to another show
+        ContentValues otherShow = new ContentValues();
+        otherShow.put(Shows.REF_SHOW_ID, 2);
+        resolver.update(Episodes.buildEpisodeUri(101), otherShow, null, null);
+        assertCountersMatchEpisodes();
+
+        // remove a show
+        resolver.delete(Episodes.buildEpisodesOfShowUri(2), null, null);
+        resolver.delete(Shows.buildShowUri(2), null, null);
+        assertCountersMatchEpisodes();
+        assertThat(describeCounters()).containsExactly("1|1|1|1|1");
+    }
+
+    /**
+     * Compares the counters with a full count of all episodes. Shows without episodes may keep
+     * counters of zero.
+     */
+    private void assertCountersMatchEpisodes() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getReadableDatabase();
+        Cursor query = database.query(SeriesGuideDatabase.SELECT_SHOW_STATS_FROM_EPISODES
+                + " ORDER BY " + ShowStats.SHOW_ID);
+        List<String> expected = new ArrayList<>();
+        while (query.moveToNext()) {
+            expected.add(query.getInt(0) + "|" + query.getInt(1) + "|" + query.getInt(2)
+                    + "|" + query.getInt(3) + "|" + query.getInt(4));
+        }
+        query.close();
+
+        List<String> actual = new ArrayList<>();
+        for (String counters : describeCounters()) {
+            if (!counters.endsWith("|0|0|0|0")) {
+                actual.add(counters);
+            }
+        }
+        assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    private List<String> describeCounters() {
+        List<String> counters = new ArrayList<>();
+        for (SgShowStats showStats : db.showStatsHelper().getShowStats()) {
+            counters.add(showStats.showTvdbId + "|" + showStats.episodes + "|"
+                    + showStats.episodesWatched + "|" + showStats.specials + "|"
+                    + showStats.specialsWatched);
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,60 @@
+package com.battlelancer.seriesguide.provider;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.model.SgSyncStage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class SyncStageHelperTest {
+
+    private Context context;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void deleteOldRuns_keepsLatestRuns() {
+        SyncStageHelper helper = SgRoomDatabase.getInstance(context).syncStageHelper();
+        for (int run = 1; run <= 5; run++) {
+            List<SgSyncStage> stages = new ArrayList<>();
+            stages.add(buildStage(run, "TVDB"));
+            stages.add(buildStage(run, "TRAKT"));
+            helper.insertStages(stages);
+        }
+
+        helper.deleteOldRuns(3);
+
+        List<String> stages = new ArrayList<>();
+        for (SgSyncStage stage : helper.getStages()) {
+            stages.add(stage.runStartedMs + "|" + stage.stage);
+        }
+        assertThat(stages).containsExactly(
+                "5|TVDB", "5|TRAKT",
+                "4|TVDB", "4|TRAKT",
+                "3|TVDB", "3|TRAKT").inOrder();
+    }
+
+    private static SgSyncStage buildStage(long runStartedMs, String stageName) {
+        SgSyncStage stage = new SgSyncStage();
+        stage.runStartedMs = runStartedMs;
+        stage.stage = stageName;
+        return stage;
+    }
+}
@@ -0,0 +1,139 @@
+package com.battlelancer.seriesguide.sync;
+
+import com.google.gson.Gson;
+import com.uwetrottmann.thetvdb.entities.EpisodesResponse;
+import com.uwetrottmann.thetvdb.entities.SeriesImageQueryResultResponse;
+import com.uwetrottmann.thetvdb.entities.SeriesResponse;
+import com.uwetrottmann.thetvdb.services.TheTvdbSeries;
+import com.uwetrottmann.trakt5.services.Search;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Fake TVDB and trakt services that answer after a fixed delay, to simulate network latency.
+ * Every show has {@link #EPISODES_PER_SHOW} episodes in a single season.
+ */
+class FakeTvdbServices {
+
+    static final int EPISODES_PER_SHOW = 3;
+
+    private final Gson gson = new Gson();
+    private final long delayMs;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    FakeTvdbServices(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    TheTvdbSeries seriesService() {
+        return createService(TheTvdbSeries.class, new ResponseFactory() {
+            @Override
+            public Object create(Method method, Object[] args) {
+                int showTvdbId = (int) args[0];
+                switch (method.getName()) {
+                    case "series":
+                        return gson.fromJson(buildSeriesJson(showTvdbId), SeriesResponse.class);
+                    case "episodes":
+                        return gson.fromJson(buildEpisodesJson(showTvdbId),
+                                EpisodesResponse.class);
+                    case "imagesQuery":
+                        return gson.fromJson("{\"data\":[{\"fileName\":\"posters/"
+                                        + showTvdbId + ".jpg\",\"ratingsInfo\":{\"average\":5.0}}]}",
+                                SeriesImageQueryResultResponse.class);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns no results for trakt id lookups, so shows use default trakt values.
+     */
+    Search traktSearchService() {
+        return createService(Search.class, new ResponseFactory() {
+            @Override
+            public Object create(Method method, Object[] args) {
+                return new ArrayList<>();
+            }
+        });
+    }
+
+    static int episodeTvdbId(int showTvdbId, int number) {
+        return showTvdbId * 1000 + number;
+    }
+
+    private static String buildSeriesJson(int showTvdbId) {
+        return "{\"data\":{\"id\":" + showTvdbId
+                + ",\"seriesName\":\"Show " + showTvdbId + "\""
+                + ",\"overview\":\"Overview\",\"runtime\":\"30\",\"status\":\"Continuing\""
+                + ",\"lastUpdated\":1}}";
+    }
+
+    private static String buildEpisodesJson(int showTvdbId) {
+        StringBuilder json = new StringBuilder("{\"links\":{\"next\":null},\"data\":[");
+        for (int number = 1; number <= EPISODES_PER_SHOW; number++) {
+            if (number > 1) {
+                json.append(",");
+            }
+            json.append("{\"id\":").append(episodeTvdbId(showTvdbId, number))
+                    .append(",\"airedSeason\":1")
+                    .append(",\"airedSeasonID\":").append(showTvdbId * 10)
+                    .append(",\"airedEpisodeNumber\":").append(number)
+                    .append(",\"episodeName\":\"Episode ").append(number).append("\"")
+                    .append(",\"overview\":\"Overview\"")
+                    .append(",\"firstAired\":\"2018-01-0").append(number).append("\"")
+                    .append(",\"lastUpdated\":1}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private interface ResponseFactory {
+        Object create(Method method, Object[] args);
+    }
+
+    private <T> T createService(Class<T> service, final ResponseFactory factory) {
+        return service.cast(Proxy.newProxyInstance(service.getClassLoader(),
+                new Class[]{service}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return createCall(factory.create(method, args));
+                    }
+                }));
+    }
+
+    private Call<?> createCall(final Object body) {
+        return (Call<?>) Proxy.newProxyInstance(Call.class.getClassLoader(),
+                new Class[]{Call.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        switch (method.getName()) {
+                            case "execute":
+                                requestCount.incrementAndGet();
+                                Thread.sleep(delayMs);
+                                return Response.success(body);
+                            case "clone":
+                                return createCall(body);
+                            case "request":
+                                return new Request.Builder().url("https://localhost/").build();
+                            case "isExecuted":
+                            case "isCanceled":
+                                return false;
+                            default:
+                                return null;
+                        }
+                    }
+                });
+    }
+}
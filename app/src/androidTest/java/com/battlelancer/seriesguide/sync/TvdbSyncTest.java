@@ -2,13 +2,17 @@ package com.battlelancer.seriesguide.sync;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
 import com.battlelancer.seriesguide.modules.AppModule;
 import com.battlelancer.seriesguide.modules.DaggerTestServicesComponent;
 import com.battlelancer.seriesguide.modules.TestHttpClientModule;
@@ -16,7 +20,11 @@ import com.battlelancer.seriesguide.modules.TestServicesComponent;
 import com.battlelancer.seriesguide.modules.TestTmdbModule;
 import com.battlelancer.seriesguide.modules.TestTraktModule;
 import com.battlelancer.seriesguide.modules.TestTvdbModule;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbTools;
 import dagger.Lazy;
 import javax.inject.Inject;
@@ -86,6 +94,87 @@ public class TvdbSyncTest {
         assertThat(tvdbSync.hasUpdatedShows(), is(false));
     }
 
+    @Test
+    public void test_fullParallelFasterAndComplete() {
+        int showCount = 8;
+        for (int showTvdbId = 1; showTvdbId <= showCount; showTvdbId++) {
+            insertShow(showTvdbId);
+        }
+        FakeTvdbServices services = new FakeTvdbServices(50);
+        Lazy<TvdbTools> tvdbTools = buildTvdbTools(services);
+
+        // update one after another
+        TvdbSync serialSync = new TvdbSync(SyncOptions.SyncType.FULL, 0, 1);
+        long serialStart = SystemClock.elapsedRealtime();
+        assertThat(sync(serialSync, tvdbTools), equalTo(SgSyncAdapter.UpdateResult.SUCCESS));
+        long serialDuration = SystemClock.elapsedRealtime() - serialStart;
+        assertThat(serialSync.hasUpdatedShows(), is(true));
+        assertEpisodesOfAllShows(showCount);
+
+        // start over without episodes, update using workers
+        resolver.delete(Episodes.CONTENT_URI, null, null);
+        resolver.delete(Seasons.CONTENT_URI, null, null);
+        int serialRequests = services.getRequestCount();
+
+        TvdbSync parallelSync = new TvdbSync(SyncOptions.SyncType.FULL, 0, 4);
+        long parallelStart = SystemClock.elapsedRealtime();
+        assertThat(sync(parallelSync, tvdbTools), equalTo(SgSyncAdapter.UpdateResult.SUCCESS));
+        long parallelDuration = SystemClock.elapsedRealtime() - parallelStart;
+        assertThat(parallelSync.hasUpdatedShows(), is(true));
+        assertEpisodesOfAllShows(showCount);
+
+        // same requests, but at least about twice as fast
+        assertThat(services.getRequestCount() - serialRequests, equalTo(serialRequests));
+        assertThat("serial " + serialDuration + " ms, parallel " + parallelDuration + " ms",
+                parallelDuration * 2 < serialDuration, is(true));
+    }
+
+    private void insertShow(int showTvdbId) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.language = DisplaySettings.LANGUAGE_EN;
+        resolver.insert(Shows.CONTENT_URI,
+                show.toContentValues(InstrumentationRegistry.getTargetContext(), true));
+    }
+
+    private void assertEpisodesOfAllShows(int showCount) {
+        for (int showTvdbId = 1; showTvdbId <= showCount; showTvdbId++) {
+            Cursor episodes = resolver.query(Episodes.buildEpisodesOfShowUri(showTvdbId),
+                    new String[]{Episodes._ID}, null, null, Episodes.NUMBER);
+            assertThat(episodes, notNullValue());
+            assertThat(episodes.getCount(), equalTo(FakeTvdbServices.EPISODES_PER_SHOW));
+            int number = 1;
+            while (episodes.moveToNext()) {
+                assertThat(episodes.getInt(0),
+                        equalTo(FakeTvdbServices.episodeTvdbId(showTvdbId, number++)));
+            }
+            episodes.close();
+        }
+    }
+
+    private static Lazy<TvdbTools> buildTvdbTools(FakeTvdbServices services) {
+        final TvdbTools tvdbTools = new TvdbTools(InstrumentationRegistry.getTargetContext(),
+                null, null, null, lazyOf(services.seriesService()),
+                lazyOf(services.traktSearchService()), null, null);
+        return lazyOf(tvdbTools);
+    }
+
+    private static <T> Lazy<T> lazyOf(final T instance) {
+        return new Lazy<T>() {
+            @Override
+            public T get() {
+                return instance;
+            }
+        };
+    }
+
+    @Nullable
+    private SgSyncAdapter.UpdateResult sync(TvdbSync tvdbSync, Lazy<TvdbTools> tvdbTools) {
+        return tvdbSync.sync(InstrumentationRegistry.getContext(), resolver,
+                tvdbTools, System.currentTimeMillis());
+    }
+
     @Nullable
     private SgSyncAdapter.UpdateResult sync(TvdbSync tvdbSync) {
         return tvdbSync.sync(InstrumentationRegistry.getContext(), resolver,
@@ -0,0 +1,346 @@
+package com.battlelancer.seriesguide.thetvdbapi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.preference.PreferenceManager;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgEpisodePage;
+import com.battlelancer.seriesguide.model.SgSeason;
+import com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.uwetrottmann.thetvdb.services.TheTvdbSeries;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import retrofit2.Call;
+
+/**
+ * Checks which episode pages {@link TvdbEpisodeTools} skips using a fake TVDB server. The show has
+ * two pages: page 0 with two episodes of season 10, page 1 with one episode of season 11.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TvdbEpisodeToolsPagesTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int SHOW_TVDB_ID = 1;
+
+    private Context context;
+    private SupportSQLiteDatabase db;
+    private FakeTvdbServer server;
+    private TvdbEpisodeTools episodeTools;
+    private Show show;
+
+    @Before
+    public void switchToInMemoryDb() {
+        context = InstrumentationRegistry.getTargetContext();
+        db = RoomDatabaseTestHelper.switchToInMemoryDb(context).getOpenHelper()
+                .getWritableDatabase();
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(DisplaySettings.KEY_LANGUAGE_FALLBACK, DisplaySettings.LANGUAGE_EN)
+                .commit();
+
+        server = new FakeTvdbServer();
+        final TheTvdbSeries tvdbSeries = server.seriesService();
+        final OkHttpClient okHttpClient = server.okHttpClient();
+        episodeTools = new TvdbEpisodeTools(context, () -> tvdbSeries, () -> okHttpClient);
+
+        show = new Show();
+        show.tvdb_id = SHOW_TVDB_ID;
+        show.title = "Show";
+    }
+
+    @After
+    public void closeDb() {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .remove(DisplaySettings.KEY_LANGUAGE_FALLBACK)
+                .commit();
+        SgRoomDatabase.getInstance(context).close();
+    }
+
+    @Test
+    public void unchangedPages_keepEpisodesAndSeasons() throws TvdbException {
+        insertShowWithEpisodes(true);
+        String page0 = buildPage(1, episode(1001, 10, 1, "Overview"),
+                episode(1002, 10, 2, "Overview"));
+        String page1 = buildPage(null, episode(1101, 11, 1, "Overview"));
+        // page 0 was stored with an ETag, page 1 without, so it is compared by content
+        server.setPage(0, "en", page0, "etag-0");
+        server.setPage(1, "en", page1, "etag-1-new");
+        String settings = currentPageSettings("en");
+        storePages(buildStoredPage(0, settings, "etag-0", page0, 1, "1001:10,1002:10"),
+                buildStoredPage(1, settings, null, page1, null, "1101:11"));
+
+        TvdbTools.ShowUpdate showUpdate = fetchEpisodes("en");
+
+        assertThat(server.ifNoneMatchByPage).containsEntry("0/en", "etag-0");
+        // nothing to parse or compare
+        assertThat(showUpdate.newEpisodes).isEmpty();
+        assertThat(showUpdate.updatedEpisodes).isEmpty();
+        assertThat(showUpdate.newSeasons).isEmpty();
+        assertThat(showUpdate.updatedSeasons).isEmpty();
+        // but episodes and seasons of unchanged pages are kept
+        assertThat(showUpdate.removedEpisodes).isEmpty();
+        assertThat(showUpdate.removedSeasons).isEmpty();
+        // validators of both pages are kept, new ETag of page 1 is stored
+        assertThat(showUpdate.episodePages).hasSize(2);
+        assertThat(findPage(showUpdate, 1).etag).isEqualTo("etag-1-new");
+    }
+
+    @Test
+    public void storedPages_ignoredIfEpisodeRemovedOrSettingsChanged() throws TvdbException {
+        // episode 1002 was removed locally
+        insertShowWithEpisodes(false);
+        String page0 = buildPage(1, episode(1001, 10, 1, "Overview"),
+                episode(1002, 10, 2, "Overview"));
+        String page1 = buildPage(null, episode(1101, 11, 1, "Overview"));
+        server.setPage(0, "en", page0, "etag-0");
+        server.setPage(1, "en", page1, "etag-1");
+        String settings = currentPageSettings("en");
+        storePages(buildStoredPage(0, settings, "etag-0", page0, 1, "1001:10,1002:10"),
+                buildStoredPage(1, "changed" + settings, "etag-1", page1, null, "1101:11"));
+
+        TvdbTools.ShowUpdate showUpdate = fetchEpisodes("en");
+
+        // no validators sent, both pages are downloaded and compared
+        assertThat(server.ifNoneMatchByPage).containsEntry("0/en", null);
+        assertThat(server.ifNoneMatchByPage).containsEntry("1/en", null);
+        assertThat(getEpisodeIds(showUpdate.newEpisodes)).containsExactly(1002);
+        assertThat(getEpisodeIds(showUpdate.updatedEpisodes)).containsExactly(1001, 1101);
+        assertThat(showUpdate.removedEpisodes).isEmpty();
+        assertThat(showUpdate.removedSeasons).isEmpty();
+        // validators are stored again with the current settings
+        assertThat(showUpdate.episodePages).hasSize(2);
+        assertThat(findPage(showUpdate, 0).settings).isEqualTo(settings);
+        assertThat(findPage(showUpdate, 1).settings).isEqualTo(settings);
+    }
+
+    @Test
+    public void fallbackPages_noValidatorsStored() throws TvdbException {
+        // page 0 is missing an overview, so its fallback page is used
+        server.setPage(0, "de", buildPage(1, episode(1001, 10, 1, null),
+                episode(1002, 10, 2, "Übersicht")), "etag-0");
+        server.setPage(0, "en", buildPage(1, episode(1001, 10, 1, "Overview"),
+                episode(1002, 10, 2, "Overview")), "etag-0-en");
+        server.setPage(1, "de", buildPage(null, episode(1101, 11, 1, "Übersicht")),
+                "etag-1");
+
+        TvdbTools.ShowUpdate showUpdate = fetchEpisodes("de");
+
+        assertThat(getEpisodeIds(showUpdate.newEpisodes)).containsExactly(1001, 1002, 1101);
+        assertThat(showUpdate.newEpisodes.get(0).getAsString(Episodes.OVERVIEW))
+                .isEqualTo("Overview");
+        // the fallback page might change on its own, so page 0 has to be downloaded again
+        assertThat(showUpdate.episodePages).hasSize(1);
+        SgEpisodePage page = showUpdate.episodePages.get(0);
+        assertThat(page.number).isEqualTo(1);
+        assertThat(page.language).isEqualTo("de");
+        assertThat(page.etag).isEqualTo("etag-1");
+    }
+
+    private TvdbTools.ShowUpdate fetchEpisodes(String language) throws TvdbException {
+        TvdbTools.ShowUpdate showUpdate = new TvdbTools.ShowUpdate(context, show, false);
+        episodeTools.fetchEpisodes(showUpdate, show, language, null);
+        return showUpdate;
+    }
+
+    private String currentPageSettings(String language) {
+        return TvdbEpisodeTools.buildPageSettings(show, language, null,
+                TimeZone.getDefault().getID());
+    }
+
+    private void insertShowWithEpisodes(boolean withEpisode1002) {
+        RoomDatabaseTestHelper.insertShow(show, db, SgRoomDatabase.VERSION);
+        insertSeason(10, 1);
+        insertSeason(11, 2);
+        insertEpisode(1001, 10, 1, 1);
+        if (withEpisode1002) {
+            insertEpisode(1002, 10, 1, 2);
+        }
+        insertEpisode(1101, 11, 2, 1);
+    }
+
+    private void insertSeason(int seasonTvdbId, int number) {
+        SgSeason season = new SgSeason();
+        season.tvdbId = seasonTvdbId;
+        season.showTvdbId = String.valueOf(SHOW_TVDB_ID);
+        season.number = number;
+        RoomDatabaseTestHelper.insertSeason(season, db);
+    }
+
+    private void insertEpisode(int episodeTvdbId, int seasonTvdbId, int season, int number) {
+        db.insert(Tables.EPISODES, SQLiteDatabase.CONFLICT_REPLACE,
+                RoomDatabaseTestHelper.buildEpisodeValues(SHOW_TVDB_ID, episodeTvdbId,
+                        seasonTvdbId, season, number, -1, EpisodeFlags.UNWATCHED));
+    }
+
+    private void storePages(SgEpisodePage... pages) {
+        SgRoomDatabase.getInstance(context).episodePageHelper()
+                .insertPages(Arrays.asList(pages));
+    }
+
+    private static SgEpisodePage buildStoredPage(int number, String settings,
+            @Nullable String etag, String body, @Nullable Integer nextNumber, String episodes) {
+        SgEpisodePage page = new SgEpisodePage();
+        page.showTvdbId = SHOW_TVDB_ID;
+        page.number = number;
+        page.language = "en";
+        page.settings = settings;
+        page.etag = etag;
+        page.contentHash = TvdbEpisodeTools.hash(body.getBytes(UTF_8));
+        page.nextNumber = nextNumber;
+        page.episodes = episodes;
+        return page;
+    }
+
+    private static SgEpisodePage findPage(TvdbTools.ShowUpdate showUpdate, int number) {
+        for (SgEpisodePage page : showUpdate.episodePages) {
+            if (page.number == number) {
+                return page;
+            }
+        }
+        throw new AssertionError("No page " + number);
+    }
+
+    private static List<Integer> getEpisodeIds(List<ContentValues> episodes) {
+        List<Integer> ids = new ArrayList<>();
+        for (ContentValues values : episodes) {
+            ids.add(values.getAsInteger(Episodes._ID));
+        }
+        return ids;
+    }
+
+    private static String episode(int episodeTvdbId, int seasonTvdbId, int number,
+            @Nullable String overview) {
+        return "{\"id\":" + episodeTvdbId
+                + ",\"airedSeason\":" + (seasonTvdbId - 9)
+                + ",\"airedSeasonID\":" + seasonTvdbId
+                + ",\"airedEpisodeNumber\":" + number
+                + ",\"episodeName\":\"Episode " + number + "\""
+                + (overview != null ? ",\"overview\":\"" + overview + "\"" : "")
+                + ",\"firstAired\":\"2018-01-0" + number + "\""
+                + ",\"lastUpdated\":1}";
+    }
+
+    private static String buildPage(@Nullable Integer next, String... episodes) {
+        StringBuilder json = new StringBuilder("{\"links\":{\"next\":").append(next)
+                .append("},\"data\":[");
+        for (int i = 0; i < episodes.length; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append(episodes[i]);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Answers episode page requests with the pages set for a page number and language. Responds
+     * with 304 Not Modified if the request has the ETag of the page.
+     */
+    private static class FakeTvdbServer {
+
+        private final Map<String, String> bodyByPage = new HashMap<>();
+        private final Map<String, String> etagByPage = new HashMap<>();
+        /** The If-None-Match header of the last request of each page, null if none was sent. */
+        final Map<String, String> ifNoneMatchByPage = Collections.synchronizedMap(
+                new HashMap<String, String>());
+
+        void setPage(int page, String language, String body, String etag) {
+            bodyByPage.put(page + "/" + language, body);
+            etagByPage.put(page + "/" + language, etag);
+        }
+
+        /**
+         * Only builds requests, {@link TvdbEpisodeTools} executes them with {@link
+         * #okHttpClient()}.
+         */
+        TheTvdbSeries seriesService() {
+            return (TheTvdbSeries) Proxy.newProxyInstance(TheTvdbSeries.class.getClassLoader(),
+                    new Class[]{TheTvdbSeries.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (!"episodes".equals(method.getName())) {
+                                throw new UnsupportedOperationException(method.getName());
+                            }
+                            return createCall(new Request.Builder()
+                                    .url("https://localhost/series/" + args[0]
+                                            + "/episodes?page=" + args[1] + "&lang=" + args[2])
+                                    .build());
+                        }
+                    });
+        }
+
+        OkHttpClient okHttpClient() {
+            return new OkHttpClient.Builder()
+                    .addInterceptor(chain -> respond(chain.request()))
+                    .build();
+        }
+
+        private Response respond(Request request) {
+            String key = request.url().queryParameter("page") + "/"
+                    + request.url().queryParameter("lang");
+            String ifNoneMatch = request.header("If-None-Match");
+            ifNoneMatchByPage.put(key, ifNoneMatch);
+
+            Response.Builder response = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1);
+            String body = bodyByPage.get(key);
+            if (body == null) {
+                return response.code(404).message("Not Found")
+                        .body(ResponseBody.create(null, "")).build();
+            }
+            String etag = etagByPage.get(key);
+            if (etag != null && etag.equals(ifNoneMatch)) {
+                return response.code(304).message("Not Modified")
+                        .body(ResponseBody.create(null, "")).build();
+            }
+            return response.code(200).message("OK")
+                    .header("ETag", etag)
+                    .body(ResponseBody.create(MediaType.parse("application/json"), body))
+                    .build();
+        }
+
+        private static Call<?> createCall(final Request request) {
+            return (Call<?>) Proxy.newProxyInstance(Call.class.getClassLoader(),
+                    new Class[]{Call.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("request".equals(method.getName())) {
+                                return request;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
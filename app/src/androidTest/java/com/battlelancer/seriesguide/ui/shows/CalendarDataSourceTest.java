@@ -0,0 +1,54 @@
+package com.battlelancer.seriesguide.ui.shows;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import java.util.Calendar;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class CalendarDataSourceTest {
+
+    @Test
+    public void itemMapper_groupsByDay() {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2018, Calendar.MARCH, 1, 0, 30, 0);
+        long firstDayEarly = calendar.getTimeInMillis();
+        calendar.set(Calendar.HOUR_OF_DAY, 23);
+        long firstDayLate = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        long secondDay = calendar.getTimeInMillis();
+
+        // ascending like upcoming, continuing on the next page
+        CalendarDataSource.ItemMapper mapper = new CalendarDataSource.ItemMapper(context);
+        List<CalendarItem> firstPage = mapper.map(buildCursor(firstDayEarly, firstDayLate));
+        List<CalendarItem> secondPage = mapper.map(buildCursor(secondDay));
+        assertThat(firstPage.get(0).getDayStart()).isEqualTo(firstPage.get(1).getDayStart());
+        assertThat(firstPage.get(0).getDayHeader()).isEqualTo(firstPage.get(1).getDayHeader());
+        assertThat(secondPage.get(0).getDayStart()).isGreaterThan(firstPage.get(1).getDayStart());
+
+        // descending like recent
+        List<CalendarItem> recent = new CalendarDataSource.ItemMapper(context)
+                .map(buildCursor(secondDay, firstDayLate, firstDayEarly));
+        assertThat(recent.get(0).getDayStart()).isGreaterThan(recent.get(1).getDayStart());
+        assertThat(recent.get(1).getDayStart()).isEqualTo(recent.get(2).getDayStart());
+    }
+
+    private static MatrixCursor buildCursor(long... releaseTimes) {
+        MatrixCursor cursor = new MatrixCursor(CalendarQuery.PROJECTION);
+        for (int i = 0; i < releaseTimes.length; i++) {
+            Object[] row = new Object[CalendarQuery.PROJECTION.length];
+            row[CalendarQuery._ID] = i;
+            row[CalendarQuery.RELEASE_TIME_MS] = releaseTimes[i];
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+}
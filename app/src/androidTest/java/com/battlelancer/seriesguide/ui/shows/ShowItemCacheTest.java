@@ -0,0 +1,129 @@
+package com.battlelancer.seriesguide.ui.shows;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.model.SgShow;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class ShowItemCacheTest {
+
+    private Context context;
+    private ShowItemCache cache;
+
+    @Before
+    public void setDisplaySettings() {
+        context = InstrumentationRegistry.getTargetContext();
+        setTimeOffsetAndExactDate("0", false);
+        cache = new ShowItemCache();
+    }
+
+    @After
+    public void resetDisplaySettings() {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .remove(DisplaySettings.KEY_SHOWS_TIME_OFFSET)
+                .remove(DisplaySettings.KEY_DISPLAY_EXACT_DATE)
+                .commit();
+    }
+
+    @Test
+    public void map_reusesItemsOfUnchangedShows() {
+        List<ShowsAdapter.ShowItem> items = cache.map(
+                Arrays.asList(buildShow(1), buildShow(2)), context);
+        assertThat(items).hasSize(2);
+
+        // queried again, but values did not change
+        List<ShowsAdapter.ShowItem> unchanged = cache.map(
+                Arrays.asList(buildShow(1), buildShow(2)), context);
+        assertThat(unchanged.get(0)).isSameAs(items.get(0));
+        assertThat(unchanged.get(1)).isSameAs(items.get(1));
+
+        // in the order of the given shows
+        List<ShowsAdapter.ShowItem> reordered = cache.map(
+                Arrays.asList(buildShow(2), buildShow(1)), context);
+        assertThat(reordered.get(0)).isSameAs(items.get(1));
+        assertThat(reordered.get(1)).isSameAs(items.get(0));
+    }
+
+    @Test
+    public void map_mapsChangedShowsAgain() {
+        List<ShowsAdapter.ShowItem> items = cache.map(
+                Arrays.asList(buildShow(1), buildShow(2)), context);
+
+        SgShow watched = buildShow(2);
+        watched.unwatchedCount = 4;
+        watched.nextEpisode = "202";
+        watched.nextText = "1x02 Episode 2";
+        List<ShowsAdapter.ShowItem> changed = cache.map(
+                Arrays.asList(buildShow(1), watched), context);
+        assertThat(changed.get(0)).isSameAs(items.get(0));
+        assertThat(changed.get(1)).isNotSameAs(items.get(1));
+        assertThat(changed.get(1).getEpisodeTvdbId()).isEqualTo(202);
+    }
+
+    @Test
+    public void map_dropsRemovedShows() {
+        List<ShowsAdapter.ShowItem> items = cache.map(
+                Arrays.asList(buildShow(1), buildShow(2)), context);
+
+        // show 2 is filtered out, then displayed again
+        cache.map(Collections.singletonList(buildShow(1)), context);
+        List<ShowsAdapter.ShowItem> again = cache.map(
+                Arrays.asList(buildShow(1), buildShow(2)), context);
+        assertThat(again.get(0)).isSameAs(items.get(0));
+        assertThat(again.get(1)).isNotSameAs(items.get(1));
+    }
+
+    @Test
+    public void map_mapsAllAgainIfDisplaySettingsChangedOrInvalidated() {
+        List<SgShow> shows = Collections.singletonList(buildShow(1));
+        ShowsAdapter.ShowItem item = cache.map(shows, context).get(0);
+
+        setTimeOffsetAndExactDate("0", true);
+        ShowsAdapter.ShowItem exactDate = cache.map(shows, context).get(0);
+        assertThat(exactDate).isNotSameAs(item);
+
+        setTimeOffsetAndExactDate("2", true);
+        ShowsAdapter.ShowItem timeOffset = cache.map(shows, context).get(0);
+        assertThat(timeOffset).isNotSameAs(exactDate);
+        assertThat(cache.map(shows, context).get(0)).isSameAs(timeOffset);
+
+        cache.invalidate();
+        assertThat(cache.map(shows, context).get(0)).isNotSameAs(timeOffset);
+    }
+
+    private void setTimeOffsetAndExactDate(String timeOffset, boolean isDisplayExactDate) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(DisplaySettings.KEY_SHOWS_TIME_OFFSET, timeOffset)
+                .putBoolean(DisplaySettings.KEY_DISPLAY_EXACT_DATE, isDisplayExactDate)
+                .commit();
+    }
+
+    private static SgShow buildShow(int showTvdbId) {
+        SgShow show = new SgShow();
+        show.tvdbId = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        show.releaseTime = 2100;
+        show.releaseWeekDay = 1;
+        show.releaseTimeZone = "America/New_York";
+        show.releaseCountry = "us";
+        show.network = "Network";
+        show.status = "1";
+        show.nextEpisode = String.valueOf(showTvdbId * 100 + 1);
+        show.nextText = "1x01 Episode 1";
+        show.nextAirdateMs = 1520000000000L;
+        show.unwatchedCount = 5;
+        return show;
+    }
+}
@@ -0,0 +1,181 @@
+package com.battlelancer.seriesguide.ui.shows;
+
+import static org.junit.Assert.assertEquals;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteProgram;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.RoomDatabaseTestHelper;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Toggles through all show filters repeatedly, like a user switching filters, and compares
+ * running the parameterized queries against the same queries with times inlined, as they were
+ * built before.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShowsQueryBenchmark {
+
+    private static final int SHOW_COUNT = 2000;
+    private static final int ROUNDS = 50;
+
+    private SgRoomDatabase db;
+
+    @Before
+    public void createDb() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+                SgRoomDatabase.class)
+                .addCallback(SgRoomDatabase.CALLBACK)
+                .build();
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void toggleFilters() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+
+        long now = System.currentTimeMillis();
+        database.beginTransaction();
+        try {
+            for (int i = 1; i <= SHOW_COUNT; i++) {
+                Show show = new Show();
+                show.tvdb_id = i;
+                show.title = "Show " + i;
+                show.favorite = i % 3 == 0;
+                show.hidden = i % 10 == 0;
+                RoomDatabaseTestHelper.insertShow(show, database, SgRoomDatabase.VERSION);
+            }
+            // spread next episodes from a month ago to a month ahead, some without
+            database.execSQL("UPDATE " + Tables.SHOWS + " SET "
+                    + Shows.NEXTEPISODE + "=" + Shows._ID + ","
+                    + Shows.NEXTAIRDATEMS + "=" + (now - 30 * DateUtils.DAY_IN_MILLIS)
+                    + "+" + Shows._ID + "*" + (60 * DateUtils.DAY_IN_MILLIS / SHOW_COUNT)
+                    + " WHERE " + Shows._ID + " % 7 != 0");
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        String orderClause = ShowsDistillationSettings.getSortQuery(
+                ShowsDistillationSettings.ShowsSortOrder.TITLE_ID, true, true);
+
+        long parameterizedMs = 0;
+        long inlinedMs = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // time moves on between filter switches
+            long timeInAnHour = now + round * DateUtils.SECOND_IN_MILLIS
+                    + DateUtils.HOUR_IN_MILLIS;
+            long latestAirtime = timeInAnHour + 7 * DateUtils.DAY_IN_MILLIS;
+            for (int filters = 0; filters < 16; filters++) {
+                SimpleSQLiteQuery query = ShowsViewModel.buildQuery(
+                        (filters & 1) != 0, (filters & 2) != 0,
+                        (filters & 4) != 0, (filters & 8) != 0,
+                        orderClause, timeInAnHour, latestAirtime);
+
+                long start = SystemClock.elapsedRealtime();
+                int parameterizedCount = count(database, query);
+                parameterizedMs += SystemClock.elapsedRealtime() - start;
+
+                start = SystemClock.elapsedRealtime();
+                int inlinedCount = count(database, inline(query));
+                inlinedMs += SystemClock.elapsedRealtime() - start;
+
+                assertEquals(inlinedCount, parameterizedCount);
+            }
+        }
+
+        System.out.println(String.format(
+                "%s shows, %s filter switches: parameterized %s ms, inlined %s ms",
+                SHOW_COUNT, ROUNDS * 16, parameterizedMs, inlinedMs));
+    }
+
+    /**
+     * Builds the query with arguments replaced by their values, a different statement for every
+     * time.
+     */
+    private static SimpleSQLiteQuery inline(SimpleSQLiteQuery query) {
+        String sql = query.getSql();
+        StringBuilder inlined = new StringBuilder();
+        int argIndex = 0;
+        Object[] args = new Object[query.getArgCount()];
+        query.bindTo(new ArgsCollector(args));
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                inlined.append(args[argIndex++]);
+            } else {
+                inlined.append(c);
+            }
+        }
+        return new SimpleSQLiteQuery(inlined.toString());
+    }
+
+    private static int count(SupportSQLiteDatabase database, SimpleSQLiteQuery query) {
+        Cursor cursor = database.query(query);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * Reads the arguments a query binds.
+     */
+    private static class ArgsCollector implements SupportSQLiteProgram {
+
+        private final Object[] args;
+
+        ArgsCollector(Object[] args) {
+            this.args = args;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            args[index - 1] = "NULL";
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            args[index - 1] = value;
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            args[index - 1] = value;
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            args[index - 1] = "'" + value + "'";
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clearBindings() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.battlelancer.seriesguide.util;
+
+import static com.battlelancer.seriesguide.provider.QueryPlanTestHelper.assertNoEpisodesTableScan;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Like {@link com.battlelancer.seriesguide.provider.QueryPlanTest}, checks the episode queries of
+ * {@link DBUtils} and {@link NextEpisodeUpdater} do not scan the whole episodes table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DBUtilsQueryPlanTest {
+
+    private SgRoomDatabase db;
+
+    @Before
+    public void switchToInMemoryDb() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        db = SgRoomDatabase.getInstance(context);
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void episodeCountsOfSeason() {
+        // DBUtils.getUnwatchedEpisodesOfSeason
+        assertNoEpisodesTableScan(db, Episodes.buildEpisodesOfSeasonUri(42),
+                DBUtils.PROJECTION_COUNT, DBUtils.UnwatchedQuery.AIRED_SELECTION,
+                new String[]{"0"}, null);
+        // DBUtils.getUncollectedEpisodesOfSeason
+        assertNoEpisodesTableScan(db, Episodes.buildEpisodesOfSeasonUri(42),
+                DBUtils.PROJECTION_COUNT, Episodes.SELECTION_NOT_COLLECTED, null, null);
+    }
+
+    @Test
+    public void nextEpisodeOfShow() {
+        // DBUtils.updateLatestEpisode
+        for (boolean isHidingSpecials : new boolean[]{false, true}) {
+            assertNoEpisodesTableScan(db, Episodes.buildEpisodesOfShowUri(42),
+                    DBUtils.NextEpisodesQuery.PROJECTION,
+                    DBUtils.buildNextEpisodeSelection(isHidingSpecials, false),
+                    new String[]{"0", "1", "1", "0"}, DBUtils.NextEpisodesQuery.SORTORDER);
+            assertNoEpisodesTableScan(db, Episodes.buildEpisodesOfShowUri(42),
+                    DBUtils.NextEpisodesQuery.PROJECTION,
+                    DBUtils.buildNextEpisodeSelection(isHidingSpecials, true),
+                    new String[]{"0", "1", "1", "0", "0"}, DBUtils.NextEpisodesQuery.SORTORDER);
+        }
+        // NextEpisodeUpdater
+        assertNoEpisodesTableScan(db, Episodes.CONTENT_URI,
+                NextEpisodeUpdater.UnwatchedEpisodesQuery.PROJECTION,
+                NextEpisodeUpdater.UnwatchedEpisodesQuery.SELECTION, null,
+                NextEpisodeUpdater.UnwatchedEpisodesQuery.SORTORDER);
+    }
+}
@@ -0,0 +1,188 @@
+package com.battlelancer.seriesguide.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class NextEpisodeUpdaterTest {
+
+    private static final String[] SHOW_PROJECTION = new String[]{
+            Shows._ID,
+            Shows.NEXTEPISODE,
+            Shows.NEXTAIRDATEMS,
+            Shows.NEXTTEXT,
+            Shows.UNWATCHED_COUNT
+    };
+
+    private Context context;
+    private ContentResolver resolver;
+    private SharedPreferences prefs;
+
+    @Before
+    public void switchToInMemoryDb() {
+        // ProviderTestRule does not work with Room
+        // so instead blatantly replace the instance with one that uses an in-memory database
+        // and use the real ContentResolver
+        context = InstrumentationRegistry.getTargetContext();
+        SgRoomDatabase.switchToInMemory(context);
+        resolver = context.getContentResolver();
+        prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    }
+
+    @After
+    public void closeDb() {
+        SgRoomDatabase.getInstance(context).close();
+        setSettings(false, false, false);
+    }
+
+    @Test
+    public void matchesUpdatingEachShow() {
+        long day = DateUtils.DAY_IN_MILLIS;
+        long now = System.currentTimeMillis();
+
+        // no watched episodes, with specials and episode without release date
+        insertShow(1);
+        insertEpisode(1, 101, 0, 1, now - 10 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(1, 102, 1, 1, now - 5 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(1, 103, 1, 2, now + 5 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(1, 104, 1, 3, -1, EpisodeFlags.UNWATCHED);
+
+        // last watched episode released at the same time as another episode, one skipped
+        insertShow(2);
+        insertEpisode(2, 201, 1, 1, now - 20 * day, EpisodeFlags.WATCHED);
+        insertEpisode(2, 202, 1, 2, now - 10 * day, EpisodeFlags.WATCHED);
+        insertEpisode(2, 203, 1, 3, now - 10 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(2, 204, 1, 4, now - 3 * day, EpisodeFlags.SKIPPED);
+        insertEpisode(2, 205, 1, 5, now - 2 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(2, 206, 2, 1, now + 2 * day, EpisodeFlags.UNWATCHED);
+        setLastWatchedEpisode(2, 202);
+
+        // all watched
+        insertShow(3);
+        insertEpisode(3, 301, 1, 1, now - 2 * day, EpisodeFlags.WATCHED);
+        insertEpisode(3, 302, 1, 2, now - day, EpisodeFlags.WATCHED);
+        setLastWatchedEpisode(3, 302);
+
+        // no episodes
+        insertShow(4);
+
+        // only future episodes, last watched episode does not exist
+        insertShow(5);
+        insertEpisode(5, 501, 1, 1, now + 7 * day, EpisodeFlags.UNWATCHED);
+        insertEpisode(5, 502, 1, 2, now + 14 * day, EpisodeFlags.UNWATCHED);
+        setLastWatchedEpisode(5, 999);
+
+        // only specials left
+        insertShow(6);
+        insertEpisode(6, 601, 1, 1, now - 9 * day, EpisodeFlags.WATCHED);
+        insertEpisode(6, 602, 0, 1, now - 8 * day, EpisodeFlags.UNWATCHED);
+        setLastWatchedEpisode(6, 601);
+
+        for (int settings = 0; settings < 8; settings++) {
+            setSettings((settings & 1) != 0, (settings & 2) != 0, (settings & 4) != 0);
+
+            clearNextEpisodes();
+            DBUtils.updateLatestEpisodeByShow(context, null);
+            List<String> expected = getNextEpisodeValues();
+
+            clearNextEpisodes();
+            assertTrue(new NextEpisodeUpdater(context).updateAllShows());
+            List<String> actual = getNextEpisodeValues();
+
+            assertEquals("settings " + settings, expected, actual);
+        }
+    }
+
+    private void setSettings(boolean hideSpecials, boolean noReleasedEpisodes,
+            boolean preventSpoilers) {
+        prefs.edit()
+                .putBoolean(DisplaySettings.KEY_HIDE_SPECIALS, hideSpecials)
+                .putBoolean(DisplaySettings.KEY_NO_RELEASED_EPISODES, noReleasedEpisodes)
+                .putBoolean(DisplaySettings.KEY_PREVENT_SPOILERS, preventSpoilers)
+                .commit();
+    }
+
+    private void insertShow(int showTvdbId) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.title = "Show " + showTvdbId;
+        resolver.insert(Shows.CONTENT_URI, show.toContentValues(context, true));
+    }
+
+    private void setLastWatchedEpisode(int showTvdbId, int episodeTvdbId) {
+        ContentValues values = new ContentValues();
+        values.put(Shows.LASTWATCHEDID, episodeTvdbId);
+        resolver.update(Shows.buildShowUri(showTvdbId), values, null, null);
+    }
+
+    private void insertEpisode(int showTvdbId, int episodeTvdbId, int season, int number,
+            long releaseTime, int watched) {
+        int seasonTvdbId = showTvdbId * 100 + season;
+        ContentValues seasonValues = new ContentValues();
+        seasonValues.put(Seasons._ID, seasonTvdbId);
+        seasonValues.put(Seasons.COMBINED, season);
+        seasonValues.put(Shows.REF_SHOW_ID, showTvdbId);
+        resolver.bulkInsert(Seasons.CONTENT_URI, new ContentValues[]{seasonValues});
+
+        ContentValues values = new ContentValues();
+        values.put(Episodes._ID, episodeTvdbId);
+        values.put(Episodes.TITLE, "Episode " + episodeTvdbId);
+        values.put(Episodes.SEASON, season);
+        values.put(Episodes.NUMBER, number);
+        values.put(Episodes.FIRSTAIREDMS, releaseTime);
+        values.put(Episodes.WATCHED, watched);
+        values.put(Episodes.COLLECTED, 0);
+        values.put(Episodes.LAST_EDITED, 0);
+        values.put(Episodes.LAST_UPDATED, 0);
+        values.put(Seasons.REF_SEASON_ID, seasonTvdbId);
+        values.put(Shows.REF_SHOW_ID, showTvdbId);
+        resolver.insert(Episodes.CONTENT_URI, values);
+    }
+
+    private void clearNextEpisodes() {
+        ContentValues values = new ContentValues();
+        values.put(Shows.NEXTEPISODE, "cleared");
+        values.put(Shows.NEXTAIRDATEMS, 0);
+        values.put(Shows.NEXTTEXT, "cleared");
+        values.put(Shows.UNWATCHED_COUNT, -2);
+        resolver.update(Shows.CONTENT_URI, values, null, null);
+    }
+
+    private List<String> getNextEpisodeValues() {
+        Cursor query = resolver.query(Shows.CONTENT_URI, SHOW_PROJECTION, null, null,
+                Shows._ID);
+        assertNotNull(query);
+        List<String> values = new ArrayList<>();
+        while (query.moveToNext()) {
+            values.add(query.getString(0) + "|" + query.getString(1) + "|"
+                    + query.getString(2) + "|" + query.getString(3) + "|"
+                    + query.getString(4));
+        }
+        query.close();
+        return values;
+    }
+}
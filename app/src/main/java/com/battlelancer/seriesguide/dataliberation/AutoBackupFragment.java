@@ -52,6 +52,9 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
     @BindView(R.id.switchAutoBackup) SwitchCompat switchAutoBackup;
     @BindView(R.id.containerAutoBackupSettings) View containerSettings;
     @BindView(R.id.checkBoxAutoBackupDefaultFiles) CheckBox checkBoxDefaultFiles;
+    @BindView(R.id.checkBoxAutoBackupCompress) CheckBox checkBoxCompress;
+    @BindView(R.id.checkBoxAutoBackupIncremental) CheckBox checkBoxIncremental;
+    @BindView(R.id.checkBoxAutoBackupBinary) CheckBox checkBoxBinary;
 
     @BindView(R.id.textViewAutoBackupShowsExportFile) TextView textShowsExportFile;
     @BindView(R.id.buttonAutoBackupShowsExportFile) Button buttonShowsExportFile;
@@ -105,6 +108,39 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
             }
         });
 
+        checkBoxCompress.setChecked(BackupSettings.isCompressAutoBackup(getContext()));
+        checkBoxCompress.setOnCheckedChangeListener(new OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceManager.getDefaultSharedPreferences(buttonView.getContext())
+                        .edit()
+                        .putBoolean(BackupSettings.KEY_AUTO_BACKUP_COMPRESS, isChecked)
+                        .apply();
+            }
+        });
+        checkBoxIncremental.setChecked(BackupSettings.isIncrementalAutoBackup(getContext()));
+        checkBoxIncremental.setOnCheckedChangeListener(new OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceManager.getDefaultSharedPreferences(buttonView.getContext())
+                        .edit()
+                        .putBoolean(BackupSettings.KEY_AUTO_BACKUP_INCREMENTAL, isChecked)
+                        .apply();
+            }
+        });
+        checkBoxBinary.setChecked(BackupSettings.isBinaryAutoBackup(getContext()));
+        checkBoxBinary.setOnCheckedChangeListener(new OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceManager.getDefaultSharedPreferences(buttonView.getContext())
+                        .edit()
+                        .putBoolean(BackupSettings.KEY_AUTO_BACKUP_BINARY, isChecked)
+                        .apply();
+                // binary backups use their own default files
+                updateFileViews();
+            }
+        });
+
         // selecting custom backup files is only supported on KitKat and up
         // as we use Storage Access Framework in this case
         if (AndroidUtils.isKitKatOrHigher()) {
@@ -124,7 +160,7 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
                 @Override
                 public void onClick(View v) {
                     DataLiberationTools.selectExportFile(AutoBackupFragment.this,
-                            JsonExportTask.EXPORT_JSON_FILE_SHOWS,
+                            getDefaultFileName(JsonExportTask.BACKUP_SHOWS),
                             REQUEST_CODE_SHOWS_EXPORT_URI);
                 }
             });
@@ -132,7 +168,7 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
                 @Override
                 public void onClick(View v) {
                     DataLiberationTools.selectExportFile(AutoBackupFragment.this,
-                            JsonExportTask.EXPORT_JSON_FILE_LISTS,
+                            getDefaultFileName(JsonExportTask.BACKUP_LISTS),
                             REQUEST_CODE_LISTS_EXPORT_URI);
                 }
             });
@@ -140,7 +176,7 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
                 @Override
                 public void onClick(View v) {
                     DataLiberationTools.selectExportFile(AutoBackupFragment.this,
-                            JsonExportTask.EXPORT_JSON_FILE_MOVIES,
+                            getDefaultFileName(JsonExportTask.BACKUP_MOVIES),
                             REQUEST_CODE_MOVIES_EXPORT_URI);
                 }
             });
@@ -290,7 +326,7 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
         }
         setProgressLock(true);
 
-        importTask = new JsonImportTask(getContext());
+        importTask = new JsonImportTask(getContext(), AutoBackupFragment.this);
         Utils.executeInOrder(importTask);
     }
 
@@ -345,6 +381,11 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
         buttonMoviesExportFile.setEnabled(!isLocked);
     }
 
+    private String getDefaultFileName(@JsonExportTask.BackupType int type) {
+        return JsonExportTask.getDefaultFileName(type,
+                BackupSettings.isBinaryAutoBackup(getContext()));
+    }
+
     private void updateFileViews() {
         if (!BackupSettings.isUseAutoBackupDefaultFiles(getContext())
                 && AndroidUtils.isKitKatOrHigher()) {
@@ -359,11 +400,11 @@ public class AutoBackupFragment extends Fragment implements JsonExportTask.OnTas
             buttonMoviesExportFile.setVisibility(View.VISIBLE);
         } else {
             String path = JsonExportTask.getExportPath(true).toString();
-            String showsFilePath = path + "/" + JsonExportTask.EXPORT_JSON_FILE_SHOWS;
+            String showsFilePath = path + "/" + getDefaultFileName(JsonExportTask.BACKUP_SHOWS);
             textShowsExportFile.setText(showsFilePath);
-            String listsFilePath = path + "/" + JsonExportTask.EXPORT_JSON_FILE_LISTS;
+            String listsFilePath = path + "/" + getDefaultFileName(JsonExportTask.BACKUP_LISTS);
             textListsExportFile.setText(listsFilePath);
-            String moviesFilePath = path + "/" + JsonExportTask.EXPORT_JSON_FILE_MOVIES;
+            String moviesFilePath = path + "/" + getDefaultFileName(JsonExportTask.BACKUP_MOVIES);
             textMoviesExportFile.setText(moviesFilePath);
             buttonShowsExportFile.setVisibility(View.GONE);
             buttonListsExportFile.setVisibility(View.GONE);
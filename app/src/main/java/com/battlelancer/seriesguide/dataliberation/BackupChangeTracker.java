@@ -0,0 +1,186 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Movies;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records which shows, lists and movies changed since the last auto backup, so an incremental
+ * auto backup only has to write those.
+ *
+ * <p>Triggers on the show, season, episode, list, list item and movie tables insert the id of
+ * the changed show, list or movie into {@link Tables#BACKUP_CHANGES}. The table and triggers are
+ * not managed by Room, they only exist while incremental auto backup is enabled. Migrations that
+ * recreate any of these tables drop their triggers, which {@link #enable(SupportSQLiteDatabase)}
+ * detects.
+ */
+public class BackupChangeTracker {
+
+    private static final String ID = "_id";
+    private static final String TYPE = "type";
+    private static final String REF_ID = "ref_id";
+
+    private static final String TRIGGER_PREFIX = "backup_changes_";
+
+    /**
+     * Table, changed type and id column of each tracked table.
+     */
+    private static final Object[][] TRACKED_TABLES = {
+            {Tables.SHOWS, JsonExportTask.BACKUP_SHOWS, Shows._ID},
+            {Tables.SEASONS, JsonExportTask.BACKUP_SHOWS, Shows.REF_SHOW_ID},
+            {Tables.EPISODES, JsonExportTask.BACKUP_SHOWS, Shows.REF_SHOW_ID},
+            {Tables.LISTS, JsonExportTask.BACKUP_LISTS, Lists.LIST_ID},
+            {Tables.LIST_ITEMS, JsonExportTask.BACKUP_LISTS, Lists.LIST_ID},
+            {Tables.MOVIES, JsonExportTask.BACKUP_MOVIES, Movies.TMDB_ID}
+    };
+
+    private static final String[] OPERATIONS = {"INSERT", "UPDATE", "DELETE"};
+
+    /**
+     * The ids of changed items of one type.
+     */
+    public static class Changes {
+        @NonNull public final List<String> ids;
+        /**
+         * Pass to {@link #remove(SupportSQLiteDatabase, int, long)} once the changes are backed
+         * up. Changes recorded in the meantime are kept.
+         */
+        public final long maxChangeId;
+
+        Changes(@NonNull List<String> ids, long maxChangeId) {
+            this.ids = ids;
+            this.maxChangeId = maxChangeId;
+        }
+    }
+
+    /**
+     * Creates the change table and triggers, if they do not exist.
+     *
+     * @return false if tracking was not enabled (completely) before, so changes might be
+     * missing and a full backup is required.
+     */
+    public static boolean enable(SupportSQLiteDatabase db) {
+        boolean wasEnabled = isEnabled(db);
+        if (wasEnabled) {
+            return true;
+        }
+
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + Tables.BACKUP_CHANGES + " ("
+                    + ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + TYPE + " INTEGER NOT NULL,"
+                    + REF_ID + " TEXT NOT NULL,"
+                    + "UNIQUE (" + TYPE + "," + REF_ID + "))");
+            for (Object[] tracked : TRACKED_TABLES) {
+                for (String operation : OPERATIONS) {
+                    String refId = ("DELETE".equals(operation) ? "old." : "new.") + tracked[2];
+                    // delete, then insert to give a change a new id, so a change is never older
+                    // than its last backup; also avoids a conflict, triggers use the conflict
+                    // resolution of the statement firing them (like INSERT OR IGNORE)
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS "
+                            + triggerName((String) tracked[0], operation)
+                            + " AFTER " + operation + " ON " + tracked[0]
+                            + " BEGIN"
+                            + " DELETE FROM " + Tables.BACKUP_CHANGES
+                            + " WHERE " + TYPE + "=" + tracked[1]
+                            + " AND " + REF_ID + "=" + refId + ";"
+                            + " INSERT INTO " + Tables.BACKUP_CHANGES
+                            + " (" + TYPE + "," + REF_ID + ") VALUES ("
+                            + tracked[1] + "," + refId + ");"
+                            + " END;");
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return false;
+    }
+
+    /**
+     * Drops the triggers and the change table.
+     */
+    public static void disable(SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (Object[] tracked : TRACKED_TABLES) {
+                for (String operation : OPERATIONS) {
+                    db.execSQL("DROP TRIGGER IF EXISTS "
+                            + triggerName((String) tracked[0], operation));
+                }
+            }
+            db.execSQL("DROP TABLE IF EXISTS " + Tables.BACKUP_CHANGES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static boolean isEnabled(SupportSQLiteDatabase db) {
+        Cursor query = db.query("SELECT COUNT(*) FROM sqlite_master WHERE type='trigger'"
+                + " AND name LIKE '" + TRIGGER_PREFIX + "%'");
+        try {
+            return query.moveToFirst()
+                    && query.getInt(0) == TRACKED_TABLES.length * OPERATIONS.length;
+        } finally {
+            query.close();
+        }
+    }
+
+    private static String triggerName(String table, String operation) {
+        return TRIGGER_PREFIX + table + "_" + operation.toLowerCase();
+    }
+
+    /**
+     * Returns the ids of all shows, lists or movies changed since they were last removed.
+     */
+    @NonNull
+    public static Changes get(SupportSQLiteDatabase db, @JsonExportTask.BackupType int type) {
+        Cursor query = db.query("SELECT " + ID + "," + REF_ID
+                + " FROM " + Tables.BACKUP_CHANGES
+                + " WHERE " + TYPE + "=?"
+                + " ORDER BY " + ID + " ASC", new Object[]{type});
+        try {
+            List<String> ids = new ArrayList<>(query.getCount());
+            long maxChangeId = 0;
+            while (query.moveToNext()) {
+                maxChangeId = Math.max(maxChangeId, query.getLong(0));
+                ids.add(query.getString(1));
+            }
+            return new Changes(ids, maxChangeId);
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Returns the highest change id of the given type, to remove all changes up to now after a
+     * full backup.
+     */
+    public static long getMaxChangeId(SupportSQLiteDatabase db,
+            @JsonExportTask.BackupType int type) {
+        Cursor query = db.query("SELECT MAX(" + ID + ") FROM " + Tables.BACKUP_CHANGES
+                + " WHERE " + TYPE + "=?", new Object[]{type});
+        try {
+            return query.moveToFirst() ? query.getLong(0) : 0;
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Removes changes of the given type up to the given change id.
+     */
+    public static void remove(SupportSQLiteDatabase db, @JsonExportTask.BackupType int type,
+            long maxChangeId) {
+        db.delete(Tables.BACKUP_CHANGES, TYPE + "=? AND " + ID + "<=?",
+                new Object[]{type, maxChangeId});
+    }
+}
@@ -0,0 +1,133 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import android.text.format.DateUtils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A log of changes an incremental auto backup appends next to the last full backup file, see
+ * {@link BackupChangeTracker}.
+ *
+ * <p>Each entry is a JSON object with the id of a changed show, list or movie and its current
+ * backup data, or null data if it was removed. Entries are appended uncompressed, one per line,
+ * and have to be replayed in order.
+ */
+class BackupDeltaLog {
+
+    interface DataWriter {
+        /**
+         * Writes the backup data of the given item as the next value of the writer.
+         *
+         * @return false if the item does not exist (any more), then nothing is written.
+         */
+        boolean writeData(String id, JsonWriter writer) throws IOException;
+    }
+
+    interface DataReader {
+        /**
+         * Replaces the given item with the next value of the reader, or removes it if the next
+         * value is null. Must consume the value.
+         */
+        void readData(String id, JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Write a new full backup at least this often, so restoring does not have to replay changes
+     * of months.
+     */
+    private static final long FULL_BACKUP_MAX_AGE_MS = 28 * DateUtils.DAY_IN_MILLIS;
+
+    private static final String NAME_ID = "id";
+    private static final String NAME_DATA = "data";
+
+    /**
+     * Returns the log file for the given backup file, e.g. sg-shows-export-delta.json.
+     */
+    static File getFile(File backupFile) {
+        String name = backupFile.getName();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return new File(backupFile.getParentFile(), name + "-delta.json");
+    }
+
+    /**
+     * Returns whether a new full backup should be written instead of appending to the log: if
+     * there is no full backup, it is too old or the log got too large compared to it.
+     */
+    static boolean isFullBackupDue(File backupFile, File logFile) {
+        if (!backupFile.exists()) {
+            return true;
+        }
+        if (System.currentTimeMillis() - backupFile.lastModified() > FULL_BACKUP_MAX_AGE_MS) {
+            return true;
+        }
+        return logFile.length() > backupFile.length() / 2;
+    }
+
+    /**
+     * Appends an entry with the current data of each of the given items.
+     */
+    static void append(File logFile, List<String> ids, DataWriter dataWriter)
+            throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8");
+        JsonWriter writer = new JsonWriter(out);
+        // allow multiple top-level values
+        writer.setLenient(true);
+        // escape like Gson does by default
+        writer.setHtmlSafe(true);
+        try {
+            for (String id : ids) {
+                writer.beginObject();
+                writer.name(NAME_ID).value(id);
+                writer.name(NAME_DATA);
+                if (!dataWriter.writeData(id, writer)) {
+                    writer.nullValue();
+                }
+                writer.endObject();
+                writer.flush();
+                out.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Replays all entries of the given log in order.
+     */
+    static void replay(File logFile, DataReader dataReader) throws IOException {
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(logFile), "UTF-8"));
+        // allow multiple top-level values
+        reader.setLenient(true);
+        try {
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                String id = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (NAME_ID.equals(name)) {
+                        id = reader.nextString();
+                    } else if (NAME_DATA.equals(name) && id != null) {
+                        dataReader.readData(id, reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupEpisode;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupList;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupListItem;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupMovie;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupSeason;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupShow;
+import com.battlelancer.seriesguide.dataliberation.backup.SgBackup;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.List;
+import com.battlelancer.seriesguide.dataliberation.model.ListItem;
+import com.battlelancer.seriesguide.dataliberation.model.Movie;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.google.flatbuffers.FlatBufferBuilder;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Converts between JSON backup files and the binary backup format defined by
+ * {@code flatbuffers/SgBackup.fbs}. JSON remains the interchange format, a binary backup can be
+ * memory-mapped and read without parsing it first. Auto backups are written as binary backups if
+ * {@link com.battlelancer.seriesguide.settings.BackupSettings#isBinaryAutoBackup} is enabled.
+ *
+ * <p>A binary backup file of a {@link JsonExportTask.BackupType} only contains values for that
+ * type, like the JSON files.
+ */
+class BinaryBackup {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Memory-maps the file of the given channel, if it is a binary backup.
+     *
+     * @return {@code null} if the file is not a binary backup (like a JSON backup) or can not be
+     * mapped.
+     */
+    @Nullable
+    static SgBackup map(FileChannel channel) {
+        ByteBuffer buffer;
+        try {
+            long size = channel.size();
+            if (size < 8) {
+                return null; // too small for root offset and file identifier
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            return null; // not a regular file
+        }
+        return wrap(buffer);
+    }
+
+    /**
+     * @return {@code null} if the buffer does not contain a binary backup.
+     */
+    @Nullable
+    static SgBackup wrap(ByteBuffer buffer) {
+        if (buffer.remaining() < 8 || !SgBackup.SgBackupBufferHasIdentifier(buffer)) {
+            return null;
+        }
+        return SgBackup.getRootAsSgBackup(buffer);
+    }
+
+    /**
+     * Builds a binary backup of one {@link JsonExportTask.BackupType}, adding one show, list or
+     * movie at a time, so only the binary backup itself has to be kept in memory.
+     */
+    static class Builder {
+
+        final FlatBufferBuilder flatBuffer = new FlatBufferBuilder(INITIAL_BUFFER_SIZE);
+        @JsonExportTask.BackupType private final int type;
+        private int[] offsets = new int[16];
+        private int count;
+
+        Builder(@JsonExportTask.BackupType int type) {
+            this.type = type;
+        }
+
+        void addShow(Show show) {
+            add(BinaryBackup.addShow(flatBuffer, show));
+        }
+
+        void addList(List list) {
+            add(BinaryBackup.addList(flatBuffer, list));
+        }
+
+        void addMovie(Movie movie) {
+            add(BinaryBackup.addMovie(flatBuffer, movie));
+        }
+
+        /**
+         * Adds the show, list or movie at the given offset, which was already added to {@link
+         * #flatBuffer}.
+         */
+        void add(int offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        /**
+         * Finishes the backup, no more values may be added afterwards.
+         */
+        @NonNull
+        ByteBuffer finish() {
+            int[] values = Arrays.copyOf(offsets, count);
+            int shows = 0;
+            int lists = 0;
+            int movies = 0;
+            if (type == JsonExportTask.BACKUP_SHOWS) {
+                shows = SgBackup.createShowsVector(flatBuffer, values);
+            } else if (type == JsonExportTask.BACKUP_LISTS) {
+                lists = SgBackup.createListsVector(flatBuffer, values);
+            } else {
+                movies = SgBackup.createMoviesVector(flatBuffer, values);
+            }
+            int backup = SgBackup.createSgBackup(flatBuffer, shows, lists, movies);
+            SgBackup.finishSgBackupBuffer(flatBuffer, backup);
+            return flatBuffer.dataBuffer();
+        }
+    }
+
+    /**
+     * Reads a JSON backup of the given type and returns it as a binary backup. Does not close
+     * the stream.
+     */
+    @NonNull
+    static ByteBuffer fromJson(@JsonExportTask.BackupType int type, InputStream in)
+            throws IOException {
+        Gson gson = new Gson();
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                DataLiberationTools.decompressIfGzipped(in), "UTF-8"));
+        Builder builder = new Builder(type);
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (type == JsonExportTask.BACKUP_SHOWS) {
+                builder.addShow(gson.<Show>fromJson(reader, Show.class));
+            } else if (type == JsonExportTask.BACKUP_LISTS) {
+                builder.addList(gson.<List>fromJson(reader, List.class));
+            } else {
+                builder.addMovie(gson.<Movie>fromJson(reader, Movie.class));
+            }
+        }
+        reader.endArray();
+
+        return builder.finish();
+    }
+
+    /**
+     * Writes the binary backup to the stream, like one returned by {@link Builder#finish()}.
+     * Closes the stream.
+     */
+    static void write(ByteBuffer backup, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        try {
+            ByteBuffer buffer = backup.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the values of the given type of a binary backup as a JSON backup, like {@link
+     * JsonExportTask} would. Closes the stream.
+     */
+    static void toJson(SgBackup backup, @JsonExportTask.BackupType int type, OutputStream out)
+            throws IOException {
+        Gson gson = new Gson();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+        writer.beginArray();
+        if (type == JsonExportTask.BACKUP_SHOWS) {
+            BackupShow show = new BackupShow();
+            BackupSeason season = new BackupSeason();
+            for (int i = 0, count = backup.showsLength(); i < count; i++) {
+                backup.shows(show, i);
+                Show showModel = toShow(show);
+                showModel.seasons = new ArrayList<>();
+                for (int j = 0, seasons = show.seasonsLength(); j < seasons; j++) {
+                    showModel.seasons.add(toSeason(show.seasons(season, j)));
+                }
+                gson.toJson(showModel, Show.class, writer);
+            }
+        } else if (type == JsonExportTask.BACKUP_LISTS) {
+            BackupList list = new BackupList();
+            for (int i = 0, count = backup.listsLength(); i < count; i++) {
+                gson.toJson(toList(backup.lists(list, i)), List.class, writer);
+            }
+        } else {
+            BackupMovie movie = new BackupMovie();
+            for (int i = 0, count = backup.moviesLength(); i < count; i++) {
+                gson.toJson(toMovie(backup.movies(movie, i)), Movie.class, writer);
+            }
+        }
+        writer.endArray();
+        writer.close();
+    }
+
+    /**
+     * Returns the show without its seasons.
+     */
+    @NonNull
+    static Show toShow(BackupShow backupShow) {
+        Show show = new Show();
+        show.tvdb_id = backupShow.tvdbId();
+        show.tvdb_slug = backupShow.tvdbSlug();
+        show.imdb_id = backupShow.imdbId();
+        show.trakt_id = backupShow.traktId();
+        show.title = backupShow.title();
+        show.overview = backupShow.overview();
+        show.language = backupShow.language();
+        show.first_aired = backupShow.firstAired();
+        show.release_time = backupShow.releaseTime();
+        show.release_weekday = backupShow.releaseWeekday();
+        show.release_timezone = backupShow.releaseTimezone();
+        show.country = backupShow.country();
+        show.poster = backupShow.poster();
+        show.content_rating = backupShow.contentRating();
+        show.status = backupShow.status();
+        show.runtime = backupShow.runtime();
+        show.genres = backupShow.genres();
+        show.network = backupShow.network();
+        show.rating = backupShow.rating();
+        show.rating_votes = backupShow.ratingVotes();
+        show.rating_user = backupShow.ratingUser();
+        show.last_edited = backupShow.lastEdited();
+        show.favorite = backupShow.favorite();
+        show.notify = backupShow.notify();
+        show.hidden = backupShow.hidden();
+        show.last_updated = backupShow.lastUpdated();
+        show.last_watched_episode = backupShow.lastWatchedEpisode();
+        show.last_watched_ms = backupShow.lastWatchedMs();
+        return show;
+    }
+
+    /**
+     * Returns the season including its episodes.
+     */
+    @NonNull
+    static Season toSeason(BackupSeason backupSeason) {
+        Season season = new Season();
+        season.tvdbId = backupSeason.tvdbId();
+        season.season = backupSeason.season();
+        int count = backupSeason.episodesLength();
+        season.episodes = new ArrayList<>(count);
+        BackupEpisode episode = new BackupEpisode();
+        for (int i = 0; i < count; i++) {
+            season.episodes.add(toEpisode(backupSeason.episodes(episode, i)));
+        }
+        return season;
+    }
+
+    @NonNull
+    private static Episode toEpisode(BackupEpisode backupEpisode) {
+        Episode episode = new Episode();
+        episode.tvdbId = backupEpisode.tvdbId();
+        episode.episode = backupEpisode.episode();
+        episode.episodeAbsolute = backupEpisode.episodeAbsolute();
+        episode.title = backupEpisode.title();
+        episode.firstAired = backupEpisode.firstAired();
+        episode.watched = backupEpisode.watched();
+        episode.skipped = backupEpisode.skipped();
+        episode.collected = backupEpisode.collected();
+        episode.imdbId = backupEpisode.imdbId();
+        episode.episodeDvd = backupEpisode.episodeDvd();
+        episode.overview = backupEpisode.overview();
+        episode.image = backupEpisode.image();
+        episode.writers = backupEpisode.writers();
+        episode.gueststars = backupEpisode.gueststars();
+        episode.directors = backupEpisode.directors();
+        episode.rating = backupEpisode.rating();
+        episode.rating_votes = backupEpisode.ratingVotes();
+        episode.rating_user = backupEpisode.ratingUser();
+        episode.lastEdited = backupEpisode.lastEdited();
+        return episode;
+    }
+
+    @NonNull
+    static List toList(BackupList backupList) {
+        List list = new List();
+        list.listId = backupList.listId();
+        list.name = backupList.name();
+        list.order = backupList.order();
+        int count = backupList.itemsLength();
+        list.items = new ArrayList<>(count);
+        BackupListItem backupItem = new BackupListItem();
+        for (int i = 0; i < count; i++) {
+            backupList.items(backupItem, i);
+            ListItem item = new ListItem();
+            item.listItemId = backupItem.listItemId();
+            item.tvdbId = backupItem.tvdbId();
+            item.type = backupItem.type();
+            list.items.add(item);
+        }
+        return list;
+    }
+
+    @NonNull
+    static Movie toMovie(BackupMovie backupMovie) {
+        Movie movie = new Movie();
+        movie.tmdbId = backupMovie.tmdbId();
+        movie.imdbId = backupMovie.imdbId();
+        movie.title = backupMovie.title();
+        movie.releasedUtcMs = backupMovie.releasedUtcMs();
+        movie.runtimeMin = backupMovie.runtimeMin();
+        movie.poster = backupMovie.poster();
+        movie.overview = backupMovie.overview();
+        movie.inCollection = backupMovie.inCollection();
+        movie.inWatchlist = backupMovie.inWatchlist();
+        movie.watched = backupMovie.watched();
+        movie.lastUpdatedMs = backupMovie.lastUpdatedMs();
+        return movie;
+    }
+
+    private static int addShow(FlatBufferBuilder builder, Show show) {
+        // child objects and strings have to be added before their parent
+        int seasons = 0;
+        if (show.seasons != null) {
+            int[] seasonOffsets = new int[show.seasons.size()];
+            for (int i = 0; i < seasonOffsets.length; i++) {
+                seasonOffsets[i] = addSeason(builder, show.seasons.get(i));
+            }
+            seasons = BackupShow.createSeasonsVector(builder, seasonOffsets);
+        }
+        return BackupShow.createBackupShow(builder,
+                show.tvdb_id,
+                createString(builder, show.tvdb_slug),
+                createString(builder, show.imdb_id),
+                show.trakt_id != null ? show.trakt_id : 0,
+                createString(builder, show.title),
+                createString(builder, show.overview),
+                createString(builder, show.language),
+                createString(builder, show.first_aired),
+                show.release_time,
+                show.release_weekday,
+                createString(builder, show.release_timezone),
+                createString(builder, show.country),
+                createString(builder, show.poster),
+                createString(builder, show.content_rating),
+                createString(builder, show.status),
+                show.runtime,
+                createString(builder, show.genres),
+                createString(builder, show.network),
+                show.rating,
+                show.rating_votes,
+                show.rating_user,
+                show.last_edited,
+                show.favorite,
+                show.notify == null || show.notify,
+                show.hidden,
+                show.last_updated,
+                show.last_watched_episode,
+                show.last_watched_ms,
+                seasons);
+    }
+
+    private static int addSeason(FlatBufferBuilder builder, Season season) {
+        int episodes = 0;
+        if (season.episodes != null) {
+            int[] episodeOffsets = new int[season.episodes.size()];
+            for (int i = 0; i < episodeOffsets.length; i++) {
+                episodeOffsets[i] = addEpisode(builder, season.episodes.get(i));
+            }
+            episodes = BackupSeason.createEpisodesVector(builder, episodeOffsets);
+        }
+        return BackupSeason.createBackupSeason(builder, season.tvdbId, season.season, episodes);
+    }
+
+    private static int addEpisode(FlatBufferBuilder builder, Episode episode) {
+        return BackupEpisode.createBackupEpisode(builder,
+                episode.tvdbId,
+                episode.episode,
+                episode.episodeAbsolute,
+                createString(builder, episode.title),
+                episode.firstAired,
+                episode.watched,
+                episode.skipped,
+                episode.collected,
+                createString(builder, episode.imdbId),
+                episode.episodeDvd,
+                createString(builder, episode.overview),
+                createString(builder, episode.image),
+                createString(builder, episode.writers),
+                createString(builder, episode.gueststars),
+                createString(builder, episode.directors),
+                episode.rating,
+                episode.rating_votes,
+                episode.rating_user,
+                episode.lastEdited);
+    }
+
+    private static int addList(FlatBufferBuilder builder, List list) {
+        int items = 0;
+        if (list.items != null) {
+            int[] itemOffsets = new int[list.items.size()];
+            for (int i = 0; i < itemOffsets.length; i++) {
+                ListItem item = list.items.get(i);
+                itemOffsets[i] = BackupListItem.createBackupListItem(builder,
+                        createString(builder, item.listItemId),
+                        item.tvdbId,
+                        createString(builder, item.type));
+            }
+            items = BackupList.createItemsVector(builder, itemOffsets);
+        }
+        return BackupList.createBackupList(builder,
+                createString(builder, list.listId),
+                createString(builder, list.name),
+                list.order,
+                items);
+    }
+
+    private static int addMovie(FlatBufferBuilder builder, Movie movie) {
+        return BackupMovie.createBackupMovie(builder,
+                movie.tmdbId,
+                createString(builder, movie.imdbId),
+                createString(builder, movie.title),
+                movie.releasedUtcMs,
+                movie.runtimeMin,
+                createString(builder, movie.poster),
+                createString(builder, movie.overview),
+                movie.inCollection,
+                movie.inWatchlist,
+                movie.watched,
+                movie.lastUpdatedMs);
+    }
+
+    /**
+     * Like {@link FlatBufferBuilder#createString(CharSequence)}, but returns 0 (not set) for null.
+     */
+    static int createString(FlatBufferBuilder builder, @Nullable String value) {
+        return value != null ? builder.createString(value) : 0;
+    }
+}
@@ -0,0 +1,163 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static com.battlelancer.seriesguide.dataliberation.BinaryBackup.createString;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowsQuery;
+import com.battlelancer.seriesguide.dataliberation.JsonShowExporter.EpisodesQuery;
+import com.battlelancer.seriesguide.dataliberation.JsonShowExporter.SeasonsQuery;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupEpisode;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupSeason;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupShow;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.util.Arrays;
+
+/**
+ * Adds shows to a binary backup. Like {@link JsonShowExporter} reads the seasons and episodes of
+ * each show with one cursor each and adds their rows directly, without building model objects or
+ * a JSON backup first.
+ *
+ * <p>Writes the same values as {@link JsonShowExporter}, so a binary backup converted with {@link
+ * BinaryBackup#toJson} matches a JSON backup.
+ */
+class BinaryShowExporter {
+
+    private final SupportSQLiteDatabase db;
+    private final boolean isFullDump;
+    @Nullable private final JsonShowExporter.Callback callback;
+
+    BinaryShowExporter(SupportSQLiteDatabase db, boolean isFullDump,
+            @Nullable JsonShowExporter.Callback callback) {
+        this.db = db;
+        this.isFullDump = isFullDump;
+        this.callback = callback;
+    }
+
+    /**
+     * Adds all shows of the given cursor, in its order, including their seasons and episodes.
+     * Does not close the cursor.
+     *
+     * @param shows A cursor using {@link ShowsQuery#PROJECTION_FULL}.
+     */
+    void exportShows(Cursor shows, BinaryBackup.Builder backup) {
+        int showsExported = 0;
+        while (shows.moveToNext()) {
+            if (callback != null && callback.isCancelled()) {
+                break;
+            }
+
+            backup.add(addShowWithSeasons(backup.flatBuffer, shows));
+
+            showsExported++;
+            if (callback != null) {
+                callback.onProgress(showsExported);
+            }
+        }
+    }
+
+    /**
+     * Adds the show at the current position of the cursor, merging the episodes of the show into
+     * its seasons like {@link JsonShowExporter}. Child objects have to be added before their
+     * parent, so adds episodes, then seasons, then the show.
+     */
+    private int addShowWithSeasons(FlatBufferBuilder builder, Cursor shows) {
+        int showTvdbId = shows.getInt(ShowsQuery.ID);
+        Cursor seasons = JsonShowExporter.querySeasons(db, showTvdbId);
+        Cursor episodes = JsonShowExporter.queryEpisodes(db, showTvdbId, isFullDump);
+        int[] seasonOffsets = new int[seasons.getCount()];
+        try {
+            int[] episodeOffsets = new int[32];
+            boolean hasEpisode = episodes.moveToNext();
+            for (int i = 0; seasons.moveToNext(); i++) {
+                int seasonTvdbId = seasons.getInt(SeasonsQuery.ID);
+
+                // skip episodes of seasons that do not exist
+                while (hasEpisode && episodes.getInt(EpisodesQuery.SEASON_ID) < seasonTvdbId) {
+                    hasEpisode = episodes.moveToNext();
+                }
+
+                int episodeCount = 0;
+                while (hasEpisode && episodes.getInt(EpisodesQuery.SEASON_ID) == seasonTvdbId) {
+                    if (episodeCount == episodeOffsets.length) {
+                        episodeOffsets = Arrays.copyOf(episodeOffsets, episodeCount * 2);
+                    }
+                    episodeOffsets[episodeCount++] = addEpisode(builder, episodes);
+                    hasEpisode = episodes.moveToNext();
+                }
+
+                int episodesVector = BackupSeason.createEpisodesVector(builder,
+                        Arrays.copyOf(episodeOffsets, episodeCount));
+                seasonOffsets[i] = BackupSeason.createBackupSeason(builder, seasonTvdbId,
+                        seasons.getInt(SeasonsQuery.NUMBER), episodesVector);
+            }
+        } finally {
+            seasons.close();
+            episodes.close();
+        }
+        int seasonsVector = BackupShow.createSeasonsVector(builder, seasonOffsets);
+        return addShow(builder, shows, seasonsVector);
+    }
+
+    private int addShow(FlatBufferBuilder builder, Cursor shows, int seasonsVector) {
+        return BackupShow.createBackupShow(builder,
+                shows.getInt(ShowsQuery.ID),
+                createString(builder, shows.getString(ShowsQuery.SLUG)),
+                createString(builder, shows.getString(ShowsQuery.IMDBID)),
+                shows.getInt(ShowsQuery.TRAKT_ID),
+                createString(builder, shows.getString(ShowsQuery.TITLE)),
+                isFullDump ? createString(builder, shows.getString(ShowsQuery.OVERVIEW)) : 0,
+                createString(builder, shows.getString(ShowsQuery.LANGUAGE)),
+                createString(builder, shows.getString(ShowsQuery.FIRSTAIRED)),
+                shows.getInt(ShowsQuery.RELEASE_TIME),
+                shows.getInt(ShowsQuery.RELEASE_WEEKDAY),
+                createString(builder, shows.getString(ShowsQuery.RELEASE_TIMEZONE)),
+                createString(builder, shows.getString(ShowsQuery.RELEASE_COUNTRY)),
+                createString(builder, shows.getString(ShowsQuery.POSTER)),
+                createString(builder, shows.getString(ShowsQuery.CONTENTRATING)),
+                createString(builder,
+                        DataLiberationTools.decodeShowStatus(shows.getInt(ShowsQuery.STATUS))),
+                shows.getInt(ShowsQuery.RUNTIME),
+                isFullDump ? createString(builder, shows.getString(ShowsQuery.GENRES)) : 0,
+                createString(builder, shows.getString(ShowsQuery.NETWORK)),
+                isFullDump ? shows.getDouble(ShowsQuery.RATING_GLOBAL) : 0.0,
+                isFullDump ? shows.getInt(ShowsQuery.RATING_VOTES) : 0,
+                shows.getInt(ShowsQuery.RATING_USER),
+                isFullDump ? shows.getLong(ShowsQuery.LAST_EDITED) : 0,
+                shows.getInt(ShowsQuery.FAVORITE) == 1,
+                shows.getInt(ShowsQuery.NOTIFY) == 1,
+                shows.getInt(ShowsQuery.HIDDEN) == 1,
+                isFullDump ? shows.getLong(ShowsQuery.LAST_UPDATED) : 0,
+                shows.getInt(ShowsQuery.LASTWATCHEDID),
+                shows.getLong(ShowsQuery.LASTWATCHED_MS),
+                seasonsVector);
+    }
+
+    private int addEpisode(FlatBufferBuilder builder, Cursor episodes) {
+        int episodeFlag = episodes.getInt(EpisodesQuery.WATCHED);
+        return BackupEpisode.createBackupEpisode(builder,
+                episodes.getInt(EpisodesQuery.ID),
+                episodes.getInt(EpisodesQuery.NUMBER),
+                episodes.getInt(EpisodesQuery.NUMBER_ABSOLUTE),
+                createString(builder, episodes.getString(EpisodesQuery.TITLE)),
+                episodes.getLong(EpisodesQuery.FIRSTAIRED),
+                EpisodeTools.isWatched(episodeFlag),
+                EpisodeTools.isSkipped(episodeFlag),
+                episodes.getInt(EpisodesQuery.COLLECTED) == 1,
+                createString(builder, episodes.getString(EpisodesQuery.IMDBID)),
+                episodes.getDouble(EpisodesQuery.NUMBER_DVD),
+                isFullDump ? createString(builder, episodes.getString(EpisodesQuery.OVERVIEW)) : 0,
+                isFullDump ? createString(builder, episodes.getString(EpisodesQuery.IMAGE)) : 0,
+                isFullDump ? createString(builder, episodes.getString(EpisodesQuery.WRITERS)) : 0,
+                isFullDump ? createString(builder, episodes.getString(EpisodesQuery.GUESTSTARS))
+                        : 0,
+                isFullDump ? createString(builder, episodes.getString(EpisodesQuery.DIRECTORS))
+                        : 0,
+                isFullDump ? episodes.getDouble(EpisodesQuery.RATING_GLOBAL) : 0.0,
+                isFullDump ? episodes.getInt(EpisodesQuery.RATING_VOTES) : 0,
+                episodes.getInt(EpisodesQuery.RATING_USER),
+                isFullDump ? episodes.getLong(EpisodesQuery.LAST_EDITED) : 0);
+    }
+}
@@ -354,7 +354,7 @@ public class DataLiberationFragment extends Fragment implements
         } else if (requestCode == REQUEST_CODE_IMPORT) {
             setProgressLock(true);
 
-            dataLibTask = new JsonImportTask(getContext(),
+            dataLibTask = new JsonImportTask(getContext(), DataLiberationFragment.this,
                     checkBoxShows.isChecked(), checkBoxLists.isChecked(),
                     checkBoxMovies.isChecked());
             Utils.executeInOrder(dataLibTask);
@@ -13,7 +13,11 @@ import android.support.v4.content.ContextCompat;
 import com.battlelancer.seriesguide.settings.AdvancedSettings;
 import com.battlelancer.seriesguide.ui.shows.ShowTools;
 import com.battlelancer.seriesguide.util.Utils;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 public class DataLiberationTools {
 
@@ -22,12 +26,19 @@ public class DataLiberationTools {
      */
     public static boolean isAutoBackupDefaultFilesAvailable() {
         File pathAutoBackup = JsonExportTask.getExportPath(true);
-        File backupShows = new File(pathAutoBackup, JsonExportTask.EXPORT_JSON_FILE_SHOWS);
-        File backupLists = new File(pathAutoBackup, JsonExportTask.EXPORT_JSON_FILE_LISTS);
-        File backupMovies = new File(pathAutoBackup, JsonExportTask.EXPORT_JSON_FILE_MOVIES);
-        return (backupShows.exists() && backupShows.canRead())
-                || (backupLists.exists() && backupLists.canRead()
-                || (backupMovies.exists() && backupMovies.canRead()));
+        int[] types = {JsonExportTask.BACKUP_SHOWS, JsonExportTask.BACKUP_LISTS,
+                JsonExportTask.BACKUP_MOVIES};
+        for (int type : types) {
+            File jsonFile = new File(pathAutoBackup,
+                    JsonExportTask.getDefaultFileName(type, false));
+            File binaryFile = new File(pathAutoBackup,
+                    JsonExportTask.getDefaultFileName(type, true));
+            if ((jsonFile.exists() && jsonFile.canRead())
+                    || (binaryFile.exists() && binaryFile.canRead())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static boolean isAutoBackupPermissionMissing(Context context) {
@@ -47,6 +58,22 @@ public class DataLiberationTools {
                 .apply();
     }
 
+    /**
+     * Returns a stream decompressing the given stream if it starts with the gzip header, like
+     * compressed auto backup files written by {@link JsonExportTask}. Otherwise returns a stream
+     * with the original data.
+     */
+    public static InputStream decompressIfGzipped(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
     /**
      * Transform a string representation of {@link com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowStatusExport}
      * to a {@link ShowTools.Status} to be stored in the
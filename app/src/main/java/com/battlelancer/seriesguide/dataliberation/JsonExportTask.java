@@ -3,9 +3,11 @@ package com.battlelancer.seriesguide.dataliberation;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Movies;
 
 import android.annotation.SuppressLint;
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Environment;
@@ -14,21 +16,16 @@ import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.annotation.Nullable;
 import com.battlelancer.seriesguide.R;
-import com.battlelancer.seriesguide.dataliberation.model.Episode;
 import com.battlelancer.seriesguide.dataliberation.model.List;
 import com.battlelancer.seriesguide.dataliberation.model.ListItem;
 import com.battlelancer.seriesguide.dataliberation.model.Movie;
-import com.battlelancer.seriesguide.dataliberation.model.Season;
-import com.battlelancer.seriesguide.dataliberation.model.Show;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
 import com.battlelancer.seriesguide.settings.AdvancedSettings;
 import com.battlelancer.seriesguide.settings.BackupSettings;
-import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
 import com.battlelancer.seriesguide.ui.shows.ShowTools;
 import com.battlelancer.seriesguide.util.TaskManager;
 import com.google.gson.Gson;
@@ -44,6 +41,7 @@ import java.io.OutputStreamWriter;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
 import org.greenrobot.eventbus.EventBus;
 import timber.log.Timber;
 
@@ -62,6 +60,9 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
     public static final String EXPORT_JSON_FILE_SHOWS = "sg-shows-export.json";
     public static final String EXPORT_JSON_FILE_LISTS = "sg-lists-export.json";
     public static final String EXPORT_JSON_FILE_MOVIES = "sg-movies-export.json";
+    public static final String EXPORT_BINARY_FILE_SHOWS = "sg-shows-export.sgbackup";
+    public static final String EXPORT_BINARY_FILE_LISTS = "sg-lists-export.sgbackup";
+    public static final String EXPORT_BINARY_FILE_MOVIES = "sg-movies-export.sgbackup";
 
     public static final int BACKUP_SHOWS = 1;
     public static final int BACKUP_LISTS = 2;
@@ -101,6 +102,10 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
     private boolean isAutoBackupMode;
     @Nullable private final Integer type;
     private boolean isUseDefaultFolders;
+    private boolean isCompressed;
+    private boolean isBinary;
+    private boolean isIncremental;
+    private boolean isFullBackupRequired;
     @Nullable private String errorCause;
 
     public static File getExportPath(boolean isAutoBackupMode) {
@@ -109,6 +114,20 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 isAutoBackupMode ? EXPORT_FOLDER_AUTO : EXPORT_FOLDER);
     }
 
+    /**
+     * Returns the name of the file in the default folder for the given backup type. Binary auto
+     * backups use their own files, so the format of a file is known without reading it.
+     */
+    public static String getDefaultFileName(@BackupType int type, boolean isBinary) {
+        if (type == BACKUP_SHOWS) {
+            return isBinary ? EXPORT_BINARY_FILE_SHOWS : EXPORT_JSON_FILE_SHOWS;
+        } else if (type == BACKUP_LISTS) {
+            return isBinary ? EXPORT_BINARY_FILE_LISTS : EXPORT_JSON_FILE_LISTS;
+        } else {
+            return isBinary ? EXPORT_BINARY_FILE_MOVIES : EXPORT_JSON_FILE_MOVIES;
+        }
+    }
+
     /**
      * Same as {@link JsonExportTask} but allows to set parameters.
      *
@@ -128,6 +147,13 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         // also auto backup by default uses default folders
         isUseDefaultFolders = !AndroidUtils.isKitKatOrHigher()
                 || (isAutoBackupMode && BackupSettings.isUseAutoBackupDefaultFiles(context));
+        isBinary = isAutoBackupMode && BackupSettings.isBinaryAutoBackup(context);
+        // binary backups are memory-mapped when importing, so never compress them
+        isCompressed = isAutoBackupMode && !isBinary
+                && BackupSettings.isCompressAutoBackup(context);
+        // only append changes to default files, custom files might be replaced by the user
+        isIncremental = isAutoBackupMode && isUseDefaultFolders
+                && BackupSettings.isIncrementalAutoBackup(context);
     }
 
     @Override
@@ -151,6 +177,20 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
             return ERROR;
         }
 
+        try {
+            if (isIncremental) {
+                // if changes were not tracked, yet, everything has to be backed up
+                isFullBackupRequired = !BackupChangeTracker.enable(getDatabase());
+            } else if (isAutoBackupMode) {
+                // incremental auto backup might have been turned off, stop tracking changes
+                BackupChangeTracker.disable(getDatabase());
+            }
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to set up change tracking.");
+            errorCause = e.getMessage();
+            return ERROR;
+        }
+
         int result;
         if (type == null || type == BACKUP_SHOWS) {
             result = exportData(exportPath, BACKUP_SHOWS);
@@ -228,6 +268,10 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
     }
 
     private int exportData(File exportPath, @BackupType int type) {
+        // changes up to here will be part of a full backup
+        long maxChangeId = isIncremental
+                ? BackupChangeTracker.getMaxChangeId(getDatabase(), type) : 0;
+
         // check if there is any data to export
         Cursor data = getDataCursor(type);
         if (data == null) {
@@ -256,37 +300,30 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 if (pfd == null) {
                     return ERROR_FILE_ACCESS;
                 }
-                FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
-
-                if (type == BACKUP_SHOWS) {
-                    writeJsonStreamShows(out, data);
-                } else if (type == BACKUP_LISTS) {
-                    writeJsonStreamLists(out, data);
-                } else if (type == BACKUP_MOVIES) {
-                    writeJsonStreamMovies(out, data);
-                }
+                writeBackup(new FileOutputStream(pfd.getFileDescriptor()), data, type);
 
                 // let the document provider know we're done.
                 pfd.close();
             } else {
-                File backupFile;
-                if (type == BACKUP_SHOWS) {
-                    backupFile = new File(exportPath, EXPORT_JSON_FILE_SHOWS);
-                } else if (type == BACKUP_LISTS) {
-                    backupFile = new File(exportPath, EXPORT_JSON_FILE_LISTS);
-                } else if (type == BACKUP_MOVIES) {
-                    backupFile = new File(exportPath, EXPORT_JSON_FILE_MOVIES);
-                } else {
-                    return ERROR;
+                File backupFile = new File(exportPath, getDefaultFileName(type, isBinary));
+
+                File deltaFile = BackupDeltaLog.getFile(backupFile);
+                if (isIncremental && !isFullBackupRequired
+                        && !BackupDeltaLog.isFullBackupDue(backupFile, deltaFile)) {
+                    appendChanges(deltaFile, type);
+                    return SUCCESS;
                 }
 
-                OutputStream out = new FileOutputStream(backupFile);
-                if (type == BACKUP_SHOWS) {
-                    writeJsonStreamShows(out, data);
-                } else if (type == BACKUP_LISTS) {
-                    writeJsonStreamLists(out, data);
-                } else {
-                    writeJsonStreamMovies(out, data);
+                writeBackup(new FileOutputStream(backupFile), data, type);
+
+                // the full backup contains all changes so far, unless it was cancelled
+                if (!isCancelled()) {
+                    if (deltaFile.exists() && !deltaFile.delete()) {
+                        throw new IOException("Could not delete " + deltaFile);
+                    }
+                    if (isIncremental) {
+                        BackupChangeTracker.remove(getDatabase(), type, maxChangeId);
+                    }
                 }
             }
         } catch (FileNotFoundException e) {
@@ -299,7 +336,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
             removeBackupFileUri(type);
             errorCause = e.getMessage();
             return ERROR_FILE_ACCESS;
-        } catch (JsonParseException e) {
+        } catch (JsonParseException | SQLiteException e) {
             Timber.e(e, "JSON export failed.");
             errorCause = e.getMessage();
             return ERROR;
@@ -310,6 +347,141 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         return SUCCESS;
     }
 
+    /**
+     * Writes a JSON backup of the given type to the stream, or if enabled for auto backups a
+     * binary backup. Closes the stream.
+     */
+    private void writeBackup(OutputStream out, Cursor data, @BackupType int type)
+            throws IOException {
+        if (isBinary) {
+            BinaryBackup.Builder backup = new BinaryBackup.Builder(type);
+            addToBinaryBackup(backup, data, type);
+            BinaryBackup.write(backup.finish(), out);
+        } else {
+            writeJsonStream(compressIfEnabled(out), data, type);
+        }
+    }
+
+    /**
+     * Adds the data directly from the cursor, without writing a JSON backup first.
+     */
+    private void addToBinaryBackup(BinaryBackup.Builder backup, Cursor data,
+            @BackupType int type) {
+        int numTotal = data.getCount();
+        if (type == BACKUP_SHOWS) {
+            SupportSQLiteDatabase db = SgRoomDatabase.getInstance(context).getOpenHelper()
+                    .getReadableDatabase();
+            new BinaryShowExporter(db, isFullDump, createShowExportCallback(numTotal))
+                    .exportShows(data, backup);
+            return;
+        }
+
+        int numExported = 0;
+        while (data.moveToNext()) {
+            if (isCancelled()) {
+                break;
+            }
+
+            if (type == BACKUP_LISTS) {
+                backup.addList(buildList(data));
+            } else {
+                backup.addMovie(buildMovie(data));
+            }
+
+            publishProgress(numTotal, ++numExported);
+        }
+    }
+
+    private void writeJsonStream(OutputStream out, Cursor data, @BackupType int type)
+            throws IOException {
+        if (type == BACKUP_SHOWS) {
+            writeJsonStreamShows(out, data);
+        } else if (type == BACKUP_LISTS) {
+            writeJsonStreamLists(out, data);
+        } else {
+            writeJsonStreamMovies(out, data);
+        }
+    }
+
+    /**
+     * If enabled for auto backups, gzip compresses the backup file. {@link JsonImportTask}
+     * detects compressed files.
+     */
+    private OutputStream compressIfEnabled(OutputStream out) throws IOException {
+        return isCompressed ? new GZIPOutputStream(out) : out;
+    }
+
+    /**
+     * Appends the current data of all shows, lists or movies that changed since the last backup
+     * to the given delta log.
+     */
+    private void appendChanges(File deltaFile, @BackupType int type) throws IOException {
+        SupportSQLiteDatabase db = getDatabase();
+        BackupChangeTracker.Changes changes = BackupChangeTracker.get(db, type);
+        if (changes.ids.isEmpty()) {
+            return;
+        }
+
+        BackupDeltaLog.DataWriter dataWriter;
+        if (type == BACKUP_SHOWS) {
+            final JsonShowExporter exporter = new JsonShowExporter(db, isFullDump, null);
+            dataWriter = new BackupDeltaLog.DataWriter() {
+                @Override
+                public boolean writeData(String id, JsonWriter writer) throws IOException {
+                    return exporter.exportShow(Integer.parseInt(id), writer);
+                }
+            };
+        } else if (type == BACKUP_LISTS) {
+            dataWriter = new BackupDeltaLog.DataWriter() {
+                @Override
+                public boolean writeData(String id, JsonWriter writer) {
+                    Cursor lists = context.getContentResolver()
+                            .query(SeriesGuideContract.Lists.CONTENT_URI, ListsQuery.PROJECTION,
+                                    ListsQuery.SELECTION, new String[]{id}, null);
+                    if (lists == null) {
+                        return false;
+                    }
+                    try {
+                        if (!lists.moveToFirst()) {
+                            return false;
+                        }
+                        new Gson().toJson(buildList(lists), List.class, writer);
+                        return true;
+                    } finally {
+                        lists.close();
+                    }
+                }
+            };
+        } else {
+            dataWriter = new BackupDeltaLog.DataWriter() {
+                @Override
+                public boolean writeData(String id, JsonWriter writer) {
+                    Cursor movies = context.getContentResolver()
+                            .query(Movies.CONTENT_URI, MoviesQuery.PROJECTION,
+                                    MoviesQuery.SELECTION, new String[]{id}, null);
+                    if (movies == null) {
+                        return false;
+                    }
+                    try {
+                        if (!movies.moveToFirst()) {
+                            return false;
+                        }
+                        new Gson().toJson(buildMovie(movies), Movie.class, writer);
+                        return true;
+                    } finally {
+                        movies.close();
+                    }
+                }
+            };
+        }
+        BackupDeltaLog.append(deltaFile, changes.ids, dataWriter);
+        BackupChangeTracker.remove(db, type, changes.maxChangeId);
+    }
+
+    private SupportSQLiteDatabase getDatabase() {
+        return SgRoomDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+    }
+
     @Nullable
     private Cursor getDataCursor(@BackupType int type) {
         if (type == BACKUP_SHOWS) {
@@ -368,128 +540,25 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
     }
 
     private void writeJsonStreamShows(OutputStream out, Cursor shows) throws IOException {
-        int numTotal = shows.getCount();
-        int numExported = 0;
-
-        Gson gson = new Gson();
-        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
-        writer.beginArray();
-
-        while (shows.moveToNext()) {
-            if (isCancelled()) {
-                break;
-            }
-
-            Show show = new Show();
-            show.tvdb_id = shows.getInt(ShowsQuery.ID);
-            show.tvdb_slug = shows.getString(ShowsQuery.SLUG);
-            show.title = shows.getString(ShowsQuery.TITLE);
-            show.favorite = shows.getInt(ShowsQuery.FAVORITE) == 1;
-            show.notify = shows.getInt(ShowsQuery.NOTIFY) == 1;
-            show.hidden = shows.getInt(ShowsQuery.HIDDEN) == 1;
-            show.language = shows.getString(ShowsQuery.LANGUAGE);
-            show.release_time = shows.getInt(ShowsQuery.RELEASE_TIME);
-            show.release_weekday = shows.getInt(ShowsQuery.RELEASE_WEEKDAY);
-            show.release_timezone = shows.getString(ShowsQuery.RELEASE_TIMEZONE);
-            show.country = shows.getString(ShowsQuery.RELEASE_COUNTRY);
-            show.last_watched_episode = shows.getInt(ShowsQuery.LASTWATCHEDID);
-            show.last_watched_ms = shows.getLong(ShowsQuery.LASTWATCHED_MS);
-            show.poster = shows.getString(ShowsQuery.POSTER);
-            show.content_rating = shows.getString(ShowsQuery.CONTENTRATING);
-            show.status = DataLiberationTools.decodeShowStatus(shows.getInt(ShowsQuery.STATUS));
-            show.runtime = shows.getInt(ShowsQuery.RUNTIME);
-            show.network = shows.getString(ShowsQuery.NETWORK);
-            show.imdb_id = shows.getString(ShowsQuery.IMDBID);
-            show.trakt_id = shows.getInt(ShowsQuery.TRAKT_ID);
-            show.first_aired = shows.getString(ShowsQuery.FIRSTAIRED);
-            show.rating_user = shows.getInt(ShowsQuery.RATING_USER);
-            if (isFullDump) {
-                show.overview = shows.getString(ShowsQuery.OVERVIEW);
-                show.rating = shows.getDouble(ShowsQuery.RATING_GLOBAL);
-                show.rating_votes = shows.getInt(ShowsQuery.RATING_VOTES);
-                show.genres = shows.getString(ShowsQuery.GENRES);
-                show.last_updated = shows.getLong(ShowsQuery.LAST_UPDATED);
-                show.last_edited = shows.getLong(ShowsQuery.LAST_EDITED);
-            }
-
-            addSeasons(show);
-
-            gson.toJson(show, Show.class, writer);
-
-            publishProgress(numTotal, ++numExported);
-        }
-
-        writer.endArray();
-        writer.close();
-    }
-
-    private void addSeasons(Show show) {
-        show.seasons = new ArrayList<>();
-        final Cursor seasonsCursor = context.getContentResolver().query(
-                Seasons.buildSeasonsOfShowUri(String.valueOf(show.tvdb_id)),
-                new String[]{
-                        Seasons._ID,
-                        Seasons.COMBINED
-                }, null, null, null
-        );
-
-        if (seasonsCursor == null) {
-            return;
-        }
-
-        while (seasonsCursor.moveToNext()) {
-            Season season = new Season();
-            season.tvdbId = seasonsCursor.getInt(0);
-            season.season = seasonsCursor.getInt(1);
-
-            addEpisodes(season);
-
-            show.seasons.add(season);
-        }
-
-        seasonsCursor.close();
+        SupportSQLiteDatabase db = SgRoomDatabase.getInstance(context).getOpenHelper()
+                .getReadableDatabase();
+        JsonShowExporter exporter = new JsonShowExporter(db, isFullDump,
+                createShowExportCallback(shows.getCount()));
+        exporter.exportShows(shows, out);
     }
 
-    private void addEpisodes(Season season) {
-        season.episodes = new ArrayList<>();
-        final Cursor episodesCursor = context.getContentResolver().query(
-                Episodes.buildEpisodesOfSeasonUri(String.valueOf(season.tvdbId)),
-                isFullDump ? EpisodesQuery.PROJECTION_FULL : EpisodesQuery.PROJECTION, null, null,
-                EpisodesQuery.SORT);
-
-        if (episodesCursor == null) {
-            return;
-        }
-
-        while (episodesCursor.moveToNext()) {
-            Episode episode = new Episode();
-            episode.tvdbId = episodesCursor.getInt(EpisodesQuery.ID);
-            episode.episode = episodesCursor.getInt(EpisodesQuery.NUMBER);
-            episode.episodeAbsolute = episodesCursor.getInt(EpisodesQuery.NUMBER_ABSOLUTE);
-            episode.episodeDvd = episodesCursor.getDouble(EpisodesQuery.NUMBER_DVD);
-            int episodeFlag = episodesCursor.getInt(EpisodesQuery.WATCHED);
-            episode.watched = EpisodeTools.isWatched(episodeFlag);
-            episode.skipped = EpisodeTools.isSkipped(episodeFlag);
-            episode.collected = episodesCursor.getInt(EpisodesQuery.COLLECTED) == 1;
-            episode.title = episodesCursor.getString(EpisodesQuery.TITLE);
-            episode.firstAired = episodesCursor.getLong(EpisodesQuery.FIRSTAIRED);
-            episode.imdbId = episodesCursor.getString(EpisodesQuery.IMDBID);
-            episode.rating_user = episodesCursor.getInt(EpisodesQuery.RATING_USER);
-            if (isFullDump) {
-                episode.overview = episodesCursor.getString(EpisodesQuery.OVERVIEW);
-                episode.image = episodesCursor.getString(EpisodesQuery.IMAGE);
-                episode.writers = episodesCursor.getString(EpisodesQuery.WRITERS);
-                episode.gueststars = episodesCursor.getString(EpisodesQuery.GUESTSTARS);
-                episode.directors = episodesCursor.getString(EpisodesQuery.DIRECTORS);
-                episode.rating = episodesCursor.getDouble(EpisodesQuery.RATING_GLOBAL);
-                episode.rating_votes = episodesCursor.getInt(EpisodesQuery.RATING_VOTES);
-                episode.lastEdited = episodesCursor.getLong(EpisodesQuery.LAST_EDITED);
+    private JsonShowExporter.Callback createShowExportCallback(final int numTotal) {
+        return new JsonShowExporter.Callback() {
+            @Override
+            public boolean isCancelled() {
+                return JsonExportTask.this.isCancelled();
             }
 
-            season.episodes.add(episode);
-        }
-
-        episodesCursor.close();
+            @Override
+            public void onProgress(int showsExported) {
+                publishProgress(numTotal, showsExported);
+            }
+        };
     }
 
     private void writeJsonStreamLists(OutputStream out, Cursor lists) throws IOException {
@@ -505,14 +574,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 break;
             }
 
-            List list = new List();
-            list.listId = lists.getString(ListsQuery.ID);
-            list.name = lists.getString(ListsQuery.NAME);
-            list.order = lists.getInt(ListsQuery.ORDER);
-
-            addListItems(list);
-
-            gson.toJson(list, List.class, writer);
+            gson.toJson(buildList(lists), List.class, writer);
 
             publishProgress(numTotal, ++numExported);
         }
@@ -521,6 +583,16 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         writer.close();
     }
 
+    private List buildList(Cursor lists) {
+        List list = new List();
+        list.listId = lists.getString(ListsQuery.ID);
+        list.name = lists.getString(ListsQuery.NAME);
+        list.order = lists.getInt(ListsQuery.ORDER);
+
+        addListItems(list);
+        return list;
+    }
+
     private void addListItems(List list) {
         final Cursor listItems = context.getContentResolver().query(
                 ListItems.CONTENT_URI, ListItemsQuery.PROJECTION,
@@ -569,23 +641,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 break;
             }
 
-            Movie movie = new Movie();
-            movie.tmdbId = movies.getInt(MoviesQuery.TMDB_ID);
-            movie.imdbId = movies.getString(MoviesQuery.IMDB_ID);
-            movie.title = movies.getString(MoviesQuery.TITLE);
-            movie.releasedUtcMs = movies.getLong(MoviesQuery.RELEASED_UTC_MS);
-            movie.runtimeMin = movies.getInt(MoviesQuery.RUNTIME_MIN);
-            movie.poster = movies.getString(MoviesQuery.POSTER);
-            movie.inCollection = movies.getInt(MoviesQuery.IN_COLLECTION) == 1;
-            movie.inWatchlist = movies.getInt(MoviesQuery.IN_WATCHLIST) == 1;
-            movie.watched = movies.getInt(MoviesQuery.WATCHED) == 1;
-            movie.lastUpdatedMs = movies.getLong(MoviesQuery.LAST_UPDATED);
-
-            if (isFullDump) {
-                movie.overview = movies.getString(MoviesQuery.OVERVIEW);
-            }
-
-            gson.toJson(movie, Movie.class, writer);
+            gson.toJson(buildMovie(movies), Movie.class, writer);
 
             publishProgress(numTotal, ++numExported);
         }
@@ -594,6 +650,25 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         writer.close();
     }
 
+    private Movie buildMovie(Cursor movies) {
+        Movie movie = new Movie();
+        movie.tmdbId = movies.getInt(MoviesQuery.TMDB_ID);
+        movie.imdbId = movies.getString(MoviesQuery.IMDB_ID);
+        movie.title = movies.getString(MoviesQuery.TITLE);
+        movie.releasedUtcMs = movies.getLong(MoviesQuery.RELEASED_UTC_MS);
+        movie.runtimeMin = movies.getInt(MoviesQuery.RUNTIME_MIN);
+        movie.poster = movies.getString(MoviesQuery.POSTER);
+        movie.inCollection = movies.getInt(MoviesQuery.IN_COLLECTION) == 1;
+        movie.inWatchlist = movies.getInt(MoviesQuery.IN_WATCHLIST) == 1;
+        movie.watched = movies.getInt(MoviesQuery.WATCHED) == 1;
+        movie.lastUpdatedMs = movies.getLong(MoviesQuery.LAST_UPDATED);
+
+        if (isFullDump) {
+            movie.overview = movies.getString(MoviesQuery.OVERVIEW);
+        }
+        return movie;
+    }
+
     public interface ShowsQuery {
         String[] PROJECTION_FULL = new String[]{
                 Shows._ID,
@@ -656,64 +731,6 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         int SLUG = 27;
     }
 
-    public interface EpisodesQuery {
-        String[] PROJECTION = new String[]{
-                Episodes._ID,
-                Episodes.NUMBER,
-                Episodes.ABSOLUTE_NUMBER,
-                Episodes.WATCHED,
-                Episodes.COLLECTED,
-                Episodes.TITLE,
-                Episodes.FIRSTAIREDMS,
-                Episodes.IMDBID,
-                Episodes.DVDNUMBER,
-                Episodes.RATING_USER
-        };
-        String[] PROJECTION_FULL = new String[]{
-                Episodes._ID,
-                Episodes.NUMBER,
-                Episodes.ABSOLUTE_NUMBER,
-                Episodes.WATCHED,
-                Episodes.COLLECTED,
-                Episodes.TITLE,
-                Episodes.FIRSTAIREDMS,
-                Episodes.IMDBID,
-                Episodes.DVDNUMBER,
-                Episodes.RATING_USER,
-                // Full dump only
-                Episodes.OVERVIEW,
-                Episodes.IMAGE,
-                Episodes.WRITERS,
-                Episodes.GUESTSTARS,
-                Episodes.DIRECTORS,
-                Episodes.RATING_GLOBAL,
-                Episodes.RATING_VOTES,
-                Episodes.LAST_EDITED
-        };
-
-        String SORT = Episodes.NUMBER + " ASC";
-
-        int ID = 0;
-        int NUMBER = 1;
-        int NUMBER_ABSOLUTE = 2;
-        int WATCHED = 3;
-        int COLLECTED = 4;
-        int TITLE = 5;
-        int FIRSTAIRED = 6;
-        int IMDBID = 7;
-        int NUMBER_DVD = 8;
-        int RATING_USER = 9;
-        // Full dump only
-        int OVERVIEW = 10;
-        int IMAGE = 11;
-        int WRITERS = 12;
-        int GUESTSTARS = 13;
-        int DIRECTORS = 14;
-        int RATING_GLOBAL = 15;
-        int RATING_VOTES = 16;
-        int LAST_EDITED = 17;
-    }
-
     public interface ListsQuery {
         String[] PROJECTION = new String[]{
                 SeriesGuideContract.Lists.LIST_ID,
@@ -721,6 +738,8 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 SeriesGuideContract.Lists.ORDER
         };
 
+        String SELECTION = SeriesGuideContract.Lists.LIST_ID + "=?";
+
         int ID = 0;
         int NAME = 1;
         int ORDER = 2;
@@ -758,6 +777,8 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
 
         String SORT_ORDER = Movies.TITLE + " COLLATE NOCASE ASC";
 
+        String SELECTION = Movies.TMDB_ID + "=?";
+
         int TMDB_ID = 1;
         int IMDB_ID = 2;
         int TITLE = 3;
@@ -3,10 +3,13 @@ package com.battlelancer.seriesguide.dataliberation;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Movies;
 
 import android.annotation.SuppressLint;
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.ParcelFileDescriptor;
@@ -14,12 +17,14 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ListItemTypesExport;
-import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupList;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupMovie;
+import com.battlelancer.seriesguide.dataliberation.backup.SgBackup;
 import com.battlelancer.seriesguide.dataliberation.model.List;
 import com.battlelancer.seriesguide.dataliberation.model.ListItem;
 import com.battlelancer.seriesguide.dataliberation.model.Movie;
-import com.battlelancer.seriesguide.dataliberation.model.Season;
-import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.EpisodeFlagsCache;
+import com.battlelancer.seriesguide.provider.SeasonCounters;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes;
@@ -27,6 +32,7 @@ import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
 import com.battlelancer.seriesguide.settings.BackupSettings;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
 import com.battlelancer.seriesguide.util.DBUtils;
@@ -34,6 +40,7 @@ import com.battlelancer.seriesguide.util.TaskManager;
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import java.io.File;
 import java.io.FileInputStream;
@@ -47,6 +54,12 @@ import timber.log.Timber;
 /**
  * Import a show database from a human-readable JSON file on external storage. By default meta-data
  * like descriptions, ratings, actors, etc. will not be included.
+ *
+ * <p>If a backup file is a {@link BinaryBackup} instead, it is memory-mapped and imported
+ * without parsing.
+ *
+ * <p>When restoring an auto backup from default files, also replays the {@link BackupDeltaLog}
+ * of an incremental auto backup.
  */
 public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
 
@@ -57,6 +70,7 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
     private static final int ERROR_FILE_ACCESS = -3;
 
     @SuppressLint("StaticFieldLeak") private Context context;
+    @Nullable private JsonExportTask.OnTaskProgressListener progressListener;
     private String[] languageCodes;
     private boolean isImportingAutoBackup;
     private boolean isUseDefaultFolders;
@@ -65,9 +79,11 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
     private boolean isImportMovies;
     @Nullable private String errorCause;
 
-    public JsonImportTask(Context context, boolean importShows, boolean importLists,
-            boolean importMovies) {
+    public JsonImportTask(Context context,
+            @Nullable JsonExportTask.OnTaskProgressListener progressListener, boolean importShows,
+            boolean importLists, boolean importMovies) {
         this.context = context.getApplicationContext();
+        this.progressListener = progressListener;
         languageCodes = this.context.getResources().getStringArray(R.array.languageCodesShows);
         isImportingAutoBackup = false;
         isImportShows = importShows;
@@ -79,8 +95,9 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
         isUseDefaultFolders = !AndroidUtils.isKitKatOrHigher();
     }
 
-    public JsonImportTask(Context context) {
-        this(context, true, true, true);
+    public JsonImportTask(Context context,
+            @Nullable JsonExportTask.OnTaskProgressListener progressListener) {
+        this(context, progressListener, true, true, true);
         isImportingAutoBackup = true;
         // use Storage Access Framework on KitKat and up to select custom backup files,
         // on older versions use default folders
@@ -97,6 +114,16 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             return ERROR_LARGE_DB_OP;
         }
 
+        // imported data might differ from the last auto backup, so make the next incremental
+        // auto backup a full backup by no longer tracking changes
+        try {
+            BackupChangeTracker.disable(getDatabase());
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to disable change tracking.");
+            errorCause = e.getMessage();
+            return ERROR;
+        }
+
         File importPath = null;
         if (isUseDefaultFolders) {
             // Ensure external storage
@@ -142,12 +169,19 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             }
         }
 
-        // Renew search table
-        DBUtils.rebuildFtsTable(context);
+        // Search table is updated by triggers, but rebuild it if the import left it broken
+        DBUtils.checkFtsTable(context);
 
         return SUCCESS;
     }
 
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (progressListener != null) {
+            progressListener.onProgressUpdate(values);
+        }
+    }
+
     @Override
     protected void onPostExecute(Integer result) {
         int messageId;
@@ -210,11 +244,13 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             // Access JSON from backup file and try to import data
             FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
             try {
-                importFromJson(type, in);
+                // custom auto backup files are written in the format currently set
+                importFromJson(type, in,
+                        isImportingAutoBackup && BackupSettings.isBinaryAutoBackup(context));
 
                 // let the document provider know we're done.
                 pfd.close();
-            } catch (JsonParseException | IOException | IllegalStateException e) {
+            } catch (JsonParseException | IOException | IllegalStateException | SQLiteException e) {
                 // the given Json might not be valid or unreadable
                 Timber.e(e, "JSON import failed");
                 errorCause = e.getMessage();
@@ -222,15 +258,8 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             }
         } else {
             // make sure we can access the backup file
-            File backupFile = null;
-            if (type == JsonExportTask.BACKUP_SHOWS) {
-                backupFile = new File(importPath, JsonExportTask.EXPORT_JSON_FILE_SHOWS);
-            } else if (type == JsonExportTask.BACKUP_LISTS) {
-                backupFile = new File(importPath, JsonExportTask.EXPORT_JSON_FILE_LISTS);
-            } else if (type == JsonExportTask.BACKUP_MOVIES) {
-                backupFile = new File(importPath, JsonExportTask.EXPORT_JSON_FILE_MOVIES);
-            }
-            if (backupFile == null || !backupFile.canRead()) {
+            File backupFile = getDefaultBackupFile(importPath, type);
+            if (!backupFile.canRead()) {
                 return ERROR_FILE_ACCESS;
             }
             if (!backupFile.exists()) {
@@ -253,8 +282,14 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
 
             // Access JSON from backup file and try to import data
             try {
-                importFromJson(type, in);
-            } catch (JsonParseException | IOException | IllegalStateException e) {
+                importFromJson(type, in, isBinaryFile(backupFile, type));
+
+                // apply changes an incremental auto backup appended since the full backup
+                File deltaFile = BackupDeltaLog.getFile(backupFile);
+                if (isImportingAutoBackup && deltaFile.exists()) {
+                    replayChanges(type, deltaFile);
+                }
+            } catch (JsonParseException | IOException | IllegalStateException | SQLiteException e) {
                 // the given Json might not be valid or unreadable
                 Timber.e(e, "JSON show import failed");
                 errorCause = e.getMessage();
@@ -265,6 +300,30 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
         return SUCCESS;
     }
 
+    /**
+     * Auto backups are written to binary or to JSON files depending on {@link
+     * BackupSettings#isBinaryAutoBackup} at the time, so restores the one written to last,
+     * including changes appended to its delta log.
+     */
+    private File getDefaultBackupFile(File importPath, @JsonExportTask.BackupType int type) {
+        File jsonFile = new File(importPath, JsonExportTask.getDefaultFileName(type, false));
+        if (!isImportingAutoBackup) {
+            return jsonFile;
+        }
+        File binaryFile = new File(importPath, JsonExportTask.getDefaultFileName(type, true));
+        return getLastModified(binaryFile) > getLastModified(jsonFile) ? binaryFile : jsonFile;
+    }
+
+    private static long getLastModified(File backupFile) {
+        // 0 if a file does not exist
+        return Math.max(backupFile.lastModified(),
+                BackupDeltaLog.getFile(backupFile).lastModified());
+    }
+
+    private static boolean isBinaryFile(File backupFile, @JsonExportTask.BackupType int type) {
+        return backupFile.getName().equals(JsonExportTask.getDefaultFileName(type, true));
+    }
+
     @Nullable
     private Uri getDataBackupFile(@JsonExportTask.BackupType int type) {
         // use import URIs
@@ -312,22 +371,36 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             Timber.e(e, "clearExistingData");
             return false;
         }
+        if (type == JsonExportTask.BACKUP_SHOWS) {
+            // restored episodes might differ from TVDB, so process all pages on next update
+            SgRoomDatabase.getInstance(context).episodePageHelper().deleteAllPages();
+        }
 
         return true;
     }
 
-    private void importFromJson(@JsonExportTask.BackupType int type, FileInputStream in)
-            throws JsonParseException, IOException, IllegalArgumentException {
+    private void importFromJson(@JsonExportTask.BackupType int type, FileInputStream in,
+            boolean isBinary) throws JsonParseException, IOException, IllegalArgumentException {
+        if (isBinary) {
+            SgBackup binaryBackup = BinaryBackup.map(in.getChannel());
+            if (binaryBackup == null) {
+                throw new IOException("Not a binary backup file.");
+            }
+            importFromBinary(type, binaryBackup);
+            return;
+        }
+
+        if (type == JsonExportTask.BACKUP_SHOWS) {
+            importShows(in);
+            return;
+        }
+
         Gson gson = new Gson();
-        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                DataLiberationTools.decompressIfGzipped(in), "UTF-8"));
         reader.beginArray();
 
-        if (type == JsonExportTask.BACKUP_SHOWS) {
-            while (reader.hasNext()) {
-                Show show = gson.fromJson(reader, Show.class);
-                addShowToDatabase(show);
-            }
-        } else if (type == JsonExportTask.BACKUP_LISTS) {
+        if (type == JsonExportTask.BACKUP_LISTS) {
             while (reader.hasNext()) {
                 List list = gson.fromJson(reader, List.class);
                 addListToDatabase(list);
@@ -343,86 +416,121 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
         reader.close();
     }
 
-    private void addShowToDatabase(Show show) {
-        if (show.tvdb_id <= 0) {
-            // valid id required
-            return;
-        }
-
-        // reset language if it is not supported
-        boolean languageSupported = false;
-        for (int i = 0, size = languageCodes.length; i < size; i++) {
-            if (languageCodes[i].equals(show.language)) {
-                languageSupported = true;
-                break;
+    /**
+     * Replaces shows, lists or movies with the versions of the given delta log, in order.
+     */
+    private void replayChanges(@JsonExportTask.BackupType int type, File deltaFile)
+            throws IOException {
+        final ContentResolver resolver = context.getContentResolver();
+        final Gson gson = new Gson();
+        if (type == JsonExportTask.BACKUP_SHOWS) {
+            final JsonShowImporter importer = new JsonShowImporter(context, getDatabase(),
+                    languageCodes, null);
+            try {
+                BackupDeltaLog.replay(deltaFile, new BackupDeltaLog.DataReader() {
+                    @Override
+                    public void readData(String id, JsonReader reader) throws IOException {
+                        importer.replaceShow(Integer.parseInt(id), reader);
+                    }
+                });
+            } finally {
+                notifyShowsChanged();
             }
-        }
-        if (!languageSupported) {
-            show.language = null;
-        }
-        // ensure a show will be updated (last_updated might be far into the future)
-        if (show.last_updated > System.currentTimeMillis()) {
-            show.last_updated = 0;
-        }
-
-        ContentValues showValues = show.toContentValues(context, true);
-        context.getContentResolver().insert(Shows.CONTENT_URI, showValues);
-
-        if (show.seasons == null || show.seasons.isEmpty()) {
-            // no seasons (or episodes)
-            return;
-        }
-
-        ContentValues[][] seasonsAndEpisodes = buildSeasonAndEpisodeBatches(show);
-        if (seasonsAndEpisodes[0] != null && seasonsAndEpisodes[1] != null) {
-            // Insert all seasons
-            context.getContentResolver().bulkInsert(Seasons.CONTENT_URI, seasonsAndEpisodes[0]);
-            // Insert all episodes
-            context.getContentResolver().bulkInsert(Episodes.CONTENT_URI, seasonsAndEpisodes[1]);
+        } else if (type == JsonExportTask.BACKUP_LISTS) {
+            BackupDeltaLog.replay(deltaFile, new BackupDeltaLog.DataReader() {
+                @Override
+                public void readData(String id, JsonReader reader) throws IOException {
+                    String[] selectionArgs = new String[]{id};
+                    // delete list items before list to prevent violating foreign key constraints
+                    resolver.delete(ListItems.CONTENT_URI, Lists.LIST_ID + "=?", selectionArgs);
+                    resolver.delete(Lists.CONTENT_URI, Lists.LIST_ID + "=?", selectionArgs);
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        addListToDatabase(gson.<List>fromJson(reader, List.class));
+                    }
+                }
+            });
+        } else if (type == JsonExportTask.BACKUP_MOVIES) {
+            BackupDeltaLog.replay(deltaFile, new BackupDeltaLog.DataReader() {
+                @Override
+                public void readData(String id, JsonReader reader) throws IOException {
+                    resolver.delete(Movies.CONTENT_URI, Movies.TMDB_ID + "=?", new String[]{id});
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        Movie movie = gson.fromJson(reader, Movie.class);
+                        resolver.insert(Movies.CONTENT_URI, movie.toContentValues());
+                    }
+                }
+            });
         }
     }
 
     /**
-     * Returns all seasons and episodes of this show in neat {@link ContentValues} packages put into
-     * arrays. The first array returned includes all seasons, the second array all episodes.
+     * Imports the values of the given type of a memory-mapped binary backup.
      */
-    private static ContentValues[][] buildSeasonAndEpisodeBatches(Show show) {
-        ArrayList<ContentValues> seasonBatch = new ArrayList<>();
-        ArrayList<ContentValues> episodeBatch = new ArrayList<>();
-
-        // Populate arrays...
-        for (Season season : show.seasons) {
-            if (season.tvdbId <= 0) {
-                // valid id is required
-                continue;
+    private void importFromBinary(@JsonExportTask.BackupType int type, SgBackup backup) {
+        if (type == JsonExportTask.BACKUP_SHOWS) {
+            JsonShowImporter importer = new JsonShowImporter(context, getDatabase(),
+                    languageCodes, null);
+            try {
+                importer.importShows(backup);
+            } finally {
+                notifyShowsChanged();
             }
-            if (season.episodes == null || season.episodes.isEmpty()) {
-                // episodes required
-                continue;
+        } else if (type == JsonExportTask.BACKUP_LISTS) {
+            BackupList list = new BackupList();
+            for (int i = 0, count = backup.listsLength(); i < count; i++) {
+                addListToDatabase(BinaryBackup.toList(backup.lists(list, i)));
             }
-
-            // add the season...
-            seasonBatch.add(season.toContentValues(show.tvdb_id));
-
-            // ...and its episodes
-            for (Episode episode : season.episodes) {
-                if (episode.tvdbId <= 0) {
-                    // valid id is required
-                    continue;
-                }
-
-                ContentValues episodeValues = episode
-                        .toContentValues(show.tvdb_id, season.tvdbId, season.season);
-                episodeBatch.add(episodeValues);
+        } else if (type == JsonExportTask.BACKUP_MOVIES) {
+            BackupMovie movie = new BackupMovie();
+            for (int i = 0, count = backup.moviesLength(); i < count; i++) {
+                context.getContentResolver().insert(Movies.CONTENT_URI,
+                        BinaryBackup.toMovie(backup.movies(movie, i)).toContentValues());
             }
         }
+    }
 
-        return new ContentValues[][]{
-                seasonBatch.size() == 0 ? null
-                        : seasonBatch.toArray(new ContentValues[seasonBatch.size()]),
-                episodeBatch.size() == 0 ? null
-                        : episodeBatch.toArray(new ContentValues[episodeBatch.size()])
-        };
+    /**
+     * Streams shows, seasons and episodes directly into the database, reports progress in
+     * kilobytes read.
+     */
+    private void importShows(FileInputStream in) throws IOException {
+        final int totalKb = (int) (in.getChannel().size() / 1024);
+        publishProgress(totalKb, 0);
+
+        JsonShowImporter importer = new JsonShowImporter(context, getDatabase(), languageCodes,
+                new JsonShowImporter.ProgressListener() {
+                    @Override
+                    public void onProgress(long bytesRead) {
+                        publishProgress(totalKb, (int) Math.min(bytesRead / 1024, totalKb));
+                    }
+                });
+        try {
+            importer.importShows(in);
+        } finally {
+            notifyShowsChanged();
+        }
+    }
+
+    private SupportSQLiteDatabase getDatabase() {
+        return SgRoomDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+    }
+
+    /**
+     * Show importers bypass the content provider, so notify about changes.
+     */
+    private void notifyShowsChanged() {
+        // imported seasons have no episode counters, count them for all seasons at once
+        SeasonCounters.updateAllSeasons(context);
+        EpisodeFlagsCache.getInstance(context).invalidateAll();
+
+        ContentResolver resolver = context.getContentResolver();
+        resolver.notifyChange(Shows.CONTENT_URI, null);
+        resolver.notifyChange(Seasons.CONTENT_URI, null);
+        resolver.notifyChange(Episodes.CONTENT_URI, null);
     }
 
     private void addListToDatabase(List list) {
@@ -0,0 +1,312 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowsQuery;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+/**
+ * Exports shows to a JSON backup file. Instead of building model objects for all shows, reads the
+ * seasons and episodes of each show with one cursor each and writes their rows directly, so memory
+ * use does not grow with the size of the library.
+ *
+ * <p>The output is the same as serializing {@link com.battlelancer.seriesguide.dataliberation.model.Show}
+ * with Gson, so {@link JsonShowImporter} can read it. {@link BinaryShowExporter} reads shows the
+ * same way for binary backups.
+ */
+class JsonShowExporter {
+
+    interface Callback {
+        /**
+         * If true, stops exporting after the current show.
+         */
+        boolean isCancelled();
+
+        /**
+         * @param showsExported The number of shows written so far.
+         */
+        void onProgress(int showsExported);
+    }
+
+    private final SupportSQLiteDatabase db;
+    private final boolean isFullDump;
+    @Nullable private final Callback callback;
+
+    JsonShowExporter(SupportSQLiteDatabase db, boolean isFullDump, @Nullable Callback callback) {
+        this.db = db;
+        this.isFullDump = isFullDump;
+        this.callback = callback;
+    }
+
+    /**
+     * Writes all shows of the given cursor, in its order, including their seasons and episodes.
+     * Closes the stream, but not the cursor.
+     *
+     * @param shows A cursor using {@link ShowsQuery#PROJECTION_FULL}.
+     */
+    void exportShows(Cursor shows, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+        // escape like Gson does by default
+        writer.setHtmlSafe(true);
+
+        writer.beginArray();
+        int showsExported = 0;
+        while (shows.moveToNext()) {
+            if (callback != null && callback.isCancelled()) {
+                break;
+            }
+
+            writeShowWithSeasons(writer, shows);
+
+            showsExported++;
+            if (callback != null) {
+                callback.onProgress(showsExported);
+            }
+        }
+        writer.endArray();
+
+        writer.close();
+    }
+
+    /**
+     * Writes the show with the given TVDB id, including its seasons and episodes, as the next
+     * value of the given writer.
+     *
+     * @return false if the show does not exist, then nothing is written.
+     */
+    boolean exportShow(int showTvdbId, JsonWriter writer) throws IOException {
+        Cursor shows = db.query("SELECT " + TextUtils.join(",", ShowsQuery.PROJECTION_FULL)
+                + " FROM " + Tables.SHOWS
+                + " WHERE " + Shows._ID + "=?", new Object[]{showTvdbId});
+        try {
+            if (!shows.moveToFirst()) {
+                return false;
+            }
+            writeShowWithSeasons(writer, shows);
+        } finally {
+            shows.close();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the seasons of the show, sorted by season id, using {@link SeasonsQuery}.
+     */
+    static Cursor querySeasons(SupportSQLiteDatabase db, int showTvdbId) {
+        return db.query(SeasonsQuery.SELECT + SeasonsQuery.WHERE_SHOW + SeasonsQuery.ORDER,
+                new Object[]{showTvdbId});
+    }
+
+    /**
+     * Returns the episodes of the show, sorted by season id and number, using {@link
+     * EpisodesQuery}. Only includes the full dump columns if isFullDump is set.
+     */
+    static Cursor queryEpisodes(SupportSQLiteDatabase db, int showTvdbId, boolean isFullDump) {
+        return db.query((isFullDump ? EpisodesQuery.SELECT_FULL : EpisodesQuery.SELECT)
+                + EpisodesQuery.WHERE_SHOW + EpisodesQuery.ORDER, new Object[]{showTvdbId});
+    }
+
+    /**
+     * Writes the show at the current position of the cursor, then merges the episodes of the show
+     * into its seasons, both sorted by season id.
+     *
+     * <p>Seasons and episodes are queried for each show instead of for all shows at once: the show
+     * id of seasons is stored as text, so sorting all seasons by it does not match the numeric order
+     * of episodes, and shows may be exported in any order.
+     */
+    private void writeShowWithSeasons(JsonWriter writer, Cursor shows) throws IOException {
+        int showTvdbId = shows.getInt(ShowsQuery.ID);
+        Cursor seasons = querySeasons(db, showTvdbId);
+        Cursor episodes = queryEpisodes(db, showTvdbId, isFullDump);
+        try {
+            writeShow(writer, shows);
+
+            boolean hasEpisode = episodes.moveToNext();
+            writer.name("seasons").beginArray();
+            while (seasons.moveToNext()) {
+                int seasonTvdbId = seasons.getInt(SeasonsQuery.ID);
+                writer.beginObject();
+                writer.name("tvdb_id").value(seasonTvdbId);
+                writer.name("season").value(seasons.getInt(SeasonsQuery.NUMBER));
+
+                // skip episodes of seasons that do not exist
+                while (hasEpisode && episodes.getInt(EpisodesQuery.SEASON_ID) < seasonTvdbId) {
+                    hasEpisode = episodes.moveToNext();
+                }
+
+                writer.name("episodes").beginArray();
+                while (hasEpisode && episodes.getInt(EpisodesQuery.SEASON_ID) == seasonTvdbId) {
+                    writeEpisode(writer, episodes);
+                    hasEpisode = episodes.moveToNext();
+                }
+                writer.endArray();
+
+                writer.endObject();
+            }
+            writer.endArray();
+
+            writer.endObject();
+        } finally {
+            seasons.close();
+            episodes.close();
+        }
+    }
+
+    /**
+     * Writes all show properties except seasons, leaves the show object open.
+     */
+    private void writeShow(JsonWriter writer, Cursor shows) throws IOException {
+        writer.beginObject();
+        writer.name("tvdb_id").value(shows.getInt(ShowsQuery.ID));
+        writeStringIfNotNull(writer, "tvdb_slug", shows.getString(ShowsQuery.SLUG));
+        writeStringIfNotNull(writer, "imdb_id", shows.getString(ShowsQuery.IMDBID));
+        writer.name("trakt_id").value(shows.getInt(ShowsQuery.TRAKT_ID));
+        writeStringIfNotNull(writer, "title", shows.getString(ShowsQuery.TITLE));
+        if (isFullDump) {
+            writeStringIfNotNull(writer, "overview", shows.getString(ShowsQuery.OVERVIEW));
+        }
+        writeStringIfNotNull(writer, "language", shows.getString(ShowsQuery.LANGUAGE));
+        writeStringIfNotNull(writer, "first_aired", shows.getString(ShowsQuery.FIRSTAIRED));
+        writer.name("release_time").value(shows.getInt(ShowsQuery.RELEASE_TIME));
+        writer.name("release_weekday").value(shows.getInt(ShowsQuery.RELEASE_WEEKDAY));
+        writeStringIfNotNull(writer, "release_timezone",
+                shows.getString(ShowsQuery.RELEASE_TIMEZONE));
+        writeStringIfNotNull(writer, "country", shows.getString(ShowsQuery.RELEASE_COUNTRY));
+        writeStringIfNotNull(writer, "poster", shows.getString(ShowsQuery.POSTER));
+        writeStringIfNotNull(writer, "content_rating", shows.getString(ShowsQuery.CONTENTRATING));
+        writer.name("status")
+                .value(DataLiberationTools.decodeShowStatus(shows.getInt(ShowsQuery.STATUS)));
+        writer.name("runtime").value(shows.getInt(ShowsQuery.RUNTIME));
+        if (isFullDump) {
+            writeStringIfNotNull(writer, "genres", shows.getString(ShowsQuery.GENRES));
+        }
+        writeStringIfNotNull(writer, "network", shows.getString(ShowsQuery.NETWORK));
+        writer.name("rating").value(isFullDump ? shows.getDouble(ShowsQuery.RATING_GLOBAL) : 0.0);
+        writer.name("rating_votes").value(isFullDump ? shows.getInt(ShowsQuery.RATING_VOTES) : 0);
+        writer.name("rating_user").value(shows.getInt(ShowsQuery.RATING_USER));
+        writer.name("last_edited").value(isFullDump ? shows.getLong(ShowsQuery.LAST_EDITED) : 0);
+        writer.name("favorite").value(shows.getInt(ShowsQuery.FAVORITE) == 1);
+        writer.name("notify").value(shows.getInt(ShowsQuery.NOTIFY) == 1);
+        writer.name("hidden").value(shows.getInt(ShowsQuery.HIDDEN) == 1);
+        writer.name("last_updated")
+                .value(isFullDump ? shows.getLong(ShowsQuery.LAST_UPDATED) : 0);
+        writer.name("last_watched_episode").value(shows.getInt(ShowsQuery.LASTWATCHEDID));
+        writer.name("last_watched_ms").value(shows.getLong(ShowsQuery.LASTWATCHED_MS));
+    }
+
+    private void writeEpisode(JsonWriter writer, Cursor episodes) throws IOException {
+        writer.beginObject();
+        writer.name("tvdb_id").value(episodes.getInt(EpisodesQuery.ID));
+        writer.name("episode").value(episodes.getInt(EpisodesQuery.NUMBER));
+        writer.name("episode_absolute").value(episodes.getInt(EpisodesQuery.NUMBER_ABSOLUTE));
+        writeStringIfNotNull(writer, "title", episodes.getString(EpisodesQuery.TITLE));
+        writer.name("first_aired").value(episodes.getLong(EpisodesQuery.FIRSTAIRED));
+        int episodeFlag = episodes.getInt(EpisodesQuery.WATCHED);
+        writer.name("watched").value(EpisodeTools.isWatched(episodeFlag));
+        writer.name("skipped").value(EpisodeTools.isSkipped(episodeFlag));
+        writer.name("collected").value(episodes.getInt(EpisodesQuery.COLLECTED) == 1);
+        writeStringIfNotNull(writer, "imdb_id", episodes.getString(EpisodesQuery.IMDBID));
+        writer.name("episode_dvd").value(episodes.getDouble(EpisodesQuery.NUMBER_DVD));
+        if (isFullDump) {
+            writeStringIfNotNull(writer, "overview", episodes.getString(EpisodesQuery.OVERVIEW));
+            writeStringIfNotNull(writer, "image", episodes.getString(EpisodesQuery.IMAGE));
+            writeStringIfNotNull(writer, "writers", episodes.getString(EpisodesQuery.WRITERS));
+            writeStringIfNotNull(writer, "gueststars",
+                    episodes.getString(EpisodesQuery.GUESTSTARS));
+            writeStringIfNotNull(writer, "directors",
+                    episodes.getString(EpisodesQuery.DIRECTORS));
+        }
+        writer.name("rating")
+                .value(isFullDump ? episodes.getDouble(EpisodesQuery.RATING_GLOBAL) : 0.0);
+        writer.name("rating_votes")
+                .value(isFullDump ? episodes.getInt(EpisodesQuery.RATING_VOTES) : 0);
+        writer.name("rating_user").value(episodes.getInt(EpisodesQuery.RATING_USER));
+        writer.name("last_edited")
+                .value(isFullDump ? episodes.getLong(EpisodesQuery.LAST_EDITED) : 0);
+        writer.endObject();
+    }
+
+    /**
+     * Like Gson, does not write null values.
+     */
+    private static void writeStringIfNotNull(JsonWriter writer, String name,
+            @Nullable String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    interface SeasonsQuery {
+        String SELECT = "SELECT "
+                + Seasons._ID + ","
+                + Seasons.COMBINED
+                + " FROM " + Tables.SEASONS;
+        String WHERE_SHOW = " WHERE " + Shows.REF_SHOW_ID + "=?";
+        String ORDER = " ORDER BY " + Seasons._ID + " ASC";
+
+        int ID = 0;
+        int NUMBER = 1;
+    }
+
+    interface EpisodesQuery {
+        String COLUMNS = Episodes._ID + ","
+                + Episodes.NUMBER + ","
+                + Episodes.ABSOLUTE_NUMBER + ","
+                + Episodes.WATCHED + ","
+                + Episodes.COLLECTED + ","
+                + Episodes.TITLE + ","
+                + Episodes.FIRSTAIREDMS + ","
+                + Episodes.IMDBID + ","
+                + Episodes.DVDNUMBER + ","
+                + Episodes.RATING_USER + ","
+                + Seasons.REF_SEASON_ID;
+        String COLUMNS_FULL = COLUMNS + ","
+                + Episodes.OVERVIEW + ","
+                + Episodes.IMAGE + ","
+                + Episodes.WRITERS + ","
+                + Episodes.GUESTSTARS + ","
+                + Episodes.DIRECTORS + ","
+                + Episodes.RATING_GLOBAL + ","
+                + Episodes.RATING_VOTES + ","
+                + Episodes.LAST_EDITED;
+
+        String ORDER = " ORDER BY " + Seasons.REF_SEASON_ID + " ASC,"
+                + Episodes.NUMBER + " ASC";
+
+        String WHERE_SHOW = " WHERE " + Shows.REF_SHOW_ID + "=?";
+
+        String SELECT = "SELECT " + COLUMNS + " FROM " + Tables.EPISODES;
+        String SELECT_FULL = "SELECT " + COLUMNS_FULL + " FROM " + Tables.EPISODES;
+
+        int ID = 0;
+        int NUMBER = 1;
+        int NUMBER_ABSOLUTE = 2;
+        int WATCHED = 3;
+        int COLLECTED = 4;
+        int TITLE = 5;
+        int FIRSTAIRED = 6;
+        int IMDBID = 7;
+        int NUMBER_DVD = 8;
+        int RATING_USER = 9;
+        int SEASON_ID = 10;
+        // Full dump only
+        int OVERVIEW = 11;
+        int IMAGE = 12;
+        int WRITERS = 13;
+        int GUESTSTARS = 14;
+        int DIRECTORS = 15;
+        int RATING_GLOBAL = 16;
+        int RATING_VOTES = 17;
+        int LAST_EDITED = 18;
+    }
+}
@@ -0,0 +1,470 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupSeason;
+import com.battlelancer.seriesguide.dataliberation.backup.BackupShow;
+import com.battlelancer.seriesguide.dataliberation.backup.SgBackup;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports shows from a JSON backup file. Reads the file token by token and writes shows, seasons
+ * and episodes with prepared statements directly to the database in large transactions, so only
+ * the current show and episode are kept in memory.
+ *
+ * <p>Backups written by {@link JsonExportTask} list show and season ids before their seasons and
+ * episodes. If that is not the case, seasons or episodes are kept in memory until the id is
+ * known.
+ *
+ * <p>Can also import shows of a {@link BinaryBackup} and replace single shows with those of a
+ * {@link BackupDeltaLog}.
+ */
+class JsonShowImporter {
+
+    interface ProgressListener {
+        /**
+         * @param bytesRead The number of bytes read so far.
+         */
+        void onProgress(long bytesRead);
+    }
+
+    /**
+     * Commit a transaction after inserting this many rows, so other database users are not
+     * blocked for too long.
+     */
+    private static final int ROWS_PER_TRANSACTION = 5000;
+
+    /**
+     * Report progress after reading this many more bytes.
+     */
+    private static final long PROGRESS_INTERVAL_BYTES = 64 * 1024;
+
+    private final Context context;
+    private final SupportSQLiteDatabase db;
+    private final String[] languageCodes;
+    @Nullable private final ProgressListener progressListener;
+    private final Gson gson = new Gson();
+    private final JsonParser jsonParser = new JsonParser();
+
+    private final InsertStatement showInsert;
+    private final InsertStatement seasonInsert;
+    private final InsertStatement episodeInsert;
+    private int rowsInTransaction;
+
+    JsonShowImporter(Context context, SupportSQLiteDatabase db, String[] languageCodes,
+            @Nullable ProgressListener progressListener) {
+        this.context = context;
+        this.db = db;
+        this.languageCodes = languageCodes;
+        this.progressListener = progressListener;
+        // like content provider: on duplicate shows keep the first, on duplicate seasons and
+        // episodes the last
+        this.showInsert = new InsertStatement(db, "INSERT OR IGNORE", Tables.SHOWS);
+        this.seasonInsert = new InsertStatement(db, "INSERT OR REPLACE", Tables.SEASONS);
+        this.episodeInsert = new InsertStatement(db, "INSERT OR REPLACE", Tables.EPISODES);
+    }
+
+    /**
+     * Imports all shows of the given JSON stream, which may be gzip compressed. Does not close
+     * the stream. Progress is reported in bytes read from the given stream.
+     */
+    void importShows(InputStream in) throws IOException {
+        CountingInputStream countingIn = new CountingInputStream(in);
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                DataLiberationTools.decompressIfGzipped(countingIn), "UTF-8"));
+
+        db.beginTransaction();
+        try {
+            long bytesReported = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readShow(reader);
+
+                long bytesRead = countingIn.getCount();
+                if (progressListener != null
+                        && bytesRead - bytesReported >= PROGRESS_INTERVAL_BYTES) {
+                    bytesReported = bytesRead;
+                    progressListener.onProgress(bytesRead);
+                }
+            }
+            reader.endArray();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (progressListener != null) {
+            progressListener.onProgress(countingIn.getCount());
+        }
+    }
+
+    /**
+     * Imports all shows of a memory-mapped binary backup. Only the show and season currently
+     * inserted are converted to model objects.
+     */
+    void importShows(SgBackup backup) {
+        BackupShow backupShow = new BackupShow();
+        BackupSeason backupSeason = new BackupSeason();
+
+        db.beginTransaction();
+        try {
+            for (int i = 0, count = backup.showsLength(); i < count; i++) {
+                backup.shows(backupShow, i);
+                Show show = BinaryBackup.toShow(backupShow);
+                if (show.tvdb_id <= 0) {
+                    // valid id required
+                    continue;
+                }
+                insertShow(show);
+                for (int j = 0, seasons = backupShow.seasonsLength(); j < seasons; j++) {
+                    insertSeason(show.tvdb_id,
+                            BinaryBackup.toSeason(backupShow.seasons(backupSeason, j)));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the show with the given TVDB id, including its seasons and episodes, with the show
+     * read next from the given reader. If the next value is null, only removes the show.
+     */
+    void replaceShow(int showTvdbId, JsonReader reader) throws IOException {
+        Object[] args = new Object[]{showTvdbId};
+        db.beginTransaction();
+        try {
+            // delete episodes and seasons before the show to not violate foreign key constraints
+            db.delete(Tables.EPISODES, Shows.REF_SHOW_ID + "=?", args);
+            db.delete(Tables.SEASONS, Shows.REF_SHOW_ID + "=?", args);
+            db.delete(Tables.SHOWS, Shows._ID + "=?", args);
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                readShow(reader);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void readShow(JsonReader reader) throws IOException {
+        // collect show values except seasons, those are inserted while reading them
+        JsonObject showJson = new JsonObject();
+        List<Season> bufferedSeasons = null;
+        Integer showTvdbId = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("seasons".equals(name)) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (showTvdbId == null) {
+                    // id not known, yet, keep seasons in memory
+                    bufferedSeasons = readSeasonsBuffered(reader);
+                } else if (showTvdbId <= 0) {
+                    reader.skipValue();
+                } else {
+                    readSeasons(reader, showTvdbId);
+                }
+            } else {
+                JsonElement value = jsonParser.parse(reader);
+                showJson.add(name, value);
+                if ("tvdb_id".equals(name)) {
+                    showTvdbId = value.isJsonPrimitive() ? value.getAsInt() : 0;
+                }
+            }
+        }
+        reader.endObject();
+
+        Show show = gson.fromJson(showJson, Show.class);
+        if (show.tvdb_id <= 0) {
+            // valid id required
+            return;
+        }
+        insertShow(show);
+        if (bufferedSeasons != null) {
+            for (Season season : bufferedSeasons) {
+                insertSeason(show.tvdb_id, season);
+            }
+        }
+    }
+
+    private List<Season> readSeasonsBuffered(JsonReader reader) throws IOException {
+        List<Season> seasons = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            seasons.add(gson.<Season>fromJson(reader, Season.class));
+        }
+        reader.endArray();
+        return seasons;
+    }
+
+    private void readSeasons(JsonReader reader, int showTvdbId) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readSeason(reader, showTvdbId);
+        }
+        reader.endArray();
+    }
+
+    private void readSeason(JsonReader reader, int showTvdbId) throws IOException {
+        JsonObject seasonJson = new JsonObject();
+        Season season = null;
+        List<Episode> bufferedEpisodes = null;
+        boolean hasEpisodes = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("episodes".equals(name) && reader.peek() != JsonToken.NULL) {
+                if (season == null && seasonJson.has("tvdb_id") && seasonJson.has("season")) {
+                    season = gson.fromJson(seasonJson, Season.class);
+                }
+                if (season == null) {
+                    // id or number not known, yet, keep episodes in memory
+                    bufferedEpisodes = readEpisodesBuffered(reader);
+                } else if (season.tvdbId <= 0) {
+                    reader.skipValue();
+                } else {
+                    hasEpisodes = readEpisodes(reader, showTvdbId, season);
+                }
+            } else {
+                seasonJson.add(name, jsonParser.parse(reader));
+            }
+        }
+        reader.endObject();
+
+        if (bufferedEpisodes != null) {
+            season = gson.fromJson(seasonJson, Season.class);
+            season.episodes = bufferedEpisodes;
+            insertSeason(showTvdbId, season);
+        } else if (hasEpisodes && season != null && season.tvdbId > 0) {
+            // episodes were inserted, now insert season
+            insert(seasonInsert, season.toContentValues(showTvdbId));
+        }
+    }
+
+    private List<Episode> readEpisodesBuffered(JsonReader reader) throws IOException {
+        List<Episode> episodes = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            episodes.add(gson.<Episode>fromJson(reader, Episode.class));
+        }
+        reader.endArray();
+        return episodes;
+    }
+
+    /**
+     * Inserts each episode right after reading it.
+     *
+     * @return If there was at least one episode.
+     */
+    private boolean readEpisodes(JsonReader reader, int showTvdbId, Season season)
+            throws IOException {
+        boolean hasEpisodes = false;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Episode episode = gson.fromJson(reader, Episode.class);
+            hasEpisodes = true;
+            insertEpisode(showTvdbId, season, episode);
+        }
+        reader.endArray();
+        return hasEpisodes;
+    }
+
+    private void insertShow(Show show) {
+        // reset language if it is not supported
+        boolean languageSupported = false;
+        for (int i = 0, size = languageCodes.length; i < size; i++) {
+            if (languageCodes[i].equals(show.language)) {
+                languageSupported = true;
+                break;
+            }
+        }
+        if (!languageSupported) {
+            show.language = null;
+        }
+        // ensure a show will be updated (last_updated might be far into the future)
+        if (show.last_updated > System.currentTimeMillis()) {
+            show.last_updated = 0;
+        }
+
+        insert(showInsert, show.toContentValues(context, true));
+    }
+
+    /**
+     * Inserts a season and its episodes, if it has a valid id and episodes.
+     */
+    private void insertSeason(int showTvdbId, Season season) {
+        if (season.tvdbId <= 0) {
+            // valid id is required
+            return;
+        }
+        if (season.episodes == null || season.episodes.isEmpty()) {
+            // episodes required
+            return;
+        }
+
+        insert(seasonInsert, season.toContentValues(showTvdbId));
+        for (Episode episode : season.episodes) {
+            insertEpisode(showTvdbId, season, episode);
+        }
+    }
+
+    private void insertEpisode(int showTvdbId, Season season, Episode episode) {
+        if (episode.tvdbId <= 0) {
+            // valid id is required
+            return;
+        }
+        insert(episodeInsert, episode.toContentValues(showTvdbId, season.tvdbId, season.season));
+    }
+
+    private void insert(InsertStatement statement, ContentValues values) {
+        statement.execute(values);
+
+        rowsInTransaction++;
+        if (rowsInTransaction >= ROWS_PER_TRANSACTION) {
+            // commit, start a new transaction
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            db.beginTransaction();
+            rowsInTransaction = 0;
+        }
+    }
+
+    /**
+     * Compiles an insert statement for the columns of the first inserted values, all following
+     * values must have the same columns.
+     */
+    private static class InsertStatement {
+
+        private final SupportSQLiteDatabase db;
+        private final String insertOr;
+        private final String table;
+        @Nullable private String[] columns;
+        @Nullable private SupportSQLiteStatement statement;
+
+        InsertStatement(SupportSQLiteDatabase db, String insertOr, String table) {
+            this.db = db;
+            this.insertOr = insertOr;
+            this.table = table;
+        }
+
+        void execute(ContentValues values) {
+            if (statement == null || columns == null) {
+                compile(values);
+            }
+            statement.clearBindings();
+            for (int i = 0; i < columns.length; i++) {
+                bind(statement, i + 1, values.get(columns[i]));
+            }
+            statement.executeInsert();
+        }
+
+        private void compile(ContentValues values) {
+            columns = new String[values.size()];
+            StringBuilder sql = new StringBuilder(insertOr).append(" INTO ").append(table)
+                    .append('(');
+            int i = 0;
+            for (Map.Entry<String, Object> entry : values.valueSet()) {
+                columns[i] = entry.getKey();
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(entry.getKey());
+                i++;
+            }
+            sql.append(") VALUES (");
+            for (i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ",?" : "?");
+            }
+            sql.append(')');
+            statement = db.compileStatement(sql.toString());
+        }
+
+        private static void bind(SupportSQLiteStatement statement, int index,
+                @Nullable Object value) {
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof String) {
+                statement.bindString(index, (String) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from the wrapped stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(@NonNull InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result != -1) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+}
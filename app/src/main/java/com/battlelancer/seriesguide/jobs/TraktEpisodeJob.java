@@ -32,11 +32,15 @@ import retrofit2.Response;
 
 public class TraktEpisodeJob extends BaseNetworkEpisodeJob {
 
-    private final long actionAtMs;
+    private final long[] episodeActionAtMs;
 
-    public TraktEpisodeJob(JobAction action, SgJobInfo jobInfo, long actionAtMs) {
+    /**
+     * @param episodeActionAtMs For each episode of the job info when it was changed, jobs combined
+     * from multiple jobs may have different times.
+     */
+    public TraktEpisodeJob(JobAction action, SgJobInfo jobInfo, long[] episodeActionAtMs) {
         super(action, jobInfo);
-        this.actionAtMs = actionAtMs;
+        this.episodeActionAtMs = episodeActionAtMs;
     }
 
     @NonNull
@@ -145,9 +149,6 @@ public class TraktEpisodeJob extends BaseNetworkEpisodeJob {
         // if this job re-runs due to failure, but trakt already applied changes (it happens)
         // also if execution is delayed to due being offline this will ensure
         // the actual action time is stored at trakt
-        Instant instant = Instant.ofEpochMilli(actionAtMs);
-        OffsetDateTime actionAtDateTime = instant.atOffset(ZoneOffset.UTC);
-
         List<SyncSeason> seasons = new ArrayList<>();
 
         SyncSeason currentSeason = null;
@@ -156,16 +157,21 @@ public class TraktEpisodeJob extends BaseNetworkEpisodeJob {
 
             int seasonNumber = episodeInfo.season();
 
-            // start new season?
-            if (currentSeason == null || seasonNumber > currentSeason.number) {
-                currentSeason = new SyncSeason().number(seasonNumber);
-                currentSeason.episodes = new LinkedList<>();
-                seasons.add(currentSeason);
+            // start new season? combined jobs may contain seasons in any order
+            if (currentSeason == null || seasonNumber != currentSeason.number) {
+                currentSeason = findSeason(seasons, seasonNumber);
+                if (currentSeason == null) {
+                    currentSeason = new SyncSeason().number(seasonNumber);
+                    currentSeason.episodes = new LinkedList<>();
+                    seasons.add(currentSeason);
+                }
             }
 
             // add episode
             SyncEpisode episode = new SyncEpisode().number(episodeInfo.number());
             if (isAddNotDelete) {
+                OffsetDateTime actionAtDateTime = Instant.ofEpochMilli(episodeActionAtMs[i])
+                        .atOffset(ZoneOffset.UTC);
                 // only send timestamp if adding, not if removing to save data
                 if (action == JobAction.EPISODE_WATCHED_FLAG) {
                     episode.watchedAt(actionAtDateTime);
@@ -179,6 +185,16 @@ public class TraktEpisodeJob extends BaseNetworkEpisodeJob {
         return seasons;
     }
 
+    @Nullable
+    private static SyncSeason findSeason(List<SyncSeason> seasons, int seasonNumber) {
+        for (SyncSeason season : seasons) {
+            if (season.number == seasonNumber) {
+                return season;
+            }
+        }
+        return null;
+    }
+
     /**
      * If the {@link SyncErrors} indicates any show, season or episode was not found returns {@code
      * false}.
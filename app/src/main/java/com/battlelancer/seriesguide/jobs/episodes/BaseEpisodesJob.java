@@ -11,6 +11,7 @@ import com.battlelancer.seriesguide.jobs.BaseJob;
 import com.battlelancer.seriesguide.jobs.EpisodeInfo;
 import com.battlelancer.seriesguide.jobs.FlagJob;
 import com.battlelancer.seriesguide.jobs.SgJobInfo;
+import com.battlelancer.seriesguide.provider.ChangeNotifier;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
@@ -107,10 +108,9 @@ public abstract class BaseEpisodesJob extends BaseJob implements FlagJob {
         }
 
         // notify some other URIs about updates
-        context.getContentResolver()
-                .notifyChange(Episodes.CONTENT_URI, null);
-        context.getContentResolver()
-                .notifyChange(SeriesGuideContract.ListItems.CONTENT_WITH_DETAILS_URI, null);
+        ChangeNotifier changeNotifier = ChangeNotifier.getInstance(context);
+        changeNotifier.notifyChange(Episodes.CONTENT_URI);
+        changeNotifier.notifyChange(SeriesGuideContract.ListItems.CONTENT_WITH_DETAILS_URI);
 
         return true;
     }
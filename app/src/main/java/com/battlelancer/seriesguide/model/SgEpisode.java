@@ -23,7 +23,13 @@ import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
         },
         indices = {
                 @Index(SeasonsColumns.REF_SEASON_ID),
-                @Index(ShowsColumns.REF_SHOW_ID)
+                @Index(ShowsColumns.REF_SHOW_ID),
+                // unwatched and next episodes of a show
+                @Index({ShowsColumns.REF_SHOW_ID, Episodes.WATCHED, Episodes.FIRSTAIREDMS}),
+                // calendar and notifications
+                @Index(Episodes.FIRSTAIREDMS),
+                // look up by number, like when applying flags from Hexagon or trakt
+                @Index({ShowsColumns.REF_SHOW_ID, Episodes.SEASON, Episodes.NUMBER})
         }
 )
 public class SgEpisode {
@@ -0,0 +1,41 @@
+package com.battlelancer.seriesguide.model;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodePages;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+
+/**
+ * Validators of a page of episodes of a show as last downloaded from TVDB.
+ */
+@Entity(tableName = Tables.EPISODE_PAGES,
+        primaryKeys = {EpisodePages.SHOW_ID, EpisodePages.NUMBER})
+public class SgEpisodePage {
+
+    @ColumnInfo(name = EpisodePages.SHOW_ID)
+    public int showTvdbId;
+
+    @ColumnInfo(name = EpisodePages.NUMBER)
+    public int number;
+
+    @ColumnInfo(name = EpisodePages.LANGUAGE)
+    public String language;
+
+    @ColumnInfo(name = EpisodePages.SETTINGS)
+    public String settings;
+
+    @ColumnInfo(name = EpisodePages.ETAG)
+    public String etag;
+
+    @ColumnInfo(name = EpisodePages.LAST_MODIFIED)
+    public String lastModified;
+
+    @ColumnInfo(name = EpisodePages.CONTENT_HASH)
+    public String contentHash;
+
+    @ColumnInfo(name = EpisodePages.NEXT_NUMBER)
+    public Integer nextNumber;
+
+    @ColumnInfo(name = EpisodePages.EPISODES)
+    public String episodes;
+}
@@ -0,0 +1,26 @@
+package com.battlelancer.seriesguide.model;
+
+/**
+ * Totals of all shows, summed from their {@link SgShowStats}.
+ */
+public class SgLibraryStats {
+
+    public int shows;
+
+    public int showsContinuing;
+
+    public int showsWithNextEpisodes;
+
+    public int episodes;
+
+    public int episodesWatched;
+
+    public int specials;
+
+    public int specialsWatched;
+
+    /** Sum of the runtime of each show times its number of watched episodes. */
+    public long episodesWatchedRuntimeMin;
+
+    public long specialsWatchedRuntimeMin;
+}
@@ -0,0 +1,29 @@
+package com.battlelancer.seriesguide.model;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowStats;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+
+/**
+ * Episode counters of a show, maintained by triggers on the episodes table.
+ */
+@Entity(tableName = Tables.SHOW_STATS,
+        primaryKeys = {ShowStats.SHOW_ID})
+public class SgShowStats {
+
+    @ColumnInfo(name = ShowStats.SHOW_ID)
+    public int showTvdbId;
+
+    @ColumnInfo(name = ShowStats.EPISODES)
+    public int episodes;
+
+    @ColumnInfo(name = ShowStats.EPISODES_WATCHED)
+    public int episodesWatched;
+
+    @ColumnInfo(name = ShowStats.SPECIALS)
+    public int specials;
+
+    @ColumnInfo(name = ShowStats.SPECIALS_WATCHED)
+    public int specialsWatched;
+}
@@ -0,0 +1,52 @@
+package com.battlelancer.seriesguide.model;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SyncStages;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+
+/**
+ * Metrics of one stage of a sync run, see {@link com.battlelancer.seriesguide.sync.SyncMetrics}.
+ */
+@Entity(tableName = Tables.SYNC_STAGES,
+        indices = {@Index(value = SyncStages.RUN_STARTED_MS)})
+public class SgSyncStage {
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = SyncStages._ID)
+    public Integer id;
+
+    @ColumnInfo(name = SyncStages.RUN_STARTED_MS)
+    public long runStartedMs;
+
+    @ColumnInfo(name = SyncStages.RUN_RESULT)
+    public String runResult;
+
+    @ColumnInfo(name = SyncStages.STAGE)
+    @NonNull
+    public String stage = "";
+
+    @ColumnInfo(name = SyncStages.DURATION_MS)
+    public long durationMs;
+
+    @ColumnInfo(name = SyncStages.HTTP_REQUESTS)
+    public long httpRequests;
+
+    @ColumnInfo(name = SyncStages.HTTP_BYTES)
+    public long httpBytes;
+
+    @ColumnInfo(name = SyncStages.DB_OPS)
+    public long dbOps;
+
+    @ColumnInfo(name = SyncStages.SHOWS_TOUCHED)
+    public long showsTouched;
+
+    @ColumnInfo(name = SyncStages.EPISODES_TOUCHED)
+    public long episodesTouched;
+
+    @ColumnInfo(name = SyncStages.FAILED)
+    public boolean failed;
+}
@@ -3,6 +3,7 @@ package com.battlelancer.seriesguide.modules;
 import android.content.Context;
 import android.os.Build;
 import android.os.StatFs;
+import com.battlelancer.seriesguide.sync.SyncMetricsInterceptor;
 import com.battlelancer.seriesguide.thetvdbapi.SgTheTvdbInterceptor;
 import com.battlelancer.seriesguide.tmdbapi.SgTmdbInterceptor;
 import com.battlelancer.seriesguide.traktapi.SgTraktInterceptor;
@@ -36,6 +37,7 @@ public class HttpClientModule {
             SgTheTvdbInterceptor tvdbInterceptor,
             SgTraktInterceptor traktInterceptor,
             SgTmdbInterceptor tmdbInterceptor,
+            SyncMetricsInterceptor syncMetricsInterceptor,
             AllApisAuthenticator authenticator
     ) {
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
@@ -44,6 +46,7 @@ public class HttpClientModule {
         builder.addInterceptor(tmdbInterceptor);
         builder.addNetworkInterceptor(tvdbInterceptor);
         builder.addNetworkInterceptor(traktInterceptor);
+        builder.addNetworkInterceptor(syncMetricsInterceptor);
         builder.authenticator(authenticator);
         builder.cache(cache);
         return builder.build();
@@ -0,0 +1,361 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.db.SupportSQLiteProgram;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.sync.SyncMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import timber.log.Timber;
+
+/**
+ * Writes show, season and episode changes of sync directly to {@link SgRoomDatabase} instead of
+ * through {@link SeriesGuideProvider}, skipping building a {@link
+ * android.content.ContentProviderOperation} and matching its {@link Uri} for every row. Statements
+ * are compiled once per transaction and re-used for all rows with the same columns.
+ *
+ * <p>All writes have to happen between {@link #beginTransaction()} and {@link #endTransaction()},
+ * ideally one transaction per show:
+ * <pre>
+ * writer.beginTransaction();
+ * try {
+ *     writer.updateEpisode(...);
+ *     writer.setTransactionSuccessful();
+ * } finally {
+ *     writer.endTransaction();
+ * }
+ * </pre>
+ * Once a successful transaction ends, observers of changed tables are notified once and the
+ * {@link EpisodeFlagsCache} is updated.
+ */
+public class BulkWriter {
+
+    private final Context context;
+    private final SgRoomDatabase room;
+    private final Map<String, SupportSQLiteStatement> statements = new HashMap<>();
+    private final Set<Uri> changedUris = new LinkedHashSet<>();
+    private final Set<Integer> changedShows = new HashSet<>();
+    private final Set<Integer> changedEpisodes = new HashSet<>();
+    private final List<FlagsUpdate> flagsUpdates = new ArrayList<>();
+    private boolean isUnknownShowChanged;
+    private boolean isSuccessful;
+
+    /**
+     * Flags written to episodes with a number, can be applied to cached flags directly.
+     */
+    private static class FlagsUpdate {
+        final int showTvdbId;
+        final int season;
+        final int number;
+        final Integer watched;
+        final Boolean collected;
+
+        FlagsUpdate(int showTvdbId, int season, int number, ContentValues values) {
+            this.showTvdbId = showTvdbId;
+            this.season = season;
+            this.number = number;
+            this.watched = values.getAsInteger(Episodes.WATCHED);
+            Integer collected = values.getAsInteger(Episodes.COLLECTED);
+            this.collected = collected != null ? collected == 1 : null;
+        }
+    }
+
+    public BulkWriter(Context context) {
+        this.context = context.getApplicationContext();
+        this.room = SgRoomDatabase.getInstance(context);
+    }
+
+    public void beginTransaction() {
+        room.beginTransaction();
+        isSuccessful = false;
+    }
+
+    public void setTransactionSuccessful() {
+        room.setTransactionSuccessful();
+        isSuccessful = true;
+    }
+
+    /**
+     * Ends the transaction, if it was successful notifies about changes.
+     */
+    public void endTransaction() {
+        for (SupportSQLiteStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (IOException e) {
+                Timber.e(e, "Failed to close statement");
+            }
+        }
+        statements.clear();
+        room.endTransaction();
+
+        if (isSuccessful) {
+            updateEpisodeFlagsCache();
+            if (!changedUris.isEmpty()) {
+                ChangeNotifier.getInstance(context).notifyChange(changedUris);
+            }
+        }
+        changedUris.clear();
+        changedShows.clear();
+        changedEpisodes.clear();
+        flagsUpdates.clear();
+        isUnknownShowChanged = false;
+    }
+
+    private void updateEpisodeFlagsCache() {
+        EpisodeFlagsCache cache = EpisodeFlagsCache.getInstance(context);
+        if (isUnknownShowChanged) {
+            cache.invalidateAll();
+            return;
+        }
+        for (Integer showTvdbId : changedShows) {
+            cache.invalidateShow(showTvdbId);
+        }
+        if (!changedEpisodes.isEmpty()) {
+            cache.invalidateEpisodes(changedEpisodes);
+        }
+        for (FlagsUpdate update : flagsUpdates) {
+            cache.updateFlags(update.showTvdbId, update.season, update.number, update.watched,
+                    update.collected);
+        }
+    }
+
+    /**
+     * Inserts a show, does nothing if it exists.
+     */
+    public void insertShow(ContentValues values) {
+        insert("INSERT OR IGNORE", Tables.SHOWS, values, Shows.CONTENT_URI);
+    }
+
+    public void updateShow(int showTvdbId, ContentValues values) {
+        update(Tables.SHOWS, values, Shows._ID + "=?", Shows.CONTENT_URI, showTvdbId);
+    }
+
+    /**
+     * Inserts a season, does nothing if it exists.
+     */
+    public void insertSeason(ContentValues values) {
+        insert("INSERT OR IGNORE", Tables.SEASONS, values, Seasons.CONTENT_URI);
+    }
+
+    public void updateSeason(int seasonTvdbId, ContentValues values) {
+        update(Tables.SEASONS, values, Seasons._ID + "=?", Seasons.CONTENT_URI, seasonTvdbId);
+    }
+
+    /**
+     * Deletes a season. Delete its episodes first, see {@link #deleteEpisodesOfSeason(int)}.
+     */
+    public void deleteSeason(int seasonTvdbId) {
+        delete(Tables.SEASONS, Seasons._ID + "=?", Seasons.CONTENT_URI, seasonTvdbId);
+    }
+
+    /**
+     * Inserts an episode, replaces it if it exists. TVDB on occasion has duplicate episodes, so
+     * the last one wins.
+     */
+    public void insertEpisode(ContentValues values) {
+        if (insert("INSERT OR REPLACE", Tables.EPISODES, values, Episodes.CONTENT_URI)) {
+            Integer showTvdbId = values.getAsInteger(Shows.REF_SHOW_ID);
+            if (showTvdbId != null) {
+                changedShows.add(showTvdbId);
+            } else {
+                isUnknownShowChanged = true;
+            }
+        }
+    }
+
+    public void updateEpisode(int episodeTvdbId, ContentValues values) {
+        if (update(Tables.EPISODES, values, Episodes._ID + "=?", Episodes.CONTENT_URI,
+                episodeTvdbId) > 0) {
+            changedEpisodes.add(episodeTvdbId);
+        }
+    }
+
+    /**
+     * Updates the episode with the given number of a show, e.g. to change flags downloaded from
+     * Hexagon.
+     */
+    public void updateEpisode(int showTvdbId, int season, int number, ContentValues values) {
+        if (update(Tables.EPISODES, values,
+                Shows.REF_SHOW_ID + "=? AND " + Episodes.SEASON + "=? AND "
+                        + Episodes.NUMBER + "=?",
+                Episodes.CONTENT_URI, showTvdbId, season, number) > 0) {
+            if (isOnlyFlags(values)) {
+                flagsUpdates.add(new FlagsUpdate(showTvdbId, season, number, values));
+            } else {
+                changedShows.add(showTvdbId);
+            }
+        }
+    }
+
+    private static boolean isOnlyFlags(ContentValues values) {
+        for (String column : values.keySet()) {
+            if (!Episodes.WATCHED.equals(column) && !Episodes.COLLECTED.equals(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates episodes of a season matching the given selection, which may be null and should
+     * not vary to benefit from re-using compiled statements.
+     */
+    public void updateEpisodesOfSeason(int seasonTvdbId, ContentValues values,
+            String selection) {
+        String where = Seasons.REF_SEASON_ID + "=?";
+        if (selection != null) {
+            where += " AND (" + selection + ")";
+        }
+        if (update(Tables.EPISODES, values, where, Episodes.CONTENT_URI, seasonTvdbId) > 0) {
+            isUnknownShowChanged = true;
+        }
+    }
+
+    public void deleteEpisode(int episodeTvdbId) {
+        if (delete(Tables.EPISODES, Episodes._ID + "=?", Episodes.CONTENT_URI,
+                episodeTvdbId) > 0) {
+            changedEpisodes.add(episodeTvdbId);
+        }
+    }
+
+    public void deleteEpisodesOfSeason(int seasonTvdbId) {
+        if (delete(Tables.EPISODES, Seasons.REF_SEASON_ID + "=?", Episodes.CONTENT_URI,
+                seasonTvdbId) > 0) {
+            isUnknownShowChanged = true;
+        }
+    }
+
+    /**
+     * @return If a row was inserted.
+     */
+    private boolean insert(String insertClause, String table, ContentValues values,
+            Uri notifyUri) {
+        List<String> columns = new ArrayList<>(new TreeSet<>(values.keySet()));
+
+        StringBuilder sql = new StringBuilder(insertClause)
+                .append(" INTO ").append(table).append(" (");
+        StringBuilder bindings = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+                bindings.append(',');
+            }
+            sql.append(columns.get(i));
+            bindings.append('?');
+        }
+        sql.append(") VALUES (").append(bindings).append(')');
+
+        SupportSQLiteStatement statement = getStatement(sql.toString());
+        bindValues(statement, values, columns);
+        boolean isInserted = statement.executeInsert() != -1;
+        if (isInserted) {
+            changedUris.add(notifyUri);
+        }
+        recordChange(table, isInserted ? 1 : 0);
+        return isInserted;
+    }
+
+    /**
+     * @return The number of changed rows.
+     */
+    private int update(String table, ContentValues values, String where, Uri notifyUri,
+            Object... whereArgs) {
+        List<String> columns = new ArrayList<>(new TreeSet<>(values.keySet()));
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(columns.get(i)).append("=?");
+        }
+        sql.append(" WHERE ").append(where);
+
+        SupportSQLiteStatement statement = getStatement(sql.toString());
+        bindValues(statement, values, columns);
+        for (int i = 0; i < whereArgs.length; i++) {
+            bindValue(statement, columns.size() + i + 1, whereArgs[i]);
+        }
+        int changedRows = statement.executeUpdateDelete();
+        if (changedRows > 0) {
+            changedUris.add(notifyUri);
+        }
+        recordChange(table, changedRows);
+        return changedRows;
+    }
+
+    /**
+     * @return The number of deleted rows.
+     */
+    private int delete(String table, String where, Uri notifyUri, Object... whereArgs) {
+        SupportSQLiteStatement statement = getStatement(
+                "DELETE FROM " + table + " WHERE " + where);
+        statement.clearBindings();
+        for (int i = 0; i < whereArgs.length; i++) {
+            bindValue(statement, i + 1, whereArgs[i]);
+        }
+        int changedRows = statement.executeUpdateDelete();
+        if (changedRows > 0) {
+            changedUris.add(notifyUri);
+        }
+        recordChange(table, changedRows);
+        return changedRows;
+    }
+
+    private static void recordChange(String table, int changedRows) {
+        SyncMetrics.recordDbOps(1);
+        if (Tables.SHOWS.equals(table)) {
+            SyncMetrics.recordShowsTouched(changedRows);
+        } else if (Tables.EPISODES.equals(table)) {
+            SyncMetrics.recordEpisodesTouched(changedRows);
+        }
+    }
+
+    private SupportSQLiteStatement getStatement(String sql) {
+        SupportSQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = room.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static void bindValues(SupportSQLiteStatement statement, ContentValues values,
+            List<String> columns) {
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++) {
+            bindValue(statement, i + 1, values.get(columns.get(i)));
+        }
+    }
+
+    private static void bindValue(SupportSQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Float || value instanceof Double) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+}
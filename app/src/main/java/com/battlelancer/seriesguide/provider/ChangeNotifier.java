@@ -0,0 +1,191 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import timber.log.Timber;
+
+/**
+ * Coalesces content change notifications: notifications of a batch are delivered once per {@link
+ * Uri}, and not at all if an ancestor {@link Uri} is notified as well (notifying an ancestor also
+ * notifies observers of its descendants). So loaders re-query once after a burst of changes, e.g.
+ * during sync, instead of once per change.
+ *
+ * <p>Outside of a batch, see {@link #beginBatch()}, notifications are delivered right away.
+ */
+public class ChangeNotifier {
+
+    /**
+     * Deliver notifications of a batch early once the first of them is waiting this long, so
+     * long running batches like a sync do not keep observers stale until they end.
+     */
+    private static final long MAX_BATCH_DELAY_MS = 1000;
+
+    private static ChangeNotifier _instance;
+
+    private final ContentResolver contentResolver;
+    private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+    private final Object countLock = new Object();
+
+    private long requestedCount;
+    private long deliveredCount;
+
+    private static class Batch {
+        final Set<Uri> pendingUris = new LinkedHashSet<>();
+        int depth;
+        long firstPendingTime;
+    }
+
+    private ChangeNotifier(Context context) {
+        contentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    public static synchronized ChangeNotifier getInstance(Context context) {
+        if (_instance == null) {
+            _instance = new ChangeNotifier(context);
+        }
+        return _instance;
+    }
+
+    /**
+     * Collects notifications of the calling thread until {@link #endBatch()}, like while syncing.
+     * Batches may be nested, notifications are delivered when the outermost one ends.
+     */
+    public void beginBatch() {
+        Batch batch = this.batch.get();
+        if (batch == null) {
+            batch = new Batch();
+            this.batch.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}. If it is the outermost one, delivers its
+     * notifications.
+     */
+    public void endBatch() {
+        Batch batch = this.batch.get();
+        if (batch == null) {
+            throw new IllegalStateException("No batch to end");
+        }
+        batch.depth--;
+        if (batch.depth == 0) {
+            this.batch.remove();
+            deliver(batch.pendingUris, true);
+        }
+    }
+
+    /**
+     * Like {@link ContentResolver#notifyChange(Uri, android.database.ContentObserver)}. If the
+     * calling thread is in a batch, delivered with its other notifications instead.
+     */
+    public void notifyChange(Uri uri) {
+        notifyChange(Collections.singletonList(uri));
+    }
+
+    /**
+     * Notifies each of the given URIs once, like after applying a batch of operations. If the
+     * calling thread is in a batch, delivered with its other notifications instead.
+     */
+    public void notifyChange(Collection<Uri> uris) {
+        synchronized (countLock) {
+            requestedCount += uris.size();
+        }
+        Batch batch = this.batch.get();
+        if (batch == null) {
+            deliver(uris, false);
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (batch.pendingUris.isEmpty()) {
+            batch.firstPendingTime = now;
+        }
+        batch.pendingUris.addAll(uris);
+        if (now - batch.firstPendingTime >= MAX_BATCH_DELAY_MS) {
+            deliver(batch.pendingUris, true);
+            batch.pendingUris.clear();
+        }
+    }
+
+    /**
+     * Returns how many notifications were requested.
+     */
+    public long getRequestedCount() {
+        synchronized (countLock) {
+            return requestedCount;
+        }
+    }
+
+    /**
+     * Returns how many notifications were actually delivered. The difference to {@link
+     * #getRequestedCount()} is the number of notifications, so re-queries of each observer, that
+     * were suppressed.
+     */
+    public long getDeliveredCount() {
+        synchronized (countLock) {
+            return deliveredCount;
+        }
+    }
+
+    private void deliver(Collection<Uri> pendingUris, boolean isBatch) {
+        if (pendingUris.isEmpty()) {
+            return;
+        }
+        List<Uri> uris = coalesce(pendingUris);
+        synchronized (countLock) {
+            deliveredCount += uris.size();
+            if (isBatch) {
+                Timber.d("Notifying %d URIs, %d of %d notifications suppressed so far",
+                        uris.size(), requestedCount - deliveredCount, requestedCount);
+            }
+        }
+        for (Uri uri : uris) {
+            contentResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Drops duplicate URIs and those where an ancestor is also notified.
+     */
+    @VisibleForTesting
+    static List<Uri> coalesce(Collection<Uri> uris) {
+        List<Uri> coalesced = new ArrayList<>(uris.size());
+        for (Uri uri : uris) {
+            boolean isCovered = false;
+            for (Uri other : uris) {
+                if (!other.equals(uri) && isAncestor(other, uri)) {
+                    isCovered = true;
+                    break;
+                }
+            }
+            if (!isCovered && !coalesced.contains(uri)) {
+                coalesced.add(uri);
+            }
+        }
+        return coalesced;
+    }
+
+    private static boolean isAncestor(Uri ancestor, Uri uri) {
+        if (!equals(ancestor.getScheme(), uri.getScheme())
+                || !equals(ancestor.getAuthority(), uri.getAuthority())) {
+            return false;
+        }
+        List<String> ancestorSegments = ancestor.getPathSegments();
+        List<String> segments = uri.getPathSegments();
+        return ancestorSegments.size() <= segments.size()
+                && segments.subList(0, ancestorSegments.size()).equals(ancestorSegments);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,329 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LruCache;
+import com.battlelancer.seriesguide.Constants;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import timber.log.Timber;
+
+/**
+ * Keeps the watched and collected flags, release time and id of the episodes of recently used
+ * shows in memory, so questions like how many episodes of a show are left to watch do not need to
+ * query the database. Shows are loaded with a single query on first use and dropped least recently
+ * used once the cache exceeds {@link #MAX_SIZE_BYTES}.
+ *
+ * <p>Writers keep the cache up to date once their changes are committed: {@link
+ * SeriesGuideProvider}, {@link BulkWriter} and {@link EpisodeFlagsWriter} either apply changed
+ * flags directly, see {@link #updateFlags(int, int, int, Integer, Boolean)}, or drop affected
+ * shows so they are loaded again.
+ */
+public class EpisodeFlagsCache {
+
+    @VisibleForTesting
+    static final int MAX_SIZE_BYTES = 1024 * 1024;
+
+    private static final byte COLLECTED_BIT = 0x4;
+    private static final byte WATCHED_MASK = 0x3;
+
+    private static EpisodeFlagsCache _instance;
+
+    private final Context context;
+    private final LruCache<Integer, ShowFlags> shows = new LruCache<Integer, ShowFlags>(
+            MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(@NonNull Integer key, @NonNull ShowFlags value) {
+            return value.getSizeBytes();
+        }
+    };
+    /**
+     * Changed by any invalidation or update, so a show loaded while a change was committed is
+     * not cached.
+     */
+    private long generation;
+
+    /**
+     * Flags of all episodes of a show, ordered by season and number. Does not change, updates
+     * replace it with a copy.
+     */
+    public static class ShowFlags {
+
+        private final long[] keys;
+        private final int[] episodeTvdbIds;
+        private final long[] releaseTimes;
+        private final byte[] flags;
+
+        ShowFlags(long[] keys, int[] episodeTvdbIds, long[] releaseTimes, byte[] flags) {
+            this.keys = keys;
+            this.episodeTvdbIds = episodeTvdbIds;
+            this.releaseTimes = releaseTimes;
+            this.flags = flags;
+        }
+
+        static long key(int season, int number) {
+            return ((long) season << 32) | (number & 0xFFFFFFFFL);
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        public int getSeason(int index) {
+            return (int) (keys[index] >> 32);
+        }
+
+        public int getNumber(int index) {
+            return (int) keys[index];
+        }
+
+        public int getEpisodeTvdbId(int index) {
+            return episodeTvdbIds[index];
+        }
+
+        public long getReleaseTime(int index) {
+            return releaseTimes[index];
+        }
+
+        /**
+         * Returns one of {@link EpisodeFlags}.
+         */
+        public int getWatched(int index) {
+            return flags[index] & WATCHED_MASK;
+        }
+
+        public boolean isCollected(int index) {
+            return (flags[index] & COLLECTED_BIT) != 0;
+        }
+
+        /**
+         * Counts not watched (skipped are not counted), released episodes that are not specials.
+         * Matches {@link com.battlelancer.seriesguide.util.DBUtils#getUnwatchedEpisodesOfShow}.
+         */
+        public int countUnwatchedReleased(long currentTime) {
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (getWatched(i) == EpisodeFlags.UNWATCHED
+                        && isReleasedRegular(i, currentTime)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Counts not collected, released episodes that are not specials.
+         */
+        public int countUncollectedReleased(long currentTime) {
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (!isCollected(i) && isReleasedRegular(i, currentTime)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private boolean isReleasedRegular(int index, long currentTime) {
+            long releaseTime = releaseTimes[index];
+            return getSeason(index) != 0
+                    && releaseTime != Constants.EPISODE_UNKNOWN_RELEASE
+                    && releaseTime <= currentTime;
+        }
+
+        /**
+         * Returns a copy with the given flags applied to all episodes with the given number, or
+         * {@code null} if there is no such episode.
+         */
+        @Nullable
+        ShowFlags withFlags(int season, int number, @Nullable Integer watched,
+                @Nullable Boolean collected) {
+            long key = key(season, number);
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0) {
+                return null;
+            }
+            // there may be duplicate episodes with the same number
+            while (index > 0 && keys[index - 1] == key) {
+                index--;
+            }
+            byte[] newFlags = flags.clone();
+            for (; index < keys.length && keys[index] == key; index++) {
+                int flag = newFlags[index];
+                if (watched != null) {
+                    flag = (flag & ~WATCHED_MASK) | (watched & WATCHED_MASK);
+                }
+                if (collected != null) {
+                    flag = collected ? flag | COLLECTED_BIT : flag & ~COLLECTED_BIT;
+                }
+                newFlags[index] = (byte) flag;
+            }
+            return new ShowFlags(keys, episodeTvdbIds, releaseTimes, newFlags);
+        }
+
+        boolean containsAny(Collection<Integer> episodeIds) {
+            for (int episodeTvdbId : episodeTvdbIds) {
+                if (episodeIds.contains(episodeTvdbId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int getSizeBytes() {
+            // key, id, release time and flags, plus about the overhead of the arrays
+            return keys.length * (8 + 4 + 8 + 1) + 4 * 16;
+        }
+    }
+
+    private EpisodeFlagsCache(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized EpisodeFlagsCache getInstance(Context context) {
+        if (_instance == null) {
+            _instance = new EpisodeFlagsCache(context);
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns the flags of all episodes of the given show, loads them if they are not cached.
+     *
+     * @return {@code null} if loading failed.
+     */
+    @Nullable
+    public ShowFlags get(int showTvdbId) {
+        long loadGeneration;
+        synchronized (this) {
+            ShowFlags cached = shows.get(showTvdbId);
+            if (cached != null) {
+                return cached;
+            }
+            loadGeneration = generation;
+        }
+
+        ShowFlags loaded = load(showTvdbId);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                shows.put(showTvdbId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @Nullable
+    private ShowFlags load(int showTvdbId) {
+        Cursor query;
+        try {
+            query = context.getContentResolver().query(
+                    Episodes.buildEpisodesOfShowUri(showTvdbId), FlagsQuery.PROJECTION,
+                    null, null, FlagsQuery.SORT_ORDER);
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to load flags of show %s", showTvdbId);
+            return null;
+        }
+        if (query == null) {
+            return null;
+        }
+
+        int count = query.getCount();
+        long[] keys = new long[count];
+        int[] episodeTvdbIds = new int[count];
+        long[] releaseTimes = new long[count];
+        byte[] flags = new byte[count];
+        int i = 0;
+        while (query.moveToNext() && i < count) {
+            keys[i] = ShowFlags.key(query.getInt(FlagsQuery.SEASON),
+                    query.getInt(FlagsQuery.NUMBER));
+            episodeTvdbIds[i] = query.getInt(FlagsQuery.ID);
+            releaseTimes[i] = query.getLong(FlagsQuery.RELEASE_TIME);
+            int flag = query.getInt(FlagsQuery.WATCHED) & WATCHED_MASK;
+            if (query.getInt(FlagsQuery.COLLECTED) == 1) {
+                flag |= COLLECTED_BIT;
+            }
+            flags[i] = (byte) flag;
+            i++;
+        }
+        query.close();
+        return new ShowFlags(keys, episodeTvdbIds, releaseTimes, flags);
+    }
+
+    /**
+     * Applies flags written to all episodes with the given number of a show, if the show is
+     * cached. Pass {@code null} for a flag that was not changed. Call after the change is
+     * committed.
+     */
+    public synchronized void updateFlags(int showTvdbId, int season, int number,
+            @Nullable Integer watched, @Nullable Boolean collected) {
+        generation++;
+        ShowFlags cached = shows.get(showTvdbId);
+        if (cached == null) {
+            return;
+        }
+        ShowFlags updated = cached.withFlags(season, number, watched, collected);
+        if (updated != null) {
+            shows.put(showTvdbId, updated);
+        }
+    }
+
+    /**
+     * Drops the flags of the given show, e.g. after episodes were added or removed.
+     */
+    public synchronized void invalidateShow(int showTvdbId) {
+        generation++;
+        shows.remove(showTvdbId);
+    }
+
+    /**
+     * Drops the flags of shows containing any of the given episodes.
+     */
+    public synchronized void invalidateEpisodes(@NonNull Collection<Integer> episodeTvdbIds) {
+        generation++;
+        for (Map.Entry<Integer, ShowFlags> entry : shows.snapshot().entrySet()) {
+            if (entry.getValue().containsAny(episodeTvdbIds)) {
+                shows.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Drops the flags of all shows, if it is unknown which shows were changed.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        shows.evictAll();
+    }
+
+    @VisibleForTesting
+    interface FlagsQuery {
+        String[] PROJECTION = new String[]{
+                Episodes._ID,
+                Episodes.SEASON,
+                Episodes.NUMBER,
+                Episodes.FIRSTAIREDMS,
+                Episodes.WATCHED,
+                Episodes.COLLECTED
+        };
+
+        /** Matches the show, season and number index of episodes, so no sorting is needed. */
+        String SORT_ORDER = Episodes.SEASON + " ASC," + Episodes.NUMBER + " ASC";
+
+        int ID = 0;
+        int SEASON = 1;
+        int NUMBER = 2;
+        int RELEASE_TIME = 3;
+        int WATCHED = 4;
+        int COLLECTED = 5;
+    }
+}
@@ -0,0 +1,213 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.Context;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.sync.SyncMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import timber.log.Timber;
+
+/**
+ * Applies watched and collected flags of episodes identified by show, season and episode number,
+ * like those downloaded from Hexagon, to the episodes table.
+ *
+ * <p>Instead of updating one episode at a time, {@link #apply()} stages all added flags in a
+ * temporary table and updates all matching episodes with a single statement joining the staged
+ * flags with episodes using their show, season and number index. Episodes where no flag changes are
+ * not written.
+ */
+public class EpisodeFlagsWriter {
+
+    /** Temporary tables only exist for the connection, so are re-created in each transaction. */
+    private static final String TABLE_FLAGS = "episode_flags_staged";
+
+    private static final String FLAG_SHOW_ID = "flag_show_id";
+    private static final String FLAG_SEASON = "flag_season";
+    private static final String FLAG_NUMBER = "flag_number";
+    private static final String FLAG_WATCHED = "flag_watched";
+    private static final String FLAG_COLLECTED = "flag_collected";
+
+    private static final String CREATE_FLAGS_TABLE = "CREATE TEMP TABLE IF NOT EXISTS "
+            + TABLE_FLAGS + " ("
+            + FLAG_SHOW_ID + " INTEGER NOT NULL,"
+            + FLAG_SEASON + " INTEGER NOT NULL,"
+            + FLAG_NUMBER + " INTEGER NOT NULL,"
+            + FLAG_WATCHED + " INTEGER,"
+            + FLAG_COLLECTED + " INTEGER,"
+            + "PRIMARY KEY (" + FLAG_SHOW_ID + "," + FLAG_SEASON + "," + FLAG_NUMBER + "))";
+
+    private static final String MATCHES_STAGED_FLAG = FLAG_SHOW_ID + "=?1 AND "
+            + FLAG_SEASON + "=?2 AND " + FLAG_NUMBER + "=?3";
+
+    /**
+     * Flags added later for the same episode replace earlier ones, a NULL flag keeps the one
+     * staged earlier.
+     */
+    private static final String INSERT_FLAG = "INSERT OR REPLACE INTO " + TABLE_FLAGS + " ("
+            + FLAG_SHOW_ID + "," + FLAG_SEASON + "," + FLAG_NUMBER + ","
+            + FLAG_WATCHED + "," + FLAG_COLLECTED
+            + ") VALUES (?1,?2,?3,"
+            + "COALESCE(?4,(SELECT " + FLAG_WATCHED + " FROM " + TABLE_FLAGS
+            + " WHERE " + MATCHES_STAGED_FLAG + ")),"
+            + "COALESCE(?5,(SELECT " + FLAG_COLLECTED + " FROM " + TABLE_FLAGS
+            + " WHERE " + MATCHES_STAGED_FLAG + ")))";
+
+    private static final String DELETE_FLAGS = "DELETE FROM " + TABLE_FLAGS;
+
+    private static final String MATCHES_EPISODE = FLAG_SHOW_ID + "=" + Tables.EPISODES + "."
+            + Shows.REF_SHOW_ID
+            + " AND " + FLAG_SEASON + "=" + Tables.EPISODES + "." + Episodes.SEASON
+            + " AND " + FLAG_NUMBER + "=" + Tables.EPISODES + "." + Episodes.NUMBER;
+
+    /**
+     * SQLite does not support UPDATE FROM on all supported versions, so the join selects the ids
+     * of episodes to change and the new values are looked up by the primary key of the staged
+     * flags. A NULL flag keeps the current value.
+     */
+    private static final String UPDATE_EPISODES = "UPDATE " + Tables.EPISODES + " SET "
+            + Episodes.WATCHED + "=COALESCE((SELECT " + FLAG_WATCHED + " FROM " + TABLE_FLAGS
+            + " WHERE " + MATCHES_EPISODE + ")," + Episodes.WATCHED + "),"
+            + Episodes.COLLECTED + "=COALESCE((SELECT " + FLAG_COLLECTED + " FROM " + TABLE_FLAGS
+            + " WHERE " + MATCHES_EPISODE + ")," + Episodes.COLLECTED + ")"
+            + " WHERE " + Episodes._ID + " IN (SELECT " + Tables.EPISODES + "." + Episodes._ID
+            + " FROM " + TABLE_FLAGS + " JOIN " + Tables.EPISODES + " ON " + MATCHES_EPISODE
+            + " WHERE (" + FLAG_WATCHED + " IS NOT NULL AND "
+            + FLAG_WATCHED + "!=" + Tables.EPISODES + "." + Episodes.WATCHED + ")"
+            + " OR (" + FLAG_COLLECTED + " IS NOT NULL AND "
+            + FLAG_COLLECTED + "!=" + Tables.EPISODES + "." + Episodes.COLLECTED + "))";
+
+    private static class Flags {
+        final int showTvdbId;
+        final int season;
+        final int number;
+        final Integer watched;
+        final Boolean collected;
+
+        Flags(int showTvdbId, int season, int number, Integer watched, Boolean collected) {
+            this.showTvdbId = showTvdbId;
+            this.season = season;
+            this.number = number;
+            this.watched = watched;
+            this.collected = collected;
+        }
+    }
+
+    private final Context context;
+    private final SgRoomDatabase room;
+    private final List<Flags> flags = new ArrayList<>();
+
+    public EpisodeFlagsWriter(Context context) {
+        this.context = context.getApplicationContext();
+        this.room = SgRoomDatabase.getInstance(context);
+    }
+
+    /**
+     * Adds flags to apply to an episode. Pass {@code null} to keep the current value of a flag.
+     */
+    public void addFlags(int showTvdbId, int season, int number, @Nullable Integer watched,
+            @Nullable Boolean collected) {
+        if (watched == null && collected == null) {
+            return; // nothing to change
+        }
+        flags.add(new Flags(showTvdbId, season, number, watched, collected));
+    }
+
+    /**
+     * Applies all added flags in one transaction, then clears them. If episodes were changed
+     * updates the {@link EpisodeFlagsCache} and notifies observers of episodes once.
+     *
+     * @return The number of changed episodes.
+     */
+    public int apply() {
+        if (flags.isEmpty()) {
+            return 0;
+        }
+
+        List<Flags> addedFlags = new ArrayList<>(flags);
+        int changedEpisodes;
+        room.beginTransaction();
+        SupportSQLiteStatement insert = null;
+        SupportSQLiteStatement update = null;
+        try {
+            // table is kept for the connection, make sure it is empty
+            room.getOpenHelper().getWritableDatabase().execSQL(CREATE_FLAGS_TABLE);
+            room.getOpenHelper().getWritableDatabase().execSQL(DELETE_FLAGS);
+
+            insert = room.compileStatement(INSERT_FLAG);
+            for (Flags flag : flags) {
+                insert.clearBindings();
+                insert.bindLong(1, flag.showTvdbId);
+                insert.bindLong(2, flag.season);
+                insert.bindLong(3, flag.number);
+                if (flag.watched != null) {
+                    insert.bindLong(4, flag.watched);
+                }
+                if (flag.collected != null) {
+                    insert.bindLong(5, flag.collected ? 1 : 0);
+                }
+                insert.executeInsert();
+            }
+
+            update = room.compileStatement(UPDATE_EPISODES);
+            changedEpisodes = update.executeUpdateDelete();
+
+            room.getOpenHelper().getWritableDatabase().execSQL(DELETE_FLAGS);
+            room.setTransactionSuccessful();
+        } finally {
+            closeStatement(insert);
+            closeStatement(update);
+            room.endTransaction();
+            flags.clear();
+        }
+
+        SyncMetrics.recordDbOps(1);
+        SyncMetrics.recordEpisodesTouched(changedEpisodes);
+        if (changedEpisodes > 0) {
+            updateCache(addedFlags);
+            ChangeNotifier.getInstance(context).notifyChange(Episodes.CONTENT_URI);
+        }
+        return changedEpisodes;
+    }
+
+    /**
+     * Applies the flags to cached shows. Like when staging, flags added later for an episode
+     * replace earlier ones unless they are {@code null}.
+     */
+    private void updateCache(List<Flags> addedFlags) {
+        Map<String, Flags> mergedFlags = new LinkedHashMap<>();
+        for (Flags flag : addedFlags) {
+            String key = flag.showTvdbId + "-" + flag.season + "-" + flag.number;
+            Flags earlier = mergedFlags.get(key);
+            if (earlier != null) {
+                flag = new Flags(flag.showTvdbId, flag.season, flag.number,
+                        flag.watched != null ? flag.watched : earlier.watched,
+                        flag.collected != null ? flag.collected : earlier.collected);
+            }
+            mergedFlags.put(key, flag);
+        }
+
+        EpisodeFlagsCache cache = EpisodeFlagsCache.getInstance(context);
+        for (Flags flag : mergedFlags.values()) {
+            cache.updateFlags(flag.showTvdbId, flag.season, flag.number, flag.watched,
+                    flag.collected);
+        }
+    }
+
+    private static void closeStatement(@Nullable SupportSQLiteStatement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.close();
+        } catch (IOException e) {
+            Timber.e(e, "Failed to close statement");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+import com.battlelancer.seriesguide.model.SgEpisodePage;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodePages;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import java.util.List;
+
+/**
+ * Data Access Object for the episode pages table.
+ */
+@Dao
+public interface EpisodePageHelper {
+
+    @Query("SELECT * FROM " + Tables.EPISODE_PAGES + " WHERE " + EpisodePages.SHOW_ID
+            + "=:showTvdbId")
+    List<SgEpisodePage> getPagesOfShow(int showTvdbId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertPages(List<SgEpisodePage> pages);
+
+    @Query("DELETE FROM " + Tables.EPISODE_PAGES + " WHERE " + EpisodePages.SHOW_ID
+            + "=:showTvdbId")
+    void deletePagesOfShow(int showTvdbId);
+
+    @Query("DELETE FROM " + Tables.EPISODE_PAGES)
+    void deleteAllPages();
+}
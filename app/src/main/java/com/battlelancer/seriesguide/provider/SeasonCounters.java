@@ -0,0 +1,202 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.battlelancer.seriesguide.enums.SeasonTags;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Qualified;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.battlelancer.seriesguide.util.TimeTools;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import timber.log.Timber;
+
+/**
+ * Computes the episode counters of seasons (total, aired unwatched, unaired unwatched, unwatched
+ * without release date and if any are skipped) for one season, all seasons of a show or all
+ * seasons at once in a single grouped query, then writes changed counters in one transaction.
+ * Observers of seasons are notified if any counters changed.
+ */
+public class SeasonCounters {
+
+    private static final String AIRED_UNWATCHED = Episodes.WATCHED + "=0 AND "
+            + Episodes.FIRSTAIREDMS + "!=-1 AND " + Episodes.FIRSTAIREDMS + "<=?";
+    private static final String UNAIRED_UNWATCHED = Episodes.WATCHED + "=0 AND "
+            + Episodes.FIRSTAIREDMS + ">?";
+    private static final String NO_RELEASE_DATE_UNWATCHED = Episodes.WATCHED + "=0 AND "
+            + Episodes.FIRSTAIREDMS + "=-1";
+    private static final String SKIPPED = Episodes.WATCHED + "=" + EpisodeFlags.SKIPPED;
+
+    /**
+     * Seasons left joined with their episodes, so seasons without episodes get zero counters.
+     * Conditions refer to episode columns, which are NULL for seasons without episodes, so they
+     * are never counted.
+     */
+    @VisibleForTesting
+    static final String QUERY_COUNTERS = "SELECT "
+            + Qualified.SEASONS_ID + ","
+            + "COUNT(" + Qualified.EPISODES_ID + "),"
+            + countIf(AIRED_UNWATCHED) + ","
+            + countIf(UNAIRED_UNWATCHED) + ","
+            + countIf(NO_RELEASE_DATE_UNWATCHED) + ","
+            + countIf(SKIPPED) + ","
+            + Tables.SEASONS + "." + Seasons.TOTALCOUNT + ","
+            + Tables.SEASONS + "." + Seasons.WATCHCOUNT + ","
+            + Tables.SEASONS + "." + Seasons.UNAIREDCOUNT + ","
+            + Tables.SEASONS + "." + Seasons.NOAIRDATECOUNT + ","
+            + Tables.SEASONS + "." + Seasons.TAGS
+            + " FROM " + Tables.SEASONS
+            + " LEFT OUTER JOIN " + Tables.EPISODES
+            + " ON " + Qualified.EPISODES_SEASON_ID + "=" + Qualified.SEASONS_ID;
+
+    private static final String GROUP_BY_SEASON = " GROUP BY " + Qualified.SEASONS_ID;
+
+    private static final String UPDATE_COUNTERS = "UPDATE " + Tables.SEASONS + " SET "
+            + Seasons.TOTALCOUNT + "=?,"
+            + Seasons.WATCHCOUNT + "=?,"
+            + Seasons.UNAIREDCOUNT + "=?,"
+            + Seasons.NOAIRDATECOUNT + "=?,"
+            + Seasons.TAGS + "=?"
+            + " WHERE " + Seasons._ID + "=?";
+
+    private static String countIf(String condition) {
+        return "SUM(CASE WHEN " + condition + " THEN 1 ELSE 0 END)";
+    }
+
+    private static class Counters {
+        int seasonTvdbId;
+        int total;
+        int airedUnwatched;
+        int unairedUnwatched;
+        int noReleaseDateUnwatched;
+        String tags;
+    }
+
+    private SeasonCounters() {
+    }
+
+    /**
+     * Updates the counters of a single season.
+     */
+    public static boolean updateSeason(Context context, int seasonTvdbId) {
+        return update(context, " WHERE " + Qualified.SEASONS_ID + "=?", seasonTvdbId);
+    }
+
+    /**
+     * Updates the counters of all seasons of a show.
+     */
+    public static boolean updateSeasonsOfShow(Context context, int showTvdbId) {
+        // show id column of seasons has TEXT affinity, so the argument is compared as text
+        return update(context, " WHERE " + Qualified.SEASONS_SHOW_ID + "=?",
+                String.valueOf(showTvdbId));
+    }
+
+    /**
+     * Updates the counters of all seasons, e.g. after importing a backup.
+     */
+    public static boolean updateAllSeasons(Context context) {
+        return update(context, null, null);
+    }
+
+    /**
+     * @return {@code false} if querying or writing failed.
+     */
+    private static boolean update(Context context, @Nullable String where,
+            @Nullable Object whereArg) {
+        SgRoomDatabase room = SgRoomDatabase.getInstance(context);
+        SupportSQLiteDatabase database = room.getOpenHelper().getWritableDatabase();
+        long currentTime = TimeTools.getCurrentTime(context);
+
+        List<Counters> changed;
+        try {
+            Cursor query = database.query(buildQuery(where),
+                    whereArg != null
+                            ? new Object[]{currentTime, currentTime, whereArg}
+                            : new Object[]{currentTime, currentTime});
+            try {
+                changed = readChangedCounters(query);
+            } finally {
+                query.close();
+            }
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to count episodes of seasons");
+            return false;
+        }
+
+        if (changed.isEmpty()) {
+            return true;
+        }
+
+        try {
+            SupportSQLiteStatement statement = room.compileStatement(UPDATE_COUNTERS);
+            room.beginTransaction();
+            try {
+                for (Counters counters : changed) {
+                    statement.bindLong(1, counters.total);
+                    statement.bindLong(2, counters.airedUnwatched);
+                    statement.bindLong(3, counters.unairedUnwatched);
+                    statement.bindLong(4, counters.noReleaseDateUnwatched);
+                    statement.bindString(5, counters.tags);
+                    statement.bindLong(6, counters.seasonTvdbId);
+                    statement.executeUpdateDelete();
+                }
+                room.setTransactionSuccessful();
+            } finally {
+                room.endTransaction();
+                try {
+                    statement.close();
+                } catch (IOException e) {
+                    Timber.e(e, "Failed to close statement");
+                }
+            }
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to update counters of seasons");
+            return false;
+        }
+
+        ChangeNotifier.getInstance(context).notifyChange(Seasons.CONTENT_URI);
+        return true;
+    }
+
+    @VisibleForTesting
+    static String buildQuery(@Nullable String where) {
+        return where != null
+                ? QUERY_COUNTERS + where + GROUP_BY_SEASON
+                : QUERY_COUNTERS + GROUP_BY_SEASON;
+    }
+
+    /**
+     * Returns counters of seasons where they differ from those stored.
+     */
+    private static List<Counters> readChangedCounters(Cursor query) {
+        List<Counters> changed = new ArrayList<>();
+        while (query.moveToNext()) {
+            Counters counters = new Counters();
+            counters.seasonTvdbId = query.getInt(0);
+            counters.total = query.getInt(1);
+            counters.airedUnwatched = query.getInt(2);
+            counters.unairedUnwatched = query.getInt(3);
+            counters.noReleaseDateUnwatched = query.getInt(4);
+            counters.tags = query.getInt(5) > 0 ? SeasonTags.SKIPPED : SeasonTags.NONE;
+
+            // stored values may be NULL, then always update
+            boolean isUnchanged = !query.isNull(6) && query.getInt(6) == counters.total
+                    && !query.isNull(7) && query.getInt(7) == counters.airedUnwatched
+                    && !query.isNull(8) && query.getInt(8) == counters.unairedUnwatched
+                    && !query.isNull(9) && query.getInt(9) == counters.noReleaseDateUnwatched
+                    && counters.tags.equals(query.getString(10));
+            if (!isUnchanged) {
+                changed.add(counters);
+            }
+        }
+        return changed;
+    }
+}
@@ -562,6 +562,59 @@ public class SeriesGuideContract {
         String EXTRAS = "job_extras";
     }
 
+    interface EpisodePagesColumns {
+        /** TVDB id of the show a page of episodes belongs to. */
+        String SHOW_ID = "page_show_id";
+        /** Number of the page as requested from TVDB. */
+        String NUMBER = "page_number";
+        String LANGUAGE = "page_language";
+        /**
+         * Values other than the page content the episode values depend on, like the show release
+         * time. If they change, the page needs to be processed again.
+         */
+        String SETTINGS = "page_settings";
+        /** ETag header of the page response, if any. */
+        String ETAG = "page_etag";
+        /** Last-Modified header of the page response, if any. */
+        String LAST_MODIFIED = "page_last_modified";
+        /** SHA-1 hash of the page response body. */
+        String CONTENT_HASH = "page_content_hash";
+        /** Number of the next page, if any. */
+        String NEXT_NUMBER = "page_next_number";
+        /**
+         * Comma separated list of "episodeId:seasonId" pairs of the episodes on the page, see
+         * {@link com.battlelancer.seriesguide.thetvdbapi.TvdbEpisodeTools}.
+         */
+        String EPISODES = "page_episodes";
+    }
+
+    interface SyncStagesColumns {
+        /** Time in milliseconds the sync run a stage belongs to was started, identifies the run. */
+        String RUN_STARTED_MS = "sync_run_started_ms";
+        String RUN_RESULT = "sync_run_result";
+        /** Name of the {@link com.battlelancer.seriesguide.sync.SyncProgress.Step}. */
+        String STAGE = "sync_stage";
+        String DURATION_MS = "sync_duration_ms";
+        String HTTP_REQUESTS = "sync_http_requests";
+        String HTTP_BYTES = "sync_http_bytes";
+        String DB_OPS = "sync_db_ops";
+        String SHOWS_TOUCHED = "sync_shows_touched";
+        String EPISODES_TOUCHED = "sync_episodes_touched";
+        String FAILED = "sync_failed";
+    }
+
+    interface ShowStatsColumns {
+        /** TVDB id of the show the counters belong to. */
+        String SHOW_ID = "stats_show_id";
+        /** Number of episodes, excluding specials. */
+        String EPISODES = "stats_episodes";
+        /** Number of watched episodes, excluding specials. Skipped episodes are not watched. */
+        String EPISODES_WATCHED = "stats_episodes_watched";
+        /** Number of specials. */
+        String SPECIALS = "stats_specials";
+        String SPECIALS_WATCHED = "stats_specials_watched";
+    }
+
     private static final Uri BASE_CONTENT_URI = Uri.parse("content://"
             + SgApp.CONTENT_AUTHORITY);
 
@@ -583,6 +636,8 @@ public class SeriesGuideContract {
 
     public static final String PATH_RENEWFTSTABLE = "renewftstable";
 
+    public static final String PATH_CHECKFTSTABLE = "checkftstable";
+
     public static final String PATH_SEARCH = "search";
 
     public static final String PATH_FILTER = "filter";
@@ -872,6 +927,13 @@ public class SeriesGuideContract {
         public static final Uri CONTENT_URI_RENEWFTSTABLE = BASE_CONTENT_URI.buildUpon()
                 .appendPath(PATH_RENEWFTSTABLE).build();
 
+        /**
+         * If "queried" checks the search table and only rebuilds it if it is not intact.
+         * See {@link SeriesGuideProvider#CHECK_FTSTABLE}.
+         */
+        public static final Uri CONTENT_URI_CHECKFTSTABLE = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_CHECKFTSTABLE).build();
+
         public static Uri buildDocIdUri(String rowId) {
             return CONTENT_URI.buildUpon().appendPath(rowId).build();
         }
@@ -1139,6 +1201,28 @@ public class SeriesGuideContract {
         }
     }
 
+    /**
+     * Validators of the pages of episodes last downloaded from TVDB for each show. Not available
+     * through {@link SeriesGuideProvider}, see {@link
+     * com.battlelancer.seriesguide.thetvdbapi.TvdbEpisodeTools}.
+     */
+    public static class EpisodePages implements EpisodePagesColumns {
+    }
+
+    /**
+     * Metrics of the stages of recent sync runs. Not available through {@link
+     * SeriesGuideProvider}, see {@link com.battlelancer.seriesguide.sync.SyncMetrics}.
+     */
+    public static class SyncStages implements SyncStagesColumns, BaseColumns {
+    }
+
+    /**
+     * Episode counters of each show, kept up to date by triggers on the episodes table. Not
+     * available through {@link SeriesGuideProvider}, see {@link ShowStatsHelper}.
+     */
+    public static class ShowStats implements ShowStatsColumns {
+    }
+
     private SeriesGuideContract() {
     }
 }
@@ -26,9 +26,11 @@ import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListsColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.MoviesColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SeasonsColumns;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowStats;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowsColumns;
 import com.battlelancer.seriesguide.settings.NotificationSettings;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
 import com.battlelancer.seriesguide.util.DBUtils;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import timber.log.Timber;
@@ -148,11 +150,35 @@ public class SeriesGuideDatabase {
         String SHOWS_NEXT_EPISODE = Tables.SHOWS + "." + Shows.NEXTEPISODE;
         String EPISODES_ID = Tables.EPISODES + "." + Episodes._ID;
         String EPISODES_SHOW_ID = Tables.EPISODES + "." + Shows.REF_SHOW_ID;
+        String EPISODES_SEASON_ID = Tables.EPISODES + "." + Seasons.REF_SEASON_ID;
         String SEASONS_ID = Tables.SEASONS + "." + Seasons._ID;
         String SEASONS_SHOW_ID = Tables.SEASONS + "." + Shows.REF_SHOW_ID;
         String LIST_ITEMS_REF_ID = Tables.LIST_ITEMS + "." + ListItems.ITEM_REF_ID;
     }
 
+    public interface Triggers {
+
+        String EPISODES_SEARCH_BEFORE_INSERT = "episodes_search_before_insert";
+
+        String EPISODES_SEARCH_AFTER_INSERT = "episodes_search_after_insert";
+
+        String EPISODES_SEARCH_BEFORE_UPDATE = "episodes_search_before_update";
+
+        String EPISODES_SEARCH_AFTER_UPDATE = "episodes_search_after_update";
+
+        String EPISODES_SEARCH_BEFORE_DELETE = "episodes_search_before_delete";
+
+        String SHOW_STATS_BEFORE_INSERT = "show_stats_before_insert";
+
+        String SHOW_STATS_AFTER_INSERT = "show_stats_after_insert";
+
+        String SHOW_STATS_AFTER_UPDATE = "show_stats_after_update";
+
+        String SHOW_STATS_AFTER_DELETE = "show_stats_after_delete";
+
+        String SHOW_STATS_AFTER_SHOW_DELETE = "show_stats_after_show_delete";
+    }
+
     public interface Tables {
 
         String SHOWS = "series";
@@ -209,6 +235,17 @@ public class SeriesGuideDatabase {
         String ACTIVITY = "activity";
 
         String JOBS = "jobs";
+
+        String SYNC_STAGES = "sync_stages";
+
+        String EPISODE_PAGES = "episode_pages";
+
+        String SHOW_STATS = "show_stats";
+
+        /**
+         * Not managed by Room, see {@link com.battlelancer.seriesguide.dataliberation.BackupChangeTracker}.
+         */
+        String BACKUP_CHANGES = "backup_changes";
     }
 
     private interface Selections {
@@ -456,6 +493,147 @@ public class SeriesGuideDatabase {
 
             + ");";
 
+    /**
+     * Keep {@link Tables#EPISODES_SEARCH} up to date when episodes are inserted, their title or
+     * overview changes or they are deleted, so only changed episodes are re-indexed. Entries are
+     * removed before a row changes as the FTS4 external content table reads the old values from
+     * {@link Tables#EPISODES} to remove them. Works the same with the FTS3 table.
+     */
+    static final String[] CREATE_SEARCH_TRIGGERS = new String[]{
+            // bulk inserts replace existing episodes, REPLACE does not run delete triggers
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.EPISODES_SEARCH_BEFORE_INSERT
+                    + " BEFORE INSERT ON " + Tables.EPISODES
+                    + " WHEN EXISTS (SELECT 1 FROM " + Tables.EPISODES
+                    + " WHERE " + Episodes._ID + "=new." + Episodes._ID + ")"
+                    + " BEGIN " + SearchTriggerQuery.DELETE_NEW + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.EPISODES_SEARCH_AFTER_INSERT
+                    + " AFTER INSERT ON " + Tables.EPISODES
+                    + " BEGIN " + SearchTriggerQuery.INSERT_NEW + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.EPISODES_SEARCH_BEFORE_UPDATE
+                    + " BEFORE UPDATE OF " + Episodes.TITLE + "," + Episodes.OVERVIEW
+                    + " ON " + Tables.EPISODES
+                    + " WHEN " + SearchTriggerQuery.WHEN_TEXT_CHANGED
+                    + " BEGIN " + SearchTriggerQuery.DELETE_OLD + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.EPISODES_SEARCH_AFTER_UPDATE
+                    + " AFTER UPDATE OF " + Episodes.TITLE + "," + Episodes.OVERVIEW
+                    + " ON " + Tables.EPISODES
+                    + " WHEN " + SearchTriggerQuery.WHEN_TEXT_CHANGED
+                    + " BEGIN " + SearchTriggerQuery.INSERT_NEW + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.EPISODES_SEARCH_BEFORE_DELETE
+                    + " BEFORE DELETE ON " + Tables.EPISODES
+                    + " BEGIN " + SearchTriggerQuery.DELETE_OLD + " END;"
+    };
+
+    private interface SearchTriggerQuery {
+        String WHEN_TEXT_CHANGED = "old." + Episodes.TITLE + " IS NOT new." + Episodes.TITLE
+                + " OR old." + Episodes.OVERVIEW + " IS NOT new." + Episodes.OVERVIEW;
+
+        String DELETE_OLD = "DELETE FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + EpisodeSearch._DOCID + "=old." + Episodes._ID + ";";
+
+        String DELETE_NEW = "DELETE FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + EpisodeSearch._DOCID + "=new." + Episodes._ID + ";";
+
+        String INSERT_NEW = "INSERT INTO " + Tables.EPISODES_SEARCH
+                + "(" + EpisodeSearch._DOCID + ","
+                + EpisodeSearchColumns.TITLE + "," + EpisodeSearchColumns.OVERVIEW + ")"
+                + " VALUES (new." + Episodes._ID + ",new." + Episodes.TITLE
+                + ",new." + Episodes.OVERVIEW + ");";
+    }
+
+    /**
+     * Keep the counters of {@link Tables#SHOW_STATS} up to date when episodes are inserted,
+     * deleted or their show, season or watched flag changes, so statistics do not need to scan
+     * all episodes. Like for the search table, replaced episodes are subtracted before insert.
+     * Counters of a removed show are dropped.
+     */
+    static final String[] CREATE_SHOW_STATS_TRIGGERS = new String[]{
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.SHOW_STATS_BEFORE_INSERT
+                    + " BEFORE INSERT ON " + Tables.EPISODES
+                    + " WHEN EXISTS (SELECT 1 FROM " + Tables.EPISODES
+                    + " WHERE " + Episodes._ID + "=new." + Episodes._ID + ")"
+                    + " BEGIN " + ShowStatsTriggerQuery.SUBTRACT_REPLACED + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.SHOW_STATS_AFTER_INSERT
+                    + " AFTER INSERT ON " + Tables.EPISODES
+                    + " BEGIN " + ShowStatsTriggerQuery.ADD_NEW + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.SHOW_STATS_AFTER_UPDATE
+                    + " AFTER UPDATE OF " + Shows.REF_SHOW_ID + "," + Episodes.SEASON + ","
+                    + Episodes.WATCHED + " ON " + Tables.EPISODES
+                    + " WHEN " + ShowStatsTriggerQuery.WHEN_COUNTED_CHANGED
+                    + " BEGIN " + ShowStatsTriggerQuery.SUBTRACT_OLD
+                    + ShowStatsTriggerQuery.ADD_NEW + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.SHOW_STATS_AFTER_DELETE
+                    + " AFTER DELETE ON " + Tables.EPISODES
+                    + " BEGIN " + ShowStatsTriggerQuery.SUBTRACT_OLD + " END;",
+            "CREATE TRIGGER IF NOT EXISTS " + Triggers.SHOW_STATS_AFTER_SHOW_DELETE
+                    + " AFTER DELETE ON " + Tables.SHOWS
+                    + " BEGIN DELETE FROM " + Tables.SHOW_STATS
+                    + " WHERE " + ShowStats.SHOW_ID + "=old." + Shows._ID + "; END;"
+    };
+
+    private interface ShowStatsTriggerQuery {
+        String WHEN_COUNTED_CHANGED = "old." + Shows.REF_SHOW_ID + " IS NOT new."
+                + Shows.REF_SHOW_ID
+                + " OR old." + Episodes.SEASON + " IS NOT new." + Episodes.SEASON
+                + " OR old." + Episodes.WATCHED + " IS NOT new." + Episodes.WATCHED;
+
+        String REPLACED = "(SELECT %s FROM " + Tables.EPISODES
+                + " WHERE " + Episodes._ID + "=new." + Episodes._ID + ")";
+
+        String SUBTRACT_OLD = changeCounters("-", "old." + Shows.REF_SHOW_ID,
+                "old." + Episodes.SEASON, "old." + Episodes.WATCHED);
+
+        String SUBTRACT_REPLACED = changeCounters("-",
+                String.format(REPLACED, Shows.REF_SHOW_ID),
+                String.format(REPLACED, Episodes.SEASON),
+                String.format(REPLACED, Episodes.WATCHED));
+
+        /** Adds a row for the show if there is none, yet. */
+        String ADD_NEW = "INSERT OR IGNORE INTO " + Tables.SHOW_STATS + " ("
+                + ShowStats.SHOW_ID + "," + ShowStats.EPISODES + ","
+                + ShowStats.EPISODES_WATCHED + "," + ShowStats.SPECIALS + ","
+                + ShowStats.SPECIALS_WATCHED
+                + ") VALUES (new." + Shows.REF_SHOW_ID + ",0,0,0,0);"
+                + changeCounters("+", "new." + Shows.REF_SHOW_ID, "new." + Episodes.SEASON,
+                "new." + Episodes.WATCHED);
+    }
+
+    /**
+     * Adds or subtracts an episode from the counters of its show, comparisons evaluate to 1 or 0.
+     */
+    private static String changeCounters(String operator, String showId, String season,
+            String watched) {
+        String isSpecial = season + "=0";
+        String isRegular = season + "!=0";
+        String isWatched = watched + "=" + EpisodeFlags.WATCHED;
+        return "UPDATE " + Tables.SHOW_STATS + " SET "
+                + ShowStats.EPISODES + "=" + ShowStats.EPISODES + operator
+                + "(" + isRegular + "),"
+                + ShowStats.EPISODES_WATCHED + "=" + ShowStats.EPISODES_WATCHED + operator
+                + "(" + isRegular + " AND " + isWatched + "),"
+                + ShowStats.SPECIALS + "=" + ShowStats.SPECIALS + operator
+                + "(" + isSpecial + "),"
+                + ShowStats.SPECIALS_WATCHED + "=" + ShowStats.SPECIALS_WATCHED + operator
+                + "(" + isSpecial + " AND " + isWatched + ")"
+                + " WHERE " + ShowStats.SHOW_ID + "=" + showId + ";";
+    }
+
+    /**
+     * Counts episodes of all shows like the {@link #CREATE_SHOW_STATS_TRIGGERS} do, by scanning
+     * all episodes.
+     */
+    @VisibleForTesting
+    static final String SELECT_SHOW_STATS_FROM_EPISODES = "SELECT "
+            + Shows.REF_SHOW_ID + " AS " + ShowStats.SHOW_ID + ","
+            + "SUM(" + Episodes.SEASON + "!=0) AS " + ShowStats.EPISODES + ","
+            + "SUM(" + Episodes.SEASON + "!=0 AND " + Episodes.WATCHED + "="
+            + EpisodeFlags.WATCHED + ") AS " + ShowStats.EPISODES_WATCHED + ","
+            + "SUM(" + Episodes.SEASON + "=0) AS " + ShowStats.SPECIALS + ","
+            + "SUM(" + Episodes.SEASON + "=0 AND " + Episodes.WATCHED + "="
+            + EpisodeFlags.WATCHED + ") AS " + ShowStats.SPECIALS_WATCHED
+            + " FROM " + Tables.EPISODES
+            + " GROUP BY " + Shows.REF_SHOW_ID;
+
     @VisibleForTesting
     public static final String CREATE_LISTS_TABLE = "CREATE TABLE " + Tables.LISTS + " ("
 
@@ -1055,6 +1233,67 @@ public class SeriesGuideDatabase {
 //                + " INTEGER DEFAULT 0;");
 //    }
 
+    /**
+     * Creates the triggers that keep {@link Tables#EPISODES_SEARCH} up to date, if they do not
+     * exist, yet. See {@link #CREATE_SEARCH_TRIGGERS}.
+     */
+    static void createFtsTriggers(SupportSQLiteDatabase db) {
+        for (String createTrigger : CREATE_SEARCH_TRIGGERS) {
+            db.execSQL(createTrigger);
+        }
+    }
+
+    /**
+     * Creates the triggers that keep {@link Tables#SHOW_STATS} up to date, if they do not exist,
+     * yet. See {@link #CREATE_SHOW_STATS_TRIGGERS}.
+     */
+    static void createShowStatsTriggers(SupportSQLiteDatabase db) {
+        for (String createTrigger : CREATE_SHOW_STATS_TRIGGERS) {
+            db.execSQL(createTrigger);
+        }
+    }
+
+    /**
+     * Replaces the counters of {@link Tables#SHOW_STATS} with counts of all episodes. Only needed
+     * if the table was created for existing episodes.
+     */
+    static void rebuildShowStats(SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + Tables.SHOW_STATS);
+            db.execSQL("INSERT INTO " + Tables.SHOW_STATS + " "
+                    + SELECT_SHOW_STATS_FROM_EPISODES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * As {@link Tables#EPISODES_SEARCH} is kept up to date by triggers, only checks if the index
+     * matches {@link Tables#EPISODES}. Only if the check fails or is not supported, rebuilds the
+     * table using {@link #rebuildFtsTable(SupportSQLiteDatabase)}.
+     */
+    public static void checkFtsTable(SupportSQLiteDatabase db) {
+        if (AndroidUtils.isJellyBeanOrHigher() && isFtsTableIntact(db)) {
+            return;
+        }
+        Timber.w("checkFtsTable: search table is not intact, rebuilding.");
+        rebuildFtsTable(db);
+    }
+
+    private static boolean isFtsTableIntact(SupportSQLiteDatabase db) {
+        try {
+            // fails with a SQLITE_CORRUPT_VTAB error if the index does not match the content
+            db.execSQL("INSERT INTO " + Tables.EPISODES_SEARCH
+                    + "(" + Tables.EPISODES_SEARCH + ") VALUES('integrity-check')");
+            return true;
+        } catch (SQLiteException e) {
+            Timber.e(e, "isFtsTableIntact: integrity check failed.");
+            return false;
+        }
+    }
+
     /**
      * Drops the current {@link Tables#EPISODES_SEARCH} table and re-creates it with current data
      * from {@link Tables#EPISODES}.
@@ -1151,6 +1390,7 @@ public class SeriesGuideDatabase {
                 } else {
                     db.execSQL(CREATE_SEARCH_TABLE_API_ICS);
                 }
+                createFtsTriggers(db);
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
@@ -28,11 +28,16 @@ import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Jobs;
+import com.battlelancer.seriesguide.sync.SyncMetrics;
 import com.battlelancer.seriesguide.util.SelectionBuilder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import timber.log.Timber;
 
 public class SeriesGuideProvider extends ContentProvider {
@@ -97,6 +102,8 @@ public class SeriesGuideProvider extends ContentProvider {
 
     private static final int RENEW_FTSTABLE = 1000;
 
+    private static final int CHECK_FTSTABLE = 1001;
+
     private static final int JOBS = 1100;
 
     private static final int JOBS_ID = 1101;
@@ -183,12 +190,17 @@ public class SeriesGuideProvider extends ContentProvider {
 
         // Ops
         matcher.addURI(authority, SeriesGuideContract.PATH_RENEWFTSTABLE, RENEW_FTSTABLE);
+        matcher.addURI(authority, SeriesGuideContract.PATH_CHECKFTSTABLE, CHECK_FTSTABLE);
         matcher.addURI(authority, SeriesGuideContract.PATH_CLOSE, CLOSE);
 
         return matcher;
     }
 
     private final ThreadLocal<Boolean> applyingBatch = new ThreadLocal<>();
+    /**
+     * URIs changed by the batch currently applied on this thread, notified once it is committed.
+     */
+    private final ThreadLocal<Set<Uri>> batchChangedUris = new ThreadLocal<>();
     protected SupportSQLiteDatabase database;
 
     @Override
@@ -228,6 +240,10 @@ public class SeriesGuideProvider extends ContentProvider {
                 SeriesGuideDatabase.rebuildFtsTable(db);
                 return null;
             }
+            case CHECK_FTSTABLE: {
+                SeriesGuideDatabase.checkFtsTable(db);
+                return null;
+            }
             case EPISODESEARCH: {
                 if (selectionArgs == null) {
                     throw new IllegalArgumentException(
@@ -244,13 +260,11 @@ public class SeriesGuideProvider extends ContentProvider {
             }
             default: {
                 // Most cases are handled with simple SelectionBuilder
-                final SelectionBuilder builder = buildSelection(uri, match);
+                final SelectionBuilder builder = buildQuerySelection(uri, match, selection,
+                        selectionArgs);
                 Cursor query = null;
                 try {
-                    query = builder
-                            .map(BaseColumns._COUNT, "count(*)") // support count base column
-                            .where(selection, selectionArgs)
-                            .query(db, projection, sortOrder);
+                    query = builder.query(db, projection, sortOrder);
                 } catch (SQLiteException e) {
                     Timber.e(e, "Failed to query with uri=%s", uri);
                 }
@@ -311,6 +325,7 @@ public class SeriesGuideProvider extends ContentProvider {
             case SEARCH_SUGGEST:
                 return SearchManager.SUGGEST_MIME_TYPE;
             case RENEW_FTSTABLE:
+            case CHECK_FTSTABLE:
                 return Episodes.CONTENT_TYPE; // however there is nothing returned
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -335,8 +350,7 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (newItemUri != null) {
-            //noinspection ConstantConditions
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return newItemUri;
@@ -364,7 +378,7 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (notifyChange) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return numValues;
@@ -511,7 +525,7 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (count > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return count;
@@ -546,7 +560,7 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (count > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return count;
@@ -568,10 +582,12 @@ public class SeriesGuideProvider extends ContentProvider {
 
         SgRoomDatabase room = SgRoomDatabase.getInstance(getContext());
         database = room.getOpenHelper().getWritableDatabase();
+        final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+        final Set<Uri> changedUris = new LinkedHashSet<>();
         room.beginTransaction();
         try {
             applyingBatch.set(true);
-            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            batchChangedUris.set(changedUris);
             for (int i = 0; i < numOperations; i++) {
                 final ContentProviderOperation operation = operations.get(i);
                 // do not yield as a pre-caution to not break Room invalidation tracker
@@ -581,17 +597,101 @@ public class SeriesGuideProvider extends ContentProvider {
                 results[i] = operation.apply(this, results, i);
             }
             room.setTransactionSuccessful();
-            return results;
+            SyncMetrics.recordDbOps(numOperations);
         } finally {
             applyingBatch.set(false);
+            batchChangedUris.remove();
             room.endTransaction();
         }
+
+        // notify once per changed URI after the changes are committed
+        for (Uri uri : changedUris) {
+            invalidateEpisodeFlags(uri);
+        }
+        ChangeNotifier.getInstance(getContext()).notifyChange(changedUris);
+
+        return results;
     }
 
     private boolean applyingBatch() {
         return applyingBatch.get() != null && applyingBatch.get();
     }
 
+    /**
+     * Notifies about a change of the given URI, if applying a batch only once it is committed.
+     * Notifications of a batch or sync are coalesced, see {@link ChangeNotifier}.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> changedUris = batchChangedUris.get();
+        if (changedUris != null) {
+            changedUris.add(uri);
+        } else {
+            invalidateEpisodeFlags(uri);
+            ChangeNotifier.getInstance(getContext()).notifyChange(uri);
+        }
+    }
+
+    /**
+     * Drops cached flags of episodes that may have changed through the given URI, see {@link
+     * EpisodeFlagsCache}. Call once the change is committed.
+     */
+    private void invalidateEpisodeFlags(Uri uri) {
+        EpisodeFlagsCache cache = EpisodeFlagsCache.getInstance(getContext());
+        switch (sUriMatcher.match(uri)) {
+            case EPISODES_OFSHOW: {
+                Integer showTvdbId = parseId(uri.getLastPathSegment());
+                if (showTvdbId != null) {
+                    cache.invalidateShow(showTvdbId);
+                } else {
+                    cache.invalidateAll();
+                }
+                break;
+            }
+            case EPISODES_ID:
+            case EPISODES_ID_WITHSHOW: {
+                Integer episodeTvdbId = parseId(uri.getLastPathSegment());
+                if (episodeTvdbId != null) {
+                    cache.invalidateEpisodes(Collections.singleton(episodeTvdbId));
+                } else {
+                    cache.invalidateAll();
+                }
+                break;
+            }
+            case EPISODES:
+            case EPISODES_OFSEASON:
+            case EPISODES_OFSEASON_WITHSHOW:
+            case EPISODES_WITHSHOW:
+                cache.invalidateAll();
+                break;
+        }
+    }
+
+    private static Integer parseId(String pathSegment) {
+        try {
+            return Integer.valueOf(pathSegment);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds the selection {@link #query} uses for the given {@link Uri}, if it is not a special
+     * case like search. Used to check query plans in tests.
+     */
+    @VisibleForTesting
+    static SelectionBuilder buildQuerySelection(Uri uri, String selection,
+            String[] selectionArgs) {
+        UriMatcher matcher = sUriMatcher != null ? sUriMatcher : buildUriMatcher();
+        return buildQuerySelection(uri, matcher.match(uri), selection, selectionArgs);
+    }
+
+    private static SelectionBuilder buildQuerySelection(Uri uri, int match, String selection,
+            String[] selectionArgs) {
+        return buildSelection(uri, match)
+                .map(BaseColumns._COUNT, "count(*)") // support count base column
+                .where(selection, selectionArgs);
+    }
+
     /**
      * Builds selection using a {@link SelectionBuilder} to match the requested {@link Uri}.
      */
@@ -9,12 +9,15 @@ import android.content.Context
 import android.support.annotation.VisibleForTesting
 import com.battlelancer.seriesguide.model.SgActivity
 import com.battlelancer.seriesguide.model.SgEpisode
+import com.battlelancer.seriesguide.model.SgEpisodePage
 import com.battlelancer.seriesguide.model.SgJob
 import com.battlelancer.seriesguide.model.SgList
 import com.battlelancer.seriesguide.model.SgListItem
 import com.battlelancer.seriesguide.model.SgMovie
 import com.battlelancer.seriesguide.model.SgSeason
 import com.battlelancer.seriesguide.model.SgShow
+import com.battlelancer.seriesguide.model.SgShowStats
+import com.battlelancer.seriesguide.model.SgSyncStage
 import com.uwetrottmann.androidutils.AndroidUtils
 import timber.log.Timber
 
@@ -24,7 +27,10 @@ import timber.log.Timber
         SgList::class,
         SgListItem::class, SgMovie::class,
         SgActivity::class,
-        SgJob::class
+        SgJob::class,
+        SgSyncStage::class,
+        SgEpisodePage::class,
+        SgShowStats::class
 ), version = SgRoomDatabase.VERSION)
 abstract class SgRoomDatabase : RoomDatabase() {
 
@@ -36,13 +42,25 @@ abstract class SgRoomDatabase : RoomDatabase() {
 
     abstract fun movieHelper(): MovieHelper
 
+    abstract fun syncStageHelper(): SyncStageHelper
+
+    abstract fun episodePageHelper(): EpisodePageHelper
+
+    abstract fun showStatsHelper(): ShowStatsHelper
+
     companion object {
 
         private const val VERSION_43_ROOM = 43
         private const val VERSION_44_RECREATE_SERIES_EPISODES = 44
         private const val VERSION_45_RECREATE_SEASONS = 45
         const val VERSION_46_SERIES_SLUG = 46
-        const val VERSION = VERSION_46_SERIES_SLUG
+        const val VERSION_47_SEARCH_TRIGGERS = 47
+        const val VERSION_48_EPISODE_INDEXES = 48
+        const val VERSION_49_SYNC_STAGES = 49
+        const val VERSION_50_EPISODE_PAGES = 50
+        const val VERSION_51_EPISODE_NUMBER_INDEX = 51
+        const val VERSION_52_SHOW_STATS = 52
+        const val VERSION = VERSION_52_SHOW_STATS
 
         @Volatile
         private var instance: SgRoomDatabase? = null
@@ -63,6 +81,12 @@ abstract class SgRoomDatabase : RoomDatabase() {
                     val newInstance = Room.databaseBuilder(context.applicationContext,
                             SgRoomDatabase::class.java, SeriesGuideDatabase.DATABASE_NAME)
                             .addMigrations(
+                                    MIGRATION_51_52,
+                                    MIGRATION_50_51,
+                                    MIGRATION_49_50,
+                                    MIGRATION_48_49,
+                                    MIGRATION_47_48,
+                                    MIGRATION_46_47,
                                     MIGRATION_45_46,
                                     MIGRATION_44_45,
                                     MIGRATION_42_44,
@@ -104,6 +128,98 @@ abstract class SgRoomDatabase : RoomDatabase() {
                 } else {
                     db.execSQL(SeriesGuideDatabase.CREATE_SEARCH_TABLE_API_ICS)
                 }
+                SeriesGuideDatabase.createFtsTriggers(db)
+                SeriesGuideDatabase.createShowStatsTriggers(db)
+            }
+        }
+
+        /**
+         * Adds table with episode counters of each show kept up to date by triggers, so statistics
+         * do not need to scan all episodes.
+         */
+        @JvmField
+        val MIGRATION_51_52: Migration = object :
+                Migration(VERSION_51_EPISODE_NUMBER_INDEX, VERSION_52_SHOW_STATS) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 51 to 52")
+
+                database.execSQL("CREATE TABLE IF NOT EXISTS `show_stats` (`stats_show_id` INTEGER NOT NULL, `stats_episodes` INTEGER NOT NULL, `stats_episodes_watched` INTEGER NOT NULL, `stats_specials` INTEGER NOT NULL, `stats_specials_watched` INTEGER NOT NULL, PRIMARY KEY(`stats_show_id`))")
+                SeriesGuideDatabase.createShowStatsTriggers(database)
+                SeriesGuideDatabase.rebuildShowStats(database)
+            }
+        }
+
+        /**
+         * Adds index for episodes of a show by season and episode number, to avoid scanning the
+         * episodes table when applying downloaded flags.
+         */
+        @JvmField
+        val MIGRATION_50_51: Migration = object :
+                Migration(VERSION_50_EPISODE_PAGES, VERSION_51_EPISODE_NUMBER_INDEX) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 50 to 51")
+
+                database.execSQL("CREATE  INDEX `index_episodes_series_id_season_episodenumber` "
+                        + "ON `episodes` (`series_id`, `season`, `episodenumber`)")
+            }
+        }
+
+        /**
+         * Adds table to store validators of TVDB episode pages.
+         */
+        @JvmField
+        val MIGRATION_49_50: Migration = object :
+                Migration(VERSION_49_SYNC_STAGES, VERSION_50_EPISODE_PAGES) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 49 to 50")
+
+                database.execSQL("CREATE TABLE IF NOT EXISTS `episode_pages` (`page_show_id` INTEGER NOT NULL, `page_number` INTEGER NOT NULL, `page_language` TEXT, `page_settings` TEXT, `page_etag` TEXT, `page_last_modified` TEXT, `page_content_hash` TEXT, `page_next_number` INTEGER, `page_episodes` TEXT, PRIMARY KEY(`page_show_id`, `page_number`))")
+            }
+        }
+
+        /**
+         * Adds table to store metrics of recent sync runs.
+         */
+        @JvmField
+        val MIGRATION_48_49: Migration = object :
+                Migration(VERSION_48_EPISODE_INDEXES, VERSION_49_SYNC_STAGES) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 48 to 49")
+
+                database.execSQL("CREATE TABLE IF NOT EXISTS `sync_stages` (`_id` INTEGER PRIMARY KEY AUTOINCREMENT, `sync_run_started_ms` INTEGER NOT NULL, `sync_run_result` TEXT, `sync_stage` TEXT NOT NULL, `sync_duration_ms` INTEGER NOT NULL, `sync_http_requests` INTEGER NOT NULL, `sync_http_bytes` INTEGER NOT NULL, `sync_db_ops` INTEGER NOT NULL, `sync_shows_touched` INTEGER NOT NULL, `sync_episodes_touched` INTEGER NOT NULL, `sync_failed` INTEGER NOT NULL)")
+                database.execSQL("CREATE  INDEX `index_sync_stages_sync_run_started_ms` "
+                        + "ON `sync_stages` (`sync_run_started_ms`)")
+            }
+        }
+
+        /**
+         * Adds indexes for episodes of a show by watched state and release time and for episodes
+         * by release time, to avoid scanning the episodes table.
+         */
+        @JvmField
+        val MIGRATION_47_48: Migration = object :
+                Migration(VERSION_47_SEARCH_TRIGGERS, VERSION_48_EPISODE_INDEXES) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 47 to 48")
+
+                database.execSQL("CREATE  INDEX `index_episodes_series_id_watched_episode_firstairedms` "
+                        + "ON `episodes` (`series_id`, `watched`, `episode_firstairedms`)")
+                database.execSQL("CREATE  INDEX `index_episodes_episode_firstairedms` "
+                        + "ON `episodes` (`episode_firstairedms`)")
+            }
+        }
+
+        /**
+         * Adds triggers to keep the FTS table up to date, only rebuilds it if it is not intact.
+         */
+        @JvmField
+        val MIGRATION_46_47: Migration = object :
+                Migration(VERSION_46_SERIES_SLUG, VERSION_47_SEARCH_TRIGGERS) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                Timber.d("Migrating database from 46 to 47")
+
+                SeriesGuideDatabase.createFtsTriggers(database)
+                SeriesGuideDatabase.checkFtsTable(database)
             }
         }
 
@@ -0,0 +1,43 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Query;
+import com.battlelancer.seriesguide.model.SgLibraryStats;
+import com.battlelancer.seriesguide.model.SgShowStats;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowStats;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Qualified;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.shows.ShowTools;
+import java.util.List;
+
+/**
+ * Data Access Object for the show stats table.
+ */
+@Dao
+public interface ShowStatsHelper {
+
+    /**
+     * Sums the counters of all shows, so only needs to read one row per show instead of all
+     * episodes. Runtime and status are stored as text.
+     */
+    @Query("SELECT COUNT(*) AS shows,"
+            + " SUM(CAST(" + Shows.STATUS + " AS INTEGER)=" + ShowTools.Status.CONTINUING
+            + ") AS showsContinuing,"
+            + " SUM(CAST(" + Shows.NEXTEPISODE + " AS INTEGER)!=" + ShowTools.Status.ENDED
+            + ") AS showsWithNextEpisodes,"
+            + " SUM(" + ShowStats.EPISODES + ") AS episodes,"
+            + " SUM(" + ShowStats.EPISODES_WATCHED + ") AS episodesWatched,"
+            + " SUM(" + ShowStats.SPECIALS + ") AS specials,"
+            + " SUM(" + ShowStats.SPECIALS_WATCHED + ") AS specialsWatched,"
+            + " SUM(" + ShowStats.EPISODES_WATCHED + "*CAST(" + Shows.RUNTIME + " AS INTEGER))"
+            + " AS episodesWatchedRuntimeMin,"
+            + " SUM(" + ShowStats.SPECIALS_WATCHED + "*CAST(" + Shows.RUNTIME + " AS INTEGER))"
+            + " AS specialsWatchedRuntimeMin"
+            + " FROM " + Tables.SHOWS + " LEFT OUTER JOIN " + Tables.SHOW_STATS
+            + " ON " + Qualified.SHOWS_ID + "=" + ShowStats.SHOW_ID)
+    SgLibraryStats getLibraryStats();
+
+    @Query("SELECT * FROM " + Tables.SHOW_STATS + " ORDER BY " + ShowStats.SHOW_ID)
+    List<SgShowStats> getShowStats();
+}
@@ -0,0 +1,35 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.Query;
+import com.battlelancer.seriesguide.model.SgSyncStage;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SyncStages;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import java.util.List;
+
+/**
+ * Data Access Object for the sync stages table.
+ */
+@Dao
+public interface SyncStageHelper {
+
+    @Insert
+    void insertStages(List<SgSyncStage> stages);
+
+    /**
+     * Deletes stages of all but the given number of latest runs.
+     */
+    @Query("DELETE FROM " + Tables.SYNC_STAGES + " WHERE " + SyncStages.RUN_STARTED_MS
+            + " NOT IN (SELECT DISTINCT " + SyncStages.RUN_STARTED_MS
+            + " FROM " + Tables.SYNC_STAGES
+            + " ORDER BY " + SyncStages.RUN_STARTED_MS + " DESC LIMIT :runsToKeep)")
+    void deleteOldRuns(int runsToKeep);
+
+    /**
+     * Returns stages of all stored runs, latest run first.
+     */
+    @Query("SELECT * FROM " + Tables.SYNC_STAGES
+            + " ORDER BY " + SyncStages.RUN_STARTED_MS + " DESC, " + SyncStages._ID + " ASC")
+    List<SgSyncStage> getStages();
+}
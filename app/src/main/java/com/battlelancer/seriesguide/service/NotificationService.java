@@ -13,6 +13,7 @@ import android.net.Uri;
 import android.os.Build;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationManagerCompat;
 import android.support.v4.app.TaskStackBuilder;
@@ -94,14 +95,16 @@ public class NotificationService {
             0, 100, 200, 100, 100, 100
     };
 
-    private static final String[] PROJECTION = new String[] {
+    @VisibleForTesting
+    public static final String[] PROJECTION = new String[] {
             Tables.EPISODES + "." + Episodes._ID, Episodes.TITLE, Episodes.FIRSTAIREDMS,
             Shows.TITLE, Shows.NETWORK, Episodes.NUMBER, Episodes.SEASON, Shows.POSTER,
             Episodes.OVERVIEW
     };
 
     // by airdate, then by show, then lowest number first
-    private static final String SORTING = Episodes.FIRSTAIREDMS + " ASC,"
+    @VisibleForTesting
+    public static final String SORTING = Episodes.FIRSTAIREDMS + " ASC,"
             + Shows.SORT_TITLE + ","
             + Episodes.NUMBER + " ASC";
 
@@ -110,6 +113,15 @@ public class NotificationService {
             + Episodes.SELECTION_UNWATCHED + " AND "
             + Episodes.FIRSTAIREDMS + ">=?";
 
+    @VisibleForTesting
+    public static final String[] PROJECTION_NEXT_RELEASE_TIME = new String[]{
+            "MIN(" + Episodes.FIRSTAIREDMS + ")"
+    };
+
+    /** Appended to a selection of episodes to notify about, requires a release time argument. */
+    @VisibleForTesting
+    public static final String SELECTION_RELEASED_UP_TO = " AND " + Episodes.FIRSTAIREDMS + "<=?";
+
     interface NotificationQuery {
         int _ID = 0;
         int TITLE = 1;
@@ -162,83 +174,66 @@ public class NotificationService {
         long nextWakeUpTime = 0;
 
         final long customCurrentTime = TimeTools.getCurrentTime(context);
-        final Cursor upcomingEpisodes = queryUpcomingEpisodes(customCurrentTime);
-        if (upcomingEpisodes != null) {
-            int notificationThreshold = NotificationSettings.getLatestToIncludeTreshold(context);
-            if (DEBUG) {
-                Timber.d("DEBUG MODE: always notify about next episode within 1 week");
-                // a week, for debugging (use only one show to get single
-                // episode notifications)
-                notificationThreshold = 10080;
-                // notify again for same episodes
-                resetLastEpisodeAirtime(prefs);
-            }
+        // episodes released from 12 hours ago until eternity
+        final long earliestReleaseTime = customCurrentTime - 12 * DateUtils.HOUR_IN_MILLIS;
+        final String selection = buildSelection();
 
-            final long nextEpisodeReleaseTime = NotificationSettings.getNextToNotifyAbout(context);
-            // wake user-defined amount of time earlier than next episode release time
-            final long plannedWakeUpTime =
-                    TimeTools.applyUserOffset(context, nextEpisodeReleaseTime).getTime()
-                            - DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
-
-            // note: on first run plannedWakeUpTime will be <= 0
-            boolean checkForNewEpisodes = true;
-
-            if (System.currentTimeMillis() < plannedWakeUpTime) {
-                Timber.d("Woke up earlier than planned, checking for new episodes");
-                checkForNewEpisodes = false;
-                long releaseTimeLastNotified = NotificationSettings.getLastNotifiedAbout(context);
-
-                while (upcomingEpisodes.moveToNext()) {
-                    final long releaseTime = upcomingEpisodes.getLong(
-                            NotificationQuery.EPISODE_FIRST_RELEASE_MS);
-                    // any episodes added that release before the next one planned to notify about?
-                    if (releaseTime < nextEpisodeReleaseTime) {
-                        // limit to those released after the episode we last notified about to avoid
-                        // notifying about an episode we already notified about
-                        // limitation: so if added episodes release at or before that last episode
-                        // they will not be notified about
-                        if (releaseTime > releaseTimeLastNotified) {
-                            checkForNewEpisodes = true;
-                            break;
-                        }
-                    } else {
-                        break;
-                    }
-                }
-            }
+        int notificationThreshold = NotificationSettings.getLatestToIncludeTreshold(context);
+        if (DEBUG) {
+            Timber.d("DEBUG MODE: always notify about next episode within 1 week");
+            // a week, for debugging (use only one show to get single
+            // episode notifications)
+            notificationThreshold = 10080;
+            // notify again for same episodes
+            resetLastEpisodeAirtime(prefs);
+        }
 
-            if (checkForNewEpisodes) {
-                final long latestTimeToInclude = customCurrentTime
-                        + DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
-
-                maybeNotify(prefs, upcomingEpisodes, latestTimeToInclude);
-
-                // plan next episode to notify about
-                upcomingEpisodes.moveToPosition(-1);
-                while (upcomingEpisodes.moveToNext()) {
-                    final long releaseTime = upcomingEpisodes.getLong(
-                            NotificationQuery.EPISODE_FIRST_RELEASE_MS);
-                    if (releaseTime > latestTimeToInclude) {
-                        prefs.edit()
-                                .putLong(NotificationSettings.KEY_NEXT_TO_NOTIFY, releaseTime)
-                                .apply();
-                        Timber.d("Next notification planned for episode released at: %s",
-                                Instant.ofEpochMilli(releaseTime));
-
-                        // calc wake up time to notify about this episode
-                        // taking into account time offset and notification threshold
-                        nextWakeUpTime = TimeTools.applyUserOffset(context, releaseTime).getTime()
-                                - DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
-                        break;
-                    }
-                }
-            } else {
-                // Go to sleep, wake up as planned
-                Timber.d("No new episodes");
-                nextWakeUpTime = plannedWakeUpTime;
-            }
+        final long nextEpisodeReleaseTime = NotificationSettings.getNextToNotifyAbout(context);
+        // wake user-defined amount of time earlier than next episode release time
+        final long plannedWakeUpTime =
+                TimeTools.applyUserOffset(context, nextEpisodeReleaseTime).getTime()
+                        - DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
+
+        // note: on first run plannedWakeUpTime will be <= 0
+        boolean checkForNewEpisodes = true;
+
+        if (System.currentTimeMillis() < plannedWakeUpTime) {
+            Timber.d("Woke up earlier than planned, checking for new episodes");
+            // any episodes added that release before the next one planned to notify about?
+            // limit to those released after the episode we last notified about to avoid
+            // notifying about an episode we already notified about
+            // limitation: so if added episodes release at or before that last episode
+            // they will not be notified about
+            long releaseTimeLastNotified = NotificationSettings.getLastNotifiedAbout(context);
+            Long releaseTime = queryNextReleaseTime(selection,
+                    Math.max(earliestReleaseTime, releaseTimeLastNotified + 1));
+            checkForNewEpisodes = releaseTime != null && releaseTime < nextEpisodeReleaseTime;
+        }
 
-            upcomingEpisodes.close();
+        if (checkForNewEpisodes) {
+            final long latestTimeToInclude = customCurrentTime
+                    + DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
+
+            maybeNotify(prefs, selection, earliestReleaseTime, latestTimeToInclude);
+
+            // plan next episode to notify about
+            Long releaseTime = queryNextReleaseTime(selection, latestTimeToInclude + 1);
+            if (releaseTime != null) {
+                prefs.edit()
+                        .putLong(NotificationSettings.KEY_NEXT_TO_NOTIFY, releaseTime)
+                        .apply();
+                Timber.d("Next notification planned for episode released at: %s",
+                        Instant.ofEpochMilli(releaseTime));
+
+                // calc wake up time to notify about this episode
+                // taking into account time offset and notification threshold
+                nextWakeUpTime = TimeTools.applyUserOffset(context, releaseTime).getTime()
+                        - DateUtils.MINUTE_IN_MILLIS * notificationThreshold;
+            }
+        } else {
+            // Go to sleep, wake up as planned
+            Timber.d("No new episodes");
+            nextWakeUpTime = plannedWakeUpTime;
         }
 
         // Set a default wake-up time if there are no future episodes for now
@@ -299,49 +294,68 @@ public class NotificationService {
     }
 
     /**
-     * Get episodes which air from 12 hours ago until eternity, excludes some episodes based on user
-     * settings.
+     * Selection of episodes to notify about, excludes some episodes based on user settings.
+     * Requires a release time argument, see {@link #SELECTION}.
      */
-    private Cursor queryUpcomingEpisodes(long customCurrentTime) {
-        StringBuilder selection = new StringBuilder(SELECTION);
-
+    private String buildSelection() {
         boolean isNoSpecials = DisplaySettings.isHidingSpecials(context);
         Timber.d("Settings: specials: %s", isNoSpecials ? "YES" : "NO");
+        return buildSelection(isNoSpecials);
+    }
+
+    @VisibleForTesting
+    public static String buildSelection(boolean isNoSpecials) {
+        StringBuilder selection = new StringBuilder(SELECTION);
         if (isNoSpecials) {
             selection.append(" AND ").append(Episodes.SELECTION_NO_SPECIALS);
         }
         // always exclude hidden shows
         selection.append(" AND ").append(Shows.SELECTION_NO_HIDDEN);
 
-        return context.getContentResolver().query(Episodes.CONTENT_URI_WITHSHOW,
-                PROJECTION, selection.toString(), new String[] {
-                        String.valueOf(customCurrentTime - 12 * DateUtils.HOUR_IN_MILLIS)
-                }, SORTING
-        );
+        return selection.toString();
+    }
+
+    /**
+     * Returns the release time of the first episode released at or after the given time, or null
+     * if there is none. Only looks up the first matching entry of the release time index instead
+     * of loading all upcoming episodes.
+     */
+    @Nullable
+    private Long queryNextReleaseTime(String selection, long releasedAtOrAfter) {
+        Cursor query = context.getContentResolver().query(Episodes.CONTENT_URI_WITHSHOW,
+                PROJECTION_NEXT_RELEASE_TIME, selection,
+                new String[]{String.valueOf(releasedAtOrAfter)}, null);
+        if (query == null) {
+            return null;
+        }
+        try {
+            return query.moveToFirst() && !query.isNull(0) ? query.getLong(0) : null;
+        } finally {
+            query.close();
+        }
     }
 
-    private void maybeNotify(SharedPreferences prefs, Cursor upcomingEpisodes,
+    private void maybeNotify(SharedPreferences prefs, String selection, long earliestReleaseTime,
             long latestTimeToInclude) {
-        final List<Integer> notifyPositions = new ArrayList<>();
         final long latestTimeCleared = NotificationSettings.getLastCleared(context);
 
-        int position = -1;
-        upcomingEpisodes.moveToPosition(position);
-        while (upcomingEpisodes.moveToNext()) {
-            position++;
-            // get episodes which are within the notification threshold (user set)...
-            final long releaseTime = upcomingEpisodes.getLong(
-                    NotificationQuery.EPISODE_FIRST_RELEASE_MS);
-            if (releaseTime <= latestTimeToInclude) {
-                // ...and released after the last one the user cleared.
-                // Note: should be at most those of the last few hours (see cursor query).
-                if (releaseTime > latestTimeCleared) {
-                    notifyPositions.add(position);
-                }
-            } else {
-                // Too far into the future, stop!
-                break;
-            }
+        // get episodes which are within the notification threshold (user set)...
+        // ...and released after the last one the user cleared.
+        // Note: should be at most those of the last few hours (see earliestReleaseTime).
+        final Cursor upcomingEpisodes = context.getContentResolver().query(
+                Episodes.CONTENT_URI_WITHSHOW, PROJECTION,
+                selection + SELECTION_RELEASED_UP_TO,
+                new String[]{
+                        String.valueOf(Math.max(earliestReleaseTime, latestTimeCleared + 1)),
+                        String.valueOf(latestTimeToInclude)
+                }, SORTING);
+        if (upcomingEpisodes == null) {
+            return;
+        }
+
+        final List<Integer> notifyPositions = new ArrayList<>();
+        for (int position = 0; position < upcomingEpisodes.getCount(); position++) {
+            notifyPositions.add(position);
         }
 
         // Notify if we found any episodes, store latest release time we notify about
@@ -356,6 +370,8 @@ public class NotificationService {
 
             notifyAbout(upcomingEpisodes, notifyPositions, latestAirtime);
         }
+
+        upcomingEpisodes.close();
     }
 
     private void notifyAbout(final Cursor upcomingEpisodes, List<Integer> notifyPositions,
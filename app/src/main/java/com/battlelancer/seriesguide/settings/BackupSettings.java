@@ -30,6 +30,12 @@ public class BackupSettings {
     // auto backup
     public static final String KEY_AUTO_BACKUP_USE_DEFAULT_FILES
             = "com.battlelancer.seriesguide.autobackup.defaultFiles";
+    public static final String KEY_AUTO_BACKUP_COMPRESS
+            = "com.battlelancer.seriesguide.autobackup.compress";
+    public static final String KEY_AUTO_BACKUP_INCREMENTAL
+            = "com.battlelancer.seriesguide.autobackup.incremental";
+    public static final String KEY_AUTO_BACKUP_BINARY
+            = "com.battlelancer.seriesguide.autobackup.binary";
     public static final String KEY_AUTO_BACKUP_SHOWS_EXPORT_URI
             = "com.battlelancer.seriesguide.autobackup.showsExport";
     public static final String KEY_AUTO_BACKUP_LISTS_EXPORT_URI
@@ -57,6 +63,31 @@ public class BackupSettings {
                 .getBoolean(KEY_AUTO_BACKUP_USE_DEFAULT_FILES, true);
     }
 
+    /**
+     * Whether auto backup files should be gzip compressed.
+     */
+    public static boolean isCompressAutoBackup(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(KEY_AUTO_BACKUP_COMPRESS, false);
+    }
+
+    /**
+     * Whether auto backups to default files should only append changes to the last full backup.
+     */
+    public static boolean isIncrementalAutoBackup(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(KEY_AUTO_BACKUP_INCREMENTAL, false);
+    }
+
+    /**
+     * Whether auto backup files should use the binary backup format instead of JSON. Binary files
+     * are not compressed and in the default folder use their own file names.
+     */
+    public static boolean isBinaryAutoBackup(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(KEY_AUTO_BACKUP_BINARY, false);
+    }
+
     /**
      * Store or remove (by setting it {@code null}) the URI to a backup file.
      */
@@ -1,19 +1,18 @@
 package com.battlelancer.seriesguide.sync;
 
 import android.content.ContentProviderOperation;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
-import android.database.Cursor;
-import android.net.Uri;
+import android.database.sqlite.SQLiteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
 import android.support.v4.util.SparseArrayCompat;
 import android.text.TextUtils;
 import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
+import com.battlelancer.seriesguide.provider.EpisodeFlagsCache;
+import com.battlelancer.seriesguide.provider.EpisodeFlagsWriter;
 import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.util.DBUtils;
 import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
 import com.battlelancer.seriesguide.ui.shows.ShowTools;
@@ -97,52 +96,40 @@ public class HexagonEpisodeSync {
                 break;
             }
 
-            // build batch of episode flag updates
-            ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+            // write episode flag updates
+            EpisodeFlagsWriter writer = new EpisodeFlagsWriter(context);
             for (Episode episode : episodes) {
                 Integer showTvdbId = episode.getShowTvdbId();
                 if (!showTvdbIds.contains(showTvdbId)) {
                     continue; // ignore, show not added on this device
                 }
 
-                ContentValues values = new ContentValues();
                 Integer watchedFlag = episode.getWatchedFlag();
                 if (watchedFlag != null) {
-                    values.put(SeriesGuideContract.Episodes.WATCHED, watchedFlag);
                     // record the latest last watched time for a show
                     if (!EpisodeTools.isUnwatched(watchedFlag)) {
                         Long lastWatchedMs = showsLastWatchedMs.get(showTvdbId);
-                        // episodes returned in reverse chrono order, so just get the first time
+                        // episodes returned in reverse chrono order, so just get the first
                         if (lastWatchedMs == null && episode.getUpdatedAt() != null) {
                             long updatedAtMs = episode.getUpdatedAt().getValue();
                             showsLastWatchedMs.put(showTvdbId, updatedAtMs);
                         }
                     }
                 }
-                if (episode.getIsInCollection() != null) {
-                    values.put(SeriesGuideContract.Episodes.COLLECTED,
-                            episode.getIsInCollection() ? 1 : 0);
-                }
 
-                ContentProviderOperation op = ContentProviderOperation
-                        .newUpdate(SeriesGuideContract.Episodes.CONTENT_URI)
-                        .withSelection(SeriesGuideContract.Shows.REF_SHOW_ID + "="
-                                + showTvdbId + " AND "
-                                + SeriesGuideContract.Episodes.SEASON + "="
-                                + episode.getSeasonNumber() + " AND "
-                                + SeriesGuideContract.Episodes.NUMBER + "="
-                                + episode.getEpisodeNumber(), null)
-                        .withValues(values)
-                        .build();
-
-                batch.add(op);
+                Integer season = episode.getSeasonNumber();
+                Integer number = episode.getEpisodeNumber();
+                if (season == null || number == null) {
+                    continue; // can not identify episode
+                }
+                writer.addFlags(showTvdbId, season, number, watchedFlag,
+                        episode.getIsInCollection());
             }
-
-            // execute database update
             try {
-                DBUtils.applyInSmallBatches(context, batch);
-            } catch (OperationApplicationException e) {
+                writer.apply();
+            } catch (SQLiteException e) {
                 Timber.e(e, "downloadChangedFlags: failed to apply updates");
+                DBUtils.postDatabaseError(e);
                 return false;
             }
         }
@@ -171,7 +158,6 @@ public class HexagonEpisodeSync {
         boolean hasMoreEpisodes = true;
         String cursor = null;
 
-        Uri episodesOfShowUri = SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId);
         Long lastWatchedMs = null;
         while (hasMoreEpisodes) {
             // abort if connection is lost
@@ -218,14 +204,15 @@ public class HexagonEpisodeSync {
                 break;
             }
 
-            // build batch of episode flag updates
-            ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+            // write episode flag updates
+            EpisodeFlagsWriter writer = new EpisodeFlagsWriter(context);
             for (Episode episode : episodes) {
-                ContentValues values = new ContentValues();
+                Integer watchedFlag = null;
                 if (episode.getWatchedFlag() != null
                         && episode.getWatchedFlag() != EpisodeFlags.UNWATCHED) {
-                    values.put(SeriesGuideContract.Episodes.WATCHED, episode.getWatchedFlag());
-                    // record last watched time by taking latest updatedAt of watched/skipped
+                    watchedFlag = episode.getWatchedFlag();
+                    // record last watched time by taking latest updatedAt of
+                    // watched/skipped
                     DateTime updatedAt = episode.getUpdatedAt();
                     if (updatedAt != null) {
                         long lastWatchedMsNew = updatedAt.getValue();
@@ -234,33 +221,24 @@ public class HexagonEpisodeSync {
                         }
                     }
                 }
-                if (episode.getIsInCollection() != null
-                        && episode.getIsInCollection()) {
-                    values.put(SeriesGuideContract.Episodes.COLLECTED, 1);
+                Boolean isInCollection = null;
+                if (episode.getIsInCollection() != null && episode.getIsInCollection()) {
+                    isInCollection = true;
                 }
 
-                if (values.size() == 0) {
-                    // skip if episode has neither a watched flag or is in collection
-                    continue;
+                Integer season = episode.getSeasonNumber();
+                Integer number = episode.getEpisodeNumber();
+                if (season == null || number == null) {
+                    continue; // can not identify episode
                 }
-
-                ContentProviderOperation op = ContentProviderOperation
-                        .newUpdate(episodesOfShowUri)
-                        .withSelection(SeriesGuideContract.Episodes.SEASON + "="
-                                + episode.getSeasonNumber() + " AND "
-                                + SeriesGuideContract.Episodes.NUMBER + "="
-                                + episode.getEpisodeNumber(), null)
-                        .withValues(values)
-                        .build();
-
-                batch.add(op);
+                // skipped if episode has neither a watched flag or is in collection
+                writer.addFlags(showTvdbId, season, number, watchedFlag, isInCollection);
             }
-
-            // execute database update
             try {
-                DBUtils.applyInSmallBatches(context, batch);
-            } catch (OperationApplicationException e) {
+                writer.apply();
+            } catch (SQLiteException e) {
                 Timber.e(e, "downloadFlags: failed to apply updates for show %s", showTvdbId);
+                DBUtils.postDatabaseError(e);
                 return false;
             }
         }
@@ -328,88 +306,68 @@ public class HexagonEpisodeSync {
     public boolean uploadFlags(int showTvdbId) {
         Timber.d("uploadFlags: for show %s", showTvdbId);
 
-        // query for watched, skipped or collected episodes
-        Cursor query = context.getContentResolver()
-                .query(SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId),
-                        FlaggedEpisodesQuery.PROJECTION, FlaggedEpisodesQuery.SELECTION,
-                        null, null
-                );
-        if (query == null) {
-            Timber.e("uploadFlags: query was null");
+        // flags of the show are likely cached already
+        EpisodeFlagsCache.ShowFlags flags = EpisodeFlagsCache.getInstance(context)
+                .get(showTvdbId);
+        if (flags == null) {
+            Timber.e("uploadFlags: failed to get flags");
             return false;
         }
-        if (query.getCount() == 0) {
-            Timber.d("uploadFlags: no flags to upload");
-            query.close();
-            return true;
-        }
 
-        // build list of episodes to upload
+        // build list of watched, skipped or collected episodes to upload
         List<Episode> episodes = new ArrayList<>();
-        while (query.moveToNext()) {
-            Episode episode = new Episode();
-            episode.setSeasonNumber(query.getInt(FlaggedEpisodesQuery.SEASON));
-            episode.setEpisodeNumber(query.getInt(FlaggedEpisodesQuery.NUMBER));
+        for (int i = 0, count = flags.size(); i < count; i++) {
+            int watchedFlag = flags.getWatched(i);
+            boolean isInCollection = flags.isCollected(i);
+            if (EpisodeTools.isUnwatched(watchedFlag) && !isInCollection) {
+                continue;
+            }
 
-            int watchedFlag = query.getInt(FlaggedEpisodesQuery.WATCHED);
+            Episode episode = new Episode();
+            episode.setSeasonNumber(flags.getSeason(i));
+            episode.setEpisodeNumber(flags.getNumber(i));
             if (!EpisodeTools.isUnwatched(watchedFlag)) {
                 episode.setWatchedFlag(watchedFlag);
             }
-
-            boolean isInCollection = EpisodeTools.isCollected(
-                    query.getInt(FlaggedEpisodesQuery.IN_COLLECTION));
             if (isInCollection) {
                 episode.setIsInCollection(true);
             }
-
             episodes.add(episode);
 
             // upload a batch
-            if (episodes.size() == MAX_BATCH_SIZE || query.isLast()) {
-                EpisodeList episodeList = new EpisodeList();
-                episodeList.setEpisodes(episodes);
-                episodeList.setShowTvdbId(showTvdbId);
-
-                try {
-                    // get service each time to check if auth was removed
-                    Episodes episodesService = hexagonTools.getEpisodesService();
-                    if (episodesService == null) {
-                        return false;
-                    }
-                    episodesService.save(episodeList).execute();
-                } catch (IOException e) {
-                    // abort
-                    HexagonTools.trackFailedRequest(context, "save episodes of show", e);
-                    query.close();
+            if (episodes.size() == MAX_BATCH_SIZE) {
+                if (!uploadEpisodes(showTvdbId, episodes)) {
                     return false;
                 }
-
-                // clear array
                 episodes = new ArrayList<>();
             }
         }
 
-        query.close();
-
-        return true;
+        if (episodes.isEmpty()) {
+            Timber.d("uploadFlags: no more flags to upload");
+            return true;
+        }
+        return uploadEpisodes(showTvdbId, episodes);
     }
 
-    private interface FlaggedEpisodesQuery {
-        String[] PROJECTION = new String[] {
-                SeriesGuideContract.Episodes._ID,
-                SeriesGuideContract.Episodes.SEASON,
-                SeriesGuideContract.Episodes.NUMBER,
-                SeriesGuideContract.Episodes.WATCHED,
-                SeriesGuideContract.Episodes.COLLECTED
-        };
-
-        String SELECTION = SeriesGuideContract.Episodes.WATCHED + "!=" + EpisodeFlags.UNWATCHED
-                + " OR " + SeriesGuideContract.Episodes.COLLECTED + "=1";
-
-        int SEASON = 1;
-        int NUMBER = 2;
-        int WATCHED = 3;
-        int IN_COLLECTION = 4;
+    private boolean uploadEpisodes(int showTvdbId, List<Episode> episodes) {
+        EpisodeList episodeList = new EpisodeList();
+        episodeList.setEpisodes(episodes);
+        episodeList.setShowTvdbId(showTvdbId);
+
+        try {
+            // get service each time to check if auth was removed
+            Episodes episodesService = hexagonTools.getEpisodesService();
+            if (episodesService == null) {
+                return false;
+            }
+            episodesService.save(episodeList).execute();
+        } catch (IOException e) {
+            // abort
+            HexagonTools.trackFailedRequest(context, "save episodes of show", e);
+            return false;
+        }
+        return true;
     }
 
 }
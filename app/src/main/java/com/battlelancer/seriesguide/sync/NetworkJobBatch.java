@@ -0,0 +1,130 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.jobs.EpisodeInfo;
+import com.battlelancer.seriesguide.jobs.SgJobInfo;
+import com.battlelancer.seriesguide.jobs.episodes.JobAction;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consecutive network jobs that can be sent with a single request to Hexagon and trakt. Only
+ * episode jobs of the same show with the same action and flag value are combined, so jobs that
+ * might conflict (like setting an episode watched, then not watched) are still sent in order.
+ */
+final class NetworkJobBatch {
+
+    /**
+     * Combine at most as many episodes as Hexagon accepts with a single request.
+     */
+    static final int MAX_EPISODES = HexagonEpisodeSync.MAX_BATCH_SIZE;
+
+    final JobAction action;
+    private final List<Long> jobIds = new ArrayList<>();
+    private final List<Long> jobCreatedAt = new ArrayList<>();
+    private final List<SgJobInfo> jobInfos = new ArrayList<>();
+    private int episodeCount;
+
+    NetworkJobBatch(long jobId, JobAction action, long createdAt, SgJobInfo jobInfo) {
+        this.action = action;
+        add(jobId, createdAt, jobInfo);
+    }
+
+    /**
+     * Returns if the given job changes the same flag of episodes of the same show, and the batch
+     * would not get too large.
+     */
+    boolean canAdd(JobAction action, SgJobInfo jobInfo) {
+        if (this.action != action) {
+            return false;
+        }
+        if (action != JobAction.EPISODE_WATCHED_FLAG && action != JobAction.EPISODE_COLLECTION) {
+            return false;
+        }
+        SgJobInfo first = jobInfos.get(0);
+        return first.showTvdbId() == jobInfo.showTvdbId()
+                && first.flagValue() == jobInfo.flagValue()
+                && episodeCount + jobInfo.episodesLength() <= MAX_EPISODES;
+    }
+
+    /**
+     * Adds the job, check with {@link #canAdd(JobAction, SgJobInfo)} first.
+     */
+    void add(long jobId, long createdAt, SgJobInfo jobInfo) {
+        jobIds.add(jobId);
+        jobCreatedAt.add(createdAt);
+        jobInfos.add(jobInfo);
+        episodeCount += jobInfo.episodesLength();
+    }
+
+    @NonNull
+    List<Long> getJobIds() {
+        return jobIds;
+    }
+
+    /**
+     * The id of the first job, used to identify a notification if this batch fails.
+     */
+    long getFirstJobId() {
+        return jobIds.get(0);
+    }
+
+    /**
+     * The time the first job was created.
+     */
+    long getCreatedAt() {
+        return jobCreatedAt.get(0);
+    }
+
+    int size() {
+        return jobIds.size();
+    }
+
+    /**
+     * Returns the job info of a single job, or if there are multiple jobs a new job info
+     * containing the episodes of all jobs in order.
+     */
+    @NonNull
+    SgJobInfo getJobInfo() {
+        if (jobInfos.size() == 1) {
+            return jobInfos.get(0);
+        }
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(0);
+        int[] episodeInfos = new int[episodeCount];
+        int i = 0;
+        for (SgJobInfo jobInfo : jobInfos) {
+            for (int j = 0; j < jobInfo.episodesLength(); j++) {
+                EpisodeInfo episode = jobInfo.episodes(j);
+                episodeInfos[i] = EpisodeInfo.createEpisodeInfo(builder, episode.season(),
+                        episode.number());
+                i++;
+            }
+        }
+        int episodes = SgJobInfo.createEpisodesVector(builder, episodeInfos);
+        SgJobInfo first = jobInfos.get(0);
+        int jobInfo = SgJobInfo.createSgJobInfo(builder, first.showTvdbId(), first.flagValue(),
+                episodes, 0);
+        builder.finish(jobInfo);
+        return SgJobInfo.getRootAsSgJobInfo(builder.dataBuffer());
+    }
+
+    /**
+     * Returns for each episode of {@link #getJobInfo()} when the job changing it was created.
+     */
+    @NonNull
+    long[] getEpisodeActionTimes() {
+        long[] actionTimes = new long[episodeCount];
+        int i = 0;
+        for (int job = 0; job < jobInfos.size(); job++) {
+            long createdAt = jobCreatedAt.get(job);
+            int jobEpisodeCount = jobInfos.get(job).episodesLength();
+            for (int j = 0; j < jobEpisodeCount; j++) {
+                actionTimes[i] = createdAt;
+                i++;
+            }
+        }
+        return actionTimes;
+    }
+}
@@ -52,31 +52,45 @@ public class NetworkJobProcessor {
         }
 
         // process jobs, starting with oldest
+        // combine consecutive jobs that can be sent with a single request
         List<Long> jobsToRemove = new ArrayList<>();
+        NetworkJobBatch batch = null;
+        boolean failed = false;
         while (query.moveToNext()) {
             long jobId = query.getLong(0);
             int typeId = query.getInt(1);
             JobAction action = JobAction.fromId(typeId);
 
-            if (action != JobAction.UNKNOWN) {
-                Timber.d("Running job %d %s", jobId, action);
+            if (action == JobAction.UNKNOWN) {
+                jobsToRemove.add(jobId);
+                continue;
+            }
+
+            long createdAt = query.getLong(2);
+            byte[] jobInfoArr = query.getBlob(3);
+            ByteBuffer jobInfoBuffered = ByteBuffer.wrap(jobInfoArr);
+            SgJobInfo jobInfo = SgJobInfo.getRootAsSgJobInfo(jobInfoBuffered);
 
-                long createdAt = query.getLong(2);
-                byte[] jobInfoArr = query.getBlob(3);
-                ByteBuffer jobInfoBuffered = ByteBuffer.wrap(jobInfoArr);
-                SgJobInfo jobInfo = SgJobInfo.getRootAsSgJobInfo(jobInfoBuffered);
+            if (batch != null && batch.canAdd(action, jobInfo)) {
+                batch.add(jobId, createdAt, jobInfo);
+                continue;
+            }
 
-                if (!doNetworkJob(jobId, action, createdAt, jobInfo)) {
-                    Timber.e("Job %d failed, will retry.", jobId);
+            if (batch != null) {
+                if (!doNetworkJobBatch(batch)) {
+                    failed = true;
                     break; // abort to avoid ordering issues
                 }
-                Timber.d("Job %d completed, will remove.", jobId);
+                jobsToRemove.addAll(batch.getJobIds());
             }
-
-            jobsToRemove.add(jobId);
+            batch = new NetworkJobBatch(jobId, action, createdAt, jobInfo);
         }
         query.close();
 
+        if (!failed && batch != null && doNetworkJobBatch(batch)) {
+            jobsToRemove.addAll(batch.getJobIds());
+        }
+
         // remove completed jobs
         if (!jobsToRemove.isEmpty()) {
             removeJobs(jobsToRemove);
@@ -84,9 +98,27 @@ public class NetworkJobProcessor {
     }
 
     /**
+     * @return true if the jobs of the batch can be removed, false if they should be retried later.
+     */
+    private boolean doNetworkJobBatch(NetworkJobBatch batch) {
+        long jobId = batch.getFirstJobId();
+        Timber.d("Running job %d %s (%d combined)", jobId, batch.action, batch.size());
+        boolean removable = doNetworkJob(jobId, batch.action, batch.getCreatedAt(),
+                batch.getJobInfo(), batch.getEpisodeActionTimes());
+        if (removable) {
+            Timber.d("Job %d completed, will remove.", jobId);
+        } else {
+            Timber.e("Job %d failed, will retry.", jobId);
+        }
+        return removable;
+    }
+
+    /**
+     * @param episodeActionTimes For episode jobs, when each episode of the job info was changed.
      * @return true if the job can be removed, false if it should be retried later.
      */
-    private boolean doNetworkJob(long jobId, JobAction action, long createdAt, SgJobInfo jobInfo) {
+    private boolean doNetworkJob(long jobId, JobAction action, long createdAt, SgJobInfo jobInfo,
+            long[] episodeActionTimes) {
         // upload to hexagon
         if (shouldSendToHexagon) {
             if (!AndroidUtils.isNetworkConnected(context)) {
@@ -110,7 +142,8 @@ public class NetworkJobProcessor {
                 return false;
             }
 
-            NetworkJob traktJob = getTraktJobForAction(action, jobInfo, createdAt);
+            NetworkJob traktJob = getTraktJobForAction(action, jobInfo, createdAt,
+                    episodeActionTimes);
             if (traktJob != null) {
                 JobResult result = traktJob.execute(context);
                 // may need to show notification if successful (for not found error)
@@ -144,11 +177,12 @@ public class NetworkJobProcessor {
     }
 
     @Nullable
-    private NetworkJob getTraktJobForAction(JobAction action, SgJobInfo jobInfo, long createdAt) {
+    private NetworkJob getTraktJobForAction(JobAction action, SgJobInfo jobInfo, long createdAt,
+            long[] episodeActionTimes) {
         switch (action) {
             case EPISODE_COLLECTION:
             case EPISODE_WATCHED_FLAG:
-                return new TraktEpisodeJob(action, jobInfo, createdAt);
+                return new TraktEpisodeJob(action, jobInfo, episodeActionTimes);
             case MOVIE_COLLECTION_ADD:
             case MOVIE_COLLECTION_REMOVE:
             case MOVIE_WATCHLIST_ADD:
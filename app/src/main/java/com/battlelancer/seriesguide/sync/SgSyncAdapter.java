@@ -16,6 +16,7 @@ import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
+import com.battlelancer.seriesguide.provider.ChangeNotifier;
 import com.battlelancer.seriesguide.ui.search.SearchResult;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.service.NotificationService;
@@ -32,6 +33,10 @@ import com.uwetrottmann.trakt5.services.Sync;
 import dagger.Lazy;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.inject.Inject;
 import timber.log.Timber;
 
@@ -88,6 +93,17 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
         Timber.i("Syncing: %s%s", options.syncType, options.syncImmediately
                 ? "_IMMEDIATE" : "_REGULAR");
 
+        // coalesce change notifications of the many changes made while syncing
+        ChangeNotifier changeNotifier = ChangeNotifier.getInstance(getContext());
+        changeNotifier.beginBatch();
+        try {
+            performSync(options);
+        } finally {
+            changeNotifier.endBatch();
+        }
+    }
+
+    private void performSync(SyncOptions options) {
         // JOBS
         if (options.syncType == SyncType.JOBS || options.syncType == SyncType.DELTA) {
             new NetworkJobProcessor(getContext()).process();
@@ -111,6 +127,15 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
 
         // from here on we need more sophisticated abort handling, so keep track of errors
         SyncProgress progress = new SyncProgress();
+        final SharedPreferences prefs = PreferenceManager
+                .getDefaultSharedPreferences(getContext());
+
+        // TMDB does not depend on TVDB, so if not a quick update run it at the same time
+        Future<?> tmdbStage = null;
+        if (tvdbSync.isSyncMultiple()) {
+            tmdbStage = startTmdbStage(progress, prefs);
+        }
+
         progress.publish(SyncProgress.Step.TVDB);
         UpdateResult resultCode = tvdbSync.sync(getContext(), getContext().getContentResolver(),
                 tvdbTools, currentTime);
@@ -118,29 +143,20 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
             progress.recordError();
         }
         Timber.d("Syncing: TVDB...DONE");
+
+        // Hexagon and trakt sync also change movies, so wait for TMDB to finish
+        if (tmdbStage != null) {
+            awaitStage(tmdbStage, progress, SyncProgress.Step.TMDB);
+        }
+
         if (resultCode == null) {
             progress.publishFinished();
+            progress.saveMetrics(getContext(), null);
             return; // invalid show(s), abort
         }
 
         // do some more things if this is not a quick update
         if (tvdbSync.isSyncMultiple()) {
-            final SharedPreferences prefs = PreferenceManager
-                    .getDefaultSharedPreferences(getContext());
-
-            progress.publish(SyncProgress.Step.TMDB);
-            TmdbSync tmdbSync = new TmdbSync(getContext(), tmdbConfigService.get(),
-                    movieTools.get());
-            // get latest TMDb configuration
-            if (!tmdbSync.updateConfiguration(prefs)) {
-                progress.recordError();
-            }
-            // update data of to be released movies
-            if (!tmdbSync.updateMovies()) {
-                progress.recordError();
-            }
-            Timber.d("Syncing: TMDB...DONE");
-
             // sync with Hexagon or trakt
             @SuppressLint("UseSparseArrays") final HashMap<Integer, SearchResult> newShows
                     = new HashMap<>();
@@ -167,12 +183,13 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
                 }
 
                 // make sure other loaders (activity, overview, details) are notified of changes
-                getContext().getContentResolver().notifyChange(Episodes.CONTENT_URI_WITHSHOW, null);
+                ChangeNotifier.getInstance(getContext())
+                        .notifyChange(Episodes.CONTENT_URI_WITHSHOW);
             }
 
-            // renew search table if shows were updated and it will not be renewed by add task
-            if (tvdbSync.hasUpdatedShows() && newShows.size() == 0) {
-                DBUtils.rebuildFtsTable(getContext());
+            // search table is updated by triggers, only check it is intact after a full sync
+            if (options.syncType == SyncType.FULL && tvdbSync.hasUpdatedShows()) {
+                DBUtils.checkFtsTable(getContext());
             }
 
             // update next episodes for all shows
@@ -186,6 +203,65 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
 
         Timber.i("Syncing: %s", resultCode.toString());
         progress.publishFinished();
+        progress.saveMetrics(getContext(), resultCode.toString());
+    }
+
+    /**
+     * Gets the latest TMDB configuration and updates movies on a separate thread.
+     */
+    private Future<?> startTmdbStage(final SyncProgress progress,
+            final SharedPreferences prefs) {
+        final TmdbSync tmdbSync = new TmdbSync(getContext(), tmdbConfigService.get(),
+                movieTools.get());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ChangeNotifier changeNotifier = ChangeNotifier.getInstance(getContext());
+                changeNotifier.beginBatch();
+                try {
+                    updateMovies();
+                } finally {
+                    changeNotifier.endBatch();
+                }
+            }
+
+            private void updateMovies() {
+                progress.startStep(SyncProgress.Step.TMDB);
+                // get latest TMDb configuration
+                if (!tmdbSync.updateConfiguration(prefs)) {
+                    progress.recordError(SyncProgress.Step.TMDB);
+                }
+                // update data of to be released movies
+                if (!tmdbSync.updateMovies()) {
+                    progress.recordError(SyncProgress.Step.TMDB);
+                }
+                progress.finishStep(SyncProgress.Step.TMDB);
+                Timber.d("Syncing: TMDB...DONE");
+            }
+        });
+        // no more stages to run, executor finishes once the stage is done
+        executor.shutdown();
+        return future;
+    }
+
+    /**
+     * Blocks until the given stage has finished. Records an error for the step if it failed.
+     */
+    private static void awaitStage(Future<?> stage, SyncProgress progress,
+            SyncProgress.Step step) {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            Timber.e(e, "Syncing: interrupted while waiting for %s", step.name());
+            progress.recordError(step);
+            stage.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Timber.e(e.getCause(), "Syncing: %s failed", step.name());
+            progress.recordError(step);
+            progress.finishStep(step);
+        }
     }
 
     private void updateTimeAndFailedCounter(SharedPreferences prefs, long currentTime,
@@ -0,0 +1,239 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.battlelancer.seriesguide.model.SgSyncStage;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.battlelancer.seriesguide.sync.SyncProgress.Step;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import timber.log.Timber;
+
+/**
+ * Records the cost of each stage of a sync run: HTTP requests and bytes transferred, database
+ * operations applied and shows and episodes touched. Stage durations are timed by {@link
+ * SyncProgress}.
+ *
+ * <p>The stage a thread is working on is set by {@link SyncProgress} when a step is started, so
+ * code doing the work only calls the static record methods, which do nothing if the current thread
+ * is not syncing. Work handed to other threads only counts if wrapped with {@link
+ * #withCurrentStage(Callable)}.
+ *
+ * <p>The stages of the latest {@link #RUNS_TO_KEEP} runs are stored in the database, see {@link
+ * #save(Context, List)}.
+ */
+public class SyncMetrics {
+
+    public static final int RUNS_TO_KEEP = 20;
+
+    /**
+     * Not inherited, pooled threads (like those of OkHttp) would keep counting towards a stage
+     * long after it finished.
+     */
+    private static final ThreadLocal<Stage> currentStage = new ThreadLocal<>();
+
+    static class Stage {
+        final AtomicLong httpRequests = new AtomicLong();
+        final AtomicLong httpBytes = new AtomicLong();
+        final AtomicLong dbOps = new AtomicLong();
+        final AtomicLong showsTouched = new AtomicLong();
+        final AtomicLong episodesTouched = new AtomicLong();
+    }
+
+    private final long runStartedMs;
+    private final Map<Step, Stage> stages = new EnumMap<>(Step.class);
+
+    public SyncMetrics() {
+        this(System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    SyncMetrics(long runStartedMs) {
+        this.runStartedMs = runStartedMs;
+    }
+
+    /**
+     * Records everything the calling thread does for the given step, until {@link
+     * #leaveStage(Step)}.
+     */
+    synchronized void enterStage(Step step) {
+        Stage stage = stages.get(step);
+        if (stage == null) {
+            stage = new Stage();
+            stages.put(step, stage);
+        }
+        currentStage.set(stage);
+    }
+
+    /**
+     * Stops recording for the calling thread, if it is recording the given step.
+     */
+    synchronized void leaveStage(Step step) {
+        Stage stage = currentStage.get();
+        if (stage != null && stage == stages.get(step)) {
+            currentStage.remove();
+        }
+    }
+
+    /**
+     * Wraps the given task so what it does counts towards the stage of the calling thread, if
+     * any, on whatever thread it is run, like to download shows in parallel.
+     */
+    @NonNull
+    public static <T> Callable<T> withCurrentStage(@NonNull final Callable<T> task) {
+        final Stage stage = currentStage.get();
+        if (stage == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Stage previousStage = currentStage.get();
+                currentStage.set(stage);
+                try {
+                    return task.call();
+                } finally {
+                    if (previousStage != null) {
+                        currentStage.set(previousStage);
+                    } else {
+                        currentStage.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    public static void recordHttpRequest(long bytes) {
+        Stage stage = currentStage.get();
+        if (stage != null) {
+            stage.httpRequests.incrementAndGet();
+            stage.httpBytes.addAndGet(bytes);
+        }
+    }
+
+    public static void recordDbOps(int count) {
+        Stage stage = currentStage.get();
+        if (stage != null) {
+            stage.dbOps.addAndGet(count);
+        }
+    }
+
+    public static void recordShowsTouched(int count) {
+        Stage stage = currentStage.get();
+        if (stage != null) {
+            stage.showsTouched.addAndGet(count);
+        }
+    }
+
+    public static void recordEpisodesTouched(int count) {
+        Stage stage = currentStage.get();
+        if (stage != null) {
+            stage.episodesTouched.addAndGet(count);
+        }
+    }
+
+    /**
+     * Builds a row for each stage that was entered or timed.
+     */
+    @NonNull
+    synchronized List<SgSyncStage> buildStages(@NonNull Map<Step, Long> stepDurations,
+            @NonNull Collection<Step> stepsWithError, @Nullable String result) {
+        List<SgSyncStage> rows = new ArrayList<>();
+        for (Step step : Step.values()) {
+            Stage stage = stages.get(step);
+            Long duration = stepDurations.get(step);
+            if (stage == null && duration == null) {
+                continue;
+            }
+            SgSyncStage row = new SgSyncStage();
+            row.runStartedMs = runStartedMs;
+            row.runResult = result;
+            row.stage = step.name();
+            row.durationMs = duration != null ? duration : 0;
+            if (stage != null) {
+                row.httpRequests = stage.httpRequests.get();
+                row.httpBytes = stage.httpBytes.get();
+                row.dbOps = stage.dbOps.get();
+                row.showsTouched = stage.showsTouched.get();
+                row.episodesTouched = stage.episodesTouched.get();
+            }
+            row.failed = stepsWithError.contains(step);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Stores the given stages of a run and drops those of older runs, keeping {@link
+     * #RUNS_TO_KEEP} runs.
+     */
+    static void save(Context context, final List<SgSyncStage> stages) {
+        if (stages.isEmpty()) {
+            return;
+        }
+        final SgRoomDatabase database = SgRoomDatabase.getInstance(context);
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    database.syncStageHelper().insertStages(stages);
+                    database.syncStageHelper().deleteOldRuns(RUNS_TO_KEEP);
+                }
+            });
+        } catch (Exception e) {
+            // metrics are not essential, do not fail sync
+            Timber.e(e, "Failed to save sync metrics");
+        }
+    }
+
+    /**
+     * Describes the stored runs, latest first, for display on the debug screen.
+     */
+    @NonNull
+    public static String describeRuns(Context context) {
+        return describe(SgRoomDatabase.getInstance(context).syncStageHelper().getStages());
+    }
+
+    /**
+     * Describes the given stages, expects stages of the same run to be next to each other.
+     */
+    @VisibleForTesting
+    @NonNull
+    static String describe(@NonNull List<SgSyncStage> stages) {
+        if (stages.isEmpty()) {
+            return "No sync runs recorded.";
+        }
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT,
+                DateFormat.MEDIUM);
+        StringBuilder description = new StringBuilder();
+        long runStartedMs = -1;
+        for (SgSyncStage stage : stages) {
+            if (stage.runStartedMs != runStartedMs) {
+                runStartedMs = stage.runStartedMs;
+                if (description.length() > 0) {
+                    description.append('\n');
+                }
+                description.append(dateFormat.format(new Date(runStartedMs)))
+                        .append(' ').append(stage.runResult).append('\n');
+            }
+            description.append(stage.stage)
+                    .append(stage.failed ? " FAILED: " : ": ")
+                    .append(stage.durationMs).append(" ms, ")
+                    .append(stage.httpRequests).append(" requests, ")
+                    .append(stage.httpBytes / 1024).append(" KB, ")
+                    .append(stage.dbOps).append(" db ops, ")
+                    .append(stage.showsTouched).append(" shows, ")
+                    .append(stage.episodesTouched).append(" episodes\n");
+        }
+        return description.toString();
+    }
+}
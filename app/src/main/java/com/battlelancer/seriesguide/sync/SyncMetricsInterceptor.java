@@ -0,0 +1,39 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.support.annotation.NonNull;
+import java.io.IOException;
+import javax.inject.Inject;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Network interceptor that records requests hitting the network and the bytes transferred with
+ * {@link SyncMetrics}. Responses served from the cache are not counted. Bytes of bodies with
+ * unknown length, like chunked responses, are not counted.
+ */
+public class SyncMetricsInterceptor implements Interceptor {
+
+    @Inject
+    public SyncMetricsInterceptor() {
+    }
+
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        long bytes = 0;
+        if (request.body() != null) {
+            bytes += Math.max(request.body().contentLength(), 0);
+        }
+        ResponseBody body = response.body();
+        if (body != null) {
+            bytes += Math.max(body.contentLength(), 0);
+        }
+        SyncMetrics.recordHttpRequest(bytes);
+
+        return response;
+    }
+}
@@ -1,11 +1,15 @@
 package com.battlelancer.seriesguide.sync;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.battlelancer.seriesguide.R;
-import java.util.LinkedList;
+import com.battlelancer.seriesguide.model.SgSyncStage;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import org.greenrobot.eventbus.EventBus;
 import timber.log.Timber;
 
@@ -37,10 +41,14 @@ public class SyncProgress {
         @Nullable public final Step step;
         /** Contains any steps that had an error. */
         @NonNull public final List<Step> stepsWithError;
+        /** Time in milliseconds each finished step took. */
+        @NonNull public final Map<Step, Long> stepDurations;
 
-        public SyncEvent(@Nullable Step step, @NonNull List<Step> stepsWithError) {
+        public SyncEvent(@Nullable Step step, @NonNull List<Step> stepsWithError,
+                @NonNull Map<Step, Long> stepDurations) {
             this.step = step;
             this.stepsWithError = stepsWithError;
+            this.stepDurations = stepDurations;
         }
 
         public String getDescription(Context context) {
@@ -73,26 +81,104 @@ public class SyncProgress {
         }
     }
 
-    @NonNull private final List<Step> stepsWithError = new LinkedList<>();
+    @NonNull private final List<Step> stepsWithError = new ArrayList<>();
+    @NonNull private final Map<Step, Long> stepStartTimes = new EnumMap<>(Step.class);
+    @NonNull private final Map<Step, Long> stepDurations = new EnumMap<>(Step.class);
+    @NonNull private final SyncMetrics metrics = new SyncMetrics();
     @Nullable private Step currentStep;
 
-    public void publish(Step step) {
+    /**
+     * Finishes the last published step and displays the given one. Steps running at the same time
+     * as the published steps should use {@link #startStep(Step)} instead.
+     */
+    public synchronized void publish(Step step) {
+        if (currentStep != null) {
+            finishStep(currentStep);
+        }
         currentStep = step;
-        EventBus.getDefault().postSticky(new SyncEvent(step, stepsWithError));
+        startStep(step);
+        postEvent(step);
         Timber.d("Syncing: %s...", step.name());
     }
 
+    /**
+     * Starts timing the given step without displaying it. Call {@link #finishStep(Step)} once
+     * done. Until then {@link SyncMetrics} recorded by the calling thread count towards the step.
+     */
+    public synchronized void startStep(Step step) {
+        stepStartTimes.put(step, SystemClock.elapsedRealtime());
+        metrics.enterStage(step);
+    }
+
+    /**
+     * Stops timing the given step, if it was started. Steps can be started again, time is then
+     * added up.
+     */
+    public synchronized void finishStep(Step step) {
+        metrics.leaveStage(step);
+        Long startTime = stepStartTimes.remove(step);
+        if (startTime == null) {
+            return;
+        }
+        long duration = SystemClock.elapsedRealtime() - startTime;
+        Long previousDuration = stepDurations.get(step);
+        if (previousDuration != null) {
+            duration += previousDuration;
+        }
+        stepDurations.put(step, duration);
+        Timber.d("Syncing: %s...took %d ms", step.name(), duration);
+    }
+
     /**
      * Record an error for the last published step.
      */
-    public void recordError() {
+    public synchronized void recordError() {
         if (currentStep != null) {
-            stepsWithError.add(currentStep);
-            Timber.d("Syncing: %s...FAILED", currentStep.name());
+            recordError(currentStep);
+        }
+    }
+
+    /**
+     * Record an error for the given step, like one started with {@link #startStep(Step)}.
+     */
+    public synchronized void recordError(Step step) {
+        stepsWithError.add(step);
+        Timber.d("Syncing: %s...FAILED", step.name());
+    }
+
+    /**
+     * Returns the time in milliseconds each finished step took.
+     */
+    @NonNull
+    public synchronized Map<Step, Long> getStepDurations() {
+        return new EnumMap<>(stepDurations);
+    }
+
+    public synchronized void publishFinished() {
+        if (currentStep != null) {
+            finishStep(currentStep);
+            currentStep = null;
+        }
+        postEvent(null);
+    }
+
+    /**
+     * Stores the metrics of this run, call after {@link #publishFinished()}.
+     *
+     * @param result Description of the result of the run, like its {@link
+     * SgSyncAdapter.UpdateResult}.
+     */
+    public void saveMetrics(Context context, @Nullable String result) {
+        List<SgSyncStage> stages;
+        synchronized (this) {
+            stages = metrics.buildStages(stepDurations, stepsWithError, result);
         }
+        SyncMetrics.save(context, stages);
     }
 
-    public void publishFinished() {
-        EventBus.getDefault().postSticky(new SyncEvent(null, stepsWithError));
+    private void postEvent(@Nullable Step step) {
+        // copy, steps running in parallel might still change these
+        EventBus.getDefault().postSticky(new SyncEvent(step, new ArrayList<>(stepsWithError),
+                getStepDurations()));
     }
 }
@@ -0,0 +1,174 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.SparseArrayCompat;
+import com.battlelancer.seriesguide.sync.TraktEpisodeSync.Flag;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
+import com.uwetrottmann.trakt5.entities.BaseEpisode;
+import com.uwetrottmann.trakt5.entities.BaseSeason;
+import com.uwetrottmann.trakt5.entities.BaseShow;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncSeason;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the watched or collected flag of local episodes of all shows with the episodes
+ * watched or collected on trakt and collects the episodes that need to change locally or, on an
+ * initial sync, be uploaded.
+ *
+ * <p>Local episodes are passed one at a time, ordered by show, season and number, so a single
+ * query of all episodes is enough. The trakt episodes of each show are kept as a sorted array of
+ * season and number keys.
+ */
+class TraktEpisodeReconciler {
+
+    private final Flag flag;
+    private final boolean isInitialSync;
+    private final SparseArrayCompat<long[]> traktEpisodesByShow;
+    private final SparseArrayCompat<Integer> showTraktIds;
+
+    private final List<Integer> episodesAddFlag = new ArrayList<>();
+    private final List<Integer> episodesRemoveFlag = new ArrayList<>();
+    private final SparseArrayCompat<List<SyncSeason>> uploadsByShow = new SparseArrayCompat<>();
+
+    private int currentShowTvdbId = -1;
+    private long[] currentTraktEpisodes;
+    private boolean isCurrentShowOnTrakt;
+    private SyncSeason currentUploadSeason;
+
+    /**
+     * @param traktShows Watched or collected shows on trakt by TVDB id, see {@link
+     * com.battlelancer.seriesguide.traktapi.TraktTools#buildTraktShowsMap(List)}.
+     * @param showTraktIds Trakt ids of local shows by TVDB id. Shows without trakt id can not be
+     * tracked with trakt, their flags stay as they are if the show is not on trakt.
+     * @param isInitialSync If {@code true}, locally flagged episodes not flagged on trakt are
+     * uploaded. If {@code false}, their flag is removed.
+     */
+    TraktEpisodeReconciler(@NonNull Flag flag, boolean isInitialSync,
+            @NonNull Map<Integer, BaseShow> traktShows,
+            @NonNull SparseArrayCompat<Integer> showTraktIds) {
+        this.flag = flag;
+        this.isInitialSync = isInitialSync;
+        this.showTraktIds = showTraktIds;
+        this.traktEpisodesByShow = new SparseArrayCompat<>(traktShows.size());
+        for (Map.Entry<Integer, BaseShow> entry : traktShows.entrySet()) {
+            traktEpisodesByShow.put(entry.getKey(), buildEpisodeKeys(entry.getValue()));
+        }
+    }
+
+    static long episodeKey(int season, int number) {
+        return ((long) season << 32) | (number & 0xFFFFFFFFL);
+    }
+
+    private static long[] buildEpisodeKeys(BaseShow traktShow) {
+        int count = 0;
+        for (BaseSeason season : traktShow.seasons) {
+            if (season.number != null && season.episodes != null) {
+                count += season.episodes.size();
+            }
+        }
+        long[] keys = new long[count];
+        int index = 0;
+        for (BaseSeason season : traktShow.seasons) {
+            if (season.number == null || season.episodes == null) {
+                continue; // trakt season misses required data, skip.
+            }
+            for (BaseEpisode episode : season.episodes) {
+                if (episode.number == null) {
+                    continue; // trakt episode misses required data, skip.
+                }
+                keys[index++] = episodeKey(season.number, episode.number);
+            }
+        }
+        if (index < count) {
+            keys = Arrays.copyOf(keys, index);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Compares a local episode, call in order of show, season and number.
+     *
+     * @param flagValue Value of the watched or collected column of the episode.
+     */
+    void processEpisode(int showTvdbId, int episodeTvdbId, int season, int number,
+            int flagValue) {
+        if (showTvdbId != currentShowTvdbId) {
+            currentShowTvdbId = showTvdbId;
+            currentTraktEpisodes = traktEpisodesByShow.get(showTvdbId);
+            isCurrentShowOnTrakt = currentTraktEpisodes != null;
+            currentUploadSeason = null;
+        }
+
+        // skipped episodes are not watched, but their flag is never removed
+        boolean isFlagged = flag == Flag.WATCHED
+                ? EpisodeTools.isWatched(flagValue) : EpisodeTools.isCollected(flagValue);
+
+        if (!isCurrentShowOnTrakt) {
+            // show not watched/collected on trakt
+            // check if this is because the show can not be tracked with trakt (yet)
+            // some shows only exist on TheTVDB, keep state local and maybe upload in the future
+            if (isFlagged && showTraktIds.get(showTvdbId) != null) {
+                uploadOrRemoveFlag(episodeTvdbId, season, number);
+            }
+            return;
+        }
+
+        boolean isFlaggedOnTrakt = Arrays.binarySearch(currentTraktEpisodes,
+                episodeKey(season, number)) >= 0;
+        if (isFlaggedOnTrakt) {
+            if (!isFlagged) {
+                episodesAddFlag.add(episodeTvdbId);
+            }
+        } else if (isFlagged) {
+            uploadOrRemoveFlag(episodeTvdbId, season, number);
+        }
+    }
+
+    private void uploadOrRemoveFlag(int episodeTvdbId, int season, int number) {
+        if (!isInitialSync) {
+            episodesRemoveFlag.add(episodeTvdbId);
+            return;
+        }
+
+        if (currentUploadSeason == null || currentUploadSeason.number != season) {
+            currentUploadSeason = new SyncSeason().number(season)
+                    .episodes(new ArrayList<SyncEpisode>());
+            List<SyncSeason> seasons = uploadsByShow.get(currentShowTvdbId);
+            if (seasons == null) {
+                seasons = new ArrayList<>();
+                uploadsByShow.put(currentShowTvdbId, seasons);
+            }
+            seasons.add(currentUploadSeason);
+        }
+        currentUploadSeason.episodes.add(new SyncEpisode().number(number));
+    }
+
+    /**
+     * TVDB ids of episodes to set watched/collected.
+     */
+    @NonNull
+    List<Integer> getEpisodesAddFlag() {
+        return episodesAddFlag;
+    }
+
+    /**
+     * TVDB ids of episodes to set not watched/collected.
+     */
+    @NonNull
+    List<Integer> getEpisodesRemoveFlag() {
+        return episodesRemoveFlag;
+    }
+
+    /**
+     * Seasons with episodes to upload by show TVDB id, only on initial sync.
+     */
+    @NonNull
+    SparseArrayCompat<List<SyncSeason>> getUploadsByShow() {
+        return uploadsByShow;
+    }
+}
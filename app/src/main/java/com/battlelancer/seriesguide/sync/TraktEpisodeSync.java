@@ -1,25 +1,25 @@
 package com.battlelancer.seriesguide.sync;
 
 import android.content.ContentProviderOperation;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.util.SparseArrayCompat;
+import com.battlelancer.seriesguide.provider.BulkWriter;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
 import com.battlelancer.seriesguide.traktapi.TraktSettings;
 import com.battlelancer.seriesguide.traktapi.TraktTools;
 import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
-import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
-import com.battlelancer.seriesguide.ui.shows.ShowTools;
 import com.battlelancer.seriesguide.util.DBUtils;
 import com.battlelancer.seriesguide.util.TimeTools;
-import com.uwetrottmann.trakt5.entities.BaseSeason;
 import com.uwetrottmann.trakt5.entities.BaseShow;
 import com.uwetrottmann.trakt5.entities.ShowIds;
-import com.uwetrottmann.trakt5.entities.SyncEpisode;
 import com.uwetrottmann.trakt5.entities.SyncItems;
 import com.uwetrottmann.trakt5.entities.SyncResponse;
 import com.uwetrottmann.trakt5.entities.SyncSeason;
@@ -27,9 +27,8 @@ import com.uwetrottmann.trakt5.entities.SyncShow;
 import com.uwetrottmann.trakt5.services.Sync;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import org.threeten.bp.OffsetDateTime;
 import retrofit2.Response;
 import timber.log.Timber;
@@ -56,17 +55,15 @@ public class TraktEpisodeSync {
         if (!traktShows.containsKey(showTvdbId)) {
             return true; // show is not watched/collected on trakt, done.
         }
-        BaseShow traktShow = traktShows.get(showTvdbId);
-        return processTraktSeasons(false, showTvdbId, traktShow, flag);
+        return reconcile(traktShows, showTvdbId, flag, false);
     }
 
     /**
      * @param isInitialSync If true, will upload any episodes flagged locally, but not flagged on
-     * trakt. If false, all watched and collected (and only those, e.g. not skipped flag) flags will
-     * be removed prior to getting the actual flags from trakt (season by season).
+     * trakt. If false, all watched and collected (and only those, e.g. not skipped flag) flags not
+     * on trakt will be removed.
      */
-    public boolean syncWatched(@NonNull HashSet<Integer> localShows,
-            @Nullable OffsetDateTime watchedAt, boolean isInitialSync) {
+    public boolean syncWatched(@Nullable OffsetDateTime watchedAt, boolean isInitialSync) {
         if (watchedAt == null) {
             Timber.e("syncWatched: null watched_at");
             return false;
@@ -98,8 +95,8 @@ public class TraktEpisodeSync {
 
             // apply database updates, if initial sync upload diff
             long startTime = System.currentTimeMillis();
-            boolean success = processTraktShows(watchedShowsTrakt, localShows, Flag.WATCHED,
-                    isInitialSync);
+            boolean success = reconcile(TraktTools.buildTraktShowsMap(watchedShowsTrakt), null,
+                    Flag.WATCHED, isInitialSync);
             Timber.d("syncWatched: processing took %s ms", System.currentTimeMillis() - startTime);
             if (!success) {
                 return false;
@@ -119,8 +116,7 @@ public class TraktEpisodeSync {
         return true;
     }
 
-    public boolean syncCollected(@NonNull HashSet<Integer> localShows,
-            @Nullable OffsetDateTime collectedAt, boolean isInitialSync) {
+    public boolean syncCollected(@Nullable OffsetDateTime collectedAt, boolean isInitialSync) {
         if (collectedAt == null) {
             Timber.e("syncCollected: null collected_at");
             return false;
@@ -152,8 +148,8 @@ public class TraktEpisodeSync {
 
             // apply database updates, if initial sync upload diff
             long startTime = System.currentTimeMillis();
-            boolean success = processTraktShows(collectedShowsTrakt, localShows, Flag.COLLECTED,
-                    isInitialSync);
+            boolean success = reconcile(TraktTools.buildTraktShowsMap(collectedShowsTrakt), null,
+                    Flag.COLLECTED, isInitialSync);
             Timber.d("syncCollected: processing took %s ms",
                     System.currentTimeMillis() - startTime);
             if (!success) {
@@ -174,210 +170,117 @@ public class TraktEpisodeSync {
         return true;
     }
 
-    private boolean processTraktShows(@NonNull List<BaseShow> remoteShows,
-            @NonNull HashSet<Integer> localShows, Flag flag, boolean isInitialSync) {
-        HashMap<Integer, BaseShow> traktShows = TraktTools.buildTraktShowsMap(remoteShows);
-
-        int uploadedShowsCount = 0;
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        for (Integer localShow : localShows) {
-            if (traktShows.containsKey(localShow)) {
-                // show watched/collected on trakt
-                BaseShow traktShow = traktShows.get(localShow);
-                if (!processTraktSeasons(isInitialSync, localShow, traktShow, flag)) {
-                    return false; // processing seasons failed, give up.
-                }
-                if (flag == Flag.WATCHED) {
-                    updateLastWatchedTime(localShow, traktShow, batch);
-                }
-            } else {
-                // show not watched/collected on trakt
-                // check if this is because the show can not be tracked with trakt (yet)
-                // some shows only exist on TheTVDB, keep state local and maybe upload in the future
-                Integer showTraktId = ShowTools.getShowTraktId(context, localShow);
-                if (showTraktId != null) {
-                    if (isInitialSync) {
-                        // upload all watched/collected episodes of the show
-                        // do in between processing to stretch uploads over longer time periods
-                        upload(localShow, showTraktId, flag);
-                        uploadedShowsCount++;
-                    } else {
-                        // set all watched/collected episodes of show not watched/collected
-                        batch.add(ContentProviderOperation.newUpdate(
-                                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(localShow))
-                                .withSelection(flag.clearFlagSelection, null)
-                                .withValue(flag.databaseColumn, flag.notFlaggedValue)
-                                .build());
-                    }
-                }
-            }
-        }
-
-        try {
-            DBUtils.applyInSmallBatches(context, batch);
-        } catch (OperationApplicationException e) {
-            Timber.e(e, "processTraktShows: failed to remove flag for %s.", flag.name);
-        }
-
-        if (uploadedShowsCount > 0) {
-            Timber.d("processTraktShows: uploaded %s flags for %s complete shows.", flag.name,
-                    localShows.size());
-        }
-        return true;
-    }
-
     /**
-     * Sync the watched/collected episodes of the given trakt show with the local episodes. The
-     * given show has to be watched/collected on trakt.
+     * Sync the watched/collected episodes of all local shows, or only the given one, with those on
+     * trakt. Reads the flags of all local episodes with a single query and compares them in
+     * memory, see {@link TraktEpisodeReconciler}, then only writes or uploads differences.
      *
+     * @param showTvdbId If not {@code null}, only processes episodes of this show.
      * @param isInitialSync If {@code true}, will upload watched/collected episodes that are not
      * watched/collected on trakt. If {@code false}, will set them not watched/collected (if not
      * skipped) to mirror the trakt episode.
      */
-    public boolean processTraktSeasons(boolean isInitialSync, int localShow,
-            @NonNull BaseShow traktShow, @NonNull Flag flag) {
-        HashMap<Integer, BaseSeason> traktSeasons = TraktTools.buildTraktSeasonsMap(
-                traktShow.seasons);
-
-        Cursor localSeasonsQuery = context.getContentResolver()
-                .query(SeriesGuideContract.Seasons.buildSeasonsOfShowUri(localShow),
-                        new String[] { SeriesGuideContract.Seasons._ID,
-                                SeriesGuideContract.Seasons.COMBINED }, null, null,
-                        null);
-        if (localSeasonsQuery == null) {
-            return false;
-        }
+    private boolean reconcile(@NonNull Map<Integer, BaseShow> traktShows,
+            @Nullable Integer showTvdbId, @NonNull Flag flag, boolean isInitialSync) {
         final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        List<SyncSeason> syncSeasons = new ArrayList<>();
-        while (localSeasonsQuery.moveToNext()) {
-            String seasonId = localSeasonsQuery.getString(0);
-            int seasonNumber = localSeasonsQuery.getInt(1);
-            if (traktSeasons.containsKey(seasonNumber)) {
-                // season watched/collected on trakt
-                if (!processTraktEpisodes(seasonId,
-                        traktSeasons.get(seasonNumber), syncSeasons, flag, isInitialSync)) {
-                    return false;
-                }
-            } else {
-                // season not watched/collected on trakt
-                if (isInitialSync) {
-                    // schedule all watched/collected episodes of this season for upload
-                    SyncSeason syncSeason = buildSyncSeason(seasonId, seasonNumber, flag);
-                    if (syncSeason != null) {
-                        syncSeasons.add(syncSeason);
-                    }
-                } else {
-                    // set all watched/collected episodes of season not watched/collected
-                    batch.add(ContentProviderOperation.newUpdate(
-                            SeriesGuideContract.Episodes.buildEpisodesOfSeasonUri(seasonId))
-                            .withSelection(flag.clearFlagSelection, null)
-                            .withValue(flag.databaseColumn, flag.notFlaggedValue)
-                            .build());
-                }
-            }
-        }
-        localSeasonsQuery.close();
 
-        try {
-            DBUtils.applyInSmallBatches(context, batch);
-        } catch (OperationApplicationException e) {
-            Timber.e(e, "Setting seasons unwatched failed.");
+        // trakt ids and last watched time of shows
+        Cursor showsQuery = context.getContentResolver().query(
+                showTvdbId != null
+                        ? SeriesGuideContract.Shows.buildShowUri(showTvdbId)
+                        : SeriesGuideContract.Shows.CONTENT_URI,
+                ShowsQuery.PROJECTION, null, null, null);
+        if (showsQuery == null) {
+            Timber.e("reconcile: shows query failed");
+            return false;
         }
-
-        if (isInitialSync && syncSeasons.size() > 0) {
-            // upload watched/collected episodes for this show
-            Integer showTraktId = ShowTools.getShowTraktId(context, localShow);
-            //noinspection SimplifiableIfStatement
-            if (showTraktId == null) {
-                return false; // show should have a trakt id, give up
+        SparseArrayCompat<Integer> showTraktIds = new SparseArrayCompat<>();
+        while (showsQuery.moveToNext()) {
+            int localShow = showsQuery.getInt(ShowsQuery.ID);
+            int showTraktId = showsQuery.getInt(ShowsQuery.TRAKT_ID);
+            if (showTraktId > 0) {
+                showTraktIds.put(localShow, showTraktId);
+            }
+            if (flag == Flag.WATCHED && showTvdbId == null) {
+                addLastWatchedUpdateOpIfNewer(localShow,
+                        showsQuery.getLong(ShowsQuery.LAST_WATCHED_MS),
+                        traktShows.get(localShow), batch);
             }
-            return upload(showTraktId, syncSeasons, flag);
-        } else {
-            return true;
         }
-    }
-
-    private boolean processTraktEpisodes(String seasonId, BaseSeason traktSeason,
-            List<SyncSeason> syncSeasons, Flag flag, boolean isInitialSync) {
-        HashSet<Integer> traktEpisodes = TraktTools.buildTraktEpisodesMap(traktSeason.episodes);
-
-        Cursor localEpisodesQuery = context.getContentResolver()
-                .query(SeriesGuideContract.Episodes.buildEpisodesOfSeasonUri(
-                        seasonId), new String[] {
+        showsQuery.close();
+
+        // flags of all episodes
+        Cursor episodesQuery = context.getContentResolver().query(
+                showTvdbId != null
+                        ? SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId)
+                        : SeriesGuideContract.Episodes.CONTENT_URI,
+                new String[]{
                         SeriesGuideContract.Episodes._ID,
+                        SeriesGuideContract.Shows.REF_SHOW_ID,
+                        SeriesGuideContract.Episodes.SEASON,
                         SeriesGuideContract.Episodes.NUMBER,
-                        flag.databaseColumn }, null, null, null);
-        if (localEpisodesQuery == null) {
+                        flag.databaseColumn
+                }, null, null, EpisodesQuery.SORT_SHOW_SEASON_NUMBER);
+        if (episodesQuery == null) {
+            Timber.e("reconcile: episodes query failed");
             return false;
         }
-        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        List<SyncEpisode> syncEpisodes = new ArrayList<>();
-        int episodesAddFlagCount = 0;
-        int episodesRemoveFlagCount = 0;
-        while (localEpisodesQuery.moveToNext()) {
-            int episodeId = localEpisodesQuery.getInt(0);
-            int episodeNumber = localEpisodesQuery.getInt(1);
-            int flagValue = localEpisodesQuery.getInt(2);
-            boolean isFlagged = flag == Flag.WATCHED ?
-                    EpisodeTools.isWatched(flagValue) : EpisodeTools.isCollected(flagValue);
-            if (traktEpisodes.contains(episodeNumber)) {
-                // episode watched/collected on trakt
-                if (!isFlagged) {
-                    // set as watched/collected
-                    batch.add(ContentProviderOperation.newUpdate(
-                            SeriesGuideContract.Episodes.buildEpisodeUri(episodeId))
-                            .withValue(flag.databaseColumn, flag.flaggedValue)
-                            .build());
-                    episodesAddFlagCount++;
-                }
-            } else {
-                // episode not watched/collected on trakt
-                if (isFlagged) {
-                    if (isInitialSync) {
-                        // upload to trakt
-                        syncEpisodes.add(new SyncEpisode().number(episodeNumber));
-                    } else {
-                        // set as not watched/collected if it is currently watched/collected
-                        boolean isSkipped = flag == Flag.WATCHED
-                                && EpisodeTools.isSkipped(
-                                flagValue);
-                        if (!isSkipped) {
-                            batch.add(ContentProviderOperation.newUpdate(
-                                    SeriesGuideContract.Episodes.buildEpisodeUri(episodeId))
-                                    .withValue(flag.databaseColumn, flag.notFlaggedValue)
-                                    .build());
-                            episodesRemoveFlagCount++;
-                        }
+        TraktEpisodeReconciler reconciler = new TraktEpisodeReconciler(flag, isInitialSync,
+                traktShows, showTraktIds);
+        while (episodesQuery.moveToNext()) {
+            reconciler.processEpisode(episodesQuery.getInt(1), episodesQuery.getInt(0),
+                    episodesQuery.getInt(2), episodesQuery.getInt(3), episodesQuery.getInt(4));
+        }
+        episodesQuery.close();
+
+        // write changed flags in one transaction
+        List<Integer> episodesAddFlag = reconciler.getEpisodesAddFlag();
+        List<Integer> episodesRemoveFlag = reconciler.getEpisodesRemoveFlag();
+        if (episodesAddFlag.size() > 0 || episodesRemoveFlag.size() > 0) {
+            BulkWriter writer = new BulkWriter(context);
+            try {
+                writer.beginTransaction();
+                try {
+                    ContentValues flagged = flag.buildValues(flag.flaggedValue);
+                    for (Integer episodeId : episodesAddFlag) {
+                        writer.updateEpisode(episodeId, flagged);
+                    }
+                    ContentValues notFlagged = flag.buildValues(flag.notFlaggedValue);
+                    for (Integer episodeId : episodesRemoveFlag) {
+                        writer.updateEpisode(episodeId, notFlagged);
                     }
+                    writer.setTransactionSuccessful();
+                } finally {
+                    writer.endTransaction();
                 }
+            } catch (SQLiteException e) {
+                Timber.e(e, "Setting episodes watched/collected failed.");
+                DBUtils.postDatabaseError(e);
+                return false;
             }
-        }
-        int localEpisodeCount = localEpisodesQuery.getCount();
-        boolean addFlagToWholeSeason = episodesAddFlagCount == localEpisodeCount;
-        boolean removeFlagFromWholeSeason = episodesRemoveFlagCount == localEpisodeCount;
-        localEpisodesQuery.close();
-
-        // performance improvement especially on initial syncs:
-        // if setting the whole season as (not) watched/collected, replace with single db op
-        if (addFlagToWholeSeason || removeFlagFromWholeSeason) {
-            batch.clear();
-            batch.add(ContentProviderOperation.newUpdate(
-                    SeriesGuideContract.Episodes.buildEpisodesOfSeasonUri(seasonId))
-                    .withValue(flag.databaseColumn,
-                            addFlagToWholeSeason ? flag.flaggedValue : flag.notFlaggedValue)
-                    .build());
+            Timber.d("reconcile: set %s episodes %s, %s not %s", episodesAddFlag.size(),
+                    flag.name, episodesRemoveFlag.size(), flag.name);
         }
 
         try {
             DBUtils.applyInSmallBatches(context, batch);
         } catch (OperationApplicationException e) {
-            Timber.e(e, "Episodes watched/collected values database update failed.");
+            Timber.e(e, "reconcile: failed to update last watched time.");
         }
 
-        if (isInitialSync && syncEpisodes.size() > 0) {
-            syncSeasons.add(new SyncSeason()
-                    .number(traktSeason.number)
-                    .episodes(syncEpisodes));
+        // upload watched/collected episodes missing on trakt
+        SparseArrayCompat<List<SyncSeason>> uploads = reconciler.getUploadsByShow();
+        for (int i = 0; i < uploads.size(); i++) {
+            Integer showTraktId = showTraktIds.get(uploads.keyAt(i));
+            if (showTraktId == null) {
+                return false; // show should have a trakt id, give up
+            }
+            if (!upload(showTraktId, uploads.valueAt(i), flag)) {
+                return false;
+            }
+        }
+        if (uploads.size() > 0) {
+            Timber.d("reconcile: uploaded %s flags for %s shows.", flag.name, uploads.size());
         }
 
         return true;
@@ -387,43 +290,18 @@ public class TraktEpisodeSync {
      * Adds an update op for the last watched time of the given show if the last watched time on
      * trakt is later.
      */
-    private void updateLastWatchedTime(Integer showTvdbId, BaseShow traktShow,
-            ArrayList<ContentProviderOperation> batch) {
-        if (traktShow.last_watched_at == null) {
+    private static void addLastWatchedUpdateOpIfNewer(int showTvdbId, long lastWatchedMs,
+            @Nullable BaseShow traktShow, ArrayList<ContentProviderOperation> batch) {
+        if (traktShow == null || traktShow.last_watched_at == null) {
             return;
         }
-        ShowTools.addLastWatchedUpdateOpIfNewer(context, batch, showTvdbId,
-                traktShow.last_watched_at.toInstant().toEpochMilli());
-    }
-
-    /**
-     * Uploads all watched/collected episodes for the given show to trakt.
-     *
-     * @return Any of the {@link TraktTools} result codes.
-     */
-    private boolean upload(int showTvdbId, int showTraktId, Flag flag) {
-        // query for watched/collected episodes
-        Cursor localEpisodes = context.getContentResolver().query(
-                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId),
-                EpisodesQuery.PROJECTION,
-                flag.flagSelection,
-                null,
-                SeriesGuideContract.Episodes.SORT_SEASON_ASC);
-        if (localEpisodes == null) {
-            Timber.e("upload: query failed");
-            return false;
-        }
-
-        // build a list of watched/collected episodes
-        List<SyncSeason> syncSeasons = buildSyncSeasons(localEpisodes);
-        localEpisodes.close();
-
-        //noinspection SimplifiableIfStatement
-        if (syncSeasons.size() == 0) {
-            return true; // nothing to upload for this show
+        long lastWatchedMsNew = traktShow.last_watched_at.toInstant().toEpochMilli();
+        if (lastWatchedMs < lastWatchedMsNew) {
+            batch.add(ContentProviderOperation
+                    .newUpdate(SeriesGuideContract.Shows.buildShowUri(showTvdbId))
+                    .withValue(SeriesGuideContract.Shows.LASTWATCHED_MS, lastWatchedMsNew)
+                    .build());
         }
-
-        return upload(showTraktId, syncSeasons, flag);
     }
 
     /**
@@ -462,102 +340,51 @@ public class TraktEpisodeSync {
         return false;
     }
 
-    /**
-     * Returns a list of watched/collected episodes of a season. Packaged ready for upload to
-     * trakt.
-     */
-    private SyncSeason buildSyncSeason(String seasonTvdbId, int seasonNumber,
-            Flag flag) {
-        // query for watched/collected episodes of the given season
-        Cursor flaggedEpisodesQuery = context.getContentResolver().query(
-                SeriesGuideContract.Episodes.buildEpisodesOfSeasonUri(seasonTvdbId),
-                new String[] { SeriesGuideContract.Episodes.NUMBER },
-                flag.flagSelection,
-                null,
-                SeriesGuideContract.Episodes.SORT_NUMBER_ASC);
-        if (flaggedEpisodesQuery == null) {
-            // query failed
-            return null;
-        }
-
-        List<SyncEpisode> syncEpisodes = new ArrayList<>();
-        while (flaggedEpisodesQuery.moveToNext()) {
-            int episodeNumber = flaggedEpisodesQuery.getInt(0);
-            syncEpisodes.add(new SyncEpisode().number(episodeNumber));
-        }
-        flaggedEpisodesQuery.close();
-
-        if (syncEpisodes.size() == 0) {
-            return null; // no episodes watched/collected
-        }
-
-        return new SyncSeason().number(seasonNumber).episodes(syncEpisodes);
-    }
-
-    /**
-     * @param episodesCursor Cursor of episodes sorted by season (ascending).
-     */
-    private static List<SyncSeason> buildSyncSeasons(Cursor episodesCursor) {
-        List<SyncSeason> seasons = new LinkedList<>();
-
-        SyncSeason currentSeason = null;
-        while (episodesCursor.moveToNext()) {
-            int season = episodesCursor.getInt(EpisodesQuery.SEASON);
-            int episode = episodesCursor.getInt(EpisodesQuery.EPISODE);
-
-            // create new season if none exists or number has changed
-            if (currentSeason == null || currentSeason.number != season) {
-                currentSeason = new SyncSeason().number(season);
-                currentSeason.episodes = new LinkedList<>();
-                seasons.add(currentSeason);
-            }
+    private interface ShowsQuery {
 
-            // add episode
-            currentSeason.episodes.add(new SyncEpisode().number(episode));
-        }
+        String[] PROJECTION = new String[] {
+                SeriesGuideContract.Shows._ID,
+                SeriesGuideContract.Shows.TRAKT_ID,
+                SeriesGuideContract.Shows.LASTWATCHED_MS
+        };
 
-        return seasons;
+        int ID = 0;
+        int TRAKT_ID = 1;
+        int LAST_WATCHED_MS = 2;
     }
 
     private interface EpisodesQuery {
 
-        String[] PROJECTION = new String[] {
-                SeriesGuideContract.Episodes.SEASON, SeriesGuideContract.Episodes.NUMBER
-        };
-
-        int SEASON = 0;
-        int EPISODE = 1;
+        /** Matches the show, season and number index of episodes, so no sorting is needed. */
+        String SORT_SHOW_SEASON_NUMBER = SeriesGuideContract.Shows.REF_SHOW_ID + " ASC,"
+                + SeriesGuideContract.Episodes.SEASON + " ASC,"
+                + SeriesGuideContract.Episodes.NUMBER + " ASC";
     }
 
     public enum Flag {
         COLLECTED("collected",
                 SeriesGuideContract.Episodes.COLLECTED,
-                // only remove flags for already collected episodes
-                SeriesGuideContract.Episodes.COLLECTED + "=1",
-                SeriesGuideContract.Episodes.SELECTION_COLLECTED,
                 1, 0),
         WATCHED("watched",
                 SeriesGuideContract.Episodes.WATCHED,
-                // do not remove flags of skipped episodes, only of watched ones
-                SeriesGuideContract.Episodes.WATCHED + "=" + EpisodeFlags.WATCHED,
-                SeriesGuideContract.Episodes.SELECTION_WATCHED,
                 EpisodeFlags.WATCHED, EpisodeFlags.UNWATCHED);
 
         final String name;
         final String databaseColumn;
-        final String clearFlagSelection;
-        final String flagSelection;
         final int flaggedValue;
         final int notFlaggedValue;
 
-        Flag(String name, String databaseColumn, String clearFlagSelection, String flagSelection,
-                int flaggedValue, int notFlaggedValue) {
+        Flag(String name, String databaseColumn, int flaggedValue, int notFlaggedValue) {
             this.name = name;
             this.databaseColumn = databaseColumn;
-            this.clearFlagSelection = clearFlagSelection;
-            this.flagSelection = flagSelection;
             this.flaggedValue = flaggedValue;
             this.notFlaggedValue = notFlaggedValue;
         }
+
+        ContentValues buildValues(int flagValue) {
+            ContentValues values = new ContentValues();
+            values.put(databaseColumn, flagValue);
+            return values;
+        }
     }
 }
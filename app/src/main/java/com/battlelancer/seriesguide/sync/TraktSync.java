@@ -64,7 +64,7 @@ public class TraktSync {
                 progress.recordError();
                 return SgSyncAdapter.UpdateResult.INCOMPLETE;
             }
-            if (!syncEpisodes(localShows, lastActivity.episodes, currentTime)) {
+            if (!syncEpisodes(lastActivity.episodes, currentTime)) {
                 progress.recordError();
                 return SgSyncAdapter.UpdateResult.INCOMPLETE;
             }
@@ -138,8 +138,7 @@ public class TraktSync {
      *
      * <p> Do <b>NOT</b> call if there are no local shows to avoid unnecessary work.
      */
-    private boolean syncEpisodes(@NonNull HashSet<Integer> localShows,
-            @NonNull LastActivityMore lastActivity, long currentTime) {
+    private boolean syncEpisodes(@NonNull LastActivityMore lastActivity, long currentTime) {
         if (!TraktCredentials.get(context).hasCredentials()) {
             return false; // auth was removed
         }
@@ -151,12 +150,12 @@ public class TraktSync {
 
         // watched episodes
         TraktEpisodeSync episodeSync = new TraktEpisodeSync(context, traktSync);
-        if (!episodeSync.syncWatched(localShows, lastActivity.watched_at, isInitialSync)) {
+        if (!episodeSync.syncWatched(lastActivity.watched_at, isInitialSync)) {
             return false; // failed, give up.
         }
 
         // collected episodes
-        if (!episodeSync.syncCollected(localShows, lastActivity.collected_at, isInitialSync)) {
+        if (!episodeSync.syncCollected(lastActivity.collected_at, isInitialSync)) {
             return false;
         }
 
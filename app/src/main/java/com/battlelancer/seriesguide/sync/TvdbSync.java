@@ -5,6 +5,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.support.annotation.Nullable;
 import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.provider.ChangeNotifier;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.settings.AppSettings;
 import com.battlelancer.seriesguide.sync.SyncOptions.SyncType;
@@ -17,6 +18,13 @@ import dagger.Lazy;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import timber.log.Timber;
 
 public class TvdbSync {
@@ -27,13 +35,37 @@ public class TvdbSync {
     private static final long UPDATE_THRESHOLD_DAILYS_MS = DateUtils.DAY_IN_MILLIS
             + 12 * DateUtils.HOUR_IN_MILLIS;
 
+    /**
+     * Number of shows downloaded at the same time by default when updating multiple shows.
+     */
+    static final int DEFAULT_CONCURRENCY = 4;
+    /**
+     * Give up after this many consecutive timeouts (around 3 * 15/20 seconds).
+     */
+    private static final int MAX_CONSECUTIVE_TIMEOUTS = 3;
+
     private final SyncType syncType;
     private final int singleShowTvdbId;
+    private final int concurrency;
     private boolean hasUpdatedShows;
+    private int consecutiveTimeouts;
 
     public TvdbSync(SyncType syncType, int singleShowTvdbId) {
+        this(syncType, singleShowTvdbId, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param concurrency The maximum number of shows to download at the same time. Database
+     * changes are always applied one show after another. If 1, shows are updated one after
+     * another.
+     */
+    public TvdbSync(SyncType syncType, int singleShowTvdbId, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
         this.syncType = syncType;
         this.singleShowTvdbId = singleShowTvdbId;
+        this.concurrency = concurrency;
     }
 
     /**
@@ -43,17 +75,21 @@ public class TvdbSync {
     public SgSyncAdapter.UpdateResult sync(Context context, ContentResolver resolver,
             Lazy<TvdbTools> tvdbTools, long currentTime) {
         hasUpdatedShows = false;
+        consecutiveTimeouts = 0;
 
         int[] showsToUpdate = getShowsToUpdate(context, resolver, currentTime);
         if (showsToUpdate == null) {
             return null;
         }
 
+        if (concurrency > 1 && showsToUpdate.length > 1) {
+            return updateShowsInParallel(context, resolver, tvdbTools.get(), showsToUpdate);
+        }
+
         // from here on we need more sophisticated abort handling, so keep track of errors
         SgSyncAdapter.UpdateResult resultCode = SgSyncAdapter.UpdateResult.SUCCESS;
 
         // loop through shows and download latest data from TVDb
-        int consecutiveTimeouts = 0;
         for (int i = 0; i < showsToUpdate.length; i++) {
             int showTvdbId = showsToUpdate[i];
 
@@ -68,20 +104,12 @@ public class TvdbSync {
                 hasUpdatedShows = true;
 
                 // make sure other loaders (activity, overview, details) are notified
-                resolver.notifyChange(SeriesGuideContract.Episodes.CONTENT_URI_WITHSHOW, null);
+                ChangeNotifier.getInstance(context)
+                        .notifyChange(SeriesGuideContract.Episodes.CONTENT_URI_WITHSHOW);
             } catch (TvdbException e) {
                 // failed, continue with other shows
                 resultCode = SgSyncAdapter.UpdateResult.INCOMPLETE;
-                Timber.e(e, "Updating show failed");
-                Throwable cause = e.getCause();
-                if (cause != null && cause instanceof SocketTimeoutException) {
-                    consecutiveTimeouts++;
-                } else if (consecutiveTimeouts > 0) {
-                    consecutiveTimeouts--;
-                }
-                // skip after multiple consecutive timeouts (around 3 * 15/20 seconds)
-                if (consecutiveTimeouts == 3) {
-                    Timber.e("Connection unstable, give up.");
+                if (isGiveUpAfterFailure(e)) {
                     return resultCode;
                 }
             }
@@ -90,6 +118,135 @@ public class TvdbSync {
         return resultCode;
     }
 
+    /**
+     * Downloads up to {@link #concurrency} shows at the same time using a pool of worker threads.
+     * Downloaded updates are applied to the database one after another on the calling thread, in
+     * the order downloads complete. Only submits a new download once one has completed, so at most
+     * {@link #concurrency} downloaded, but not yet applied updates are held in memory.
+     *
+     * <p>Pages of episodes of all shows are downloaded by one shared pool of {@link #concurrency}
+     * threads, so the number of requests running at the same time does not grow with the number
+     * of shows downloaded in parallel.
+     */
+    private SgSyncAdapter.UpdateResult updateShowsInParallel(Context context,
+            ContentResolver resolver, final TvdbTools tvdbTools, int[] showsToUpdate) {
+        SgSyncAdapter.UpdateResult resultCode = SgSyncAdapter.UpdateResult.SUCCESS;
+
+        ExecutorService executor = Executors
+                .newFixedThreadPool(Math.min(concurrency, showsToUpdate.length));
+        final ExecutorService pageFetcher = Executors
+                .newFixedThreadPool(Math.min(concurrency, showsToUpdate.length));
+        CompletionService<TvdbTools.ShowUpdate> downloads
+                = new ExecutorCompletionService<>(executor);
+        try {
+            int nextShowIndex = 0;
+            int downloadsInFlight = 0;
+            boolean stopSubmitting = false;
+            do {
+                // fill up free workers
+                while (!stopSubmitting && downloadsInFlight < concurrency
+                        && nextShowIndex < showsToUpdate.length) {
+                    // stop sync if connectivity is lost
+                    if (!AndroidUtils.isNetworkConnected(context)) {
+                        resultCode = SgSyncAdapter.UpdateResult.INCOMPLETE;
+                        stopSubmitting = true;
+                        break;
+                    }
+                    final int showTvdbId = showsToUpdate[nextShowIndex++];
+                    downloads.submit(SyncMetrics.withCurrentStage(
+                            new Callable<TvdbTools.ShowUpdate>() {
+                                @Override
+                                public TvdbTools.ShowUpdate call() throws Exception {
+                                    return tvdbTools.fetchShowUpdate(showTvdbId,
+                                            pageFetcher);
+                                }
+                            }));
+                    downloadsInFlight++;
+                }
+                if (downloadsInFlight == 0) {
+                    break;
+                }
+
+                // wait for next completed download
+                Future<TvdbTools.ShowUpdate> download;
+                try {
+                    download = downloads.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return SgSyncAdapter.UpdateResult.INCOMPLETE;
+                }
+                downloadsInFlight--;
+
+                try {
+                    TvdbTools.ShowUpdate showUpdate = getDownloadResult(download);
+                    if (showUpdate != null) {
+                        // database changes are applied one after another on this thread
+                        tvdbTools.applyShowUpdate(showUpdate);
+                        hasUpdatedShows = true;
+
+                        // make sure other loaders (activity, overview, details) are notified
+                        ChangeNotifier.getInstance(context)
+                                .notifyChange(SeriesGuideContract.Episodes.CONTENT_URI_WITHSHOW);
+                    }
+                } catch (TvdbException e) {
+                    // failed, continue with other shows
+                    resultCode = SgSyncAdapter.UpdateResult.INCOMPLETE;
+                    if (isGiveUpAfterFailure(e)) {
+                        return resultCode;
+                    }
+                }
+            } while (true);
+        } finally {
+            // cancels any downloads still in flight if aborted early
+            executor.shutdownNow();
+            pageFetcher.shutdownNow();
+        }
+
+        return resultCode;
+    }
+
+    @Nullable
+    private static TvdbTools.ShowUpdate getDownloadResult(Future<TvdbTools.ShowUpdate> download)
+            throws TvdbException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            // only called for completed downloads, so should never happen
+            Thread.currentThread().interrupt();
+            throw new TvdbException("getDownloadResult", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TvdbException) {
+                throw (TvdbException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Logs the failure and keeps track of consecutive timeouts.
+     *
+     * @return Whether to give up because the connection appears to be unstable.
+     */
+    private boolean isGiveUpAfterFailure(TvdbException e) {
+        Timber.e(e, "Updating show failed");
+        Throwable cause = e.getCause();
+        if (cause instanceof SocketTimeoutException) {
+            consecutiveTimeouts++;
+        } else if (consecutiveTimeouts > 0) {
+            consecutiveTimeouts--;
+        }
+        // skip after multiple consecutive timeouts
+        if (consecutiveTimeouts == MAX_CONSECUTIVE_TIMEOUTS) {
+            Timber.e("Connection unstable, give up.");
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Returns an array of show ids to update.
      */
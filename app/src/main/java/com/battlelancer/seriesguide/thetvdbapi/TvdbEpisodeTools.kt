@@ -1,42 +1,65 @@
 package com.battlelancer.seriesguide.thetvdbapi
 
-import android.content.ContentProviderOperation
 import android.content.ContentValues
 import android.content.Context
 import android.text.format.DateUtils
 import com.battlelancer.seriesguide.dataliberation.model.Show
+import com.battlelancer.seriesguide.model.SgEpisodePage
 import com.battlelancer.seriesguide.provider.SeriesGuideContract
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes
+import com.battlelancer.seriesguide.provider.SgRoomDatabase
 import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.sync.SyncMetrics
 import com.battlelancer.seriesguide.thetvdbapi.TvdbTools.ensureSuccessfulResponse
 import com.battlelancer.seriesguide.util.DBUtils
 import com.battlelancer.seriesguide.util.TextTools
 import com.battlelancer.seriesguide.util.TimeTools
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
 import com.uwetrottmann.thetvdb.entities.Episode
 import com.uwetrottmann.thetvdb.entities.EpisodesResponse
 import com.uwetrottmann.thetvdb.services.TheTvdbSeries
 import dagger.Lazy
-import java.util.ArrayList
+import okhttp3.OkHttpClient
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStreamReader
+import java.security.MessageDigest
 import java.util.HashSet
 import java.util.TimeZone
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 class TvdbEpisodeTools constructor(
         private val context: Context,
-        private val tvdbSeries: Lazy<TheTvdbSeries>
+        private val tvdbSeries: Lazy<TheTvdbSeries>,
+        private val okHttpClient: Lazy<OkHttpClient>
 ) {
 
     /**
-     * Loads and parses episodes for the given show and language to create an array of
-     * [ContentValues] for new episodes.
+     * A page of episodes. If [response] is null, the page has not changed since [page] was stored.
+     */
+    private class EpisodesPage(val response: EpisodesResponse?, val page: SgEpisodePage)
+
+    /**
+     * Loads and parses episodes for the given show and language. Adds [ContentValues] for new and
+     * updated seasons and episodes and the ids of local orphaned seasons and episodes to the given
+     * [TvdbTools.ShowUpdate].
      *
-     * Adds update ops for updated episodes and delete ops for local orphaned episodes to the given
-     * [ContentProviderOperation] batch.
+     * Pages that have not changed since the last update, determined using their ETag,
+     * Last-Modified header or content hash, are not parsed and their episodes are not compared.
+     * Adds validators for all pages to the [TvdbTools.ShowUpdate].
+     *
+     * Pages are downloaded using [pageFetcher], which may be shared by shows updated at the same
+     * time. If null, creates a small executor just for this show.
      */
     @Throws(TvdbException::class)
-    fun fetchEpisodes(batch: ArrayList<ContentProviderOperation>, show: Show,
-            language: String): ArrayList<ContentValues> {
+    fun fetchEpisodes(showUpdate: TvdbTools.ShowUpdate, show: Show, language: String,
+            pageFetcher: ExecutorService?) {
         val showTvdbId = show.tvdb_id
-        val newEpisodesValues = ArrayList<ContentValues>()
 
         val lastUpdatedByEpisodeId = DBUtils.getLastUpdatedByEpisodeId(context, showTvdbId)
         // just copy episodes list, then remove valid ones
@@ -45,6 +68,8 @@ class TvdbEpisodeTools constructor(
         val localSeasonIds = DBUtils.getSeasonIdsOfShow(context, showTvdbId)
         // store updated seasons to avoid duplicate ops
         val seasonsToAddOrUpdate = HashSet<Int>()
+        // seasons of unchanged pages, keep them
+        val retainedSeasonIds = HashSet<Int>()
 
         val dateLastMonthEpoch = (System.currentTimeMillis() - DateUtils.DAY_IN_MILLIS * 30) / 1000
         val showTimeZone = TimeTools.getDateTimeZone(show.release_timezone)
@@ -54,138 +79,300 @@ class TvdbEpisodeTools constructor(
         val fallback = DisplaySettings.getShowsLanguageFallback(context)
         val fallbackLanguage: String? = if (fallback != language) fallback else null
 
-        var page: Int? = 0
-        while (page != null) {
-            val response = getEpisodes(showTvdbId, page, language)
-
-            // fall back if no translation is available for some episodes
-            // note: just checking errors is not enough as no error if just some are not translated
-            val fallbackResponse = if (fallbackLanguage != null
-                    && (response.errors?.invalidLanguage != null
-                    || response.data.find { it.episodeName.isNullOrEmpty() || it.overview.isNullOrEmpty() } != null)) {
-                // assumes that episode pages match between languages
-                // worst case: no fallback title or overview
-                getEpisodes(showTvdbId, page, fallbackLanguage)
-            } else {
-                null
-            }
-
-            val values = ContentValues()
-            for (episode in response.data) {
-                val episodeId = episode.id
-                val seasonNumber = episode.airedSeason
-                val seasonId = episode.airedSeasonID
-                if (episodeId == null || episodeId <= 0
-                        || seasonNumber == null || seasonNumber < 0 // season 0 allowed (specials)
-
-                        || seasonId == null || seasonId <= 0) {
-                    continue // invalid ids, skip
+        // only skip a stored page if its episodes were built using the same values,
+        // and none of its episodes were removed locally
+        val pageSettings = buildPageSettings(show, language, fallbackLanguage, deviceTimeZone)
+        val storedPages = SgRoomDatabase.getInstance(context).episodePageHelper()
+                .getPagesOfShow(showTvdbId)
+                .filter { storedPage ->
+                    storedPage.language == language && storedPage.settings == pageSettings
+                            && parsePageEpisodes(storedPage.episodes).all {
+                        lastUpdatedByEpisodeId.containsKey(it.first)
+                    }
                 }
+                .associateBy { it.number }
 
-                // add insert/update op for season, prevents it from getting cleaned
-                if (!seasonsToAddOrUpdate.contains(seasonId)) {
-                    batch.add(DBUtils.buildSeasonOp(showTvdbId, seasonId, seasonNumber,
-                            !localSeasonIds.contains(seasonId)))
-                    seasonsToAddOrUpdate.add(seasonId)
+        // pipeline requests: while a page is converted, the next page is already downloading
+        val executor = pageFetcher ?: Executors.newFixedThreadPool(2)
+        var pendingResponse: Future<EpisodesPage>? = null
+        try {
+            var page: Int? = 0
+            pendingResponse = fetchEpisodesAsync(executor, showTvdbId, 0, language,
+                    storedPages[0])
+            while (page != null) {
+                val episodesPage = awaitEpisodes(pendingResponse!!)
+                val response = episodesPage.response
+
+                // prefetch next page
+                val nextPage = if (response != null) {
+                    response.links?.next
+                } else {
+                    episodesPage.page.nextNumber
+                }
+                pendingResponse = if (nextPage != null) {
+                    fetchEpisodesAsync(executor, showTvdbId, nextPage, language,
+                            storedPages[nextPage])
+                } else {
+                    null
                 }
 
-                // don't clean up this episode
-                removableEpisodeIds.remove(episodeId)
-
-                var insert = true
-                if (lastUpdatedByEpisodeId.containsKey(episodeId)) {
-                    /*
-                     * Update uses provider ops which take a long time. Only
-                     * update if episode was edited on TVDb or is not older than
-                     * a month (ensures show air time changes get stored).
-                     */
-                    val lastUpdatedEpoch = lastUpdatedByEpisodeId[episodeId]
-                    val lastTvdbEditEpoch = episode.lastUpdated
-                    if (lastUpdatedEpoch != null && lastTvdbEditEpoch != null
-                            && (lastUpdatedEpoch < lastTvdbEditEpoch
-                                    || dateLastMonthEpoch < lastUpdatedEpoch)) {
-                        insert = false // update episode
-                    } else {
-                        continue // not edited or too old to update, skip
+                if (response == null) {
+                    // page unchanged: only keep its episodes and seasons
+                    for ((episodeId, seasonId) in parsePageEpisodes(episodesPage.page.episodes)) {
+                        removableEpisodeIds.remove(episodeId)
+                        retainedSeasonIds.add(seasonId)
                     }
+                    showUpdate.episodePages.add(episodesPage.page)
+                    page = nextPage
+                    continue
                 }
 
-                // calculate release time
-                val releaseDateTime = TimeTools.parseEpisodeReleaseDate(context, showTimeZone,
-                        episode.firstAired, showReleaseTime, show.country, show.network,
-                        deviceTimeZone)
-                // if name or overview are empty use fallback
-                val hasName = !episode.episodeName.isNullOrEmpty()
-                val hasOverview = !episode.overview.isNullOrEmpty()
-                val fallbackEpisode = if (!hasName || !hasOverview) {
-                    fallbackResponse?.data?.find { it.id == episodeId }
+                // fall back if no translation is available for some episodes
+                // note: just checking errors is not enough as no error if just some are not translated
+                val fallbackEpisodesById = if (fallbackLanguage != null
+                        && (response.errors?.invalidLanguage != null
+                        || response.data.any { it.episodeName.isNullOrEmpty() || it.overview.isNullOrEmpty() })) {
+                    // assumes that episode pages match between languages
+                    // worst case: no fallback title or overview
+                    // index by episode id to avoid scanning the page for each episode
+                    awaitEpisodes(fetchEpisodesAsync(executor, showTvdbId, page,
+                            fallbackLanguage, null)).response?.data?.associateBy { it.id }
                 } else {
                     null
                 }
-                if (!hasName) {
-                    episode.episodeName = fallbackEpisode?.episodeName
-                }
-                if (!hasOverview) {
-                    episode.overview = fallbackEpisode?.overview
-                }
 
-                episode.toContentValues(values, episodeId, seasonId, showTvdbId,
-                        seasonNumber, releaseDateTime, insert)
+                val pageEpisodes = StringBuilder()
+                val values = ContentValues()
+                for (episode in response.data) {
+                    val episodeId = episode.id
+                    val seasonNumber = episode.airedSeason
+                    val seasonId = episode.airedSeasonID
+                    if (episodeId == null || episodeId <= 0
+                            || seasonNumber == null || seasonNumber < 0 // season 0 allowed (specials)
+
+                            || seasonId == null || seasonId <= 0) {
+                        continue // invalid ids, skip
+                    }
 
-                if (insert) {
-                    // episode does not exist, yet: insert
-                    newEpisodesValues.add(ContentValues(values))
-                } else {
-                    // episode exists: update
-                    batch.add(DBUtils.buildEpisodeUpdateOp(values))
+                    if (pageEpisodes.isNotEmpty()) {
+                        pageEpisodes.append(',')
+                    }
+                    pageEpisodes.append(episodeId).append(':').append(seasonId)
+
+                    // add insert/update for season, prevents it from getting cleaned
+                    if (!seasonsToAddOrUpdate.contains(seasonId)) {
+                        val isNewSeason = !localSeasonIds.contains(seasonId)
+                        val seasonValues = DBUtils.buildSeasonValues(showTvdbId, seasonId,
+                                seasonNumber, isNewSeason)
+                        if (isNewSeason) {
+                            showUpdate.newSeasons.add(seasonValues)
+                        } else {
+                            showUpdate.updatedSeasons.add(seasonValues)
+                        }
+                        seasonsToAddOrUpdate.add(seasonId)
+                    }
+
+                    // don't clean up this episode
+                    removableEpisodeIds.remove(episodeId)
+
+                    var insert = true
+                    if (lastUpdatedByEpisodeId.containsKey(episodeId)) {
+                        /*
+                         * Updates take a long time. Only
+                         * update if episode was edited on TVDb or is not older than
+                         * a month (ensures show air time changes get stored).
+                         */
+                        val lastUpdatedEpoch = lastUpdatedByEpisodeId[episodeId]
+                        val lastTvdbEditEpoch = episode.lastUpdated
+                        if (lastUpdatedEpoch != null && lastTvdbEditEpoch != null
+                                && (lastUpdatedEpoch < lastTvdbEditEpoch
+                                        || dateLastMonthEpoch < lastUpdatedEpoch)) {
+                            insert = false // update episode
+                        } else {
+                            continue // not edited or too old to update, skip
+                        }
+                    }
+
+                    // calculate release time
+                    val releaseDateTime = TimeTools.parseEpisodeReleaseDate(context, showTimeZone,
+                            episode.firstAired, showReleaseTime, show.country, show.network,
+                            deviceTimeZone)
+                    // if name or overview are empty use fallback
+                    val hasName = !episode.episodeName.isNullOrEmpty()
+                    val hasOverview = !episode.overview.isNullOrEmpty()
+                    val fallbackEpisode = if (!hasName || !hasOverview) {
+                        fallbackEpisodesById?.get(episodeId)
+                    } else {
+                        null
+                    }
+                    if (!hasName) {
+                        episode.episodeName = fallbackEpisode?.episodeName
+                    }
+                    if (!hasOverview) {
+                        episode.overview = fallbackEpisode?.overview
+                    }
+
+                    episode.toContentValues(values, episodeId, seasonId, showTvdbId,
+                            seasonNumber, releaseDateTime, insert)
+
+                    if (insert) {
+                        // episode does not exist, yet: insert
+                        showUpdate.newEpisodes.add(ContentValues(values))
+                    } else {
+                        // episode exists: update
+                        showUpdate.updatedEpisodes.add(ContentValues(values))
+                    }
+
+                    values.clear()
+                }
+
+                // the fallback page might change independently, so only store validators
+                // of pages that did not need it
+                if (fallbackEpisodesById == null) {
+                    episodesPage.page.settings = pageSettings
+                    episodesPage.page.nextNumber = nextPage
+                    episodesPage.page.episodes = pageEpisodes.toString()
+                    showUpdate.episodePages.add(episodesPage.page)
                 }
 
-                values.clear()
+                page = nextPage
+            }
+        } finally {
+            // cancels a prefetch that is still running if a request failed
+            pendingResponse?.cancel(true)
+            if (pageFetcher == null) {
+                executor.shutdownNow()
             }
-            page = response.links.next
         }
 
-        // add delete ops for leftover episodeIds in our db
-        removableEpisodeIds.mapTo(batch) {
-            ContentProviderOperation.newDelete(Episodes.buildEpisodeUri(it)).build()
+        // delete leftover episodeIds in our db
+        showUpdate.removedEpisodes.addAll(removableEpisodeIds)
+
+        // delete leftover seasonIds in our db
+        localSeasonIds.filterNotTo(showUpdate.removedSeasons) {
+            seasonsToAddOrUpdate.contains(it) || retainedSeasonIds.contains(it)
         }
+    }
 
-        // add delete ops for leftover seasonIds in our db
-        localSeasonIds
-                .filterNot { seasonsToAddOrUpdate.contains(it) }
-                .forEach {
-                    with(batch) {
-                        // delete episodes still associated with this season to avoid foreign key violations
-                        // this is safe because episodes that changed to another season should
-                        // have got update ops added (see above) to the batch before these ops
-                        add(ContentProviderOperation.newDelete(
-                                Episodes.buildEpisodesOfSeasonUri(it)).build())
-                        // delete season
-                        add(ContentProviderOperation.newDelete(
-                                SeriesGuideContract.Seasons.buildSeasonUri(it)).build())
-                    }
-                }
+    private fun fetchEpisodesAsync(executor: ExecutorService, showTvdbId: Int, page: Int,
+            language: String, storedPage: SgEpisodePage?): Future<EpisodesPage> {
+        return executor.submit(SyncMetrics.withCurrentStage(
+                Callable { getEpisodes(showTvdbId, page, language, storedPage) }))
+    }
 
-        return newEpisodesValues
+    @Throws(TvdbException::class)
+    private fun awaitEpisodes(pendingResponse: Future<EpisodesPage>): EpisodesPage {
+        try {
+            return pendingResponse.get()
+        } catch (e: ExecutionException) {
+            val cause = e.cause
+            throw cause as? TvdbException ?: TvdbException("getEpisodes", cause)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw TvdbException("getEpisodes", e)
+        }
     }
 
+    /**
+     * Downloads a page of episodes. If a [storedPage] is given, sends its validators and returns
+     * an [EpisodesPage] without response if the page has not changed.
+     */
     @Throws(TvdbException::class)
-    private fun getEpisodes(showTvdbId: Int, page: Int, language: String): EpisodesResponse {
-        val response: retrofit2.Response<EpisodesResponse>
+    private fun getEpisodes(showTvdbId: Int, page: Int, language: String,
+            storedPage: SgEpisodePage?): EpisodesPage {
+        // build request using the API service, but execute it directly to get the raw body
+        val requestBuilder = tvdbSeries.get().episodes(showTvdbId, page, language).request()
+                .newBuilder()
+        if (storedPage != null) {
+            storedPage.etag?.let { requestBuilder.header("If-None-Match", it) }
+            storedPage.lastModified?.let { requestBuilder.header("If-Modified-Since", it) }
+        }
+
+        val body: ByteArray
+        val etag: String?
+        val lastModified: String?
         try {
-            response = tvdbSeries.get().episodes(showTvdbId, page, language).execute()
-        } catch (e: Exception) {
+            val response = okHttpClient.get().newCall(requestBuilder.build()).execute()
+            try {
+                if (response.code() == HTTP_NOT_MODIFIED && storedPage != null) {
+                    return EpisodesPage(null, storedPage)
+                }
+                ensureSuccessfulResponse(response, "getEpisodes")
+                body = response.body()!!.bytes()
+                etag = response.header("ETag")
+                lastModified = response.header("Last-Modified")
+            } finally {
+                response.close()
+            }
+        } catch (e: IOException) {
             throw TvdbException("getEpisodes", e)
         }
 
-        ensureSuccessfulResponse(response.raw(), "getEpisodes")
+        val contentHash = hash(body)
+        if (storedPage != null && contentHash == storedPage.contentHash) {
+            // server does not support validators or they changed, keep the new ones
+            storedPage.etag = etag
+            storedPage.lastModified = lastModified
+            return EpisodesPage(null, storedPage)
+        }
 
-        return response.body()!!
+        val response = try {
+            gson.fromJson(InputStreamReader(ByteArrayInputStream(body), Charsets.UTF_8),
+                    EpisodesResponse::class.java)
+        } catch (e: JsonParseException) {
+            throw TvdbDataException("getEpisodes", e)
+        } ?: throw TvdbDataException("getEpisodes: empty response")
+
+        val newPage = SgEpisodePage()
+        newPage.showTvdbId = showTvdbId
+        newPage.number = page
+        newPage.language = language
+        newPage.etag = etag
+        newPage.lastModified = lastModified
+        newPage.contentHash = contentHash
+        return EpisodesPage(response, newPage)
     }
 
-
     companion object {
 
+        private const val HTTP_NOT_MODIFIED = 304
+
+        private val gson = Gson()
+
+        /**
+         * Parses the "episodeId:seasonId" pairs stored for a page.
+         */
+        @JvmStatic
+        fun parsePageEpisodes(episodes: String?): List<Pair<Int, Int>> {
+            if (episodes.isNullOrEmpty()) {
+                return emptyList()
+            }
+            return episodes!!.split(',').map {
+                val separator = it.indexOf(':')
+                Pair(it.substring(0, separator).toInt(), it.substring(separator + 1).toInt())
+            }
+        }
+
+        /**
+         * Joins the values besides the page content used to build episode values.
+         */
+        @JvmStatic
+        fun buildPageSettings(show: Show, language: String, fallbackLanguage: String?,
+                deviceTimeZone: String): String {
+            return listOf(language, fallbackLanguage, show.release_timezone, show.release_time,
+                    show.country, show.network, deviceTimeZone).joinToString("|")
+        }
+
+        @JvmStatic
+        fun hash(body: ByteArray): String {
+            val digest = MessageDigest.getInstance("SHA-1").digest(body)
+            val hex = StringBuilder(digest.size * 2)
+            for (b in digest) {
+                hex.append(String.format("%02x", b))
+            }
+            return hex.toString()
+        }
+
         @JvmStatic
         fun Episode.toContentValues(values: ContentValues,
                 episodeTvdbId: Int, seasonTvdbId: Int, showTvdbId: Int,
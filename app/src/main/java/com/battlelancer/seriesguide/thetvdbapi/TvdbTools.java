@@ -1,10 +1,9 @@
 package com.battlelancer.seriesguide.thetvdbapi;
 
-import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.sax.Element;
 import android.sax.EndElementListener;
 import android.sax.EndTextElementListener;
@@ -19,9 +18,14 @@ import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.dataliberation.JsonExportTask.ShowStatusExport;
 import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.battlelancer.seriesguide.model.SgEpisodePage;
 import com.battlelancer.seriesguide.modules.ApplicationContext;
+import com.battlelancer.seriesguide.provider.BulkWriter;
+import com.battlelancer.seriesguide.provider.EpisodePageHelper;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
 import com.battlelancer.seriesguide.settings.DisplaySettings;
 import com.battlelancer.seriesguide.sync.HexagonEpisodeSync;
 import com.battlelancer.seriesguide.sync.TraktEpisodeSync;
@@ -51,6 +55,7 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
@@ -72,6 +77,31 @@ public class TvdbTools {
     private static final String TVDB_PARAM_LANGUAGE = "&language=";
     private static final String[] LANGUAGE_QUERY_PROJECTION = new String[]{Shows.LANGUAGE};
 
+    /**
+     * Database changes to update a show, see {@link #fetchShowUpdate(int)}.
+     */
+    public static class ShowUpdate {
+        public final int showTvdbId;
+        final boolean isNewShow;
+        final ContentValues showValues;
+        final ArrayList<ContentValues> newSeasons = new ArrayList<>();
+        final ArrayList<ContentValues> updatedSeasons = new ArrayList<>();
+        final ArrayList<ContentValues> newEpisodes = new ArrayList<>();
+        final ArrayList<ContentValues> updatedEpisodes = new ArrayList<>();
+        final ArrayList<Integer> removedEpisodes = new ArrayList<>();
+        final ArrayList<Integer> removedSeasons = new ArrayList<>();
+        /** Validators of all episode pages, replace those stored. */
+        final ArrayList<SgEpisodePage> episodePages = new ArrayList<>();
+
+        ShowUpdate(Context context, Show show, boolean isNewShow) {
+            this.showTvdbId = show.tvdb_id;
+            this.isNewShow = isNewShow;
+            // last updated now
+            show.last_updated = System.currentTimeMillis();
+            this.showValues = show.toContentValues(context, isNewShow);
+        }
+    }
+
     private final Context context;
     Lazy<HexagonTools> hexagonTools;
     Lazy<ShowTools> showTools;
@@ -150,9 +180,8 @@ public class TvdbTools {
         language = show.language;
 
         // get episodes and store everything to the database
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        batch.add(DBUtils.buildShowOp(context, show, true));
-        getEpisodesAndUpdateDatabase(batch, show, language);
+        applyShowUpdate(fetchEpisodes(new ShowUpdate(context, show, true), show, language,
+                null));
 
         // restore episode flags...
         if (hexagonEnabled) {
@@ -192,20 +221,101 @@ public class TvdbTools {
      * Updates a show. Adds new, updates changed and removes orphaned episodes.
      */
     public void updateShow(int showTvdbId) throws TvdbException {
+        ShowUpdate showUpdate = fetchShowUpdate(showTvdbId);
+        if (showUpdate != null) {
+            applyShowUpdate(showUpdate);
+        }
+    }
+
+    /**
+     * Downloads show details and episodes and builds the database changes required to update the
+     * show, but does not write to the database. Apply the result with {@link
+     * #applyShowUpdate(ShowUpdate)}.
+     *
+     * <p> Only reads from the database, so may be called for multiple shows at the same time.
+     *
+     * @return {@code null} if the show language could not be determined, should try again later.
+     */
+    @Nullable
+    public ShowUpdate fetchShowUpdate(int showTvdbId) throws TvdbException {
+        return fetchShowUpdate(showTvdbId, null);
+    }
+
+    /**
+     * Like {@link #fetchShowUpdate(int)}, but downloads pages of episodes using the given
+     * executor, so when updating multiple shows at the same time they can share it.
+     *
+     * @param pageFetcher If {@code null}, creates an executor just for this show.
+     */
+    @Nullable
+    public ShowUpdate fetchShowUpdate(int showTvdbId, @Nullable ExecutorService pageFetcher)
+            throws TvdbException {
         // determine which translation to get
         String language = getShowLanguage(context, showTvdbId);
         if (language == null) {
-            return;
+            return null;
         }
 
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-
         Show show = getShowDetails(showTvdbId, language);
-        batch.add(DBUtils.buildShowOp(context, show, false));
 
         // get episodes in the language as returned in the TVDB show entry
         // the show might not be available in the desired language
-        getEpisodesAndUpdateDatabase(batch, show, show.language);
+        return fetchEpisodes(new ShowUpdate(context, show, false), show, show.language,
+                pageFetcher);
+    }
+
+    /**
+     * Writes the changes built by {@link #fetchShowUpdate(int)} to the database.
+     *
+     * <p> Callers updating multiple shows at the same time should ensure updates are applied one
+     * after another.
+     */
+    public void applyShowUpdate(@NonNull ShowUpdate showUpdate) throws TvdbException {
+        // write all changes of a show in one transaction
+        BulkWriter writer = new BulkWriter(context);
+        try {
+            writer.beginTransaction();
+            try {
+                if (showUpdate.isNewShow) {
+                    writer.insertShow(showUpdate.showValues);
+                } else {
+                    writer.updateShow(showUpdate.showTvdbId, showUpdate.showValues);
+                }
+                for (ContentValues values : showUpdate.newSeasons) {
+                    writer.insertSeason(values);
+                }
+                for (ContentValues values : showUpdate.updatedSeasons) {
+                    writer.updateSeason(values.getAsInteger(Seasons._ID), values);
+                }
+                for (ContentValues values : showUpdate.updatedEpisodes) {
+                    writer.updateEpisode(values.getAsInteger(Episodes._ID), values);
+                }
+                for (Integer episodeTvdbId : showUpdate.removedEpisodes) {
+                    writer.deleteEpisode(episodeTvdbId);
+                }
+                for (Integer seasonTvdbId : showUpdate.removedSeasons) {
+                    // delete episodes still associated with this season to avoid foreign key
+                    // violations, this is safe because episodes that changed to another season
+                    // were updated above
+                    writer.deleteEpisodesOfSeason(seasonTvdbId);
+                    writer.deleteSeason(seasonTvdbId);
+                }
+                for (ContentValues values : showUpdate.newEpisodes) {
+                    writer.insertEpisode(values);
+                }
+                // only store page validators together with the changes built from the pages
+                EpisodePageHelper pageHelper = SgRoomDatabase.getInstance(context)
+                        .episodePageHelper();
+                pageHelper.deletePagesOfShow(showUpdate.showTvdbId);
+                pageHelper.insertPages(showUpdate.episodePages);
+                writer.setTransactionSuccessful();
+            } finally {
+                writer.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            DBUtils.postDatabaseError(e);
+            throw new TvdbDataException("applyShowUpdate", e);
+        }
     }
 
     /**
@@ -335,26 +445,14 @@ public class TvdbTools {
     }
 
     /**
-     * Fetches episodes for the given show from TVDb, adds database ops for them. Then adds all
-     * information to the database.
+     * Fetches episodes for the given show from TVDb, adds database changes for them to the given
+     * show update.
      */
-    private void getEpisodesAndUpdateDatabase(final ArrayList<ContentProviderOperation> batch,
-            Show show, String language) throws TvdbException {
-        // get ops for episodes of this show
-        TvdbEpisodeTools episodeTools = new TvdbEpisodeTools(context, tvdbSeries);
-        ArrayList<ContentValues> importShowEpisodes = episodeTools
-                .fetchEpisodes(batch, show, language);
-        ContentValues[] newEpisodesValues = new ContentValues[importShowEpisodes.size()];
-        newEpisodesValues = importShowEpisodes.toArray(newEpisodesValues);
-
-        try {
-            DBUtils.applyInSmallBatches(context, batch);
-        } catch (OperationApplicationException e) {
-            throw new TvdbDataException("getEpisodesAndUpdateDatabase", e);
-        }
-
-        // insert all new episodes in bulk
-        context.getContentResolver().bulkInsert(Episodes.CONTENT_URI, newEpisodesValues);
+    private ShowUpdate fetchEpisodes(ShowUpdate showUpdate, Show show, String language,
+            @Nullable ExecutorService pageFetcher) throws TvdbException {
+        TvdbEpisodeTools episodeTools = new TvdbEpisodeTools(context, tvdbSeries, okHttpClient);
+        episodeTools.fetchEpisodes(showUpdate, show, language, pageFetcher);
+        return showUpdate;
     }
 
     /**
@@ -8,12 +8,9 @@ import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import com.battlelancer.seriesguide.R;
 import com.uwetrottmann.trakt5.TraktLink;
-import com.uwetrottmann.trakt5.entities.BaseEpisode;
-import com.uwetrottmann.trakt5.entities.BaseSeason;
 import com.uwetrottmann.trakt5.entities.BaseShow;
 import java.math.BigDecimal;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 
@@ -39,33 +36,6 @@ public class TraktTools {
         return traktShowsMap;
     }
 
-    @NonNull
-    public static HashMap<Integer, BaseSeason> buildTraktSeasonsMap(List<BaseSeason> seasons) {
-        @SuppressLint("UseSparseArrays")
-        HashMap<Integer, BaseSeason> traktSeasonsMap = new HashMap<>(seasons.size());
-        for (BaseSeason season : seasons) {
-            if (season.number == null
-                    || season.episodes == null
-                    || season.episodes.isEmpty()) {
-                continue; // trakt season misses required data, skip.
-            }
-            traktSeasonsMap.put(season.number, season);
-        }
-        return traktSeasonsMap;
-    }
-
-    @NonNull
-    public static HashSet<Integer> buildTraktEpisodesMap(List<BaseEpisode> episodes) {
-        HashSet<Integer> traktEpisodesMap = new HashSet<>(episodes.size());
-        for (BaseEpisode episode : episodes) {
-            if (episode.number == null) {
-                continue; // trakt episode misses required data, skip.
-            }
-            traktEpisodesMap.add(episode.number);
-        }
-        return traktEpisodesMap;
-    }
-
     public static String buildShowUrl(int showTvdbId) {
         return TraktLink.tvdb(showTvdbId) + "?id_type=show";
     }
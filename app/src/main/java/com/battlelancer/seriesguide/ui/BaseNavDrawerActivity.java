@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.IdRes;
@@ -15,6 +16,7 @@ import android.support.design.widget.Snackbar;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.widget.DrawerLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.Toolbar;
 import android.view.MenuItem;
 import android.view.View;
@@ -29,6 +31,7 @@ import com.battlelancer.seriesguide.customtabs.CustomTabsHelper;
 import com.battlelancer.seriesguide.customtabs.FeedbackBroadcastReceiver;
 import com.battlelancer.seriesguide.jobs.FlagJob;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
+import com.battlelancer.seriesguide.sync.SyncMetrics;
 import com.battlelancer.seriesguide.traktapi.ConnectTraktActivity;
 import com.battlelancer.seriesguide.traktapi.TraktCredentials;
 import com.battlelancer.seriesguide.traktapi.TraktOAuthSettings;
@@ -39,6 +42,7 @@ import io.palaima.debugdrawer.actions.ButtonAction;
 import io.palaima.debugdrawer.commons.DeviceModule;
 import io.palaima.debugdrawer.timber.TimberModule;
 import io.palaima.debugdrawer.view.DebugView;
+import java.lang.ref.WeakReference;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
@@ -219,12 +223,18 @@ public abstract class BaseNavDrawerActivity extends BaseActivity {
                     () -> SgSyncAdapter.requestSyncJobsImmediate(getApplicationContext())
             );
 
+            ButtonAction buttonShowSyncMetrics = new ButtonAction(
+                    "Show sync metrics",
+                    () -> Utils.executeInOrder(new ShowSyncMetricsTask(this))
+            );
+
             debugView.modules(
                     new ActionsModule(
                             buttonClearTraktRefreshToken,
                             buttonInvalidateTraktAccessToken,
                             buttonInvalidateTraktRefreshToken,
-                            buttonTriggerJobProcessor
+                            buttonTriggerJobProcessor,
+                            buttonShowSyncMetrics
                     ),
                     new TimberModule(),
                     new DeviceModule(this)
@@ -423,4 +433,36 @@ public abstract class BaseNavDrawerActivity extends BaseActivity {
             onNavItemClick(NAV_ITEM_ACCOUNT_TRAKT_ID);
         }
     };
+
+    /**
+     * Loads the stored sync runs off the main thread, then displays them in a dialog.
+     */
+    private static class ShowSyncMetricsTask extends AsyncTask<Void, Void, String> {
+
+        private final WeakReference<BaseNavDrawerActivity> activityRef;
+        private final Context context;
+
+        ShowSyncMetricsTask(BaseNavDrawerActivity activity) {
+            this.activityRef = new WeakReference<>(activity);
+            this.context = activity.getApplicationContext();
+        }
+
+        @Override
+        protected String doInBackground(Void... voids) {
+            return SyncMetrics.describeRuns(context);
+        }
+
+        @Override
+        protected void onPostExecute(String description) {
+            BaseNavDrawerActivity activity = activityRef.get();
+            if (activity == null || activity.isFinishing()) {
+                return;
+            }
+            new AlertDialog.Builder(activity)
+                    .setTitle("Recent sync runs")
+                    .setMessage(description)
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+        }
+    }
 }
@@ -2,14 +2,12 @@ package com.battlelancer.seriesguide.ui.overview;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.JobIntentService;
 import android.support.v4.app.SafeJobIntentService;
 import com.battlelancer.seriesguide.SgApp;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract;
-import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.provider.SeasonCounters;
 import timber.log.Timber;
 
 /**
@@ -46,33 +44,12 @@ public class UnwatchedUpdaterService extends SafeJobIntentService {
         int seasonTvdbId = intent.getIntExtra(EXTRA_OPTIONAL_SEASON_TVDB_ID, -1);
         if (seasonTvdbId != -1) {
             // update one season
-            DBUtils.updateUnwatchedCount(this, seasonTvdbId);
+            SeasonCounters.updateSeason(this, seasonTvdbId);
         } else {
-            // update all seasons of this show, start with the most recent
-            // one
-            final Cursor seasons = getContentResolver().query(
-                    SeriesGuideContract.Seasons.buildSeasonsOfShowUri(showTvdbId), new String[] {
-                            SeriesGuideContract.Seasons._ID
-                    }, null, null, SeriesGuideContract.Seasons.COMBINED + " DESC"
-            );
-            if (seasons == null) {
-                return;
-            }
-            while (seasons.moveToNext()) {
-                int seasonId = seasons.getInt(0);
-                DBUtils.updateUnwatchedCount(this, seasonId);
-
-                notifyContentProvider(showTvdbId);
-            }
-            seasons.close();
+            // update all seasons of this show at once
+            SeasonCounters.updateSeasonsOfShow(this, showTvdbId);
         }
 
-        notifyContentProvider(showTvdbId);
         Timber.i("Updated watched count: show %d, season %d", showTvdbId, seasonTvdbId);
     }
-
-    private void notifyContentProvider(int showTvdbId) {
-        getContentResolver().notifyChange(
-                SeriesGuideContract.Seasons.buildSeasonsOfShowUri(showTvdbId), null);
-    }
 }
@@ -17,7 +17,6 @@ import com.battlelancer.seriesguide.traktapi.SgTrakt;
 import com.battlelancer.seriesguide.traktapi.TraktCredentials;
 import com.battlelancer.seriesguide.traktapi.TraktSettings;
 import com.battlelancer.seriesguide.traktapi.TraktTools;
-import com.battlelancer.seriesguide.util.DBUtils;
 import com.battlelancer.seriesguide.util.TaskManager;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import com.uwetrottmann.trakt5.entities.BaseShow;
@@ -248,10 +247,6 @@ public class AddShowTask extends AsyncTask<Void, String, Void> {
                     .putLong(TraktSettings.KEY_LAST_SHOWS_RATED_AT, 0)
                     .putLong(TraktSettings.KEY_LAST_EPISODES_RATED_AT, 0)
                     .apply();
-
-            // renew FTS3 table
-            Timber.d("Renewing search table.");
-            DBUtils.rebuildFtsTable(context);
         }
 
         Timber.d("Finished adding shows.");
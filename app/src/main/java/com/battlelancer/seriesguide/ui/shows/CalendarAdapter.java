@@ -1,188 +1,219 @@
 package com.battlelancer.seriesguide.ui.shows;
 
 import android.app.Activity;
+import android.arch.paging.PagedList;
 import android.content.Context;
-import android.database.Cursor;
 import android.support.annotation.Nullable;
-import android.support.v4.util.LongSparseArray;
-import android.support.v4.widget.CursorAdapter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 import com.battlelancer.seriesguide.R;
-import com.battlelancer.seriesguide.settings.DisplaySettings;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbImageTools;
 import com.battlelancer.seriesguide.ui.episodes.EpisodeTools;
-import com.battlelancer.seriesguide.util.TextTools;
 import com.battlelancer.seriesguide.util.TimeTools;
 import com.battlelancer.seriesguide.widgets.WatchedBox;
 import com.tonicartos.widget.stickygridheaders.StickyGridHeadersBaseAdapter;
 import com.uwetrottmann.androidutils.CheatSheet;
-import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 
 /**
  * Adapter for {@link CalendarFragment} with optimizations for image loading for smoother
- * scrolling.
+ * scrolling. Displays a {@link PagedList} of {@link CalendarItem}, loading more items when
+ * getting close to the last loaded one.
  */
-public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersBaseAdapter {
+public class CalendarAdapter extends BaseAdapter implements StickyGridHeadersBaseAdapter {
 
     interface ItemClickListener {
         void onWatchedBoxClick(int episodePosition, boolean isWatched);
     }
 
+    private final Context context;
     private final ItemClickListener itemClickListener;
-    private final Calendar calendar;
 
-    private List<HeaderData> headers;
-    private boolean isShowingHeaders;
+    @Nullable private PagedList<CalendarItem> items;
+    /** Number of episodes of each day, only the first headerCount values are valid. */
+    private int[] headerCounts = new int[0];
+    private String[] headerLabels = new String[0];
+    private int headerCount;
+    /** Number of items headers were counted for. */
+    private int headerItemCount;
 
     CalendarAdapter(Activity activity, ItemClickListener itemClickListener) {
-        super(activity, null, 0);
+        this.context = activity;
         this.itemClickListener = itemClickListener;
-        this.calendar = Calendar.getInstance();
     }
 
     /**
-     * Whether to show episodes grouped by day with header. Disable headers for larger data sets as
-     * calculating them is expensive. Make sure to reload the data afterwards.
+     * Displays the given list, replacing the current one.
      */
-    void setIsShowingHeaders(boolean isShowingHeaders) {
-        this.isShowingHeaders = isShowingHeaders;
+    void submitList(@Nullable PagedList<CalendarItem> items) {
+        if (this.items != null) {
+            this.items.removeWeakCallback(pagedListCallback);
+        }
+        this.items = items;
+        if (items != null) {
+            items.addWeakCallback(null, pagedListCallback);
+        }
+        updateHeaders(true);
+        notifyDataSetChanged();
     }
 
+    private final PagedList.Callback pagedListCallback = new PagedList.Callback() {
+        @Override
+        public void onChanged(int position, int count) {
+            updateHeaders(true);
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            // if a page was appended, just count headers of new items
+            updateHeaders(position != headerItemCount);
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            updateHeaders(true);
+            notifyDataSetChanged();
+        }
+    };
+
     /**
-     * Overrides base method and does proper position check before returning a Cursor.
+     * Groups items by their release day, items are ordered by release time. Continues from the
+     * last counted item unless recounting.
      */
+    private void updateHeaders(boolean recount) {
+        if (recount) {
+            headerCount = 0;
+            headerItemCount = 0;
+        }
+        if (items == null) {
+            return;
+        }
+        int count = items.size();
+        for (int position = headerItemCount; position < count; position++) {
+            CalendarItem item = items.get(position);
+            if (item == null) {
+                continue; // placeholders are disabled
+            }
+            if (headerCount > 0 && position > 0) {
+                CalendarItem previousItem = items.get(position - 1);
+                if (previousItem != null && previousItem.getDayStart() == item.getDayStart()) {
+                    headerCounts[headerCount - 1]++;
+                    continue;
+                }
+            }
+            if (headerCount == headerCounts.length) {
+                int newCapacity = Math.max(headerCount * 2, 16);
+                headerCounts = Arrays.copyOf(headerCounts, newCapacity);
+                headerLabels = Arrays.copyOf(headerLabels, newCapacity);
+            }
+            headerCounts[headerCount] = 1;
+            headerLabels[headerCount] = item.getDayHeader();
+            headerCount++;
+        }
+        headerItemCount = count;
+    }
+
+    @Override
+    public int getCount() {
+        return items != null ? items.size() : 0;
+    }
+
     @Override
     @Nullable
-    public Cursor getItem(int position) {
-        if (mDataValid && mCursor != null && mCursor.moveToPosition(position)) {
-            return mCursor;
+    public CalendarItem getItem(int position) {
+        if (items != null && position >= 0 && position < items.size()) {
+            return items.get(position);
         } else {
             return null;
         }
     }
 
     @Override
-    public void bindView(View view, final Context context, final Cursor cursor) {
-        ViewHolder viewHolder = (ViewHolder) view.getTag();
+    public long getItemId(int position) {
+        CalendarItem item = getItem(position);
+        return item != null ? item.getEpisodeTvdbId() : 0;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        if (items != null) {
+            // load the next or previous window if getting close to either end
+            items.loadAround(position);
+        }
+
+        if (convertView == null) {
+            convertView = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_calendar, parent, false);
+            convertView.setTag(new ViewHolder(convertView, itemClickListener));
+        }
+
+        CalendarItem item = getItem(position);
+        if (item != null) {
+            bindView((ViewHolder) convertView.getTag(), position, item);
+        }
+        return convertView;
+    }
 
-        viewHolder.position = cursor.getPosition();
+    private void bindView(ViewHolder viewHolder, int position, CalendarItem item) {
+        viewHolder.position = position;
 
         // watched box
-        int episodeFlag = cursor.getInt(CalendarQuery.WATCHED);
+        int episodeFlag = item.getEpisodeFlag();
         viewHolder.watchedBox.setEpisodeFlag(episodeFlag);
         boolean watched = EpisodeTools.isWatched(episodeFlag);
         viewHolder.watchedBox.setContentDescription(
                 context.getString(watched ? R.string.action_unwatched : R.string.action_watched));
 
         // show title
-        viewHolder.show.setText(cursor.getString(CalendarQuery.SHOW_TITLE));
+        viewHolder.show.setText(item.getShowTitle());
 
         // episode number and title
-        final int season = cursor.getInt(CalendarQuery.SEASON);
-        final int episode = cursor.getInt(CalendarQuery.NUMBER);
-        boolean hideTitle = EpisodeTools.isUnwatched(episodeFlag)
-                && DisplaySettings.preventSpoilers(context);
-        viewHolder.episode.setText(TextTools.getNextEpisodeString(context, season, episode,
-                hideTitle ? null : cursor.getString(CalendarQuery.TITLE)));
+        viewHolder.episode.setText(item.getEpisode());
 
         // timestamp, absolute time and network
-        long releaseTime = cursor.getLong(CalendarQuery.RELEASE_TIME_MS);
-        String time = null;
+        long releaseTime = item.getReleaseTime();
         if (releaseTime != -1) {
-            Date actualRelease = TimeTools.applyUserOffset(context, releaseTime);
-            // timestamp
-            boolean displayExactDate = DisplaySettings.isDisplayExactDate(context);
-            viewHolder.timestamp.setText(displayExactDate ?
-                    TimeTools.formatToLocalDateShort(context, actualRelease)
-                    : TimeTools.formatToLocalRelativeTime(context, actualRelease));
-            // release time of this episode
-            time = TimeTools.formatToLocalTime(context, actualRelease);
+            String exactDate = item.getExactDate();
+            viewHolder.timestamp.setText(exactDate != null ? exactDate
+                    : TimeTools.formatToLocalRelativeTime(context, new Date(releaseTime)));
         } else {
             viewHolder.timestamp.setText(null);
         }
-        viewHolder.info.setText(TextTools.dotSeparate(cursor.getString(CalendarQuery.SHOW_NETWORK), time));
+        viewHolder.info.setText(item.getNetworkAndTime());
 
         // collected indicator
-        boolean isCollected = EpisodeTools.isCollected(
-                cursor.getInt(CalendarQuery.COLLECTED));
+        boolean isCollected = EpisodeTools.isCollected(item.getCollectedFlag());
         viewHolder.collected.setVisibility(isCollected ? View.VISIBLE : View.GONE);
 
         // set poster
         TvdbImageTools.loadShowPosterResizeSmallCrop(context, viewHolder.poster,
-                TvdbImageTools.smallSizeUrl(cursor.getString(CalendarQuery.SHOW_POSTER_PATH)));
-    }
-
-    @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        View v = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_calendar, parent, false);
-
-        ViewHolder viewHolder = new ViewHolder(v, itemClickListener);
-        v.setTag(viewHolder);
-
-        return v;
-    }
-
-    private long getHeaderId(int position) {
-        Cursor item = getItem(position);
-        if (item != null) {
-            /*
-             * Map all episodes releasing the same day to the same id (which
-             * equals the time midnight of their release day).
-             */
-            return getHeaderTime(item);
-        }
-        return 0;
-    }
-
-    private long getHeaderTime(Cursor item) {
-        long releaseTime = item.getLong(CalendarQuery.RELEASE_TIME_MS);
-        Date actualRelease = TimeTools.applyUserOffset(mContext, releaseTime);
-
-        calendar.setTime(actualRelease);
-        // not midnight because upcoming->recent is delayed 1 hour
-        // so header would display wrong relative time close to midnight
-        calendar.set(Calendar.HOUR_OF_DAY, 1);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-
-        return calendar.getTimeInMillis();
+                TvdbImageTools.smallSizeUrl(item.getPosterPath()));
     }
 
     @Override
     public int getCountForHeader(int position) {
-        if (headers != null) {
-            return headers.get(position).getCount();
-        }
-        return 0;
+        return headerCounts[position];
     }
 
     @Override
     public int getNumHeaders() {
-        if (headers != null) {
-            return headers.size();
-        }
-        return 0;
+        return headerCount;
     }
 
     @Override
     public View getHeaderView(int position, View convertView, ViewGroup parent) {
-        // get header position for item position
-        position = headers.get(position).getRefPosition();
-
-        Cursor item = getItem(position);
-        if (item == null) {
-            return null;
-        }
-
         HeaderViewHolder holder;
         if (convertView == null) {
             convertView = LayoutInflater.from(parent.getContext())
@@ -196,52 +227,11 @@ public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersB
             holder = (HeaderViewHolder) convertView.getTag();
         }
 
-        long headerTime = getHeaderTime(item);
-        // display headers like "Mon in 3 days", also "today" when applicable
-        holder.day.setText(
-                TimeTools.formatToLocalDayAndRelativeWeek(mContext, new Date(headerTime)));
+        holder.day.setText(headerLabels[position]);
 
         return convertView;
     }
 
-    @Override
-    public void notifyDataSetChanged() {
-        // re-create headers before letting notifyDataSetChanged reach the AdapterView
-        headers = generateHeaderList();
-        super.notifyDataSetChanged();
-    }
-
-    @Override
-    public void notifyDataSetInvalidated() {
-        // remove headers before letting notifyDataSetChanged reach the AdapterView
-        headers = null;
-        super.notifyDataSetInvalidated();
-    }
-
-    private List<HeaderData> generateHeaderList() {
-        int count = getCount();
-        if (count == 0 || !isShowingHeaders) {
-            return null;
-        }
-
-        // pre-size to 30 as we display 30 days == headers at most
-        LongSparseArray<HeaderData> mapping = new LongSparseArray<>(30);
-        List<HeaderData> headers = new ArrayList<>();
-
-        for (int position = 0; position < count; position++) {
-            long headerId = getHeaderId(position);
-            HeaderData headerData = mapping.get(headerId);
-            if (headerData == null) {
-                headerData = new HeaderData(position);
-                headers.add(headerData);
-            }
-            headerData.incrementCount();
-            mapping.put(headerId, headerData);
-        }
-
-        return headers;
-    }
-
     static class ViewHolder {
 
         public TextView show;
@@ -0,0 +1,336 @@
+package com.battlelancer.seriesguide.ui.shows
+
+import android.arch.paging.PageKeyedDataSource
+import android.content.Context
+import android.database.ContentObserver
+import android.database.Cursor
+import android.text.format.DateFormat
+import android.text.format.DateUtils
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes
+import com.battlelancer.seriesguide.settings.DisplaySettings
+import com.battlelancer.seriesguide.ui.episodes.EpisodeTools
+import com.battlelancer.seriesguide.util.TextTools
+import com.battlelancer.seriesguide.util.TimeTools
+import java.util.Calendar
+import java.util.Date
+
+/**
+ * Loads calendar episodes in windows of release time instead of the whole, possibly years long,
+ * range at once. The key of a page is the release time of the first episode of its window, in the
+ * direction of the calendar. The key before a page is the far end of its window, earlier windows
+ * only contain episodes beyond it.
+ *
+ * Starts at the window of [firstEpisodeTvdbId] if it is set, so reloading keeps the episodes the
+ * user is looking at instead of starting at the top again.
+ *
+ * Invalidates itself if episodes change, like a CursorLoader for the same query would reload.
+ */
+class CalendarDataSource(
+    private val context: Context,
+    private val selection: String,
+    private val selectionArgs: Array<String>,
+    private val sortOrder: String,
+    private val isDescending: Boolean,
+    private val firstEpisodeTvdbId: Int
+) : PageKeyedDataSource<Long, CalendarItem>() {
+
+    data class Page(
+        val items: List<CalendarItem>,
+        val nextKey: Long?
+    )
+
+    private val itemMapper = ItemMapper(context)
+
+    private val contentObserver = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) {
+            invalidate()
+        }
+    }
+
+    init {
+        context.contentResolver
+            .registerContentObserver(Episodes.CONTENT_URI_WITHSHOW, true, contentObserver)
+        addInvalidatedCallback {
+            context.contentResolver.unregisterContentObserver(contentObserver)
+        }
+    }
+
+    override fun loadInitial(
+        params: LoadInitialParams<Long>,
+        callback: LoadInitialCallback<Long, CalendarItem>
+    ) {
+        // start at the episode the user is looking at, or the first episode,
+        // the selection already limits to after or before now
+        val startTime = findReleaseTime(firstEpisodeTvdbId)
+        val firstKey = findNextKey(
+            startTime ?: if (isDescending) Long.MAX_VALUE else Long.MIN_VALUE
+        )
+        if (firstKey == null) {
+            callback.onResult(emptyList(), null, null)
+            return
+        }
+        val page = loadWindow(firstKey)
+        // only look for earlier windows if not starting at the first one
+        callback.onResult(page.items, if (startTime != null) firstKey else null, page.nextKey)
+    }
+
+    override fun loadBefore(params: LoadParams<Long>, callback: LoadCallback<Long, CalendarItem>) {
+        val page = loadWindowBefore(params.key)
+        callback.onResult(page.items, page.nextKey)
+    }
+
+    override fun loadAfter(params: LoadParams<Long>, callback: LoadCallback<Long, CalendarItem>) {
+        val page = loadWindow(params.key)
+        callback.onResult(page.items, page.nextKey)
+    }
+
+    private fun loadWindow(windowStart: Long): Page {
+        val windowEnd = if (isDescending) {
+            windowStart - WINDOW_MS
+        } else {
+            windowStart + WINDOW_MS
+        }
+        return Page(queryWindow(windowStart, windowEnd), findNextKey(windowEnd))
+    }
+
+    /**
+     * Loads the window ending with the last episode before the given key. The key of the
+     * returned page is the start of that window.
+     */
+    private fun loadWindowBefore(key: Long): Page {
+        val lastTime = findPreviousKey(key) ?: return Page(emptyList(), null)
+        return if (isDescending) {
+            val windowStart = lastTime + WINDOW_MS - 1
+            Page(queryWindow(windowStart, lastTime - 1), windowStart)
+        } else {
+            val windowStart = lastTime - WINDOW_MS + 1
+            Page(queryWindow(windowStart, lastTime + 1), windowStart)
+        }
+    }
+
+    private fun queryWindow(windowStart: Long, windowEnd: Long): List<CalendarItem> {
+        val query = context.contentResolver.query(
+            Episodes.CONTENT_URI_WITHSHOW,
+            CalendarQuery.PROJECTION,
+            buildWindowSelection(selection, isDescending),
+            arrayOf(*selectionArgs, windowStart.toString(), windowEnd.toString()),
+            sortOrder
+        ) ?: return emptyList()
+
+        return try {
+            itemMapper.map(query)
+        } finally {
+            query.close()
+        }
+    }
+
+    /**
+     * Returns the release time of the given episode, or null if it is not set or the episode
+     * does not exist (any longer).
+     */
+    private fun findReleaseTime(episodeTvdbId: Int): Long? {
+        if (episodeTvdbId == 0) {
+            return null
+        }
+        val query = context.contentResolver.query(
+            Episodes.buildEpisodeUri(episodeTvdbId),
+            arrayOf(Episodes.FIRSTAIREDMS),
+            null,
+            null,
+            null
+        ) ?: return null
+        try {
+            return if (query.moveToFirst()) query.getLong(0) else null
+        } finally {
+            query.close()
+        }
+    }
+
+    /**
+     * Returns the release time of the next episode at or after (or before if descending) the
+     * given time, or null if there is none.
+     */
+    private fun findNextKey(from: Long): Long? {
+        val query = context.contentResolver.query(
+            Episodes.CONTENT_URI_WITHSHOW,
+            arrayOf(buildNextKeyColumn(isDescending)),
+            buildNextKeySelection(selection, isDescending),
+            arrayOf(*selectionArgs, from.toString()),
+            null
+        ) ?: return null
+        try {
+            return if (query.moveToFirst() && !query.isNull(0)) query.getLong(0) else null
+        } finally {
+            query.close()
+        }
+    }
+
+    /**
+     * Returns the release time of the closest episode before (or after if descending) the given
+     * time, or null if there is none.
+     */
+    private fun findPreviousKey(before: Long): Long? {
+        val query = context.contentResolver.query(
+            Episodes.CONTENT_URI_WITHSHOW,
+            arrayOf(buildNextKeyColumn(!isDescending)),
+            buildPreviousKeySelection(selection, isDescending),
+            arrayOf(*selectionArgs, before.toString()),
+            null
+        ) ?: return null
+        try {
+            return if (query.moveToFirst() && !query.isNull(0)) query.getLong(0) else null
+        } finally {
+            query.close()
+        }
+    }
+
+    /**
+     * Maps [CalendarQuery] rows to [CalendarItem], computing display values with the settings at
+     * the time it was created. Only computes the release day for the first episode of each day,
+     * so rows have to be ordered by release time.
+     */
+    class ItemMapper(private val context: Context) {
+
+        private val timeOffsetMs =
+            DisplaySettings.getShowsTimeOffset(context) * DateUtils.HOUR_IN_MILLIS
+        private val isDisplayExactDate = DisplaySettings.isDisplayExactDate(context)
+        private val isPreventSpoilers = DisplaySettings.preventSpoilers(context)
+        private val timeFormat = DateFormat.getTimeFormat(context)
+        private val calendar = Calendar.getInstance()
+
+        private var dayStart = Long.MAX_VALUE
+        private var dayEnd = Long.MIN_VALUE
+        private var dayHeader = ""
+
+        fun map(cursor: Cursor): List<CalendarItem> {
+            val items = ArrayList<CalendarItem>(cursor.count)
+            cursor.moveToPosition(-1)
+            while (cursor.moveToNext()) {
+                items.add(mapRow(cursor))
+            }
+            return items
+        }
+
+        private fun mapRow(cursor: Cursor): CalendarItem {
+            val releaseTimeRaw = cursor.getLong(CalendarQuery.RELEASE_TIME_MS)
+            val releaseTime = if (releaseTimeRaw != -1L) releaseTimeRaw + timeOffsetMs else -1L
+            if (releaseTime < dayStart || releaseTime >= dayEnd) {
+                updateDay(releaseTime)
+            }
+
+            val episodeFlag = cursor.getInt(CalendarQuery.WATCHED)
+            val season = cursor.getInt(CalendarQuery.SEASON)
+            val number = cursor.getInt(CalendarQuery.NUMBER)
+            val hideTitle = EpisodeTools.isUnwatched(episodeFlag) && isPreventSpoilers
+            val episode = TextTools.getNextEpisodeString(
+                context, season, number,
+                if (hideTitle) null else cursor.getString(CalendarQuery.TITLE)
+            )
+
+            val time: String?
+            val exactDate: String?
+            if (releaseTime != -1L) {
+                val actualRelease = Date(releaseTime)
+                time = timeFormat.format(actualRelease)
+                exactDate = if (isDisplayExactDate) {
+                    TimeTools.formatToLocalDateShort(context, actualRelease)
+                } else {
+                    null
+                }
+            } else {
+                time = null
+                exactDate = null
+            }
+
+            return CalendarItem(
+                cursor.getInt(CalendarQuery._ID),
+                cursor.getInt(CalendarQuery.SHOW_ID),
+                season,
+                number,
+                episodeFlag,
+                cursor.getInt(CalendarQuery.COLLECTED),
+                releaseTime,
+                cursor.getString(CalendarQuery.SHOW_TITLE),
+                episode,
+                TextTools.dotSeparate(cursor.getString(CalendarQuery.SHOW_NETWORK), time),
+                exactDate,
+                cursor.getString(CalendarQuery.SHOW_POSTER_PATH),
+                dayStart,
+                dayHeader
+            )
+        }
+
+        private fun updateDay(releaseTime: Long) {
+            calendar.timeInMillis = releaseTime
+            calendar.set(Calendar.HOUR_OF_DAY, 0)
+            calendar.set(Calendar.MINUTE, 0)
+            calendar.set(Calendar.SECOND, 0)
+            calendar.set(Calendar.MILLISECOND, 0)
+            dayStart = calendar.timeInMillis
+            // not midnight because upcoming->recent is delayed 1 hour
+            // so header would display wrong relative time close to midnight
+            calendar.set(Calendar.HOUR_OF_DAY, 1)
+            // display headers like "Mon in 3 days", also "today" when applicable
+            dayHeader = TimeTools.formatToLocalDayAndRelativeWeek(context, calendar.time)
+            calendar.set(Calendar.HOUR_OF_DAY, 0)
+            calendar.add(Calendar.DAY_OF_MONTH, 1)
+            dayEnd = calendar.timeInMillis
+        }
+    }
+
+    companion object {
+
+        /**
+         * Release time range of a page. Windows without episodes are skipped, so this only
+         * limits how many episodes are loaded at once.
+         */
+        private val WINDOW_MS = 7 * DateUtils.DAY_IN_MILLIS
+
+        /**
+         * Limits the calendar selection to a window, appends two selection arguments: the start
+         * (inclusive) and end (exclusive) of the window in the direction of the calendar.
+         */
+        @JvmStatic
+        fun buildWindowSelection(selection: String, isDescending: Boolean): String {
+            return if (isDescending) {
+                "$selection AND ${Episodes.FIRSTAIREDMS}<=? AND ${Episodes.FIRSTAIREDMS}>?"
+            } else {
+                "$selection AND ${Episodes.FIRSTAIREDMS}>=? AND ${Episodes.FIRSTAIREDMS}<?"
+            }
+        }
+
+        @JvmStatic
+        fun buildNextKeyColumn(isDescending: Boolean): String {
+            return if (isDescending) {
+                "MAX(${Episodes.FIRSTAIREDMS})"
+            } else {
+                "MIN(${Episodes.FIRSTAIREDMS})"
+            }
+        }
+
+        /**
+         * Appends one selection argument, the time to find the next episode from (inclusive).
+         */
+        @JvmStatic
+        fun buildNextKeySelection(selection: String, isDescending: Boolean): String {
+            return if (isDescending) {
+                "$selection AND ${Episodes.FIRSTAIREDMS}<=?"
+            } else {
+                "$selection AND ${Episodes.FIRSTAIREDMS}>=?"
+            }
+        }
+
+        /**
+         * Appends one selection argument, the time to find the previous episode from
+         * (exclusive). Use with the next key column of the opposite direction.
+         */
+        @JvmStatic
+        fun buildPreviousKeySelection(selection: String, isDescending: Boolean): String {
+            return if (isDescending) {
+                "$selection AND ${Episodes.FIRSTAIREDMS}>?"
+            } else {
+                "$selection AND ${Episodes.FIRSTAIREDMS}<?"
+            }
+        }
+    }
+}
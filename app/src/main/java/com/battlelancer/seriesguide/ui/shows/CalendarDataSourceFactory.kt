@@ -0,0 +1,52 @@
+package com.battlelancer.seriesguide.ui.shows
+
+import android.arch.paging.DataSource
+import android.content.Context
+
+/**
+ * Creates [CalendarDataSource] for one calendar query. The time range of the query may be
+ * updated with [updateSelectionArgs], data sources then start at [firstVisibleEpisodeTvdbId].
+ */
+class CalendarDataSourceFactory(
+    private val context: Context,
+    val selection: String,
+    selectionArgs: Array<String>,
+    val sortOrder: String,
+    val isDescending: Boolean
+) : DataSource.Factory<Long, CalendarItem>() {
+
+    @Volatile
+    private var selectionArgs: Array<String> = selectionArgs
+    @Volatile
+    private var dataSource: CalendarDataSource? = null
+
+    /** The episode the user is looking at, or 0 to start at the first one. */
+    @Volatile
+    var firstVisibleEpisodeTvdbId: Int = 0
+
+    override fun create(): DataSource<Long, CalendarItem> {
+        val dataSource = CalendarDataSource(
+            context, selection, selectionArgs, sortOrder, isDescending,
+            firstVisibleEpisodeTvdbId
+        )
+        this.dataSource = dataSource
+        return dataSource
+    }
+
+    /**
+     * Reloads the calendar with the new selection arguments, starting at the episode the user is
+     * looking at.
+     */
+    fun updateSelectionArgs(selectionArgs: Array<String>) {
+        this.selectionArgs = selectionArgs
+        invalidate()
+    }
+
+    /**
+     * Reloads the calendar, starting at the episode the user is looking at.
+     */
+    fun invalidate() {
+        dataSource?.invalidate()
+    }
+
+}
@@ -1,11 +1,12 @@
 package com.battlelancer.seriesguide.ui.shows;
 
+import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
@@ -14,9 +15,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.graphics.drawable.VectorDrawableCompat;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v4.view.ViewCompat;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
@@ -25,6 +23,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.GridView;
@@ -70,6 +69,7 @@ public class CalendarFragment extends Fragment
 
     private StickyGridHeadersGridView gridView;
     private CalendarAdapter adapter;
+    private CalendarViewModel model;
     private ImageView imageViewTapIndicator;
     private Handler handler;
     private String type;
@@ -128,6 +128,19 @@ public class CalendarFragment extends Fragment
         gridView.setAdapter(adapter);
         gridView.setOnItemClickListener(this);
         gridView.setOnItemLongClickListener(this);
+        gridView.setOnScrollListener(scrollListener);
+
+        model = ViewModelProviders.of(this).get(CalendarViewModel.class);
+        model.getItems().observe(this, items -> {
+            adapter.submitList(items);
+            if (items != null) {
+                // added after the adapter callback, so runs once the adapter has the new items
+                items.addWeakCallback(null, prependCallback);
+            }
+            // reloads start at the episode the user is looking at
+            scrollToFirstVisibleEpisode();
+            updateTapIndicatorVisibility();
+        });
 
         PreferenceManager.getDefaultSharedPreferences(getActivity())
                 .registerOnSharedPreferenceChangeListener(this);
@@ -146,17 +159,8 @@ public class CalendarFragment extends Fragment
     public void onResume() {
         super.onResume();
 
-        // prevent stale upcoming/recent episodes, also:
-        /*
-          Workaround for loader issues on config changes. For some reason the
-          CursorLoader holds on to a cursor with old data. See
-          https://github.com/UweTrottmann/SeriesGuide/issues/257.
-         */
-        boolean isLoaderExists = getLoaderManager().getLoader(getLoaderId()) != null;
-        getLoaderManager().initLoader(getLoaderId(), null, calendarLoaderCallbacks);
-        if (isLoaderExists) {
-            requery();
-        }
+        // prevent stale upcoming/recent episodes, does nothing if recently updated
+        requery();
     }
 
     @Override
@@ -247,10 +251,6 @@ public class CalendarFragment extends Fragment
         getActivity().invalidateOptionsMenu();
     }
 
-    private int getLoaderId() {
-        return getArguments().getInt("loaderid");
-    }
-
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         int episodeId = (int) id;
@@ -274,18 +274,18 @@ public class CalendarFragment extends Fragment
         PopupMenu popupMenu = new PopupMenu(view.getContext(), view);
         Menu menu = popupMenu.getMenu();
 
-        Cursor episode = adapter.getItem(position);
+        CalendarItem episode = adapter.getItem(position);
         if (episode == null) {
             return false;
         }
 
         // only display the action appropriate for the items current state
-        if (EpisodeTools.isWatched(episode.getInt(CalendarQuery.WATCHED))) {
+        if (EpisodeTools.isWatched(episode.getEpisodeFlag())) {
             menu.add(0, CONTEXT_FLAG_UNWATCHED_ID, 0, R.string.action_unwatched);
         } else {
             menu.add(0, CONTEXT_FLAG_WATCHED_ID, 0, R.string.action_watched);
         }
-        if (EpisodeTools.isCollected(episode.getInt(CalendarQuery.COLLECTED))) {
+        if (EpisodeTools.isCollected(episode.getCollectedFlag())) {
             menu.add(0, CONTEXT_COLLECTION_REMOVE_ID, 1, R.string.action_collection_remove);
         } else {
             menu.add(0, CONTEXT_COLLECTION_ADD_ID, 1, R.string.action_collection_add);
@@ -296,10 +296,10 @@ public class CalendarFragment extends Fragment
             menu.add(0, CONTEXT_CHECKIN_ID, 2, R.string.checkin);
         }
 
-        final int showTvdbId = episode.getInt(CalendarQuery.SHOW_ID);
-        final int episodeTvdbId = episode.getInt(CalendarQuery._ID);
-        final int seasonNumber = episode.getInt(CalendarQuery.SEASON);
-        final int episodeNumber = episode.getInt(CalendarQuery.NUMBER);
+        final int showTvdbId = episode.getShowTvdbId();
+        final int episodeTvdbId = episode.getEpisodeTvdbId();
+        final int seasonNumber = episode.getSeason();
+        final int episodeNumber = episode.getNumber();
         popupMenu.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
             @Override
             public boolean onMenuItemClick(MenuItem item) {
@@ -382,12 +382,16 @@ public class CalendarFragment extends Fragment
                 || CalendarSettings.KEY_INFINITE_SCROLLING.equals(key)) {
             requery();
         }
+        // settings are read when loading
+        if (DisplaySettings.KEY_SHOWS_TIME_OFFSET.equals(key)
+                || DisplaySettings.KEY_DISPLAY_EXACT_DATE.equals(key)
+                || DisplaySettings.KEY_PREVENT_SPOILERS.equals(key)) {
+            model.reloadCalendar();
+        }
     }
 
     private void configureCalendar(GridView gridView, CalendarAdapter adapter,
             boolean infiniteScrolling) {
-        adapter.setIsShowingHeaders(!infiniteScrolling);
-
         gridView.setFastScrollEnabled(infiniteScrolling);
         gridView.setFastScrollAlwaysVisible(infiniteScrolling);
         Resources res = getResources();
@@ -416,7 +420,10 @@ public class CalendarFragment extends Fragment
     }
 
     private void requery() {
-        getLoaderManager().restartLoader(getLoaderId(), null, calendarLoaderCallbacks);
+        model.updateCalendarQuery(type);
+
+        // prevent upcoming/recent episodes from becoming stale
+        schedulePeriodicDataRefresh(true);
     }
 
     private void schedulePeriodicDataRefresh(boolean enableRefresh) {
@@ -425,46 +432,74 @@ public class CalendarFragment extends Fragment
         }
         handler.removeCallbacks(dataRefreshRunnable);
         if (enableRefresh) {
-            handler.postDelayed(dataRefreshRunnable, 5 * DateUtils.MINUTE_IN_MILLIS);
+            handler.postDelayed(dataRefreshRunnable, CalendarViewModel.REFRESH_INTERVAL_MS);
         }
     }
 
-    private Runnable dataRefreshRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if (isAdded()) {
-                getLoaderManager().restartLoader(getLoaderId(), null, calendarLoaderCallbacks);
+    /**
+     * Scrolls to the episode the user was looking at, if it is loaded. The grid otherwise keeps
+     * its position, which points to other episodes after reloading or loading earlier ones.
+     */
+    private void scrollToFirstVisibleEpisode() {
+        int episodeTvdbId = model.getFirstVisibleEpisodeTvdbId();
+        if (episodeTvdbId == 0) {
+            return;
+        }
+        // grid positions include headers, look up the episode
+        int count = gridView.getCount();
+        for (int position = 0; position < count; position++) {
+            if (gridView.getItemIdAtPosition(position) == episodeTvdbId) {
+                gridView.setSelection(position);
+                return;
             }
         }
-    };
+    }
 
-    private LoaderManager.LoaderCallbacks<Cursor> calendarLoaderCallbacks
-            = new LoaderManager.LoaderCallbacks<Cursor>() {
-        public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-            boolean isOnlyCollected = CalendarSettings.isOnlyCollected(getActivity());
-            boolean isOnlyFavorites = CalendarSettings.isOnlyFavorites(getActivity());
-            boolean isOnlyUnwatched = CalendarSettings.isHidingWatchedEpisodes(getActivity());
-            boolean isInfiniteScrolling = CalendarSettings.isInfiniteScrolling(getActivity());
+    private final AbsListView.OnScrollListener scrollListener
+            = new AbsListView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
 
-            // infinite or 30 days activity stream
-            String[][] queryArgs = buildActivityQuery(getActivity(), type, isOnlyCollected,
-                    isOnlyFavorites, isOnlyUnwatched, isInfiniteScrolling);
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            // skip headers and fillers, they have negative ids
+            for (int position = firstVisibleItem;
+                    position < firstVisibleItem + visibleItemCount; position++) {
+                long id = gridView.getItemIdAtPosition(position);
+                if (id > 0) {
+                    model.setFirstVisibleEpisodeTvdbId((int) id);
+                    return;
+                }
+            }
+        }
+    };
 
-            // prevent upcoming/recent episodes from becoming stale
-            schedulePeriodicDataRefresh(true);
+    private final PagedList.Callback prependCallback = new PagedList.Callback() {
+        @Override
+        public void onChanged(int position, int count) {
+        }
 
-            return new CursorLoader(getActivity(), Episodes.CONTENT_URI_WITHSHOW,
-                    CalendarQuery.PROJECTION, queryArgs[0][0], queryArgs[1],
-                    queryArgs[2][0]);
+        @Override
+        public void onInserted(int position, int count) {
+            if (position == 0) {
+                // earlier episodes were loaded, keep looking at the same episode
+                scrollToFirstVisibleEpisode();
+            }
         }
 
-        public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-            adapter.swapCursor(data);
-            updateTapIndicatorVisibility();
+        @Override
+        public void onRemoved(int position, int count) {
         }
+    };
 
-        public void onLoaderReset(Loader<Cursor> loader) {
-            adapter.swapCursor(null);
+    private Runnable dataRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isAdded()) {
+                requery();
+            }
         }
     };
 
@@ -552,15 +587,15 @@ public class CalendarFragment extends Fragment
             = new CalendarAdapter.ItemClickListener() {
         @Override
         public void onWatchedBoxClick(int episodePosition, boolean isWatched) {
-            Cursor episode = adapter.getItem(episodePosition);
+            CalendarItem episode = adapter.getItem(episodePosition);
             if (episode == null) {
                 return;
             }
 
-            int showTvdbId = episode.getInt(CalendarQuery.SHOW_ID);
-            int episodeTvdbId = episode.getInt(CalendarQuery._ID);
-            int seasonNumber = episode.getInt(CalendarQuery.SEASON);
-            int episodeNumber = episode.getInt(CalendarQuery.NUMBER);
+            int showTvdbId = episode.getShowTvdbId();
+            int episodeTvdbId = episode.getEpisodeTvdbId();
+            int seasonNumber = episode.getSeason();
+            int episodeNumber = episode.getNumber();
 
             updateEpisodeWatchedState(showTvdbId, episodeTvdbId, seasonNumber, episodeNumber,
                     !isWatched);
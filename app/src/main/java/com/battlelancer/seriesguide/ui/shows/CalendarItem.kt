@@ -0,0 +1,26 @@
+package com.battlelancer.seriesguide.ui.shows
+
+/**
+ * An episode displayed by [CalendarAdapter], with display values already computed by
+ * [CalendarDataSource].
+ */
+data class CalendarItem(
+    val episodeTvdbId: Int,
+    val showTvdbId: Int,
+    val season: Int,
+    val number: Int,
+    val episodeFlag: Int,
+    val collectedFlag: Int,
+    /** Release time with the user offset applied, or -1 if unknown. */
+    val releaseTime: Long,
+    val showTitle: String?,
+    val episode: String,
+    val networkAndTime: String,
+    /** The release date if exact dates should be displayed, otherwise null. */
+    val exactDate: String?,
+    val posterPath: String?,
+    /** Start of the release day, all episodes of a day share it. */
+    val dayStart: Long,
+    /** Header for the release day, like "Mon in 3 weeks". */
+    val dayHeader: String
+)
@@ -0,0 +1,108 @@
+package com.battlelancer.seriesguide.ui.shows
+
+import android.app.Application
+import android.arch.lifecycle.AndroidViewModel
+import android.arch.lifecycle.LiveData
+import android.arch.lifecycle.MutableLiveData
+import android.arch.lifecycle.Transformations
+import android.arch.paging.LivePagedListBuilder
+import android.arch.paging.PagedList
+import android.text.format.DateUtils
+
+class CalendarViewModel(application: Application) : AndroidViewModel(application) {
+
+    private val calendarFactory = MutableLiveData<CalendarDataSourceFactory>()
+    val items: LiveData<PagedList<CalendarItem>>
+    /** When the time range of the current query was last updated. */
+    private var queryTime = 0L
+
+    init {
+        items = Transformations.switchMap(calendarFactory) { factory ->
+            LivePagedListBuilder(
+                factory,
+                PagedList.Config.Builder()
+                    .setPageSize(PAGE_SIZE)
+                    .setPrefetchDistance(PREFETCH_DISTANCE)
+                    .setEnablePlaceholders(false)
+                    .build()
+            ).build()
+        }
+    }
+
+    /**
+     * Loads the calendar of the given [CalendarType] with the current filter settings. Also call
+     * to update the time range, it is fixed when loading.
+     *
+     * If only the time range changed, keeps the current calendar if it was updated less than
+     * [REFRESH_INTERVAL_MS] ago, otherwise reloads it starting at the episode the user is looking
+     * at.
+     */
+    fun updateCalendarQuery(type: String) {
+        val context = getApplication<Application>()
+        val isOnlyCollected = CalendarSettings.isOnlyCollected(context)
+        val isOnlyFavorites = CalendarSettings.isOnlyFavorites(context)
+        val isOnlyUnwatched = CalendarSettings.isHidingWatchedEpisodes(context)
+        val isInfiniteScrolling = CalendarSettings.isInfiniteScrolling(context)
+
+        // infinite or 30 days activity stream
+        val queryArgs = CalendarFragment.buildActivityQuery(
+            context, type, isOnlyCollected, isOnlyFavorites, isOnlyUnwatched, isInfiniteScrolling
+        )
+        val selection = queryArgs[0][0]
+        val sortOrder = queryArgs[2][0]
+        val isDescending = CalendarType.RECENT == type
+        val now = System.currentTimeMillis()
+
+        val factory = calendarFactory.value
+        if (factory != null
+            && factory.selection == selection
+            && factory.sortOrder == sortOrder
+            && factory.isDescending == isDescending) {
+            if (now - queryTime >= REFRESH_INTERVAL_MS) {
+                queryTime = now
+                factory.updateSelectionArgs(queryArgs[1])
+            }
+            return
+        }
+
+        queryTime = now
+        calendarFactory.value = CalendarDataSourceFactory(
+            context, selection, queryArgs[1], sortOrder, isDescending
+        ).also {
+            // keep looking at the same episode, if it is still included
+            it.firstVisibleEpisodeTvdbId = factory?.firstVisibleEpisodeTvdbId ?: 0
+        }
+    }
+
+    /**
+     * Reloads the calendar, like to display it with changed display settings. Starts at the
+     * episode the user is looking at.
+     */
+    fun reloadCalendar() {
+        calendarFactory.value?.invalidate()
+    }
+
+    /**
+     * The episode the user is looking at, or 0 if none.
+     */
+    var firstVisibleEpisodeTvdbId: Int
+        get() = calendarFactory.value?.firstVisibleEpisodeTvdbId ?: 0
+        set(value) {
+            calendarFactory.value?.firstVisibleEpisodeTvdbId = value
+        }
+
+    companion object {
+        /** Update the time range of the calendar at most this often. */
+        const val REFRESH_INTERVAL_MS = 5 * DateUtils.MINUTE_IN_MILLIS
+
+        /**
+         * Expected number of episodes of a page. Only a hint, each page loads a whole release
+         * time window.
+         */
+        private const val PAGE_SIZE = 50
+
+        /** Load the next window once an item this close to the last loaded one is displayed. */
+        private const val PREFETCH_DISTANCE = 50
+    }
+
+}
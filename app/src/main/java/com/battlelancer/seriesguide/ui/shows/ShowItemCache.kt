@@ -0,0 +1,106 @@
+package com.battlelancer.seriesguide.ui.shows
+
+import android.content.Context
+import com.battlelancer.seriesguide.model.SgShow
+import com.battlelancer.seriesguide.settings.DisplaySettings
+
+/**
+ * Keeps the [ShowsAdapter.ShowItem] mapped for each show, so if the shows query updates, e.g.
+ * because the next episode of one show changed, only shows with changed values are mapped again.
+ */
+class ShowItemCache {
+
+    /**
+     * The values of a show that [ShowsAdapter.ShowItem.map] uses.
+     */
+    private data class Source(
+        val favorite: Boolean,
+        val hidden: Boolean,
+        val title: String,
+        val releaseTime: Int?,
+        val releaseWeekDay: Int?,
+        val releaseTimeZone: String?,
+        val releaseCountry: String?,
+        val network: String?,
+        val status: String?,
+        val nextEpisode: String?,
+        val nextText: String?,
+        val nextAirdateMs: Long?,
+        val unwatchedCount: Int,
+        val poster: String?
+    ) {
+        companion object {
+            fun of(sgShow: SgShow): Source {
+                return Source(
+                    sgShow.favorite,
+                    sgShow.hidden,
+                    sgShow.title,
+                    sgShow.releaseTime,
+                    sgShow.releaseWeekDay,
+                    sgShow.releaseTimeZone,
+                    sgShow.releaseCountry,
+                    sgShow.network,
+                    sgShow.status,
+                    sgShow.nextEpisode,
+                    sgShow.nextText,
+                    sgShow.nextAirdateMs,
+                    sgShow.unwatchedCount,
+                    sgShow.poster
+                )
+            }
+        }
+    }
+
+    private class Entry(val source: Source, val item: ShowsAdapter.ShowItem)
+
+    private var entries = HashMap<Int, Entry>()
+    private var timeOffset = 0
+    private var isDisplayExactDate = false
+
+    @Volatile
+    private var isOutdated = false
+
+    /**
+     * Maps the given shows, re-using the items of shows that did not change since the last call.
+     * Call on a background thread.
+     */
+    @Synchronized
+    fun map(sgShows: List<SgShow>, context: Context): List<ShowsAdapter.ShowItem> {
+        // items contain formatted release times
+        val timeOffset = DisplaySettings.getShowsTimeOffset(context)
+        val isDisplayExactDate = DisplaySettings.isDisplayExactDate(context)
+        if (isOutdated
+            || timeOffset != this.timeOffset
+            || isDisplayExactDate != this.isDisplayExactDate) {
+            isOutdated = false
+            this.timeOffset = timeOffset
+            this.isDisplayExactDate = isDisplayExactDate
+            entries.clear()
+        }
+
+        val newEntries = HashMap<Int, Entry>(sgShows.size)
+        val items = ArrayList<ShowsAdapter.ShowItem>(sgShows.size)
+        for (sgShow in sgShows) {
+            val source = Source.of(sgShow)
+            val cachedEntry = entries[sgShow.tvdbId]
+            val entry = if (cachedEntry != null && cachedEntry.source == source) {
+                cachedEntry
+            } else {
+                Entry(source, ShowsAdapter.ShowItem.map(sgShow, context))
+            }
+            newEntries[sgShow.tvdbId] = entry
+            items.add(entry.item)
+        }
+        // drop items of shows that are no longer displayed
+        entries = newEntries
+        return items
+    }
+
+    /**
+     * Maps all shows again on the next call to [map], e.g. because relative times changed.
+     */
+    fun invalidate() {
+        isOutdated = true
+    }
+
+}
@@ -22,6 +22,7 @@ import com.battlelancer.seriesguide.enums.NetworkResult;
 import com.battlelancer.seriesguide.enums.Result;
 import com.battlelancer.seriesguide.modules.ApplicationContext;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
 import com.battlelancer.seriesguide.service.NotificationService;
 import com.battlelancer.seriesguide.sync.HexagonShowSync;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
@@ -129,6 +130,7 @@ public class ShowTools {
             Timber.e(e, "Removing episodes, seasons and show failed");
             return Result.ERROR;
         }
+        SgRoomDatabase.getInstance(context).episodePageHelper().deletePagesOfShow(showTvdbId);
 
         // make sure other loaders (activity, overview, details, search) are notified
         context.getContentResolver().notifyChange(
@@ -18,21 +18,22 @@ import com.battlelancer.seriesguide.util.TimeTools
 
 class ShowsViewModel(application: Application) : AndroidViewModel(application) {
 
-    private val queryString = MutableLiveData<String>()
+    private val query = MutableLiveData<SimpleSQLiteQuery>()
     private val sgShowsLiveData: LiveData<List<SgShow>>
     val showItemsLiveData = MediatorLiveData<List<ShowsAdapter.ShowItem>>()
+    private val showItemCache = ShowItemCache()
 
     init {
-        sgShowsLiveData = Transformations.switchMap(queryString) { queryString ->
-            SgRoomDatabase.getInstance(getApplication()).showHelper()
-                .queryShows(SimpleSQLiteQuery(queryString, null))
+        sgShowsLiveData = Transformations.switchMap(query) { query ->
+            SgRoomDatabase.getInstance(getApplication()).showHelper().queryShows(query)
         }
 
         showItemsLiveData.addSource(sgShowsLiveData) { sgShows ->
             // calculate actually displayed values on a background thread
             AsyncTask.THREAD_POOL_EXECUTOR.execute {
-                val mapped = sgShows?.map {
-                    ShowsAdapter.ShowItem.map(it, getApplication())
+                // only map changed shows, adapter diffs items
+                val mapped = sgShows?.let {
+                    showItemCache.map(it, getApplication())
                 }
                 showItemsLiveData.postValue(mapped)
             }
@@ -46,63 +47,97 @@ class ShowsViewModel(application: Application) : AndroidViewModel(application) {
         isFilterHidden: Boolean,
         orderClause: String
     ) {
-        val selection = StringBuilder()
-
-        // restrict to favorites?
-        if (isFilterFavorites) {
-            selection.append(SeriesGuideContract.Shows.FAVORITE).append("=1")
-        }
-
         val timeInAnHour = TimeTools.getCurrentTime(getApplication()) + DateUtils.HOUR_IN_MILLIS
+        // Display shows upcoming within <limit> days + 1 hour
+        val upcomingLimitInDays = AdvancedSettings.getUpcomingLimitInDays(getApplication())
+        val latestAirtime = timeInAnHour + upcomingLimitInDays * DateUtils.DAY_IN_MILLIS
+
+        query.value = buildQuery(
+            isFilterFavorites,
+            isFilterUnwatched,
+            isFilterUpcoming,
+            isFilterHidden,
+            orderClause,
+            timeInAnHour,
+            latestAirtime
+        )
+    }
 
-        // restrict to shows with a next episode?
-        if (isFilterUnwatched) {
-            if (selection.isNotEmpty()) {
-                selection.append(" AND ")
+    fun reRunQuery() {
+        // relative times have changed
+        showItemCache.invalidate()
+        query.value = query.value
+    }
+
+    companion object {
+
+        /**
+         * Builds the shows query for the given filters. Times are bound as arguments, so the SQL
+         * only depends on the filters and sort order and SQLite can re-use the prepared statement
+         * when switching between them.
+         */
+        @JvmStatic
+        fun buildQuery(
+            isFilterFavorites: Boolean,
+            isFilterUnwatched: Boolean,
+            isFilterUpcoming: Boolean,
+            isFilterHidden: Boolean,
+            orderClause: String,
+            timeInAnHour: Long,
+            latestAirtime: Long
+        ): SimpleSQLiteQuery {
+            val selection = StringBuilder()
+            val args = ArrayList<Any>(3)
+
+            // restrict to favorites?
+            if (isFilterFavorites) {
+                selection.append(SeriesGuideContract.Shows.FAVORITE).append("=1")
             }
-            selection.append(SeriesGuideContract.Shows.SELECTION_WITH_RELEASED_NEXT_EPISODE)
 
-            // exclude shows with upcoming next episode
-            if (!isFilterUpcoming) {
-                selection.append(" AND ")
-                    .append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append("<=")
-                    .append(timeInAnHour)
+            // restrict to shows with a next episode?
+            if (isFilterUnwatched) {
+                if (selection.isNotEmpty()) {
+                    selection.append(" AND ")
+                }
+                selection.append(SeriesGuideContract.Shows.SELECTION_WITH_RELEASED_NEXT_EPISODE)
+
+                // exclude shows with upcoming next episode
+                if (!isFilterUpcoming) {
+                    selection.append(" AND ")
+                        .append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append("<=?")
+                    args.add(timeInAnHour)
+                }
             }
-        }
-        // restrict to shows with an upcoming (yet to air) next episode?
-        if (isFilterUpcoming) {
-            if (selection.isNotEmpty()) {
-                selection.append(" AND ")
+            // restrict to shows with an upcoming (yet to air) next episode?
+            if (isFilterUpcoming) {
+                if (selection.isNotEmpty()) {
+                    selection.append(" AND ")
+                }
+                selection.append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append("<=?")
+                args.add(latestAirtime)
+
+                // exclude shows with no upcoming next episode if not filtered for unwatched, too
+                if (!isFilterUnwatched) {
+                    selection.append(" AND ")
+                        .append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append(">=?")
+                    args.add(timeInAnHour)
+                }
             }
-            // Display shows upcoming within <limit> days + 1 hour
-            val upcomingLimitInDays = AdvancedSettings.getUpcomingLimitInDays(getApplication())
-            val latestAirtime = timeInAnHour + upcomingLimitInDays * DateUtils.DAY_IN_MILLIS
-
-            selection.append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append("<=")
-                .append(latestAirtime)
 
-            // exclude shows with no upcoming next episode if not filtered for unwatched, too
-            if (!isFilterUnwatched) {
+            // special: if hidden filter is disabled, exclude hidden shows
+            if (selection.isNotEmpty()) {
                 selection.append(" AND ")
-                    .append(SeriesGuideContract.Shows.NEXTAIRDATEMS).append(">=")
-                    .append(timeInAnHour)
             }
+            selection.append(SeriesGuideContract.Shows.HIDDEN)
+                .append(if (isFilterHidden) "=1" else "=0")
+
+            return SimpleSQLiteQuery(
+                "SELECT * FROM ${SeriesGuideDatabase.Tables.SHOWS}" +
+                        " WHERE $selection" +
+                        " ORDER BY $orderClause",
+                args.toTypedArray()
+            )
         }
-
-        // special: if hidden filter is disabled, exclude hidden shows
-        if (selection.isNotEmpty()) {
-            selection.append(" AND ")
-        }
-        selection.append(SeriesGuideContract.Shows.HIDDEN)
-            .append(if (isFilterHidden) "=1" else "=0")
-
-        queryString.value = "SELECT * FROM ${SeriesGuideDatabase.Tables.SHOWS}" +
-                " WHERE $selection" +
-                " ORDER BY $orderClause"
-    }
-
-    fun reRunQuery() {
-        queryString.value = queryString.value
     }
 
 }
\ No newline at end of file
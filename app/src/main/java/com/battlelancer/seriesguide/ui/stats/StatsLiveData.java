@@ -5,22 +5,22 @@ import android.arch.lifecycle.LiveData;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.format.DateUtils;
-import android.util.SparseIntArray;
+import com.battlelancer.seriesguide.model.SgLibraryStats;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.ShowStatsHelper;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
 import com.battlelancer.seriesguide.settings.DisplaySettings;
-import com.battlelancer.seriesguide.util.DBUtils;
-import com.battlelancer.seriesguide.ui.shows.ShowTools;
+import timber.log.Timber;
 
 class StatsLiveData extends LiveData<StatsLiveData.StatsUpdateEvent> {
 
     private final Context context;
-    private AsyncTask<Void, StatsUpdateEvent, StatsUpdateEvent> task;
+    private AsyncTask<Void, Void, StatsUpdateEvent> task;
 
     StatsLiveData(Context context) {
         this.context = context;
@@ -33,9 +33,7 @@ class StatsLiveData extends LiveData<StatsLiveData.StatsUpdateEvent> {
     }
 
     @SuppressLint("StaticFieldLeak")
-    private class StatsTask extends AsyncTask<Void, StatsUpdateEvent, StatsUpdateEvent> {
-
-        private static final long PREVIEW_UPDATE_INTERVAL_MS = DateUtils.SECOND_IN_MILLIS;
+    private class StatsTask extends AsyncTask<Void, Void, StatsUpdateEvent> {
 
         @Nullable
         @Override
@@ -52,60 +50,11 @@ class StatsLiveData extends LiveData<StatsLiveData.StatsUpdateEvent> {
                 return buildFailure(stats);
             }
 
-            // shows
-            SparseIntArray showRuntimes = processShows(resolver, stats);
-            if (showRuntimes == null) {
-                return buildFailure(stats); // failed to process shows
-            }
-
-            if (isCancelled()) {
-                return buildFailure(stats);
-            }
-
-            // episodes
+            // shows and episodes
             boolean includeSpecials = !DisplaySettings.isHidingSpecials(context);
-            if (!processEpisodes(resolver, stats, includeSpecials)) {
-                return buildFailure(stats); // failed to process episodes
-            }
-
-            if (isCancelled()) {
-                return buildFailure(stats);
-            }
-
-            // report intermediate results before longest op
-            publishProgress(buildUpdate(stats));
-
-            // calculate runtime of watched episodes per show
-            long totalRuntimeMin = 0;
-            long previewTime = System.currentTimeMillis() + PREVIEW_UPDATE_INTERVAL_MS;
-            for (int i = 0, size = showRuntimes.size(); i < size; i++) {
-                int showTvdbId = showRuntimes.keyAt(i);
-                long runtimeOfShowMin = showRuntimes.valueAt(i);
-
-                int watchedEpisodesOfShowCount = DBUtils.getCountOf(resolver,
-                        Episodes.buildEpisodesOfShowUri(showTvdbId),
-                        Episodes.SELECTION_WATCHED
-                                + (includeSpecials ? "" : " AND " + Episodes.SELECTION_NO_SPECIALS),
-                        null, -1);
-                if (watchedEpisodesOfShowCount == -1) {
-                    // episode query failed, return what we have so far
-                    stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS;
-                    return buildFailure(stats);
-                }
-                // make sure we calculate with long here (first arg is long) to avoid overflows
-                long runtimeOfEpisodesMin = runtimeOfShowMin * watchedEpisodesOfShowCount;
-
-                totalRuntimeMin += runtimeOfEpisodesMin;
-
-                // post regular update of minimum
-                long currentTime = System.currentTimeMillis();
-                if (currentTime > previewTime) {
-                    previewTime = currentTime + PREVIEW_UPDATE_INTERVAL_MS;
-                    stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS;
-                    publishProgress(buildUpdate(stats));
-                }
+            if (!processShows(stats, includeSpecials)) {
+                return buildFailure(stats); // failed to process shows
             }
-            stats.episodesWatchedRuntime = totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS;
 
             // return final values
             return new StatsUpdateEvent(stats, true, true);
@@ -115,15 +64,6 @@ class StatsLiveData extends LiveData<StatsLiveData.StatsUpdateEvent> {
             return new StatsUpdateEvent(stats, false, false);
         }
 
-        private StatsUpdateEvent buildUpdate(Stats stats) {
-            return new StatsUpdateEvent(stats, false, true);
-        }
-
-        @Override
-        protected void onProgressUpdate(StatsUpdateEvent... values) {
-            setValue(values[0]);
-        }
-
         @Override
         protected void onPostExecute(StatsUpdateEvent event) {
             setValue(event);
@@ -156,65 +96,33 @@ class StatsLiveData extends LiveData<StatsLiveData.StatsUpdateEvent> {
             return true;
         }
 
-        @Nullable
-        private SparseIntArray processShows(ContentResolver resolver, Stats stats) {
-            Cursor shows = resolver.query(Shows.CONTENT_URI,
-                    new String[]{
-                            Shows._ID, // 0
-                            Shows.STATUS,
-                            Shows.NEXTEPISODE,
-                            Shows.RUNTIME // 3
-                    }, null, null, null
-            );
-            if (shows == null) {
-                return null;
-            }
-
-            int continuing = 0;
-            int withnext = 0;
-            // count all shows
-            int showsCount = shows.getCount();
-            SparseIntArray showRuntimes = new SparseIntArray(showsCount);
-            while (shows.moveToNext()) {
-                // count continuing shows
-                if (shows.getInt(1) == ShowTools.Status.CONTINUING) {
-                    continuing++;
-                }
-                // count shows with next episodes
-                if (shows.getInt(2) != ShowTools.Status.ENDED) {
-                    withnext++;
-                }
-                // map show to its runtime
-                showRuntimes.put(shows.getInt(0), shows.getInt(3));
-            }
-            shows.close();
-
-            stats.shows = showsCount;
-            stats.showsContinuing = continuing;
-            stats.showsWithNextEpisodes = withnext;
-            return showRuntimes;
-        }
-
-        private boolean processEpisodes(ContentResolver resolver, Stats stats,
-                boolean includeSpecials) {
-            // all episodes
-            int allEpisodesCount = DBUtils.getCountOf(resolver, Episodes.CONTENT_URI,
-                    includeSpecials ? null : Episodes.SELECTION_NO_SPECIALS, null, -1);
-            if (allEpisodesCount == -1) {
-                return false;
-            }
-            stats.episodes = allEpisodesCount;
-
-            // watched episodes
-            int watchedEpisodesCount = DBUtils.getCountOf(resolver, Episodes.CONTENT_URI,
-                    Episodes.SELECTION_WATCHED
-                            + (includeSpecials ? "" : " AND " + Episodes.SELECTION_NO_SPECIALS),
-                    null, -1);
-            if (watchedEpisodesCount == -1) {
+        /**
+         * Sums episode counters kept up to date for each show, see {@link ShowStatsHelper}, so
+         * does not need to scan all episodes.
+         */
+        private boolean processShows(Stats stats, boolean includeSpecials) {
+            SgLibraryStats libraryStats;
+            try {
+                libraryStats = SgRoomDatabase.getInstance(context).showStatsHelper()
+                        .getLibraryStats();
+            } catch (SQLiteException e) {
+                Timber.e(e, "processShows: failed to get stats");
                 return false;
             }
-            stats.episodesWatched = watchedEpisodesCount;
 
+            stats.shows = libraryStats.shows;
+            stats.showsContinuing = libraryStats.showsContinuing;
+            stats.showsWithNextEpisodes = libraryStats.showsWithNextEpisodes;
+
+            long watchedRuntimeMin = libraryStats.episodesWatchedRuntimeMin;
+            stats.episodes = libraryStats.episodes;
+            stats.episodesWatched = libraryStats.episodesWatched;
+            if (includeSpecials) {
+                stats.episodes += libraryStats.specials;
+                stats.episodesWatched += libraryStats.specialsWatched;
+                watchedRuntimeMin += libraryStats.specialsWatchedRuntimeMin;
+            }
+            stats.episodesWatchedRuntime = watchedRuntimeMin * DateUtils.MINUTE_IN_MILLIS;
             return true;
         }
     }
@@ -16,12 +16,14 @@ import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.widget.Toast;
 import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.dataliberation.model.Show;
-import com.battlelancer.seriesguide.enums.SeasonTags;
+import com.battlelancer.seriesguide.provider.EpisodeFlagsCache;
+import com.battlelancer.seriesguide.provider.SeasonCounters;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
@@ -58,7 +60,8 @@ public class DBUtils {
 
     private static final int SMALL_BATCH_SIZE = 50;
 
-    private static final String[] PROJECTION_COUNT = new String[]{
+    @VisibleForTesting
+    static final String[] PROJECTION_COUNT = new String[]{
             BaseColumns._COUNT
     };
 
@@ -118,72 +121,29 @@ public class DBUtils {
                         null, null);
     }
 
+    /**
+     * Triggers checking the episode search table, which is kept up to date by triggers. Only
+     * rebuilds it if it is not intact.
+     */
+    public static void checkFtsTable(Context context) {
+        Timber.d("Query to check FTS table");
+        context.getContentResolver()
+                .query(SeriesGuideContract.EpisodeSearch.CONTENT_URI_CHECKFTSTABLE, null, null,
+                        null, null);
+    }
+
+    @VisibleForTesting
     interface UnwatchedQuery {
         String AIRED_SELECTION = Episodes.WATCHED + "=0 AND " + Episodes.FIRSTAIREDMS
                 + " !=-1 AND " + Episodes.FIRSTAIREDMS + "<=?";
-
-        String AIRED_SELECTION_NO_SPECIALS = AIRED_SELECTION
-                + " AND " + Episodes.SELECTION_NO_SPECIALS;
-
-        String FUTURE_SELECTION = Episodes.WATCHED + "=0 AND " + Episodes.FIRSTAIREDMS
-                + ">?";
-
-        String NOAIRDATE_SELECTION = Episodes.WATCHED + "=0 AND "
-                + Episodes.FIRSTAIREDMS + "=-1";
-
-        String SKIPPED_SELECTION = Episodes.WATCHED + "=" + EpisodeFlags.SKIPPED;
     }
 
     /**
      * Looks up the episodes of a given season and stores the count of all, unwatched and skipped
-     * ones in the seasons watch counters.
+     * ones in the seasons watch counters. See {@link SeasonCounters}.
      */
     public static void updateUnwatchedCount(Context context, int seasonTvdbId) {
-        final ContentResolver resolver = context.getContentResolver();
-        final Uri uri = Episodes.buildEpisodesOfSeasonUri(seasonTvdbId);
-
-        // all a seasons episodes
-        final int totalCount = getCountOf(resolver, uri, null, null, -1);
-        if (totalCount == -1) {
-            return;
-        }
-
-        // unwatched, aired episodes
-        String[] customCurrentTimeArgs = {String.valueOf(TimeTools.getCurrentTime(context))};
-        final int count = getCountOf(resolver, uri, UnwatchedQuery.AIRED_SELECTION,
-                customCurrentTimeArgs, -1);
-        if (count == -1) {
-            return;
-        }
-
-        // unwatched, aired in the future episodes
-        final int unairedCount = getCountOf(resolver, uri, UnwatchedQuery.FUTURE_SELECTION,
-                customCurrentTimeArgs, -1);
-        if (unairedCount == -1) {
-            return;
-        }
-
-        // unwatched, no airdate
-        final int noAirDateCount = getCountOf(resolver, uri,
-                UnwatchedQuery.NOAIRDATE_SELECTION, null, -1);
-        if (noAirDateCount == -1) {
-            return;
-        }
-
-        // any skipped episodes
-        int skippedCount = getCountOf(resolver, uri, UnwatchedQuery.SKIPPED_SELECTION, null,
-                -1);
-        if (skippedCount == -1) {
-            return;
-        }
-
-        final ContentValues update = new ContentValues();
-        update.put(Seasons.WATCHCOUNT, count);
-        update.put(Seasons.UNAIREDCOUNT, unairedCount);
-        update.put(Seasons.NOAIRDATECOUNT, noAirDateCount);
-        update.put(Seasons.TAGS, skippedCount > 0 ? SeasonTags.SKIPPED : SeasonTags.NONE);
-        update.put(Seasons.TOTALCOUNT, totalCount);
-        resolver.update(Seasons.buildSeasonUri(seasonTvdbId), update, null, null);
+        SeasonCounters.updateSeason(context, seasonTvdbId);
     }
 
     /**
@@ -219,6 +179,8 @@ public class DBUtils {
      * Returns how many episodes of a show are left to watch (only aired and not watched, exclusive
      * episodes with no air date and without specials).
      *
+     * <p>Counts using the flags of the {@link EpisodeFlagsCache}.
+     *
      * @return {@link #UNKNOWN_UNWATCHED_COUNT} if the number is unknown or failed to be determined.
      */
     public static int getUnwatchedEpisodesOfShow(Context context, String showId) {
@@ -226,34 +188,42 @@ public class DBUtils {
             return UNKNOWN_UNWATCHED_COUNT;
         }
 
+        EpisodeFlagsCache.ShowFlags flags = getCachedFlags(context, showId);
+        if (flags == null) {
+            return UNKNOWN_UNWATCHED_COUNT;
+        }
         // unwatched, aired episodes
-        return getCountOf(context.getContentResolver(),
-                Episodes.buildEpisodesOfShowUri(showId),
-                UnwatchedQuery.AIRED_SELECTION_NO_SPECIALS,
-                new String[]{
-                        String.valueOf(TimeTools.getCurrentTime(context))
-                }, UNKNOWN_UNWATCHED_COUNT);
+        return flags.countUnwatchedReleased(TimeTools.getCurrentTime(context));
     }
 
     /**
      * Returns how many episodes of a show are left to collect. Only considers regular, released
      * episodes (no specials, must have a release date in the past).
+     *
+     * <p>Counts using the flags of the {@link EpisodeFlagsCache}.
      */
     public static int getUncollectedEpisodesOfShow(Context context, String showId) {
         if (context == null) {
             return UNKNOWN_COLLECTED_COUNT;
         }
 
+        EpisodeFlagsCache.ShowFlags flags = getCachedFlags(context, showId);
+        if (flags == null) {
+            return UNKNOWN_COLLECTED_COUNT;
+        }
         // not collected, no special, previously released episodes
-        return getCountOf(context.getContentResolver(), Episodes.buildEpisodesOfShowUri(showId),
-                Episodes.SELECTION_NOT_COLLECTED
-                        + " AND " + Episodes.SELECTION_NO_SPECIALS
-                        + " AND " + Episodes.SELECTION_HAS_RELEASE_DATE
-                        + " AND " + Episodes.SELECTION_RELEASED_BEFORE_X,
-                new String[]{
-                        String.valueOf(TimeTools.getCurrentTime(context))
-                },
-                UNKNOWN_COLLECTED_COUNT);
+        return flags.countUncollectedReleased(TimeTools.getCurrentTime(context));
+    }
+
+    @Nullable
+    private static EpisodeFlagsCache.ShowFlags getCachedFlags(Context context, String showId) {
+        int showTvdbId;
+        try {
+            showTvdbId = Integer.parseInt(showId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return EpisodeFlagsCache.getInstance(context).get(showTvdbId);
     }
 
     public static int getCountOf(@NonNull ContentResolver resolver, @NonNull Uri uri,
@@ -370,29 +340,6 @@ public class DBUtils {
         return isShowExists;
     }
 
-    /**
-     * Builds a {@link ContentProviderOperation} for inserting or updating a show (depending on
-     * {@code isNew}).
-     *
-     * <p> If the show is new, sets some default values and the (TheTVDB) id.
-     */
-    public static ContentProviderOperation buildShowOp(Context context, Show show, boolean isNew) {
-        // last updated now
-        show.last_updated = System.currentTimeMillis();
-
-        ContentValues values = show.toContentValues(context, isNew);
-
-        if (isNew) {
-            return ContentProviderOperation
-                    .newInsert(Shows.CONTENT_URI)
-                    .withValues(values).build();
-        } else {
-            return ContentProviderOperation
-                    .newUpdate(Shows.buildShowUri(String.valueOf(show.tvdb_id)))
-                    .withValues(values).build();
-        }
-    }
-
     /**
      * Returns the episode IDs and their last updated time for a given show as a efficiently
      * searchable HashMap. Using instead of last edited time, which might be wrong when for example
@@ -440,40 +387,23 @@ public class DBUtils {
     }
 
     /**
-     * Creates an update {@link ContentProviderOperation} for the given episode values.
+     * Builds values to insert a season if isNew, or to update it otherwise.
      */
-    public static ContentProviderOperation buildEpisodeUpdateOp(ContentValues values) {
-        final String episodeId = values.getAsString(Episodes._ID);
-        return ContentProviderOperation
-                .newUpdate(Episodes.buildEpisodeUri(episodeId))
-                .withValues(values).build();
-    }
-
-    /**
-     * Creates a {@link ContentProviderOperation} for insert if isNew, or update instead for with
-     * the given season values.
-     */
-    public static ContentProviderOperation buildSeasonOp(int showTvdbId, int seasonTvdbId,
+    public static ContentValues buildSeasonValues(int showTvdbId, int seasonTvdbId,
             int seasonNumber, boolean isNew) {
-        ContentProviderOperation op;
         final ContentValues values = new ContentValues();
+        values.put(Seasons._ID, seasonTvdbId);
         values.put(Seasons.COMBINED, seasonNumber);
 
         if (isNew) {
-            values.put(Seasons._ID, seasonTvdbId);
             values.put(Shows.REF_SHOW_ID, showTvdbId);
             // set default values
             values.put(Seasons.WATCHCOUNT, 0);
             values.put(Seasons.UNAIREDCOUNT, 0);
             values.put(Seasons.NOAIRDATECOUNT, 0);
             values.put(Seasons.TOTALCOUNT, 0);
-            op = ContentProviderOperation.newInsert(Seasons.CONTENT_URI).withValues(values)
-                    .build();
-        } else {
-            op = ContentProviderOperation.newUpdate(Seasons.buildSeasonUri(seasonTvdbId))
-                    .withValues(values).build();
         }
-        return op;
+        return values;
     }
 
     private interface LastWatchedEpisodeQuery {
@@ -492,7 +422,8 @@ public class DBUtils {
         int LAST_EPISODE_FIRST_RELEASE_MS = 4;
     }
 
-    private interface NextEpisodesQuery {
+    @VisibleForTesting
+    interface NextEpisodesQuery {
         String[] PROJECTION = new String[]{
                 Episodes._ID,
                 Episodes.SEASON,
@@ -528,11 +459,24 @@ public class DBUtils {
 
     /**
      * Update next episode field and unwatched episode count for the given show. If no show id is
-     * passed, will update next episodes for all shows.
+     * passed, will update next episodes for all shows using {@link NextEpisodeUpdater}.
      *
      * @return If only one show was passed, the TVDb id of the new next episode. Otherwise -1.
      */
     public static long updateLatestEpisode(Context context, Integer showTvdbIdToUpdate) {
+        if (showTvdbIdToUpdate == null) {
+            new NextEpisodeUpdater(context).updateAllShows();
+            return -1;
+        }
+        return updateLatestEpisodeByShow(context, showTvdbIdToUpdate);
+    }
+
+    /**
+     * Like {@link #updateLatestEpisode(Context, Integer)}, but runs separate queries for each show
+     * if updating all shows. Used to verify results of {@link NextEpisodeUpdater}.
+     */
+    @VisibleForTesting
+    static long updateLatestEpisodeByShow(Context context, @Nullable Integer showTvdbIdToUpdate) {
         // get a list of shows and their last watched episodes
         Cursor shows;
         try {
@@ -675,7 +619,8 @@ public class DBUtils {
         return nextEpisodeTvdbId;
     }
 
-    private static String buildNextEpisodeSelection(boolean isHidingSpecials,
+    @VisibleForTesting
+    static String buildNextEpisodeSelection(boolean isHidingSpecials,
             boolean isNoReleasedEpisodes) {
         StringBuilder nextEpisodeSelectionBuilder = new StringBuilder(
                 NextEpisodesQuery.SELECT_NEXT);
@@ -702,28 +647,16 @@ public class DBUtils {
         // split into smaller batches to not overload transaction cache
         // see http://developer.android.com/reference/android/os/TransactionTooLargeException.html
 
-        ArrayList<ContentProviderOperation> smallBatch = new ArrayList<>();
-
-        while (!batch.isEmpty()) {
-            if (batch.size() <= SMALL_BATCH_SIZE) {
-                // small enough already? apply right away
-                applyBatch(context, batch);
-                return;
-            }
-
-            // take up to 50 elements out of batch
-            for (int count = 0; count < SMALL_BATCH_SIZE; count++) {
-                if (batch.isEmpty()) {
-                    break;
-                }
-                smallBatch.add(batch.remove(0));
-            }
-
-            // apply small batch
-            applyBatch(context, smallBatch);
+        if (batch.size() <= SMALL_BATCH_SIZE) {
+            // small enough already? apply right away
+            applyBatch(context, batch);
+            return;
+        }
 
-            // prepare for next small batch
-            smallBatch.clear();
+        // copy ranges instead of removing from the front, which moves all remaining elements
+        for (int start = 0; start < batch.size(); start += SMALL_BATCH_SIZE) {
+            int end = Math.min(start + SMALL_BATCH_SIZE, batch.size());
+            applyBatch(context, new ArrayList<>(batch.subList(start, end)));
         }
     }
 
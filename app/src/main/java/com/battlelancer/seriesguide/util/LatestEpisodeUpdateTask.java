@@ -3,6 +3,7 @@ package com.battlelancer.seriesguide.util;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.os.AsyncTask;
+import com.battlelancer.seriesguide.provider.ChangeNotifier;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import timber.log.Timber;
 
@@ -47,7 +48,7 @@ public class LatestEpisodeUpdateTask extends AsyncTask<Integer, Void, Void> {
 
         // Show cursors already notified
         // List item cursors need to be notified manually as uri differs
-        context.getContentResolver()
-                .notifyChange(SeriesGuideContract.ListItems.CONTENT_WITH_DETAILS_URI, null);
+        ChangeNotifier.getInstance(context)
+                .notifyChange(SeriesGuideContract.ListItems.CONTENT_WITH_DETAILS_URI);
     }
 }
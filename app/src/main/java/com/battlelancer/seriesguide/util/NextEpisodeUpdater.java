@@ -0,0 +1,282 @@
+package com.battlelancer.seriesguide.util;
+
+import static com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Qualified;
+
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import com.battlelancer.seriesguide.provider.ChangeNotifier;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SgRoomDatabase;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import timber.log.Timber;
+
+/**
+ * Updates next episode values and unwatched episode counts of all shows at once. Other than {@link
+ * DBUtils#updateLatestEpisode(Context, Integer)} for a single show, reads unwatched episodes of all
+ * shows with a single query ordered by show and writes all changes in a single transaction.
+ *
+ * <p>Results must match those of updating each show on its own.
+ */
+public class NextEpisodeUpdater {
+
+    private interface LastWatchedEpisodeQuery {
+        String[] PROJECTION = new String[]{
+                Qualified.SHOWS_ID,
+                Shows.LASTWATCHEDID,
+                Episodes.SEASON,
+                Episodes.NUMBER,
+                Episodes.FIRSTAIREDMS
+        };
+
+        int SHOW_TVDB_ID = 0;
+        int LAST_EPISODE_TVDB_ID = 1;
+        int LAST_EPISODE_SEASON = 2;
+        int LAST_EPISODE_NUMBER = 3;
+        int LAST_EPISODE_FIRST_RELEASE_MS = 4;
+    }
+
+    @VisibleForTesting
+    interface UnwatchedEpisodesQuery {
+        String[] PROJECTION = new String[]{
+                Shows.REF_SHOW_ID,
+                Episodes._ID,
+                Episodes.SEASON,
+                Episodes.NUMBER,
+                Episodes.FIRSTAIREDMS,
+                Episodes.TITLE
+        };
+
+        /**
+         * Only unwatched episodes with a release date can be a next episode or count as
+         * unwatched.
+         */
+        String SELECTION = Episodes.WATCHED + "=0 AND " + Episodes.SELECTION_HAS_RELEASE_DATE;
+
+        /**
+         * By show, then like the next episode query: air time, then lowest season, or if
+         * identical lowest episode number.
+         */
+        String SORTORDER = Shows.REF_SHOW_ID + " ASC," + Episodes.FIRSTAIREDMS + " ASC,"
+                + Episodes.SEASON + " ASC," + Episodes.NUMBER + " ASC";
+
+        int SHOW_TVDB_ID = 0;
+        int ID = 1;
+        int SEASON = 2;
+        int NUMBER = 3;
+        int FIRST_RELEASE_MS = 4;
+        int TITLE = 5;
+    }
+
+    private static final String UPDATE_SHOW = "UPDATE " + Tables.SHOWS + " SET "
+            + Shows.NEXTEPISODE + "=?,"
+            + Shows.NEXTAIRDATEMS + "=?,"
+            + Shows.NEXTTEXT + "=?,"
+            + Shows.UNWATCHED_COUNT + "=?"
+            + " WHERE " + Shows._ID + "=?";
+
+    /**
+     * Next episode state of a single show while scanning its unwatched episodes.
+     */
+    private static class ShowState {
+        final int showTvdbId;
+        final int lastSeason;
+        final int lastNumber;
+        final long lastReleaseTime;
+
+        int nextEpisodeTvdbId;
+        long nextReleaseTime;
+        String nextText;
+        int unwatchedCount;
+
+        ShowState(int showTvdbId, int lastSeason, int lastNumber, long lastReleaseTime) {
+            this.showTvdbId = showTvdbId;
+            this.lastSeason = lastSeason;
+            this.lastNumber = lastNumber;
+            this.lastReleaseTime = lastReleaseTime;
+        }
+
+        boolean hasNextEpisode() {
+            return nextEpisodeTvdbId != 0;
+        }
+    }
+
+    private final Context context;
+    private final boolean isHidingSpecials;
+    private final boolean isNoReleasedEpisodes;
+    private final boolean preventSpoilers;
+    private final long currentTime;
+
+    public NextEpisodeUpdater(Context context) {
+        this.context = context.getApplicationContext();
+        this.isHidingSpecials = DisplaySettings.isHidingSpecials(context);
+        this.isNoReleasedEpisodes = DisplaySettings.isNoReleasedEpisodes(context);
+        this.preventSpoilers = DisplaySettings.preventSpoilers(context);
+        this.currentTime = TimeTools.getCurrentTime(context);
+    }
+
+    /**
+     * Updates next episode values and unwatched count of all shows.
+     *
+     * @return {@code false} if a query failed and no show was updated.
+     */
+    public boolean updateAllShows() {
+        SparseArray<ShowState> shows = getShowsWithLastWatchedEpisode();
+        if (shows == null) {
+            Timber.e("Failed to update next episode values");
+            return false;
+        }
+        if (!scanUnwatchedEpisodes(shows)) {
+            Timber.e("Failed to update next episode values");
+            return false;
+        }
+        try {
+            writeShows(shows);
+        } catch (SQLiteException e) {
+            Timber.e(e, "updateAllShows: writing next episodes failed.");
+            DBUtils.postDatabaseError(e);
+            return false;
+        }
+
+        ChangeNotifier.getInstance(context).notifyChange(Shows.CONTENT_URI);
+        return true;
+    }
+
+    private SparseArray<ShowState> getShowsWithLastWatchedEpisode() {
+        Cursor query;
+        try {
+            query = context.getContentResolver().query(Shows.CONTENT_URI_WITH_LAST_EPISODE,
+                    LastWatchedEpisodeQuery.PROJECTION, null, null, null);
+        } catch (SQLiteException e) {
+            query = null;
+            Timber.e(e, "updateAllShows: show query failed.");
+            DBUtils.postDatabaseError(e);
+        }
+        if (query == null) {
+            return null;
+        }
+
+        SparseArray<ShowState> shows = new SparseArray<>(query.getCount());
+        while (query.moveToNext()) {
+            int showTvdbId = query.getInt(LastWatchedEpisodeQuery.SHOW_TVDB_ID);
+            ShowState show;
+            if (TextUtils.isEmpty(query.getString(LastWatchedEpisodeQuery.LAST_EPISODE_TVDB_ID))
+                    || query.isNull(LastWatchedEpisodeQuery.LAST_EPISODE_SEASON)
+                    || query.isNull(LastWatchedEpisodeQuery.LAST_EPISODE_NUMBER)
+                    || query.isNull(LastWatchedEpisodeQuery.LAST_EPISODE_FIRST_RELEASE_MS)) {
+                // by default: no watched episodes, include all starting with special 0
+                show = new ShowState(showTvdbId, -1, -1, Long.MIN_VALUE);
+            } else {
+                show = new ShowState(showTvdbId,
+                        query.getInt(LastWatchedEpisodeQuery.LAST_EPISODE_SEASON),
+                        query.getInt(LastWatchedEpisodeQuery.LAST_EPISODE_NUMBER),
+                        query.getLong(LastWatchedEpisodeQuery.LAST_EPISODE_FIRST_RELEASE_MS));
+            }
+            shows.put(showTvdbId, show);
+        }
+        query.close();
+        return shows;
+    }
+
+    /**
+     * Scans unwatched episodes of all shows once. As episodes are ordered like the next episode
+     * query, the first episode of a show matching the next episode conditions is its next
+     * episode.
+     */
+    private boolean scanUnwatchedEpisodes(SparseArray<ShowState> shows) {
+        Cursor query;
+        try {
+            query = context.getContentResolver().query(Episodes.CONTENT_URI,
+                    UnwatchedEpisodesQuery.PROJECTION, UnwatchedEpisodesQuery.SELECTION, null,
+                    UnwatchedEpisodesQuery.SORTORDER);
+        } catch (SQLiteException e) {
+            query = null;
+            Timber.e(e, "updateAllShows: episode query failed.");
+            DBUtils.postDatabaseError(e);
+        }
+        if (query == null) {
+            return false;
+        }
+
+        ShowState show = null;
+        while (query.moveToNext()) {
+            int showTvdbId = query.getInt(UnwatchedEpisodesQuery.SHOW_TVDB_ID);
+            if (show == null || show.showTvdbId != showTvdbId) {
+                show = shows.get(showTvdbId);
+                if (show == null) {
+                    continue; // orphaned episode
+                }
+            }
+
+            int season = query.getInt(UnwatchedEpisodesQuery.SEASON);
+            int number = query.getInt(UnwatchedEpisodesQuery.NUMBER);
+            long releaseTime = query.getLong(UnwatchedEpisodesQuery.FIRST_RELEASE_MS);
+
+            // matches DBUtils.getUnwatchedEpisodesOfShow: released, no specials
+            if (releaseTime <= currentTime && season != 0) {
+                show.unwatchedCount++;
+            }
+
+            if (!show.hasNextEpisode() && isNextEpisode(show, season, number, releaseTime)) {
+                show.nextEpisodeTvdbId = query.getInt(UnwatchedEpisodesQuery.ID);
+                show.nextReleaseTime = releaseTime;
+                show.nextText = TextTools.getNextEpisodeString(context, season, number,
+                        preventSpoilers
+                                // just the number, like '0x12 Episode 12'
+                                ? null
+                                // next episode text, like '0x12 Episode Name'
+                                : query.getString(UnwatchedEpisodesQuery.TITLE));
+            }
+        }
+        query.close();
+        return true;
+    }
+
+    /**
+     * Unwatched, airing later or has a different number or season if airing the same time.
+     */
+    private boolean isNextEpisode(ShowState show, int season, int number, long releaseTime) {
+        if (isHidingSpecials && season == 0) {
+            return false;
+        }
+        if (isNoReleasedEpisodes && releaseTime < currentTime) {
+            return false;
+        }
+        return releaseTime > show.lastReleaseTime
+                || (releaseTime == show.lastReleaseTime
+                && (number != show.lastNumber || season != show.lastSeason));
+    }
+
+    private void writeShows(SparseArray<ShowState> shows) {
+        SgRoomDatabase room = SgRoomDatabase.getInstance(context);
+        room.beginTransaction();
+        try {
+            SupportSQLiteStatement update = room.compileStatement(UPDATE_SHOW);
+            for (int i = 0; i < shows.size(); i++) {
+                ShowState show = shows.valueAt(i);
+                if (show.hasNextEpisode()) {
+                    update.bindString(1, String.valueOf(show.nextEpisodeTvdbId));
+                    update.bindLong(2, show.nextReleaseTime);
+                    update.bindString(3, show.nextText);
+                } else {
+                    // no next episode, set empty values
+                    update.bindString(1, "");
+                    update.bindString(2, DBUtils.UNKNOWN_NEXT_RELEASE_DATE);
+                    update.bindString(3, "");
+                }
+                update.bindLong(4, show.unwatchedCount);
+                update.bindLong(5, show.showTvdbId);
+                update.executeUpdateDelete();
+            }
+            room.setTransactionSuccessful();
+        } finally {
+            room.endTransaction();
+        }
+    }
+}
@@ -131,16 +131,28 @@ public class SelectionBuilder {
      */
     public Cursor query(SupportSQLiteDatabase db, String[] columns, String groupBy, String having,
             String orderBy, String limit) {
+        String query = buildQuery(columns, groupBy, having, orderBy, limit);
+        return db.query(query, getSelectionArgs());
+    }
+
+    /**
+     * Build the query {@link #query(SupportSQLiteDatabase, String[], String)} would execute, its
+     * arguments are {@link #getSelectionArgs()}.
+     */
+    public String buildQuery(String[] columns, String orderBy) {
+        return buildQuery(columns, null, null, orderBy, null);
+    }
+
+    private String buildQuery(String[] columns, String groupBy, String having, String orderBy,
+            String limit) {
         assertTable();
         if (columns != null)
             mapColumns(columns);
         if (SeriesGuideProvider.LOGV)
             Timber.v("query(columns=" + Arrays.toString(columns) + ") " + this);
 
-        String query = SQLiteQueryBuilder.buildQueryString(
+        return SQLiteQueryBuilder.buildQueryString(
                 false, table, columns, getSelection(), groupBy, having, orderBy, limit);
-
-        return db.query(query, getSelectionArgs());
     }
 
     /**
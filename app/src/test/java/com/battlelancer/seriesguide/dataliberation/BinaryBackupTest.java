@@ -0,0 +1,153 @@
+package com.battlelancer.seriesguide.dataliberation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.battlelancer.seriesguide.dataliberation.backup.SgBackup;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.List;
+import com.battlelancer.seriesguide.dataliberation.model.ListItem;
+import com.battlelancer.seriesguide.dataliberation.model.Movie;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class BinaryBackupTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void roundTrip_shows() throws IOException {
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(1));
+        Show showWithoutSeasons = buildShow(2);
+        showWithoutSeasons.seasons = new ArrayList<>();
+        showWithoutSeasons.overview = "Special characters: <>&'\" äöü 漢字";
+        shows.add(showWithoutSeasons);
+
+        assertRoundTrip(JsonExportTask.BACKUP_SHOWS, new Gson().toJson(shows));
+    }
+
+    @Test
+    public void roundTrip_lists() throws IOException {
+        List list = new List();
+        list.listId = "list-1";
+        list.name = "List";
+        list.order = 2;
+        list.items = new ArrayList<>();
+        ListItem item = new ListItem();
+        item.listItemId = "12-1-list-1";
+        item.tvdbId = 12;
+        item.type = JsonExportTask.ListItemTypesExport.SHOW;
+        list.items.add(item);
+        ArrayList<List> lists = new ArrayList<>();
+        lists.add(list);
+
+        assertRoundTrip(JsonExportTask.BACKUP_LISTS, new Gson().toJson(lists));
+    }
+
+    @Test
+    public void roundTrip_movies() throws IOException {
+        Movie movie = new Movie();
+        movie.tmdbId = 550;
+        movie.imdbId = "tt0137523";
+        movie.title = "Movie";
+        movie.releasedUtcMs = 940032000000L;
+        movie.runtimeMin = 139;
+        movie.inCollection = true;
+        movie.watched = true;
+        movie.lastUpdatedMs = 1500000000000L;
+        ArrayList<Movie> movies = new ArrayList<>();
+        movies.add(movie);
+
+        assertRoundTrip(JsonExportTask.BACKUP_MOVIES, new Gson().toJson(movies));
+    }
+
+    @Test
+    public void wrap_json() {
+        ByteBuffer json = ByteBuffer.wrap("[{\"tvdb_id\":1}]".getBytes(UTF_8));
+        assertThat(BinaryBackup.wrap(json)).isNull();
+        assertThat(BinaryBackup.wrap(ByteBuffer.allocate(0))).isNull();
+    }
+
+    @Test
+    public void map_file() throws IOException {
+        ArrayList<Show> shows = new ArrayList<>();
+        shows.add(buildShow(1));
+        ByteBuffer binary = BinaryBackup.fromJson(JsonExportTask.BACKUP_SHOWS,
+                new ByteArrayInputStream(new Gson().toJson(shows).getBytes(UTF_8)));
+
+        File file = File.createTempFile("sg-shows-export", ".sgbk");
+        file.deleteOnExit();
+        // like JsonExportTask
+        BinaryBackup.write(binary, new FileOutputStream(file));
+
+        FileInputStream in = new FileInputStream(file);
+        SgBackup backup = BinaryBackup.map(in.getChannel());
+        in.close();
+
+        assertThat(backup).isNotNull();
+        assertThat(backup.showsLength()).isEqualTo(1);
+        assertThat(backup.shows(0).title()).isEqualTo("Show 1");
+        assertThat(backup.shows(0).seasons(1).episodes(2).tvdbId()).isEqualTo(1203);
+    }
+
+    private static void assertRoundTrip(@JsonExportTask.BackupType int type, String json)
+            throws IOException {
+        ByteBuffer binary = BinaryBackup.fromJson(type,
+                new ByteArrayInputStream(json.getBytes(UTF_8)));
+        SgBackup backup = BinaryBackup.wrap(binary);
+        assertThat(backup).isNotNull();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryBackup.toJson(backup, type, out);
+
+        assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo(json);
+    }
+
+    private static Show buildShow(int showTvdbId) {
+        Show show = new Show();
+        show.tvdb_id = showTvdbId;
+        show.tvdb_slug = "show-" + showTvdbId;
+        show.trakt_id = showTvdbId * 7;
+        show.title = "Show " + showTvdbId;
+        show.language = "en";
+        show.release_time = 2100;
+        show.release_weekday = 3;
+        show.release_timezone = "America/New_York";
+        show.status = JsonExportTask.ShowStatusExport.CONTINUING;
+        show.rating = 8.5;
+        show.favorite = true;
+        show.notify = false;
+        show.last_watched_ms = 1500000000000L;
+        show.seasons = new ArrayList<>();
+        for (int seasonNumber = 1; seasonNumber <= 2; seasonNumber++) {
+            Season season = new Season();
+            season.tvdbId = showTvdbId * 10 + seasonNumber;
+            season.season = seasonNumber;
+            season.episodes = new ArrayList<>();
+            for (int number = 1; number <= 3; number++) {
+                Episode episode = new Episode();
+                episode.tvdbId = showTvdbId * 1000 + seasonNumber * 100 + number;
+                episode.episode = number;
+                episode.title = "Episode " + number;
+                episode.firstAired = 1500000000000L + number;
+                episode.watched = number == 1;
+                episode.skipped = number == 2;
+                episode.episodeDvd = number + 0.5;
+                season.episodes.add(episode);
+            }
+            show.seasons.add(season);
+        }
+        return show;
+    }
+}
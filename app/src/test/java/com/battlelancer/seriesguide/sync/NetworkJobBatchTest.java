@@ -0,0 +1,109 @@
+package com.battlelancer.seriesguide.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.battlelancer.seriesguide.jobs.EpisodeInfo;
+import com.battlelancer.seriesguide.jobs.SgJobInfo;
+import com.battlelancer.seriesguide.jobs.episodes.JobAction;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class NetworkJobBatchTest {
+
+    private static final int SHOW = 42;
+
+    @Test
+    public void test_canAdd() {
+        NetworkJobBatch batch = new NetworkJobBatch(1, JobAction.EPISODE_WATCHED_FLAG, 100,
+                buildJobInfo(SHOW, EpisodeFlags.WATCHED, 1, 1));
+
+        assertThat(batch.canAdd(JobAction.EPISODE_WATCHED_FLAG,
+                buildJobInfo(SHOW, EpisodeFlags.WATCHED, 1, 2))).isTrue();
+        // other show
+        assertThat(batch.canAdd(JobAction.EPISODE_WATCHED_FLAG,
+                buildJobInfo(SHOW + 1, EpisodeFlags.WATCHED, 1, 2))).isFalse();
+        // conflicting flag
+        assertThat(batch.canAdd(JobAction.EPISODE_WATCHED_FLAG,
+                buildJobInfo(SHOW, EpisodeFlags.UNWATCHED, 1, 1))).isFalse();
+        // other action
+        assertThat(batch.canAdd(JobAction.EPISODE_COLLECTION,
+                buildJobInfo(SHOW, EpisodeFlags.WATCHED, 1, 2))).isFalse();
+    }
+
+    @Test
+    public void test_canAdd_movies() {
+        NetworkJobBatch batch = new NetworkJobBatch(1, JobAction.MOVIE_WATCHED_SET, 100,
+                buildMovieJobInfo(12));
+        assertThat(batch.canAdd(JobAction.MOVIE_WATCHED_SET, buildMovieJobInfo(13))).isFalse();
+    }
+
+    @Test
+    public void test_canAdd_maxEpisodes() {
+        int[] episodes = new int[(NetworkJobBatch.MAX_EPISODES - 1) * 2];
+        for (int i = 0; i < episodes.length; i += 2) {
+            episodes[i] = 1;
+            episodes[i + 1] = i / 2 + 1;
+        }
+        NetworkJobBatch batch = new NetworkJobBatch(1, JobAction.EPISODE_COLLECTION, 100,
+                buildJobInfo(SHOW, 1, episodes));
+
+        assertThat(batch.canAdd(JobAction.EPISODE_COLLECTION,
+                buildJobInfo(SHOW, 1, 2, 1))).isTrue();
+        assertThat(batch.canAdd(JobAction.EPISODE_COLLECTION,
+                buildJobInfo(SHOW, 1, 2, 1, 2, 2))).isFalse();
+    }
+
+    @Test
+    public void test_getJobInfo() {
+        NetworkJobBatch batch = new NetworkJobBatch(1, JobAction.EPISODE_WATCHED_FLAG, 100,
+                buildJobInfo(SHOW, EpisodeFlags.WATCHED, 2, 1, 2, 2));
+        batch.add(2, 200, buildJobInfo(SHOW, EpisodeFlags.WATCHED, 1, 5));
+
+        assertThat(batch.size()).isEqualTo(2);
+        assertThat(batch.getJobIds()).containsExactly(1L, 2L).inOrder();
+        assertThat(batch.getFirstJobId()).isEqualTo(1);
+        assertThat(batch.getCreatedAt()).isEqualTo(100);
+
+        SgJobInfo jobInfo = batch.getJobInfo();
+        assertThat(jobInfo.showTvdbId()).isEqualTo(SHOW);
+        assertThat(jobInfo.flagValue()).isEqualTo(EpisodeFlags.WATCHED);
+        assertThat(jobInfo.episodesLength()).isEqualTo(3);
+        assertEpisode(jobInfo.episodes(0), 2, 1);
+        assertEpisode(jobInfo.episodes(1), 2, 2);
+        assertEpisode(jobInfo.episodes(2), 1, 5);
+
+        assertThat(batch.getEpisodeActionTimes()).asList()
+                .containsExactly(100L, 100L, 200L).inOrder();
+    }
+
+    private static void assertEpisode(EpisodeInfo episode, int season, int number) {
+        assertThat(episode.season()).isEqualTo(season);
+        assertThat(episode.number()).isEqualTo(number);
+    }
+
+    /**
+     * @param episodes Pairs of season and episode number.
+     */
+    private static SgJobInfo buildJobInfo(int showTvdbId, int flagValue, int... episodes) {
+        FlatBufferBuilder builder = new FlatBufferBuilder(0);
+        int[] episodeInfos = new int[episodes.length / 2];
+        for (int i = 0; i < episodeInfos.length; i++) {
+            episodeInfos[i] = EpisodeInfo.createEpisodeInfo(builder, episodes[i * 2],
+                    episodes[i * 2 + 1]);
+        }
+        int episodesVector = SgJobInfo.createEpisodesVector(builder, episodeInfos);
+        int jobInfo = SgJobInfo.createSgJobInfo(builder, showTvdbId, flagValue, episodesVector,
+                0);
+        builder.finish(jobInfo);
+        return SgJobInfo.getRootAsSgJobInfo(ByteBuffer.wrap(builder.sizedByteArray()));
+    }
+
+    private static SgJobInfo buildMovieJobInfo(int movieTmdbId) {
+        FlatBufferBuilder builder = new FlatBufferBuilder(0);
+        int jobInfo = SgJobInfo.createSgJobInfo(builder, 0, 0, 0, movieTmdbId);
+        builder.finish(jobInfo);
+        return SgJobInfo.getRootAsSgJobInfo(ByteBuffer.wrap(builder.sizedByteArray()));
+    }
+}
@@ -0,0 +1,130 @@
+package com.battlelancer.seriesguide.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.battlelancer.seriesguide.model.SgSyncStage;
+import com.battlelancer.seriesguide.sync.SyncProgress.Step;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public class SyncMetricsTest {
+
+    @Test
+    public void recordsForCurrentStage() throws InterruptedException {
+        SyncMetrics metrics = new SyncMetrics(1000);
+
+        // not syncing, not recorded
+        SyncMetrics.recordDbOps(5);
+
+        metrics.enterStage(Step.TVDB);
+        SyncMetrics.recordHttpRequest(2048);
+        SyncMetrics.recordHttpRequest(1024);
+        SyncMetrics.recordDbOps(3);
+        SyncMetrics.recordShowsTouched(1);
+        SyncMetrics.recordEpisodesTouched(20);
+
+        // other thread working on another stage
+        Thread tmdbThread = new Thread(() -> {
+            metrics.enterStage(Step.TMDB);
+            SyncMetrics.recordHttpRequest(100);
+            metrics.leaveStage(Step.TMDB);
+        });
+        tmdbThread.start();
+        tmdbThread.join();
+
+        // only leaves stage this thread is recording for
+        metrics.leaveStage(Step.TMDB);
+        SyncMetrics.recordDbOps(1);
+
+        metrics.enterStage(Step.TRAKT_EPISODES);
+        SyncMetrics.recordEpisodesTouched(7);
+        metrics.leaveStage(Step.TRAKT_EPISODES);
+        SyncMetrics.recordEpisodesTouched(100);
+
+        Map<Step, Long> durations = new EnumMap<>(Step.class);
+        durations.put(Step.TVDB, 300L);
+        durations.put(Step.HEXAGON_SHOWS, 50L);
+        List<SgSyncStage> stages = metrics.buildStages(durations,
+                Collections.singletonList(Step.TMDB), "SUCCESS");
+
+        assertThat(stages).hasSize(4);
+
+        SgSyncStage tvdb = stages.get(0);
+        assertThat(tvdb.stage).isEqualTo("TVDB");
+        assertThat(tvdb.runStartedMs).isEqualTo(1000);
+        assertThat(tvdb.runResult).isEqualTo("SUCCESS");
+        assertThat(tvdb.durationMs).isEqualTo(300);
+        assertThat(tvdb.httpRequests).isEqualTo(2);
+        assertThat(tvdb.httpBytes).isEqualTo(3072);
+        assertThat(tvdb.dbOps).isEqualTo(4);
+        assertThat(tvdb.showsTouched).isEqualTo(1);
+        assertThat(tvdb.episodesTouched).isEqualTo(20);
+        assertThat(tvdb.failed).isFalse();
+
+        SgSyncStage tmdb = stages.get(1);
+        assertThat(tmdb.stage).isEqualTo("TMDB");
+        assertThat(tmdb.httpRequests).isEqualTo(1);
+        assertThat(tmdb.httpBytes).isEqualTo(100);
+        assertThat(tmdb.failed).isTrue();
+
+        // timed only
+        SgSyncStage hexagonShows = stages.get(2);
+        assertThat(hexagonShows.stage).isEqualTo("HEXAGON_SHOWS");
+        assertThat(hexagonShows.durationMs).isEqualTo(50);
+        assertThat(hexagonShows.httpRequests).isEqualTo(0);
+
+        SgSyncStage traktEpisodes = stages.get(3);
+        assertThat(traktEpisodes.stage).isEqualTo("TRAKT_EPISODES");
+        assertThat(traktEpisodes.episodesTouched).isEqualTo(7);
+    }
+
+    @Test
+    public void recordsOnOtherThreadsOnlyIfPassed() throws Exception {
+        SyncMetrics metrics = new SyncMetrics(1000);
+        metrics.enterStage(Step.TVDB);
+
+        // threads started by a stage do not inherit it
+        Thread thread = new Thread(() -> SyncMetrics.recordDbOps(1));
+        thread.start();
+        thread.join();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(SyncMetrics.withCurrentStage(() -> {
+                SyncMetrics.recordDbOps(2);
+                return null;
+            })).get();
+            // stage is removed from the worker thread once done
+            executor.submit(() -> SyncMetrics.recordDbOps(4)).get();
+        } finally {
+            executor.shutdown();
+        }
+        metrics.leaveStage(Step.TVDB);
+
+        List<SgSyncStage> stages = metrics.buildStages(new EnumMap<>(Step.class),
+                Collections.emptyList(), "SUCCESS");
+        assertThat(stages).hasSize(1);
+        assertThat(stages.get(0).dbOps).isEqualTo(2);
+    }
+
+    @Test
+    public void describe() {
+        assertThat(SyncMetrics.describe(Collections.emptyList()))
+                .isEqualTo("No sync runs recorded.");
+
+        SyncMetrics metrics = new SyncMetrics(1000);
+        metrics.enterStage(Step.TVDB);
+        SyncMetrics.recordHttpRequest(4096);
+        metrics.leaveStage(Step.TVDB);
+        String description = SyncMetrics.describe(metrics.buildStages(
+                Collections.singletonMap(Step.TVDB, 42L), Collections.emptyList(), "SUCCESS"));
+        assertThat(description).contains(" SUCCESS\n");
+        assertThat(description).endsWith(
+                "TVDB: 42 ms, 1 requests, 4 KB, 0 db ops, 0 shows, 0 episodes\n");
+    }
+}
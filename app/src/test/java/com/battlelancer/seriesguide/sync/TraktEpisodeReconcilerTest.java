@@ -0,0 +1,126 @@
+package com.battlelancer.seriesguide.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.support.v4.util.SparseArrayCompat;
+import com.battlelancer.seriesguide.sync.TraktEpisodeSync.Flag;
+import com.battlelancer.seriesguide.ui.episodes.EpisodeFlags;
+import com.uwetrottmann.trakt5.entities.BaseEpisode;
+import com.uwetrottmann.trakt5.entities.BaseSeason;
+import com.uwetrottmann.trakt5.entities.BaseShow;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncSeason;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class TraktEpisodeReconcilerTest {
+
+    @Test
+    public void watched_removesFlags() {
+        TraktEpisodeReconciler reconciler = processWatched(false);
+
+        assertThat(reconciler.getEpisodesAddFlag()).containsExactly(102, 201).inOrder();
+        assertThat(reconciler.getEpisodesRemoveFlag()).containsExactly(103, 105, 301, 401)
+                .inOrder();
+        assertThat(reconciler.getUploadsByShow().size()).isEqualTo(0);
+    }
+
+    @Test
+    public void watched_initialSync_uploadsFlags() {
+        TraktEpisodeReconciler reconciler = processWatched(true);
+
+        assertThat(reconciler.getEpisodesAddFlag()).containsExactly(102, 201).inOrder();
+        assertThat(reconciler.getEpisodesRemoveFlag()).isEmpty();
+        SparseArrayCompat<List<SyncSeason>> uploads = reconciler.getUploadsByShow();
+        assertThat(uploads.size()).isEqualTo(2);
+        assertThat(describe(uploads.get(1))).containsExactly("1x3", "1x5").inOrder();
+        assertThat(describe(uploads.get(2))).containsExactly("1x1", "2x1").inOrder();
+    }
+
+    @Test
+    public void collected() {
+        Map<Integer, BaseShow> traktShows = new HashMap<>();
+        traktShows.put(1, buildShow(buildSeason(1, 1)));
+        TraktEpisodeReconciler reconciler = new TraktEpisodeReconciler(Flag.COLLECTED, false,
+                traktShows, new SparseArrayCompat<Integer>());
+
+        reconciler.processEpisode(1, 101, 1, 1, 0);
+        reconciler.processEpisode(1, 102, 1, 2, 1);
+        reconciler.processEpisode(1, 103, 1, 3, 0);
+
+        assertThat(reconciler.getEpisodesAddFlag()).containsExactly(101);
+        assertThat(reconciler.getEpisodesRemoveFlag()).containsExactly(102);
+    }
+
+    @Test
+    public void episodeKey_seasonAndNumberDoNotCollide() {
+        assertThat(TraktEpisodeReconciler.episodeKey(1, 0))
+                .isNotEqualTo(TraktEpisodeReconciler.episodeKey(0, 1 << 16));
+        assertThat(TraktEpisodeReconciler.episodeKey(1, 1))
+                .isLessThan(TraktEpisodeReconciler.episodeKey(2, 0));
+    }
+
+    /**
+     * Show 1 and 2 are tracked with trakt, show 1 has watched episodes on trakt. Show 3 can not be
+     * tracked with trakt.
+     */
+    private static TraktEpisodeReconciler processWatched(boolean isInitialSync) {
+        Map<Integer, BaseShow> traktShows = new HashMap<>();
+        traktShows.put(1, buildShow(buildSeason(1, 1, 2), buildSeason(2, 1)));
+        SparseArrayCompat<Integer> showTraktIds = new SparseArrayCompat<>();
+        showTraktIds.put(1, 11);
+        showTraktIds.put(2, 12);
+
+        TraktEpisodeReconciler reconciler = new TraktEpisodeReconciler(Flag.WATCHED,
+                isInitialSync, traktShows, showTraktIds);
+        reconciler.processEpisode(1, 101, 1, 1, EpisodeFlags.WATCHED);
+        reconciler.processEpisode(1, 102, 1, 2, EpisodeFlags.UNWATCHED);
+        reconciler.processEpisode(1, 103, 1, 3, EpisodeFlags.WATCHED);
+        // skipped flag is never removed or uploaded
+        reconciler.processEpisode(1, 104, 1, 4, EpisodeFlags.SKIPPED);
+        reconciler.processEpisode(1, 105, 1, 5, EpisodeFlags.WATCHED);
+        // skipped is not watched
+        reconciler.processEpisode(1, 201, 2, 1, EpisodeFlags.SKIPPED);
+        // show not on trakt
+        reconciler.processEpisode(2, 301, 1, 1, EpisodeFlags.WATCHED);
+        reconciler.processEpisode(2, 302, 1, 2, EpisodeFlags.UNWATCHED);
+        reconciler.processEpisode(2, 401, 2, 1, EpisodeFlags.WATCHED);
+        // show not tracked with trakt, keeps flags
+        reconciler.processEpisode(3, 501, 1, 1, EpisodeFlags.WATCHED);
+        return reconciler;
+    }
+
+    private static BaseShow buildShow(BaseSeason... seasons) {
+        BaseShow show = new BaseShow();
+        show.seasons = new ArrayList<>();
+        for (BaseSeason season : seasons) {
+            show.seasons.add(season);
+        }
+        return show;
+    }
+
+    private static BaseSeason buildSeason(int number, int... episodeNumbers) {
+        BaseSeason season = new BaseSeason();
+        season.number = number;
+        season.episodes = new ArrayList<>();
+        for (int episodeNumber : episodeNumbers) {
+            BaseEpisode episode = new BaseEpisode();
+            episode.number = episodeNumber;
+            season.episodes.add(episode);
+        }
+        return season;
+    }
+
+    private static List<String> describe(List<SyncSeason> seasons) {
+        List<String> episodes = new ArrayList<>();
+        for (SyncSeason season : seasons) {
+            for (SyncEpisode episode : season.episodes) {
+                episodes.add(season.number + "x" + episode.number);
+            }
+        }
+        return episodes;
+    }
+}
@@ -0,0 +1,47 @@
+package com.battlelancer.seriesguide.thetvdbapi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import java.nio.charset.Charset;
+import kotlin.Pair;
+import org.junit.Test;
+
+public class TvdbEpisodeToolsTest {
+
+    @Test
+    public void parsePageEpisodes() {
+        assertThat(TvdbEpisodeTools.parsePageEpisodes(null)).isEmpty();
+        assertThat(TvdbEpisodeTools.parsePageEpisodes("")).isEmpty();
+        assertThat(TvdbEpisodeTools.parsePageEpisodes("101:11,102:11,201:12"))
+                .containsExactly(new Pair<>(101, 11), new Pair<>(102, 11), new Pair<>(201, 12))
+                .inOrder();
+    }
+
+    @Test
+    public void buildPageSettings() {
+        Show show = new Show();
+        show.release_timezone = "America/New_York";
+        show.release_time = 2100;
+        show.country = "us";
+        show.network = "HBO";
+        String settings = TvdbEpisodeTools.buildPageSettings(show, "de", "en", "Europe/Berlin");
+
+        // release time changed
+        show.release_time = 2200;
+        assertThat(TvdbEpisodeTools.buildPageSettings(show, "de", "en", "Europe/Berlin"))
+                .isNotEqualTo(settings);
+        show.release_time = 2100;
+        // fallback language changed
+        assertThat(TvdbEpisodeTools.buildPageSettings(show, "de", null, "Europe/Berlin"))
+                .isNotEqualTo(settings);
+        assertThat(TvdbEpisodeTools.buildPageSettings(show, "de", "en", "Europe/Berlin"))
+                .isEqualTo(settings);
+    }
+
+    @Test
+    public void hash() {
+        assertThat(TvdbEpisodeTools.hash("abc".getBytes(Charset.forName("UTF-8"))))
+                .isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+    }
+}